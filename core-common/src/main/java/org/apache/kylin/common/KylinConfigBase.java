@@ -331,8 +331,26 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.parseInt(getOptional("kylin.dictionary.forest-trie-max-mb", "500"));
     }
 
+    /**
+     * @deprecated dictionaries are cached by bytes, see {@link #getDictionaryCacheMaxMB()}; 0 if not set
+     */
+    @Deprecated
     public int getCachedDictMaxEntrySize() {
-        return Integer.parseInt(getOptional("kylin.dictionary.max-cache-entry", "3000"));
+        return Integer.parseInt(getOptional("kylin.dictionary.max-cache-entry", "0"));
+    }
+
+    /**
+     * Byte budget of the dictionary cache shared by the process, 0 means 10% of the max heap
+     */
+    public int getDictionaryCacheMaxMB() {
+        return Integer.parseInt(getOptional("kylin.dictionary.cache-max-mb", "0"));
+    }
+
+    /**
+     * Local directory where dictionaries are copied to and memory mapped from, empty means load into heap
+     */
+    public String getDictionaryLocalCacheDir() {
+        return getOptional("kylin.dictionary.local-cache-dir", "");
     }
 
     public boolean isGrowingDictEnabled() {
@@ -359,6 +377,14 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.parseInt(getOptional("kylin.snapshot.max-mb", "300"));
     }
 
+    public boolean isSnapshotColumnarEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.snapshot.columnar-enabled", "false"));
+    }
+
+    public int getSnapshotBuildThreads() {
+        return Integer.parseInt(getOptional("kylin.snapshot.build-threads", "4"));
+    }
+
     // ============================================================================
     // CUBE
     // ============================================================================
@@ -400,6 +426,20 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.parseInt(getOptional("kylin.cube.algorithm.inmem-concurrent-threads", "1"));
     }
 
+    /**
+     * Threads encoding the input rows of in-mem cubing ahead of base cuboid aggregation, 0 (default) means encoding inline
+     */
+    public int getCubeAlgorithmInMemEncodeThreads() {
+        return Integer.parseInt(getOptional("kylin.cube.algorithm.inmem-encode-threads", "0"));
+    }
+
+    /**
+     * Whether in-mem cubing holds cuboids in off-heap chunks of MemDiskStore, rather than on disk only
+     */
+    public boolean isCubeAlgorithmInMemOffHeapStoreEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.cube.algorithm.inmem-off-heap-store", "false"));
+    }
+
     public boolean isIgnoreCubeSignatureInconsistency() {
         return Boolean.parseBoolean(getOptional("kylin.cube.ignore-signature-inconsistency", "false"));
     }
@@ -424,8 +464,12 @@ abstract public class KylinConfigBase implements Serializable {
         return Boolean.parseBoolean(getOptional("kylin.cube.allow-appear-in-multiple-projects", "false"));
     }
 
+    /**
+     * Level 2 carries the hash aggregation flag, so it is the default only when hash aggregation is enabled
+     */
     public int getGTScanRequestSerializationLevel() {
-        return Integer.parseInt(getOptional("kylin.cube.gtscanrequest-serialization-level", "1"));
+        String dft = getQueryCoprocessorHashAggrEnabled() ? "2" : "1";
+        return Integer.parseInt(getOptional("kylin.cube.gtscanrequest-serialization-level", dft));
     }
 
     // ============================================================================
@@ -561,6 +605,10 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.parseInt(getOptional("kylin.job.sampling-hll-precision", "14"));
     }
 
+    public int getCubeStatsBufferMB() {
+        return Integer.parseInt(getOptional("kylin.job.sampling-buffer-mb", "16"));
+    }
+
     public String getJobControllerLock() {
         return getOptional("kylin.job.lock", "org.apache.kylin.storage.hbase.util.ZookeeperJobLock");
     }
@@ -581,6 +629,25 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.parseInt(getOptional("kylin.job.scheduler.poll-interval-second", "30"));
     }
 
+    public int getSchedulerIndexResyncIntervalSecond() {
+        return Integer.parseInt(getOptional("kylin.job.scheduler.index-resync-interval-second", "600"));
+    }
+
+    public boolean isSchedulerMetricsEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.job.scheduler.metrics-enabled", "false"));
+    }
+
+    /**
+     * Whether jobs and their outputs are cached in memory for job listing
+     */
+    public boolean isJobDaoCacheEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.job.dao-cache-enabled", "true"));
+    }
+
+    public int getJobDaoCacheResyncIntervalSecond() {
+        return Integer.parseInt(getOptional("kylin.job.dao-cache-resync-interval-second", "600"));
+    }
+
     public Integer getErrorRecordThreshold() {
         return Integer.parseInt(getOptional("kylin.job.error-record-threshold", "0"));
     }
@@ -720,6 +787,20 @@ abstract public class KylinConfigBase implements Serializable {
         return getPropertiesByPrefix("kylin.source.kafka.config-override.");
     }
 
+    /**
+     * Partitions read by one mapper of the Kafka flat table job, each fetched by its own thread.
+     */
+    public int getKafkaPartitionsPerSplit() {
+        return Integer.parseInt(getOptional("kylin.source.kafka.partitions-per-split", "4"));
+    }
+
+    /**
+     * Fetched batches buffered in a mapper; the fetch threads wait when the buffer is full.
+     */
+    public int getKafkaFetchQueueSize() {
+        return Integer.parseInt(getOptional("kylin.source.kafka.fetch-queue-size", "16"));
+    }
+
     // ============================================================================
     // SOURCE.JDBC
     // ============================================================================
@@ -853,12 +934,36 @@ abstract public class KylinConfigBase implements Serializable {
         return Boolean.parseBoolean(this.getOptional("kylin.storage.partition.aggr-spill-enabled", "true"));
     }
 
+    public boolean getQueryCoprocessorHashAggrEnabled() {
+        return Boolean.parseBoolean(this.getOptional("kylin.storage.partition.aggr-hash-enabled", "false"));
+    }
+
+    public String getQueryCoprocessorSpillCompression() {
+        return this.getOptional("kylin.storage.partition.aggr-spill-compression", "none");
+    }
+
+    public int getQueryCoprocessorSpillReaderThreads() {
+        return Integer.parseInt(this.getOptional("kylin.storage.partition.aggr-spill-reader-threads", "0"));
+    }
+
     public long getPartitionMaxScanBytes() {
         long value = Long.parseLong(
                 this.getOptional("kylin.storage.partition.max-scan-bytes", String.valueOf(3L * 1024 * 1024 * 1024)));
         return value > 0 ? value : Long.MAX_VALUE;
     }
 
+    /**
+     * Scanned bytes per chunk when a region is visited in several endpoint rounds, 0 means one round per region.
+     */
+    public long getPartitionChunkScanBytes() {
+        return Long.parseLong(this.getOptional("kylin.storage.partition.chunk-scan-bytes", "0"));
+    }
+
+    public long getPartitionChunkMaxResponseBytes() {
+        return Long.parseLong(
+                this.getOptional("kylin.storage.partition.chunk-max-response-bytes", String.valueOf(500L * 1024 * 1024)));
+    }
+
     public int getQueryCoprocessorTimeoutSeconds() {
         return Integer.parseInt(this.getOptional("kylin.storage.hbase.coprocessor-timeout-seconds", "0"));
     }
@@ -871,6 +976,14 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.valueOf(this.getOptional("kylin.storage.hbase.max-visit-scanrange", "1000000"));
     }
 
+    public boolean isQueryScanRangeCostBased() {
+        return Boolean.parseBoolean(this.getOptional("kylin.storage.hbase.scanrange-cost-based-enabled", "true"));
+    }
+
+    public long getQueryScanFuzzyKeyMinRows() {
+        return Long.parseLong(this.getOptional("kylin.storage.hbase.fuzzykey-min-rows", "10000"));
+    }
+
     public String getDefaultIGTStorage() {
         return getOptional("kylin.storage.hbase.gtstorage",
                 "org.apache.kylin.storage.hbase.cube.v2.CubeHBaseEndpointRPC");
@@ -904,6 +1017,11 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.valueOf(getOptional("kylin.storage.hbase.small-family-block-size-bytes", "65536"));
     }
 
+    // new segments store measures in columnar layout, existing segments keep their layout
+    public boolean isHBaseColumnarValueEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.storage.hbase.columnar-value-enabled", "false"));
+    }
+
     public String getKylinOwner() {
         return this.getOptional("kylin.storage.hbase.owner-tag", "");
     }
@@ -924,6 +1042,18 @@ abstract public class KylinConfigBase implements Serializable {
         return Long.parseLong(getOptional("kylin.storage.hbase.hconnection-threads-alive-seconds", "60"));
     }
 
+    public int getQueryCoprocessorMaxConcurrency() {
+        return Integer.parseInt(getOptional("kylin.storage.hbase.coprocessor-max-concurrency", "256"));
+    }
+
+    public int getQueryCoprocessorMinConcurrency() {
+        return Integer.parseInt(getOptional("kylin.storage.hbase.coprocessor-min-concurrency", "16"));
+    }
+
+    public long getQueryCoprocessorSmallScanRows() {
+        return Long.parseLong(getOptional("kylin.storage.hbase.coprocessor-small-scan-rows", "100000"));
+    }
+
     // ============================================================================
     // ENGINE.MR
     // ============================================================================
@@ -1036,6 +1166,18 @@ abstract public class KylinConfigBase implements Serializable {
         return Boolean.parseBoolean(getOptional("kylin.engine.spark.sanity-check-enabled", "false"));
     }
 
+    public boolean isSparkAdaptiveCubingEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.engine.spark.adaptive-cubing-enabled", "false"));
+    }
+
+    public double getSparkSkipLevelMaxMB() {
+        return Double.parseDouble(getOptional("kylin.engine.spark.skip-level-max-mb", "500"));
+    }
+
+    public int getSparkPartialAggrMaxEntries() {
+        return Integer.parseInt(getOptional("kylin.engine.spark.partial-aggr-max-entries", "100000"));
+    }
+
     // ============================================================================
     // QUERY
     // ============================================================================
@@ -1045,6 +1187,10 @@ abstract public class KylinConfigBase implements Serializable {
         return Boolean.valueOf(getOptional("kylin.query.skip-empty-segments", "true"));
     }
 
+    public boolean isSkippingSegmentsByDimensionRange() {
+        return Boolean.valueOf(getOptional("kylin.query.skip-segments-by-dimension-range", "true"));
+    }
+
     public boolean isDisableCubeNoAggSQL() {
         return Boolean.valueOf(getOptional("kylin.query.disable-cube-noagg-sql", "false"));
     }
@@ -1074,6 +1220,18 @@ abstract public class KylinConfigBase implements Serializable {
         return value > 0 ? value : Long.MAX_VALUE;
     }
 
+    public int getQuerySegmentScanParallelism() {
+        return Integer.parseInt(getOptional("kylin.query.segment-scan-parallelism", "1"));
+    }
+
+    public int getQuerySegmentScanPoolSize() {
+        return Integer.parseInt(getOptional("kylin.query.segment-scan-pool-size", "64"));
+    }
+
+    public int getQuerySegmentScanBufferRows() {
+        return Integer.parseInt(getOptional("kylin.query.segment-scan-buffer-rows", "10000"));
+    }
+
     public int getTranslatedInClauseMaxSize() {
         return Integer.parseInt(getOptional("kylin.query.translated-in-clause-max-size", String.valueOf(1024 * 1024)));
     }
@@ -1086,6 +1244,14 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.parseInt(getOptional("kylin.query.derived-filter-translation-threshold", "20"));
     }
 
+    /**
+     * Whether derived columns are looked up in place on the snapshot dictionary ids, through lookup tables shared
+     * by all segments on the same snapshot, instead of a hash map of strings copied per query
+     */
+    public boolean isQuerySnapshotLookupIndexEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.query.snapshot-lookup-index-enabled", "false"));
+    }
+
     public int getBadQueryStackTraceDepth() {
         return Integer.parseInt(getOptional("kylin.query.badquery-stacktrace-depth", "10"));
     }
@@ -37,6 +37,10 @@ public class QueryContext {
     private String username;
     private AtomicLong scannedRows = new AtomicLong();
     private AtomicLong scannedBytes = new AtomicLong();
+    private AtomicLong prunedSegments = new AtomicLong();
+    private AtomicLong hitShards = new AtomicLong();
+    private AtomicLong rpcQueueMillis = new AtomicLong();
+    private AtomicLong rpcCallMillis = new AtomicLong();
 
     private QueryContext() {
         // use QueryContext.current() instead
@@ -83,4 +87,36 @@ public class QueryContext {
     public long addAndGetScannedBytes(long deltaBytes) {
         return scannedBytes.addAndGet(deltaBytes);
     }
+
+    public long getPrunedSegments() {
+        return prunedSegments.get();
+    }
+
+    public long addAndGetPrunedSegments(long deltaSegments) {
+        return prunedSegments.addAndGet(deltaSegments);
+    }
+
+    public long getHitShards() {
+        return hitShards.get();
+    }
+
+    public long addAndGetHitShards(long deltaShards) {
+        return hitShards.addAndGet(deltaShards);
+    }
+
+    public long getRpcQueueMillis() {
+        return rpcQueueMillis.get();
+    }
+
+    public long addAndGetRpcQueueMillis(long deltaMillis) {
+        return rpcQueueMillis.addAndGet(deltaMillis);
+    }
+
+    public long getRpcCallMillis() {
+        return rpcCallMillis.get();
+    }
+
+    public long addAndGetRpcCallMillis(long deltaMillis) {
+        return rpcCallMillis.addAndGet(deltaMillis);
+    }
 }
@@ -33,6 +33,20 @@ public class MetricsConstant {
     public static final String QUERY_DURATION = "QueryDuration";
     public static final String QUERY_RESULT_ROWCOUNT = "QueryResultRowcount";
     public static final String QUERY_SCAN_ROWCOUNT = "QueryScanRowcount";
+    public static final String QUERY_RPC_QUEUE_DURATION = "QueryRpcQueueDuration";
+    public static final String QUERY_RPC_CALL_DURATION = "QueryRpcCallDuration";
     public static final String TOTAL = "total";
 
+    public static final String JOB_FETCH_DURATION = "JobFetchDuration";
+    public static final String JOB_READY_COUNT = "JobReadyCount";
+    public static final String JOB_RUNNING_COUNT = "JobRunningCount";
+
+    public static final String COPROCESSOR_CONCURRENCY_LIMIT = "CoprocessorConcurrencyLimit";
+    public static final String COPROCESSOR_RUNNING_CALLS = "CoprocessorRunningCalls";
+    public static final String COPROCESSOR_QUEUED_CALLS = "CoprocessorQueuedCalls";
+
+    public static final String DICTIONARY_LOOKUP_HITS = "DictionaryLookupHits";
+    public static final String DICTIONARY_LOOKUP_MISSES = "DictionaryLookupMisses";
+    public static final String DICTIONARY_COUNT = "DictionaryCount";
+
 }
\ No newline at end of file
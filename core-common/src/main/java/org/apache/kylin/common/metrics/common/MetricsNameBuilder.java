@@ -22,6 +22,9 @@ public final class MetricsNameBuilder {
     public final static String METRICS = "metrics:";
     public final static String PROJECT_TEMPLATE = METRICS + "project=%s";
     public final static String CUBE_TEMPLATE = METRICS + "project=%s,cube=%s";
+    public final static String JOB_SCHEDULER = METRICS + "component=job_scheduler";
+    public final static String COPROCESSOR_SCHEDULER = METRICS + "component=coprocessor_scheduler";
+    public final static String DICTIONARY_CACHE = METRICS + "component=dictionary_cache";
 
     public static String buildMetricName(String prefix, String name) {
         return String.format(prefix + ",name=%s", name);
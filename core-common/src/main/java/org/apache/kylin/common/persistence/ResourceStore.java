@@ -205,6 +205,52 @@ abstract public class ResourceStore {
         }
     }
 
+    /**
+     * Read a batch of resources in as few round trips as the store allows, skipping those not found.
+     */
+    final public <T extends RootPersistentEntity> List<T> getResources(Collection<String> resPaths, Class<T> clazz, Serializer<T> serializer) throws IOException {
+        List<String> paths = Lists.newArrayListWithCapacity(resPaths.size());
+        for (String resPath : resPaths) {
+            paths.add(norm(resPath));
+        }
+        final List<RawResource> resources = getResourcesImpl(paths);
+        List<T> result = Lists.newArrayListWithCapacity(resources.size());
+        try {
+            for (RawResource rawResource : resources) {
+                if (rawResource == null)
+                    continue;
+                final T element = serializer.deserialize(new DataInputStream(rawResource.inputStream));
+                element.setLastModified(rawResource.timestamp);
+                result.add(element);
+            }
+            return result;
+        } finally {
+            for (RawResource rawResource : resources) {
+                if (rawResource != null)
+                    IOUtils.closeQuietly(rawResource.inputStream);
+            }
+        }
+    }
+
+    /**
+     * returns a list aligned with the given paths, null for those not exist; reads one by one unless overridden
+     */
+    protected List<RawResource> getResourcesImpl(List<String> resPaths) throws IOException {
+        List<RawResource> result = Lists.newArrayListWithCapacity(resPaths.size());
+        try {
+            for (String resPath : resPaths) {
+                result.add(getResourceImpl(resPath));
+            }
+        } catch (IOException e) {
+            for (RawResource rawResource : result) {
+                if (rawResource != null)
+                    IOUtils.closeQuietly(rawResource.inputStream);
+            }
+            throw e;
+        }
+        return result;
+    }
+
     /**
      * return empty list if given path is not a folder or not exists
      */
@@ -19,6 +19,7 @@
 package org.apache.kylin.cube;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -107,6 +108,9 @@ public class CubeInstance extends RootPersistentEntity implements IRealization,
     @JsonProperty("cuboid_bytes_recommend")
     private byte[] cuboidBytesRecommend;
 
+    // cuboid_bytes parsed, and the bytes it is parsed from
+    transient private volatile ParsedCuboids parsedCuboids;
+
     @JsonProperty("cuboid_last_optimized")
     private long cuboidLastOptimized;
 
@@ -328,6 +332,24 @@ public class CubeInstance extends RootPersistentEntity implements IRealization,
     }
 
     public Map<Long, Long> getCuboids() {
+        return parseCuboids(cuboidBytes);
+    }
+
+    /**
+     * The same as {@link #getCuboids()}, but parsed only once and shared by the callers, so read only.
+     */
+    public Map<Long, Long> getCachedCuboids() {
+        byte[] bytes = cuboidBytes;
+        ParsedCuboids parsed = parsedCuboids;
+        if (parsed == null || parsed.bytes != bytes) {
+            Map<Long, Long> cuboids = parseCuboids(bytes);
+            parsed = new ParsedCuboids(bytes, cuboids == null ? null : Collections.unmodifiableMap(cuboids));
+            parsedCuboids = parsed;
+        }
+        return parsed.cuboids;
+    }
+
+    private static Map<Long, Long> parseCuboids(byte[] cuboidBytes) {
         if (cuboidBytes == null)
             return null;
         byte[] uncompressed;
@@ -532,4 +554,13 @@ public class CubeInstance extends RootPersistentEntity implements IRealization,
         return newCube;
     }
 
+    private static class ParsedCuboids {
+        final byte[] bytes;
+        final Map<Long, Long> cuboids;
+
+        ParsedCuboids(byte[] bytes, Map<Long, Long> cuboids) {
+            this.bytes = bytes;
+            this.cuboids = cuboids;
+        }
+    }
 }
@@ -32,8 +32,11 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.kylin.common.KylinConfig;
@@ -49,6 +52,7 @@ import org.apache.kylin.cube.model.DictionaryDesc;
 import org.apache.kylin.dict.DictionaryInfo;
 import org.apache.kylin.dict.DictionaryManager;
 import org.apache.kylin.dict.lookup.LookupStringTable;
+import org.apache.kylin.dict.lookup.SnapshotLookupTable;
 import org.apache.kylin.dict.lookup.SnapshotManager;
 import org.apache.kylin.dict.lookup.SnapshotTable;
 import org.apache.kylin.metadata.TableMetadataManager;
@@ -76,7 +80,11 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 /**
  * @author yangli9
@@ -133,6 +141,9 @@ public class CubeManager implements IRealizationProvider {
     // "table/column" ==> lookup table
     //    private SingleValueCache<String, LookupStringTable> lookupTables = new SingleValueCache<String, LookupStringTable>(Broadcaster.TYPE.METADATA);
 
+    // "snapshot resource path/project/primary key columns" ==> lookup table on the snapshot, shared by segments
+    private Cache<String, LookupStringTable> snapshotLookupTables;
+
     // for generation hbase table name of a new segment
     private ConcurrentMap<String, String> usedStorageLocation = new ConcurrentHashMap<>();
 
@@ -140,6 +151,8 @@ public class CubeManager implements IRealizationProvider {
         logger.info("Initializing CubeManager with config " + config);
         this.config = config;
         this.cubeMap = new CaseInsensitiveStringCache<CubeInstance>(config, "cube");
+        this.snapshotLookupTables = CacheBuilder.newBuilder().maximumSize(config.getCachedSnapshotMaxEntrySize())
+                .expireAfterAccess(1, TimeUnit.DAYS).build();
 
         // touch lower level metadata before registering my listener
         loadAllCubeInstance();
@@ -641,6 +654,9 @@ public class CubeManager implements IRealizationProvider {
                     + cubeSegment.getCubeInstance().getName() + "/" + cubeSegment);
 
         try {
+            if (cubeSegment.getConfig().isQuerySnapshotLookupIndexEnabled()) {
+                return getSnapshotLookupTable(cubeSegment, tableName, pkCols, snapshotResPath);
+            }
             SnapshotTable snapshot = getSnapshotManager().getSnapshotTable(snapshotResPath);
             TableDesc tableDesc = getTableManager().getTableDesc(tableName, cubeSegment.getProject());
             return new LookupStringTable(tableDesc, pkCols, snapshot);
@@ -650,6 +666,25 @@ public class CubeManager implements IRealizationProvider {
         }
     }
 
+    private LookupStringTable getSnapshotLookupTable(final CubeSegment cubeSegment, final String tableName,
+            final String[] pkCols, final String snapshotResPath) throws IOException {
+        String key = snapshotResPath + "/" + cubeSegment.getProject() + "/" + Arrays.toString(pkCols);
+        try {
+            return snapshotLookupTables.get(key, new Callable<LookupStringTable>() {
+                @Override
+                public LookupStringTable call() throws IOException {
+                    SnapshotTable snapshot = getSnapshotManager().getSnapshotTable(snapshotResPath);
+                    TableDesc tableDesc = getTableManager().getTableDesc(tableName, cubeSegment.getProject());
+                    return new SnapshotLookupTable(tableDesc, pkCols, snapshot);
+                }
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            // unwrap, e.g. the IllegalStateException of a duplicated key
+            Throwables.propagateIfPossible(e.getCause(), IOException.class);
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
     private CubeSegment newSegment(CubeInstance cube, TSRange tsRange, SegmentRange segRange) {
         CubeSegment segment = new CubeSegment();
         segment.setUuid(UUID.randomUUID().toString());
@@ -665,6 +700,7 @@ public class CubeManager implements IRealizationProvider {
         segment.setSegRange(segRange);
         segment.setStatus(SegmentStatusEnum.NEW);
         segment.setStorageLocationIdentifier(generateStorageLocation());
+        segment.setColumnarValue(cube.getConfig().isHBaseColumnarValueEnabled());
 
         segment.setCubeInstance(cube);
 
@@ -115,6 +115,14 @@ public class CubeSegment implements IBuildable, ISegment, Serializable {
     @JsonInclude(JsonInclude.Include.NON_EMPTY)
     private Map<Integer, Long> sourcePartitionOffsetEnd = Maps.newHashMap();
 
+    @JsonProperty("columnar_value")
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private boolean columnarValue; // measures stored in ColumnarValueCodec layout
+
+    @JsonProperty("dimension_range_info_map")
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private Map<String, DimensionRangeInfo> dimensionRangeInfoMap = Maps.newHashMap(); // column identity ==> value range
+
     @JsonProperty("additionalInfo")
     @JsonInclude(JsonInclude.Include.NON_EMPTY)
     private Map<String, String> additionalInfo = new LinkedHashMap<String, String>();
@@ -492,6 +500,22 @@ public class CubeSegment implements IBuildable, ISegment, Serializable {
         return getCubeDesc().getShardByColumns();
     }
 
+    public boolean isColumnarValue() {
+        return columnarValue;
+    }
+
+    public void setColumnarValue(boolean columnarValue) {
+        this.columnarValue = columnarValue;
+    }
+
+    public Map<String, DimensionRangeInfo> getDimensionRangeInfoMap() {
+        return dimensionRangeInfoMap;
+    }
+
+    public void setDimensionRangeInfoMap(Map<String, DimensionRangeInfo> dimensionRangeInfoMap) {
+        this.dimensionRangeInfoMap = dimensionRangeInfoMap;
+    }
+
     public int getRowKeyPreambleSize() {
         return isEnableSharding() ? RowConstants.ROWKEY_SHARD_AND_CUBOID_LEN : RowConstants.ROWKEY_CUBOIDID_LEN;
     }
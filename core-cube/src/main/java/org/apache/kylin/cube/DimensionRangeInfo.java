@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.cube;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.cube.kv.RowKeyColumnOrder;
+import org.apache.kylin.cube.model.RowKeyColDesc;
+import org.apache.kylin.dict.TrieDictionary;
+import org.apache.kylin.dict.TrieDictionaryForest;
+import org.apache.kylin.metadata.model.DataModelDesc;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.Maps;
+
+/**
+ * The min and max values of a dimension in a segment, nulls excluded. Queries skip a segment whose ranges cannot
+ * satisfy the filter.
+ */
+@SuppressWarnings("serial")
+@JsonAutoDetect(fieldVisibility = Visibility.NONE, getterVisibility = Visibility.NONE, isGetterVisibility = Visibility.NONE, setterVisibility = Visibility.NONE)
+public class DimensionRangeInfo implements Serializable {
+
+    private static final Logger logger = LoggerFactory.getLogger(DimensionRangeInfo.class);
+
+    @JsonProperty("min")
+    private String min;
+
+    @JsonProperty("max")
+    private String max;
+
+    // default constructor for JSON serialization
+    public DimensionRangeInfo() {
+    }
+
+    public DimensionRangeInfo(String min, String max) {
+        this.min = min;
+        this.max = max;
+    }
+
+    public String getMin() {
+        return min;
+    }
+
+    public String getMax() {
+        return max;
+    }
+
+    /**
+     * Collects the ranges of the dictionary encoded rowkey columns of a newly built segment. Date time columns are
+     * left out, as segments are pruned by time range already.
+     *
+     * Only order preserving dictionaries give a range, see {@link #getRange(Dictionary)}. A dictionary shared by
+     * several segments gives a wider range than the segment has, which is still safe to prune by.
+     */
+    public static Map<String, DimensionRangeInfo> buildFromDictionaries(CubeSegment segment) {
+        Map<String, DimensionRangeInfo> result = Maps.newHashMap();
+        for (RowKeyColDesc rowKeyCol : segment.getCubeDesc().getRowkey().getRowKeyColumns()) {
+            TblColRef col = rowKeyCol.getColRef();
+            if (!rowKeyCol.isUsingDictionary() || col.getType().isDateTimeFamily())
+                continue;
+
+            try {
+                DimensionRangeInfo range = getRange(segment.getDictionary(col));
+                if (range != null) {
+                    result.put(col.getIdentity(), range);
+                }
+            } catch (Exception e) {
+                logger.warn("Failed to get the range of " + col + " in segment " + segment, e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the values of the min and max ids, or null if the dictionary is empty or does not keep the order of
+     * values, e.g. a global dictionary which gives ids in the order values are appended
+     */
+    static DimensionRangeInfo getRange(Dictionary<String> dict) {
+        if (!(dict instanceof TrieDictionary || dict instanceof TrieDictionaryForest) || dict.getSize() <= 0)
+            return null;
+
+        String min = dict.getValueFromId(dict.getMinId());
+        String max = dict.getValueFromId(dict.getMaxId());
+        return min != null && max != null ? new DimensionRangeInfo(min, max) : null;
+    }
+
+    /**
+     * Merges the ranges of several segments. A column is kept only if all the segments have its range.
+     */
+    public static Map<String, DimensionRangeInfo> mergeRangeMap(DataModelDesc model, Collection<Map<String, DimensionRangeInfo>> rangeMaps) {
+        Map<String, DimensionRangeInfo> result = Maps.newHashMap();
+        if (rangeMaps.isEmpty())
+            return result;
+
+        Iterator<Map<String, DimensionRangeInfo>> it = rangeMaps.iterator();
+        result.putAll(it.next());
+        while (it.hasNext()) {
+            Map<String, DimensionRangeInfo> other = it.next();
+            Iterator<Map.Entry<String, DimensionRangeInfo>> entries = result.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<String, DimensionRangeInfo> entry = entries.next();
+                DimensionRangeInfo otherRange = other.get(entry.getKey());
+                if (otherRange == null) {
+                    entries.remove();
+                    continue;
+                }
+
+                TblColRef col;
+                try {
+                    col = model.findColumn(entry.getKey());
+                } catch (IllegalArgumentException e) {
+                    entries.remove(); // the column is no longer in the model
+                    continue;
+                }
+
+                RowKeyColumnOrder order = RowKeyColumnOrder.getInstance(col.getType());
+                DimensionRangeInfo range = entry.getValue();
+                entry.setValue(new DimensionRangeInfo(order.min(range.min, otherRange.min), order.max(range.max, otherRange.max)));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + min + ", " + max + "]";
+    }
+}
@@ -47,6 +47,7 @@ import org.apache.kylin.gridtable.GTScanRequest;
 import org.apache.kylin.gridtable.GTScanRequestBuilder;
 import org.apache.kylin.gridtable.GridTable;
 import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.gridtable.IGTStore;
 import org.apache.kylin.measure.topn.Counter;
 import org.apache.kylin.measure.topn.TopNCounter;
 import org.apache.kylin.metadata.datatype.DoubleMutable;
@@ -75,6 +76,7 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
     private final String[] metricsAggrFuncs;
     private final MeasureDesc[] measureDescs;
     private final int measureCount;
+    private int encodeThreads;
 
     private MemoryBudgetController memBudget;
     private MemoryWaterLevel baseCuboidMemTracker;
@@ -104,6 +106,12 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
             metricsAggrFuncsList.add(measureDesc.getFunction().getExpression());
         }
         this.metricsAggrFuncs = metricsAggrFuncsList.toArray(new String[metricsAggrFuncsList.size()]);
+        this.encodeThreads = cubeDesc.getConfig().getCubeAlgorithmInMemEncodeThreads();
+    }
+
+    /** Number of threads encoding the input in batches, 0 to encode row by row on the building thread. */
+    public void setEncodeThreads(int n) {
+        this.encodeThreads = n;
     }
 
     private GridTable newGridTableByCuboidID(long cuboidID) throws IOException {
@@ -112,9 +120,14 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
         );
 
         // Below several store implementation are very similar in performance. The ConcurrentDiskStore is the simplest.
-        // MemDiskStore store = new MemDiskStore(info, memBudget == null ? MemoryBudgetController.ZERO_BUDGET : memBudget);
-        // MemDiskStore store = new MemDiskStore(info, MemoryBudgetController.ZERO_BUDGET);
-        ConcurrentDiskStore store = new ConcurrentDiskStore(info);
+        // Off-heap MemDiskStore keeps cuboids in memory without growing the heap, the base cuboid comes before the
+        // memory budget and goes to disk.
+        IGTStore store;
+        if (cubeDesc.getConfig().isCubeAlgorithmInMemOffHeapStoreEnabled()) {
+            store = new MemDiskStore(info, memBudget == null ? MemoryBudgetController.ZERO_BUDGET : memBudget, true);
+        } else {
+            store = new ConcurrentDiskStore(info);
+        }
 
         GridTable gridTable = new GridTable(info, store);
         return gridTable;
@@ -332,7 +345,13 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
 
         GridTable baseCuboid = newGridTableByCuboidID(baseCuboidId);
         GTBuilder baseBuilder = baseCuboid.rebuild();
-        IGTScanner baseInput = new InputConverter(baseCuboid.getInfo(), input);
+        IGTScanner baseInput;
+        if (encodeThreads > 0) {
+            baseInput = new PipelinedInputConverter(cubeDesc, flatDesc, dictionaryMap, baseCuboid.getInfo(), input,
+                    encodeThreads);
+        } else {
+            baseInput = new InputConverter(baseCuboid.getInfo(), input);
+        }
 
         Pair<ImmutableBitSet, ImmutableBitSet> dimensionMetricsBitSet = InMemCubeBuilderUtils.getDimensionAndMetricColumnBitSet(baseCuboidId, measureCount);
         GTScanRequest req = new GTScanRequestBuilder().setInfo(baseCuboid.getInfo()).setRanges(null).setDimensions(null).setAggrGroupBy(dimensionMetricsBitSet.getFirst()).setAggrMetrics(dimensionMetricsBitSet.getSecond()).setAggrMetricsFuncs(metricsAggrFuncs).setFilterPushDown(null).createGTScanRequest();
@@ -352,6 +371,7 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
 
         long timeSpent = System.currentTimeMillis() - startTime;
         logger.info("Cuboid " + baseCuboidId + " has " + count + " rows, build takes " + timeSpent + "ms");
+        logInputThroughput(baseInput, timeSpent);
 
         int mbEstimateBaseAggrCache = (int) (aggregationScanner.getEstimateSizeOfAggrCache() / MemoryBudgetController.ONE_MB);
         logger.info("Wild estimate of base aggr cache is " + mbEstimateBaseAggrCache + " MB");
@@ -359,6 +379,31 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
         return updateCuboidResult(baseCuboidId, baseCuboid, count, timeSpent, 0);
     }
 
+    private void logInputThroughput(IGTScanner baseInput, long timeSpent) {
+        long rows, encodeMillis, aggrMillis;
+        int threads;
+        if (baseInput instanceof PipelinedInputConverter) {
+            PipelinedInputConverter pipeline = (PipelinedInputConverter) baseInput;
+            rows = pipeline.getEncodedRows();
+            encodeMillis = pipeline.getEncodeMillis();
+            threads = pipeline.getEncodeThreadCount();
+            aggrMillis = timeSpent - pipeline.getWaitMillis();
+        } else {
+            InputConverter converter = (InputConverter) baseInput;
+            rows = converter.rowCount;
+            encodeMillis = converter.encodeNanos / 1000000;
+            threads = 1;
+            aggrMillis = timeSpent - encodeMillis;
+        }
+        logger.info("Base cuboid input of " + rows + " rows: encoding takes " + encodeMillis + "ms on " + threads
+                + " threads (" + rowsPerSecond(rows, encodeMillis) + " rows/s per thread), aggregation takes "
+                + aggrMillis + "ms (" + rowsPerSecond(rows, aggrMillis) + " rows/s)");
+    }
+
+    private long rowsPerSecond(long rows, long millis) {
+        return millis <= 0 ? rows * 1000 : rows * 1000 / millis;
+    }
+
     private CuboidResult updateCuboidResult(long cuboidId, GridTable table, int nRows, long timeSpent, int aggrCacheMB) {
         if (aggrCacheMB <= 0 && baseResult != null) {
             aggrCacheMB = (int) Math.round(//
@@ -516,6 +561,8 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
         GTRecord record;
         BlockingQueue<List<String>> input;
         final InMemCubeBuilderInputConverter inMemCubeBuilderInputConverter;
+        long rowCount = 0;
+        long encodeNanos = 0;
 
         public InputConverter(GTInfo info, BlockingQueue<List<String>> input) {
             this.info = info;
@@ -546,7 +593,10 @@ public class InMemCubeBuilder extends AbstractInMemCubeBuilder {
                     if (currentObject.size() == 0)
                         throw new IllegalStateException();
 
+                    long start = System.nanoTime();
                     inMemCubeBuilderInputConverter.convert(currentObject, record);
+                    encodeNanos += System.nanoTime() - start;
+                    rowCount++;
                     return record;
                 }
 
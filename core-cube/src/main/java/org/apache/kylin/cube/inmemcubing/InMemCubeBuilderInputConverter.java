@@ -17,6 +17,8 @@
 */
 package org.apache.kylin.cube.inmemcubing;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -26,6 +28,7 @@ import org.apache.kylin.cube.model.CubeDesc;
 import org.apache.kylin.cube.model.CubeJoinedFlatTableEnrich;
 import org.apache.kylin.gridtable.GTInfo;
 import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.IGTCodeSystem;
 import org.apache.kylin.measure.MeasureIngester;
 import org.apache.kylin.metadata.model.FunctionDesc;
 import org.apache.kylin.metadata.model.IJoinedFlatTableDesc;
@@ -36,6 +39,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 /**
  */
@@ -46,6 +50,9 @@ public class InMemCubeBuilderInputConverter {
     
     public static final byte[] HIVE_NULL = Bytes.toBytes("\\N");
 
+    // max number of recent codes cached for each dimension by convertBatch()
+    private static final int DIM_CODE_CACHE_SIZE = 10000;
+
     private final CubeJoinedFlatTableEnrich flatDesc;
     private final MeasureDesc[] measureDescs;
     private final MeasureIngester<?>[] measureIngesters;
@@ -54,6 +61,10 @@ public class InMemCubeBuilderInputConverter {
     private final GTInfo gtInfo;
     protected List<byte[]> nullBytes;
 
+    // for convertBatch() only
+    private Map<String, byte[]>[] dimCodeCaches;
+    private ByteBuffer codeBuf;
+
     public InMemCubeBuilderInputConverter(CubeDesc cubeDesc, IJoinedFlatTableDesc flatDesc, Map<TblColRef, Dictionary<String>> dictionaryMap, GTInfo gtInfo) {
         this.gtInfo = gtInfo;
         this.flatDesc = new CubeJoinedFlatTableEnrich(flatDesc, cubeDesc);
@@ -79,6 +90,67 @@ public class InMemCubeBuilderInputConverter {
         record.setValues(recordValues);
     }
 
+    /**
+     * Converts a batch of rows with dimensions encoded column by column, so that the dictionary lookups of a
+     * column run together, and the codes of recent dimension values are cached. The returned records own their
+     * bytes. Not thread safe, use one converter per thread.
+     */
+    @SuppressWarnings("unchecked")
+    public final List<GTRecord> convertBatch(List<List<String>> rows) {
+        int[] keyIndexes = flatDesc.getRowKeyColumnIndexes();
+        int keySize = keyIndexes.length;
+        IGTCodeSystem codeSystem = gtInfo.getCodeSystem();
+        if (dimCodeCaches == null) {
+            dimCodeCaches = new Map[keySize];
+            for (int i = 0; i < keySize; i++) {
+                dimCodeCaches[i] = Maps.newHashMap();
+            }
+            codeBuf = ByteBuffer.allocate(gtInfo.getMaxRecordLength());
+        }
+
+        List<GTRecord> records = Lists.newArrayListWithCapacity(rows.size());
+        for (int r = 0; r < rows.size(); r++) {
+            records.add(new GTRecord(gtInfo));
+        }
+
+        for (int i = 0; i < keySize; i++) {
+            Map<String, byte[]> cache = dimCodeCaches[i];
+            for (int r = 0; r < rows.size(); r++) {
+                String value = rows.get(r).get(keyIndexes[i]);
+                byte[] code = cache.get(value);
+                if (code == null) {
+                    codeBuf.clear();
+                    codeSystem.encodeColumnValue(i, value != null && isNull(Bytes.toBytes(value)) ? null : value, codeBuf);
+                    code = Arrays.copyOf(codeBuf.array(), codeBuf.position());
+                    if (cache.size() >= DIM_CODE_CACHE_SIZE) {
+                        cache.clear();
+                    }
+                    cache.put(value, code);
+                }
+                // codes are shared by records and never modified
+                records.get(r).get(i).reset(code, 0, code.length);
+            }
+        }
+
+        int[] metricsEnds = new int[measureCount];
+        for (int r = 0; r < rows.size(); r++) {
+            Object[] metricsValues = buildValue(rows.get(r));
+            codeBuf.clear();
+            for (int m = 0; m < measureCount; m++) {
+                codeSystem.encodeColumnValue(keySize + m, metricsValues[m], codeBuf);
+                metricsEnds[m] = codeBuf.position();
+            }
+            byte[] metricsBytes = Arrays.copyOf(codeBuf.array(), codeBuf.position());
+            GTRecord record = records.get(r);
+            int start = 0;
+            for (int m = 0; m < measureCount; m++) {
+                record.get(keySize + m).reset(metricsBytes, start, metricsEnds[m] - start);
+                start = metricsEnds[m];
+            }
+        }
+        return records;
+    }
+
     private Object[] buildKey(List<String> row) {
         int keySize = flatDesc.getRowKeyColumnIndexes().length;
         Object[] key = new Object[keySize];
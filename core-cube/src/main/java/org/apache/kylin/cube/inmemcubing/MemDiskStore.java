@@ -34,6 +34,8 @@ import java.nio.channels.FileChannel;
 import java.nio.file.StandardOpenOption;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import org.apache.kylin.common.util.MemoryBudgetController;
 import org.apache.kylin.common.util.MemoryBudgetController.MemoryConsumer;
@@ -54,6 +56,10 @@ public class MemDiskStore implements IGTStore, Closeable {
 
     private static final int STREAM_BUFFER_SIZE = 8192;
     private static final int MEM_CHUNK_SIZE_MB = 5;
+    private static final int MAX_IDLE_DIRECT_CHUNKS = 8;
+
+    // direct chunks released by closed stores, allocating direct memory is costly and it is only freed by GC
+    private static final BlockingQueue<ByteBuffer> idleDirectChunks = new ArrayBlockingQueue<>(MAX_IDLE_DIRECT_CHUNKS);
 
     private final GTInfo info;
     private final Object lock; // all public methods that read/write object states are synchronized on this lock
@@ -64,17 +70,25 @@ public class MemDiskStore implements IGTStore, Closeable {
     private Writer ongoingWriter;
 
     public MemDiskStore(GTInfo info, MemoryBudgetController budgetCtrl) throws IOException {
-        this(info, budgetCtrl, File.createTempFile("MemDiskStore", ""), true);
+        this(info, budgetCtrl, false);
+    }
+
+    /**
+     * @param offHeap whether to hold the in memory part in direct buffers, which are still accounted by the budget
+     *                controller but do not grow the java heap
+     */
+    public MemDiskStore(GTInfo info, MemoryBudgetController budgetCtrl, boolean offHeap) throws IOException {
+        this(info, budgetCtrl, File.createTempFile("MemDiskStore", ""), true, offHeap);
     }
 
     public MemDiskStore(GTInfo info, MemoryBudgetController budgetCtrl, File diskFile) throws IOException {
-        this(info, budgetCtrl, diskFile, false);
+        this(info, budgetCtrl, diskFile, false, false);
     }
 
-    private MemDiskStore(GTInfo info, MemoryBudgetController budgetCtrl, File diskFile, boolean delOnClose) throws IOException {
+    private MemDiskStore(GTInfo info, MemoryBudgetController budgetCtrl, File diskFile, boolean delOnClose, boolean offHeap) throws IOException {
         this.info = info;
         this.lock = this;
-        this.memPart = new MemPart(budgetCtrl);
+        this.memPart = new MemPart(budgetCtrl, offHeap);
         this.diskPart = new DiskPart(diskFile);
         this.delOnClose = delOnClose;
 
@@ -177,7 +191,7 @@ public class MemDiskStore implements IGTStore, Closeable {
                         while (lenToGo > 0) {
                             int n;
                             if (memChunk != null) {
-                                if (memChunk.headOffset() > readOffset) {
+                                if (memChunk.isReleased() || memChunk.headOffset() > readOffset) {
                                     memChunk = null;
                                     continue;
                                 }
@@ -187,7 +201,7 @@ public class MemDiskStore implements IGTStore, Closeable {
                                 }
                                 int chunkOffset = (int) (readOffset - memChunk.headOffset());
                                 n = Math.min((int) (memChunk.tailOffset() - readOffset), lenToGo);
-                                System.arraycopy(memChunk.data, chunkOffset, b, off, n);
+                                memChunk.get(chunkOffset, b, off, n);
                                 memRead += n;
                             } else {
                                 n = diskPart.read(readOffset, b, off, lenToGo);
@@ -370,11 +384,35 @@ public class MemDiskStore implements IGTStore, Closeable {
     private static class MemChunk {
         long diskOffset;
         int length;
-        byte[] data;
+        ByteBuffer data; // heap or direct, null once released
         MemChunk next;
 
         boolean isFull() {
-            return length == data.length;
+            return length == data.capacity();
+        }
+
+        boolean isReleased() {
+            return data == null;
+        }
+
+        void put(byte[] bytes, int offset, int n) {
+            ByteBuffer dup = data.duplicate();
+            dup.position(length);
+            dup.put(bytes, offset, n);
+            length += n;
+        }
+
+        void get(int chunkOffset, byte[] bytes, int offset, int n) {
+            ByteBuffer dup = data.duplicate();
+            dup.position(chunkOffset);
+            dup.get(bytes, offset, n);
+        }
+
+        ByteBuffer slice(int chunkOffset) {
+            ByteBuffer dup = data.duplicate();
+            dup.limit(length);
+            dup.position(chunkOffset);
+            return dup;
         }
 
         long headOffset() {
@@ -386,13 +424,14 @@ public class MemDiskStore implements IGTStore, Closeable {
         }
 
         int freeSpace() {
-            return data.length - length;
+            return data.capacity() - length;
         }
     }
 
     private class MemPart implements Closeable, MemoryConsumer {
 
         final MemoryBudgetController budgetCtrl;
+        final boolean offHeap;
 
         // async flush thread checks this flag out of sync block
         volatile boolean writeActivated;
@@ -405,8 +444,9 @@ public class MemDiskStore implements IGTStore, Closeable {
         long asyncFlushDiskOffset;
         Throwable asyncFlushException;
 
-        MemPart(MemoryBudgetController budgetCtrl) {
+        MemPart(MemoryBudgetController budgetCtrl, boolean offHeap) {
             this.budgetCtrl = budgetCtrl;
+            this.offHeap = offHeap;
         }
 
         long headOffset() {
@@ -452,11 +492,25 @@ public class MemDiskStore implements IGTStore, Closeable {
                 }
             }
 
+            ByteBuffer newData = null;
+            if (needMoreMem > 0) {
+                try {
+                    newData = allocateChunkData();
+                } catch (OutOfMemoryError ex) {
+                    // direct memory is limited by -XX:MaxDirectMemorySize apart from the budget
+                    logger.warn(MemDiskStore.this + " failed to allocate off-heap chunk, continue on disk", ex);
+                    budgetCtrl.reserve(this, needMoreMem - MEM_CHUNK_SIZE_MB);
+                    deactivateMemWrite();
+                    return 0;
+                }
+            }
+
             synchronized (lock) {
                 if (needMoreMem > 0 && (chunkCount == 0 || lastChunk.isFull())) {
                     MemChunk chunk = new MemChunk();
                     chunk.diskOffset = diskOffset;
-                    chunk.data = new byte[ONE_MB * MEM_CHUNK_SIZE_MB - 48]; // -48 for MemChunk overhead
+                    chunk.data = newData;
+                    newData = null;
                     if (chunkCount == 0) {
                         firstChunk = lastChunk = chunk;
                     } else {
@@ -466,9 +520,11 @@ public class MemDiskStore implements IGTStore, Closeable {
                     chunkCount++;
                 }
 
+                if (newData != null)
+                    releaseChunkData(newData);
+
                 int n = Math.min(lastChunk.freeSpace(), length);
-                System.arraycopy(bytes, offset, lastChunk.data, lastChunk.length, n);
-                lastChunk.length += n;
+                lastChunk.put(bytes, offset, n);
 
                 if (n > 0)
                     asyncFlush(lastChunk, diskOffset, n);
@@ -477,6 +533,26 @@ public class MemDiskStore implements IGTStore, Closeable {
             }
         }
 
+        private ByteBuffer allocateChunkData() {
+            if (!offHeap)
+                return ByteBuffer.wrap(new byte[ONE_MB * MEM_CHUNK_SIZE_MB - 48]); // -48 for MemChunk overhead
+
+            ByteBuffer data = idleDirectChunks.poll();
+            return data != null ? data : ByteBuffer.allocateDirect(ONE_MB * MEM_CHUNK_SIZE_MB);
+        }
+
+        private void releaseChunkData(ByteBuffer data) {
+            // beyond the idle limit, the direct buffer is left to GC
+            if (data.isDirect())
+                idleDirectChunks.offer(data);
+        }
+
+        private void releaseChunk(MemChunk chunk) {
+            releaseChunkData(chunk.data);
+            chunk.data = null; // readers holding the chunk will go to disk
+            chunk.next = null;
+        }
+
         private void asyncFlush(MemChunk lastChunk, long diskOffset, int n) {
             if (asyncFlushChunk == null) {
                 asyncFlushChunk = lastChunk;
@@ -516,9 +592,7 @@ public class MemDiskStore implements IGTStore, Closeable {
         }
 
         private void flushToDisk() throws IOException {
-            byte[] data;
-            int offset = 0;
-            int length = 0;
+            ByteBuffer data;
             int flushedLen = 0;
 
             while (true) {
@@ -531,16 +605,14 @@ public class MemDiskStore implements IGTStore, Closeable {
                         asyncFlushChunk = asyncFlushChunk.next;
                     }
                     if (asyncFlushChunk != null) {
-                        data = asyncFlushChunk.data;
-                        offset = (int) (asyncFlushDiskOffset - asyncFlushChunk.headOffset());
-                        length = asyncFlushChunk.length - offset;
+                        data = asyncFlushChunk.slice((int) (asyncFlushDiskOffset - asyncFlushChunk.headOffset()));
                     }
                 }
 
                 if (data == null)
                     break;
 
-                flushedLen = diskPart.write(asyncFlushDiskOffset, data, offset, length);
+                flushedLen = diskPart.write(asyncFlushDiskOffset, data);
             }
         }
 
@@ -554,11 +626,11 @@ public class MemDiskStore implements IGTStore, Closeable {
 
                     mbReleased += MEM_CHUNK_SIZE_MB;
                     chunkCount--;
+                    MemChunk next = firstChunk.next;
+                    releaseChunk(firstChunk);
                     if (chunkCount == 0) {
                         firstChunk = lastChunk = null;
                     } else {
-                        MemChunk next = firstChunk.next;
-                        firstChunk.next = null;
                         firstChunk = next;
                     }
                 }
@@ -581,6 +653,12 @@ public class MemDiskStore implements IGTStore, Closeable {
         }
 
         public void clear() {
+            MemChunk c = firstChunk;
+            while (c != null) {
+                MemChunk next = c.next;
+                releaseChunk(c);
+                c = next;
+            }
             chunkCount = 0;
             firstChunk = lastChunk = null;
             budgetCtrl.reserve(this, 0);
@@ -673,8 +751,12 @@ public class MemDiskStore implements IGTStore, Closeable {
         }
 
         public int write(long diskOffset, byte[] bytes, int offset, int length) throws IOException {
+            return write(diskOffset, ByteBuffer.wrap(bytes, offset, length));
+        }
+
+        public int write(long diskOffset, ByteBuffer src) throws IOException {
             synchronized (lock) {
-                int n = writeChannel.write(ByteBuffer.wrap(bytes, offset, length), diskOffset);
+                int n = writeChannel.write(src, diskOffset);
                 tailOffset = Math.max(diskOffset + n, tailOffset);
                 return n;
             }
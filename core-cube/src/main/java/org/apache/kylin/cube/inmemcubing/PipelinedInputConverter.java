@@ -0,0 +1,259 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.cube.inmemcubing;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.cube.model.CubeDesc;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.metadata.model.IJoinedFlatTableDesc;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Encodes the input rows of base cuboid on separate threads, so that encoding runs in parallel and overlaps
+ * with aggregation. A reader thread cuts the input into batches, encoder threads convert the batches each with
+ * a converter of its own, and the encoded records are returned in no particular order.
+ */
+class PipelinedInputConverter implements IGTScanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(PipelinedInputConverter.class);
+
+    static final int BATCH_SIZE = 1000;
+
+    private static final List<List<String>> END_OF_INPUT = Collections.emptyList();
+
+    private final GTInfo info;
+    private final BlockingQueue<List<String>> input;
+    private final BlockingQueue<List<List<String>>> rowBatches;
+    private final BlockingQueue<EncodedBatch> encodedBatches;
+    private final Thread[] threads;
+    private final int encodeThreadCount;
+
+    private final AtomicLong encodedRows = new AtomicLong();
+    private final AtomicLong encodeNanos = new AtomicLong();
+    private long waitNanos = 0;
+    private volatile Throwable readerError;
+
+    PipelinedInputConverter(CubeDesc cubeDesc, IJoinedFlatTableDesc flatDesc,
+            Map<TblColRef, Dictionary<String>> dictionaryMap, GTInfo info, BlockingQueue<List<String>> input,
+            int encodeThreadCount) {
+        this.info = info;
+        this.input = input;
+        this.encodeThreadCount = encodeThreadCount;
+        this.rowBatches = new ArrayBlockingQueue<>(2 * encodeThreadCount);
+        this.encodedBatches = new ArrayBlockingQueue<>(2 * encodeThreadCount);
+
+        this.threads = new Thread[encodeThreadCount + 1];
+        threads[0] = new Thread(new Reader(), "InMemCubeInputReader");
+        for (int i = 1; i < threads.length; i++) {
+            InMemCubeBuilderInputConverter converter = new InMemCubeBuilderInputConverter(cubeDesc, flatDesc,
+                    dictionaryMap, info);
+            threads[i] = new Thread(new Encoder(converter), "InMemCubeInputEncoder-" + i);
+        }
+        for (Thread t : threads) {
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    private class Reader implements Runnable {
+        @Override
+        public void run() {
+            try {
+                boolean end = false;
+                while (!end) {
+                    List<List<String>> batch = Lists.newArrayListWithCapacity(BATCH_SIZE);
+                    batch.add(input.take());
+                    input.drainTo(batch, BATCH_SIZE - 1);
+                    for (int i = 0; i < batch.size(); i++) {
+                        List<String> row = batch.get(i);
+                        if (row == null || row.isEmpty()) {
+                            batch = batch.subList(0, i);
+                            end = true;
+                            break;
+                        }
+                    }
+                    if (!batch.isEmpty()) {
+                        rowBatches.put(batch);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Throwable e) {
+                readerError = e;
+            }
+
+            try {
+                for (int i = 0; i < encodeThreadCount; i++) {
+                    rowBatches.put(END_OF_INPUT);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private class Encoder implements Runnable {
+        final InMemCubeBuilderInputConverter converter;
+
+        Encoder(InMemCubeBuilderInputConverter converter) {
+            this.converter = converter;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    List<List<String>> batch = rowBatches.take();
+                    if (batch == END_OF_INPUT) {
+                        encodedBatches.put(new EncodedBatch(null, readerError));
+                        return;
+                    }
+
+                    long start = System.nanoTime();
+                    EncodedBatch encoded;
+                    try {
+                        encoded = new EncodedBatch(converter.convertBatch(batch), null);
+                    } catch (Throwable e) {
+                        encoded = new EncodedBatch(null, e);
+                    }
+                    encodeNanos.addAndGet(System.nanoTime() - start);
+                    encodedRows.addAndGet(batch.size());
+                    encodedBatches.put(encoded);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class EncodedBatch {
+        final List<GTRecord> records; // null marks the end of an encoder
+        final Throwable error;
+
+        EncodedBatch(List<GTRecord> records, Throwable error) {
+            this.records = records;
+            this.error = error;
+        }
+    }
+
+    @Override
+    public Iterator<GTRecord> iterator() {
+        return new Iterator<GTRecord>() {
+            int runningEncoders = encodeThreadCount;
+            Iterator<GTRecord> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext()) {
+                    if (runningEncoders == 0)
+                        return false;
+
+                    EncodedBatch batch = takeBatch();
+                    if (batch.error != null) {
+                        throw new RuntimeException("Error when encoding input of in-mem cubing", batch.error);
+                    }
+                    if (batch.records == null) {
+                        runningEncoders--;
+                    } else {
+                        current = batch.records.iterator();
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public GTRecord next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return current.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private EncodedBatch takeBatch() {
+        long start = System.nanoTime();
+        try {
+            return encodedBatches.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            waitNanos += System.nanoTime() - start;
+        }
+    }
+
+    long getEncodedRows() {
+        return encodedRows.get();
+    }
+
+    /**
+     * @return the time spent on encoding, summed over encoder threads
+     */
+    long getEncodeMillis() {
+        return encodeNanos.get() / 1000000;
+    }
+
+    /**
+     * @return the time the consumer waited for encoded rows
+     */
+    long getWaitMillis() {
+        return waitNanos / 1000000;
+    }
+
+    int getEncodeThreadCount() {
+        return encodeThreadCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Thread t : threads) {
+            if (t.isAlive()) {
+                t.interrupt();
+            }
+        }
+        logger.debug("Input converter closed after encoding " + encodedRows.get() + " rows");
+    }
+
+    @Override
+    public GTInfo getInfo() {
+        return info;
+    }
+}
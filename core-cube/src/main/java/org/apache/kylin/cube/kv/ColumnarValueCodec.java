@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.cube.kv;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.measure.BufferedMeasureCodec;
+import org.apache.kylin.metadata.datatype.DataTypeSerializer;
+import org.apache.kylin.metadata.datatype.DoubleSerializer;
+import org.apache.kylin.metadata.datatype.Long8Serializer;
+import org.apache.kylin.metadata.model.MeasureDesc;
+
+/**
+ * The columnar layout of measure values in a storage cell, which lets scanners pick the measures they need without
+ * decoding the others.
+ *
+ * Each measure is stored as a vint header, the stored length shifted left by 2 bits plus the encoding, followed by
+ * the stored bytes. Skipping a measure only takes reading its header. Fixed 8 bytes values (double, long8) are
+ * packed by trimming their leading or trailing zero bytes, so that small integers and round doubles take a few bytes
+ * instead of 8. Other values are stored as they are serialized by {@link BufferedMeasureCodec}.
+ *
+ * The encoder is not thread-safe.
+ */
+public class ColumnarValueCodec {
+
+    static final int RAW = 0;
+    static final int TRIM_LEADING = 1;
+    static final int TRIM_TRAILING = 2;
+
+    static final int PACKABLE_LENGTH = 8;
+
+    private final BufferedMeasureCodec measureCodec;
+    private final boolean[] packable;
+    private ByteBuffer buf;
+
+    public ColumnarValueCodec(MeasureDesc... measures) {
+        this.measureCodec = new BufferedMeasureCodec(measures);
+        this.packable = new boolean[measures.length];
+        for (int i = 0; i < measures.length; i++) {
+            DataTypeSerializer<?> serializer = DataTypeSerializer.create(measures[i].getFunction().getReturnDataType());
+            packable[i] = serializer instanceof DoubleSerializer || serializer instanceof Long8Serializer;
+        }
+    }
+
+    /** return the buffer that contains the encoded cell, from 0 to position */
+    public ByteBuffer encode(Object[] values) {
+        ByteBuffer measureBuf = measureCodec.encode(values);
+        int[] sizes = measureCodec.getMeasureSizes();
+
+        int maxLength = measureBuf.position() + sizes.length * 5; // a vint takes at most 5 bytes
+        if (buf == null || buf.capacity() < maxLength) {
+            buf = ByteBuffer.allocate(Math.max(maxLength, 1024));
+        }
+        buf.clear();
+
+        byte[] array = measureBuf.array();
+        for (int i = 0, pos = 0; i < sizes.length; pos += sizes[i], i++) {
+            int start = pos;
+            int length = sizes[i];
+            int encoding = RAW;
+
+            if (packable[i] && length == PACKABLE_LENGTH) {
+                int leading = 0;
+                while (leading < length && array[pos + leading] == 0) {
+                    leading++;
+                }
+                int trailing = 0;
+                while (trailing < length && array[pos + length - 1 - trailing] == 0) {
+                    trailing++;
+                }
+
+                if (leading > 0 && leading >= trailing) {
+                    encoding = TRIM_LEADING;
+                    start += leading;
+                    length -= leading;
+                } else if (trailing > 0) {
+                    encoding = TRIM_TRAILING;
+                    length -= trailing;
+                }
+            }
+
+            BytesUtil.writeVInt((length << 2) | encoding, buf);
+            buf.put(array, start, length);
+        }
+        return buf;
+    }
+
+    /**
+     * Points the selected columns of the record to their values in the cell, leaving the other columns untouched.
+     * Packed values are expanded into the scratch array, which is overwritten by the next decode.
+     *
+     * @param columns the record columns stored in the cell, in order
+     * @param scratch at least 8 bytes for each column in the cell
+     */
+    public static void decode(ByteBuffer cell, List<Integer> columns, ImmutableBitSet selectedCols, GTRecord record,
+            byte[] scratch) {
+        byte[] array = cell.array();
+        for (int i = 0; i < columns.size(); i++) {
+            int c = columns.get(i);
+            int header = BytesUtil.readVInt(cell);
+            int length = header >>> 2;
+            int offset = cell.arrayOffset() + cell.position();
+
+            if (selectedCols.get(c)) {
+                int encoding = header & 3;
+                if (encoding == RAW) {
+                    record.get(c).reset(array, offset, length);
+                } else {
+                    int start = i * PACKABLE_LENGTH;
+                    Arrays.fill(scratch, start, start + PACKABLE_LENGTH, (byte) 0);
+                    int dest = encoding == TRIM_LEADING ? start + PACKABLE_LENGTH - length : start;
+                    System.arraycopy(array, offset, scratch, dest, length);
+                    record.get(c).reset(scratch, start, PACKABLE_LENGTH);
+                }
+            }
+            cell.position(cell.position() + length);
+        }
+    }
+
+    /** return the size of scratch array to decode a cell of given number of columns */
+    public static int scratchSize(int columnCount) {
+        return columnCount * PACKABLE_LENGTH;
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.gridtable;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+import org.apache.kylin.measure.MeasureAggregator;
+
+import com.google.common.collect.Lists;
+
+/**
+ * An open addressing hash table from fixed length aggregation keys to measure aggregators, used by
+ * GTAggregateScanner in place of a TreeMap when the scan request asks for hash aggregation.
+ *
+ * Keys are packed one after another into large byte slabs, so there is no object per key and the
+ * bytes taken by keys and index are known exactly. Key bytes not in the compare mask (dimensions
+ * returned but not grouped by) are ignored by hashing and equality, the same as the TreeMap comparator.
+ * Entries are sorted only once, when the table is spilled or returned.
+ */
+@SuppressWarnings("rawtypes")
+public class GTAggregateHashTable {
+
+    private static final int SLAB_BYTES = 1024 * 1024;
+    private static final int INIT_CAPACITY = 1024;
+
+    private final int keyLength;
+    private final int[] comparePositions; // key byte positions that take part in hashing and comparing
+    private final int keysPerSlab;
+    private final List<byte[]> slabs = Lists.newArrayList();
+
+    private int[] slots; // entry id + 1, 0 means empty slot
+    private int[] hashes; // hash of each entry
+    private MeasureAggregator[][] aggregators; // aggregators of each entry
+    private int size = 0;
+
+    public GTAggregateHashTable(boolean[] compareMask) {
+        this.keyLength = compareMask.length;
+        int n = 0;
+        for (boolean m : compareMask) {
+            if (m)
+                n++;
+        }
+        this.comparePositions = new int[n];
+        for (int i = 0, p = 0; i < compareMask.length; i++) {
+            if (compareMask[i])
+                comparePositions[p++] = i;
+        }
+        this.keysPerSlab = keyLength == 0 ? Integer.MAX_VALUE : Math.max(1, SLAB_BYTES / keyLength);
+
+        this.slots = new int[INIT_CAPACITY * 2];
+        this.hashes = new int[INIT_CAPACITY];
+        this.aggregators = new MeasureAggregator[INIT_CAPACITY][];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public MeasureAggregator[] get(byte[] key) {
+        int h = hash(key);
+        int mask = slots.length - 1;
+        for (int s = h & mask;; s = (s + 1) & mask) {
+            int id = slots[s] - 1;
+            if (id < 0)
+                return null;
+            if (hashes[id] == h && keyEquals(id, key))
+                return aggregators[id];
+        }
+    }
+
+    /**
+     * Adds a new entry, the key must not be in the table yet. Key bytes are copied, the caller may reuse the array.
+     */
+    public void put(byte[] key, MeasureAggregator[] aggrs) {
+        if (size == aggregators.length) {
+            int newCapacity = size * 2;
+            hashes = Arrays.copyOf(hashes, newCapacity);
+            aggregators = Arrays.copyOf(aggregators, newCapacity);
+            rehash(newCapacity * 2);
+        }
+
+        int id = size++;
+        int h = hash(key);
+        hashes[id] = h;
+        aggregators[id] = aggrs;
+        if (keyLength > 0) {
+            if (id / keysPerSlab == slabs.size()) {
+                slabs.add(new byte[keysPerSlab * keyLength]);
+            }
+            System.arraycopy(key, 0, slabs.get(id / keysPerSlab), (id % keysPerSlab) * keyLength, keyLength);
+        }
+
+        int mask = slots.length - 1;
+        int s = h & mask;
+        while (slots[s] != 0) {
+            s = (s + 1) & mask;
+        }
+        slots[s] = id + 1;
+    }
+
+    private void rehash(int newSlotCount) {
+        slots = new int[newSlotCount];
+        int mask = newSlotCount - 1;
+        for (int id = 0; id < size; id++) {
+            int s = hashes[id] & mask;
+            while (slots[s] != 0) {
+                s = (s + 1) & mask;
+            }
+            slots[s] = id + 1;
+        }
+    }
+
+    private int hash(byte[] key) {
+        int h = 1;
+        for (int p : comparePositions) {
+            h = 31 * h + key[p];
+        }
+        // spread the bits, as linear probing is sensitive to clustered hash codes
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        h *= 0xc2b2ae35;
+        h ^= (h >>> 16);
+        return h;
+    }
+
+    private boolean keyEquals(int id, byte[] key) {
+        byte[] slab = slabs.isEmpty() ? null : slabs.get(id / keysPerSlab);
+        int offset = (id % keysPerSlab) * keyLength;
+        for (int p : comparePositions) {
+            if (slab[offset + p] != key[p])
+                return false;
+        }
+        return true;
+    }
+
+    private int compareKeys(int id1, int id2) {
+        if (comparePositions.length == 0)
+            return 0;
+
+        byte[] slab1 = slabs.get(id1 / keysPerSlab);
+        byte[] slab2 = slabs.get(id2 / keysPerSlab);
+        int offset1 = (id1 % keysPerSlab) * keyLength;
+        int offset2 = (id2 % keysPerSlab) * keyLength;
+        for (int p : comparePositions) {
+            int a = slab1[offset1 + p] & 0xff;
+            int b = slab2[offset2 + p] & 0xff;
+            if (a != b)
+                return a - b;
+        }
+        return 0;
+    }
+
+    /**
+     * Exact bytes held by keys and index, plus the aggregators estimated by a sample entry.
+     */
+    public long estimatedMemSize() {
+        long bytes = (long) slabs.size() * keysPerSlab * keyLength //
+                + slots.length * 4L + hashes.length * 4L + aggregators.length * 8L;
+        if (size > 0) {
+            bytes += GTAggregateScanner.estimateSizeOf(aggregators[0]) * size;
+        }
+        return bytes;
+    }
+
+    /**
+     * Entries in key order. Each entry gets its own copy of key.
+     */
+    public Iterator<Entry<byte[], MeasureAggregator[]>> sortedIterator() {
+        final int[] sorted = new int[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = i;
+        }
+        mergeSort(sorted, new int[size], 0, size);
+
+        return new Iterator<Entry<byte[], MeasureAggregator[]>>() {
+            int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < sorted.length;
+            }
+
+            @Override
+            public Entry<byte[], MeasureAggregator[]> next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                int id = sorted[i++];
+                byte[] key = new byte[keyLength];
+                if (keyLength > 0) {
+                    System.arraycopy(slabs.get(id / keysPerSlab), (id % keysPerSlab) * keyLength, key, 0, keyLength);
+                }
+                return new AbstractMap.SimpleImmutableEntry<byte[], MeasureAggregator[]>(key, aggregators[id]);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private void mergeSort(int[] ids, int[] tmp, int from, int to) {
+        if (to - from < 2)
+            return;
+        int mid = (from + to) >>> 1;
+        mergeSort(ids, tmp, from, mid);
+        mergeSort(ids, tmp, mid, to);
+        if (compareKeys(ids[mid - 1], ids[mid]) <= 0)
+            return;
+
+        System.arraycopy(ids, from, tmp, from, to - from);
+        for (int i = from, l = from, r = mid; i < to; i++) {
+            if (r >= to || (l < mid && compareKeys(tmp[l], tmp[r]) <= 0))
+                ids[i] = tmp[l++];
+            else
+                ids[i] = tmp[r++];
+        }
+    }
+}
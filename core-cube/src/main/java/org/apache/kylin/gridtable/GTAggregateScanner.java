@@ -18,6 +18,8 @@
 
 package org.apache.kylin.gridtable;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.Closeable;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -25,17 +27,29 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.PriorityQueue;
-import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.exceptions.ResourceLimitExceededException;
 import org.apache.kylin.common.util.ByteArray;
 import org.apache.kylin.common.util.Bytes;
@@ -56,15 +70,20 @@ import org.apache.kylin.metadata.tuple.ITuple;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 @SuppressWarnings({ "rawtypes", "unchecked" })
 public class GTAggregateScanner implements IGTScanner, IGTBypassChecker {
 
     private static final Logger logger = LoggerFactory.getLogger(GTAggregateScanner.class);
 
+    private static final int SPILL_IO_BUFFER_SIZE = 64 * 1024;
+
     final GTInfo info;
     final ImmutableBitSet dimensions; // dimensions to return, can be more than group by
     final ImmutableBitSet groupBy;
@@ -113,7 +132,9 @@ public class GTAggregateScanner implements IGTScanner, IGTBypassChecker {
         this.spillEnabled = spillEnabled;
         this.havingFilter = req.getHavingFilterPushDown();
 
-        this.aggrCache = new AggregationCache();
+        // the bypass checker of LIMIT_ON_RETURN_SIZE relies on a sorted buffer
+        boolean hashAggregation = req.isHashAggregation() && storageLimitLevel != StorageLimitLevel.LIMIT_ON_RETURN_SIZE;
+        this.aggrCache = new AggregationCache(hashAggregation);
 
         Arrays.fill(aggrMask, true);
     }
@@ -307,14 +328,30 @@ public class GTAggregateScanner implements IGTScanner, IGTBypassChecker {
 
         TreeMap<byte[], MeasureAggregator[]> aggBufMap;
 
-        public AggregationCache() {
+        // in hash aggregation mode, the hash table replaces aggBufMap and is sorted only at spill/output time
+        final boolean hashAggregation;
+        GTAggregateHashTable aggHashTable;
+        byte[] hashKeyBuf;
+
+        // spill settings are read from env config at first spill, queries that never spill don't need them
+        String spillCompression;
+        ExecutorService spillReaderPool;
+
+        public AggregationCache(boolean hashAggregation) {
             compareMask = createCompareMask();
             for (boolean l : compareMask) {
                 compareAll = compareAll && l;
             }
             keyLength = compareMask.length;
             dumps = Lists.newArrayList();
-            aggBufMap = createBuffMap();
+            this.hashAggregation = hashAggregation;
+            if (hashAggregation) {
+                logger.info("using hash aggregation");
+                aggHashTable = new GTAggregateHashTable(compareMask);
+                hashKeyBuf = new byte[keyLength];
+            } else {
+                aggBufMap = createBuffMap();
+            }
 
             if (storageLimitLevel == StorageLimitLevel.LIMIT_ON_RETURN_SIZE) {
                 //ByPassChecker is not free, if LIMIT_ON_SCAN, not worth to as it has better optimization
@@ -357,13 +394,20 @@ public class GTAggregateScanner implements IGTScanner, IGTBypassChecker {
         }
 
         private byte[] createKey(GTRecord record) {
-            byte[] result = new byte[keyLength];
+            return fillKey(record, new byte[keyLength]);
+        }
+
+        private byte[] fillKey(GTRecord record, byte[] result) {
             int offset = 0;
             for (int i = 0; i < dimensions.trueBitCount(); i++) {
                 int c = dimensions.trueBitAt(i);
                 final ByteArray byteArray = record.cols[c];
                 final int columnLength = info.codeSystem.maxCodeLength(c);
                 System.arraycopy(byteArray.array(), byteArray.offset(), result, offset, byteArray.length());
+                if (byteArray.length() < columnLength) {
+                    // clear what is left from last record when the key buffer is reused
+                    Arrays.fill(result, offset + byteArray.length(), offset + columnLength, (byte) 0);
+                }
                 offset += columnLength;
             }
             assert offset == result.length;
@@ -383,23 +427,27 @@ public class GTAggregateScanner implements IGTScanner, IGTBypassChecker {
                                 + " exceeds threshold " + spillThreshold);
                     }
                     spillBuffMap(estMemSize); // spill to disk
-                    aggBufMap = createBuffMap();
+                    resetBuff();
                 }
             }
 
-            final byte[] key = createKey(r);
-            MeasureAggregator[] aggrs = aggBufMap.get(key);
+            final byte[] key = hashAggregation ? fillKey(r, hashKeyBuf) : createKey(r);
+            MeasureAggregator[] aggrs = hashAggregation ? aggHashTable.get(key) : aggBufMap.get(key);
             if (aggrs == null) {
 
                 //for storage push down limit
                 //TODO: what if bypass before dump happens?
                 if (getNumOfSpills() == 0 && storageLimitLevel == StorageLimitLevel.LIMIT_ON_SCAN
-                        && aggBufMap.size() >= storagePushDownLimit) {
+                        && buffSize() >= storagePushDownLimit) {
                     return false;
                 }
 
                 aggrs = newAggregators();
-                aggBufMap.put(key, aggrs);
+                if (hashAggregation) {
+                    aggHashTable.put(key, aggrs);
+                } else {
+                    aggBufMap.put(key, aggrs);
+                }
             }
             for (int i = 0; i < aggrs.length; i++) {
                 if (aggrMask[i]) {
@@ -416,9 +464,33 @@ public class GTAggregateScanner implements IGTScanner, IGTBypassChecker {
             return true;
         }
 
+        private int buffSize() {
+            return hashAggregation ? aggHashTable.size() : aggBufMap.size();
+        }
+
+        private boolean isBuffEmpty() {
+            return buffSize() == 0;
+        }
+
+        private void resetBuff() {
+            if (hashAggregation) {
+                aggHashTable = new GTAggregateHashTable(compareMask);
+            } else {
+                aggBufMap = createBuffMap();
+            }
+        }
+
+        /** entries of the in-mem buffer in key order */
+        private Iterator<Entry<byte[], MeasureAggregator[]>> sortedBuffIterator() {
+            return hashAggregation ? aggHashTable.sortedIterator() : aggBufMap.entrySet().iterator();
+        }
+
         private void spillBuffMap(long estMemSize) throws RuntimeException {
+            if (dumps.isEmpty()) {
+                initSpill();
+            }
             try {
-                Dump dump = new Dump(aggBufMap, estMemSize);
+                Dump dump = new Dump(sortedBuffIterator(), buffSize(), estMemSize);
                 dump.flush();
                 dumps.add(dump);
             } catch (Exception e) {
@@ -426,6 +498,39 @@ public class GTAggregateScanner implements IGTScanner, IGTBypassChecker {
             }
         }
 
+        private void initSpill() {
+            KylinConfig config = KylinConfig.getInstanceFromEnv();
+            spillCompression = config.getQueryCoprocessorSpillCompression();
+            if (!"none".equals(spillCompression) && !"gzip".equals(spillCompression)) {
+                throw new IllegalArgumentException("Unknown spill compression: " + spillCompression);
+            }
+            int readerThreads = config.getQueryCoprocessorSpillReaderThreads();
+            if (readerThreads > 0) {
+                spillReaderPool = Executors.newFixedThreadPool(readerThreads,
+                        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("kylin-spill-reader-%d").build());
+            }
+        }
+
+        private OutputStream openSpillOutput(File file) throws IOException {
+            OutputStream out = new FileOutputStream(file);
+            if ("gzip".equals(spillCompression)) {
+                out = new GZIPOutputStream(out, SPILL_IO_BUFFER_SIZE) {
+                    {
+                        def.setLevel(Deflater.BEST_SPEED);
+                    }
+                };
+            }
+            return new BufferedOutputStream(out, SPILL_IO_BUFFER_SIZE);
+        }
+
+        private InputStream openSpillInput(File file) throws IOException {
+            InputStream in = new FileInputStream(file);
+            if ("gzip".equals(spillCompression)) {
+                in = new GZIPInputStream(in, SPILL_IO_BUFFER_SIZE);
+            }
+            return new BufferedInputStream(in, SPILL_IO_BUFFER_SIZE);
+        }
+
         @Override
         public void close() throws RuntimeException {
             try {
@@ -435,6 +540,10 @@ public class GTAggregateScanner implements IGTScanner, IGTBypassChecker {
                             byPassChecker.getByPassCounter());
                 }
 
+                if (spillReaderPool != null) {
+                    spillReaderPool.shutdownNow();
+                }
+
                 for (Dump dump : dumps) {
                     dump.terminate();
                 }
@@ -448,6 +557,9 @@ public class GTAggregateScanner implements IGTScanner, IGTBypassChecker {
         }
 
         public long estimatedMemSize() {
+            if (hashAggregation)
+                return aggHashTable.isEmpty() ? 0 : aggHashTable.estimatedMemSize();
+
             if (aggBufMap.isEmpty())
                 return 0;
 
@@ -461,13 +573,10 @@ public class GTAggregateScanner implements IGTScanner, IGTBypassChecker {
 
             if (dumps.isEmpty()) {
                 // the all-in-mem case
-                it = aggBufMap.entrySet().iterator();
+                it = sortedBuffIterator();
             } else {
-                // the spill case
-                if (!aggBufMap.isEmpty()) {
-                    spillBuffMap(getEstimateSizeOfAggrCache()); // TODO allow merge in-mem map with spilled dumps
-                }
-                DumpMerger merger = new DumpMerger(dumps);
+                // the spill case, the in-mem buffer joins the merge as one more sorted input
+                DumpMerger merger = new DumpMerger(dumps, isBuffEmpty() ? null : sortedBuffIterator());
                 it = merger.iterator();
             }
 
@@ -637,14 +746,17 @@ public class GTAggregateScanner implements IGTScanner, IGTBypassChecker {
 
         class Dump implements Iterable<Pair<byte[], byte[]>> {
             final File dumpedFile;
-            SortedMap<byte[], MeasureAggregator[]> buffMap;
+            Iterator<Entry<byte[], MeasureAggregator[]>> buffEntries; // in key order
+            final int buffSize;
             final long estMemSize;
 
             DataInputStream dis;
 
-            public Dump(SortedMap<byte[], MeasureAggregator[]> buffMap, long estMemSize) throws IOException {
+            public Dump(Iterator<Entry<byte[], MeasureAggregator[]>> buffEntries, int buffSize, long estMemSize)
+                    throws IOException {
                 this.dumpedFile = File.createTempFile("KYLIN_SPILL_", ".tmp");
-                this.buffMap = buffMap;
+                this.buffEntries = buffEntries;
+                this.buffSize = buffSize;
                 this.estMemSize = estMemSize;
             }
 
@@ -656,7 +768,7 @@ public class GTAggregateScanner implements IGTScanner, IGTBypassChecker {
                                 + (dumpedFile == null ? "<null>" : dumpedFile.getAbsolutePath()));
                     }
 
-                    dis = new DataInputStream(new FileInputStream(dumpedFile));
+                    dis = new DataInputStream(openSpillInput(dumpedFile));
                     final int count = dis.readInt();
                     return new Iterator<Pair<byte[], byte[]>>() {
                         int cursorIdx = 0;
@@ -672,10 +784,10 @@ public class GTAggregateScanner implements IGTScanner, IGTBypassChecker {
                                 cursorIdx++;
                                 int keyLen = dis.readInt();
                                 byte[] key = new byte[keyLen];
-                                dis.read(key);
+                                dis.readFully(key);
                                 int valueLen = dis.readInt();
                                 byte[] value = new byte[valueLen];
-                                dis.read(value);
+                                dis.readFully(value);
                                 return new Pair<>(key, value);
                             } catch (Exception e) {
                                 throw new RuntimeException(
@@ -694,16 +806,17 @@ public class GTAggregateScanner implements IGTScanner, IGTBypassChecker {
             }
 
             public void flush() throws IOException {
-                logger.info("AggregationCache(size={} est_mem_size={} threshold={}) will spill to {}", buffMap.size(),
+                logger.info("AggregationCache(size={} est_mem_size={} threshold={}) will spill to {}", buffSize,
                         estMemSize, spillThreshold, dumpedFile.getAbsolutePath());
 
-                if (buffMap != null) {
+                if (buffEntries != null) {
                     DataOutputStream dos = null;
                     Object[] aggrResult = null;
                     try {
-                        dos = new DataOutputStream(new FileOutputStream(dumpedFile));
-                        dos.writeInt(buffMap.size());
-                        for (Entry<byte[], MeasureAggregator[]> entry : buffMap.entrySet()) {
+                        dos = new DataOutputStream(openSpillOutput(dumpedFile));
+                        dos.writeInt(buffSize);
+                        while (buffEntries.hasNext()) {
+                            Entry<byte[], MeasureAggregator[]> entry = buffEntries.next();
                             MeasureAggregators aggs = new MeasureAggregators(entry.getValue());
                             aggrResult = new Object[metrics.trueBitCount()];
                             aggs.collectStates(aggrResult);
@@ -713,15 +826,16 @@ public class GTAggregateScanner implements IGTScanner, IGTBypassChecker {
                             dos.writeInt(metricsBuf.position());
                             dos.write(metricsBuf.array(), 0, metricsBuf.position());
                         }
+                        dos.close(); // buffered bytes are written here, don't swallow the error
                     } finally {
-                        buffMap = null;
+                        buffEntries = null;
                         IOUtils.closeQuietly(dos);
                     }
                 }
             }
 
             public void terminate() throws IOException {
-                buffMap = null;
+                buffEntries = null;
                 if (dis != null)
                     dis.close();
                 if (dumpedFile != null && dumpedFile.exists())
@@ -731,41 +845,73 @@ public class GTAggregateScanner implements IGTScanner, IGTBypassChecker {
 
         class DumpMerger implements Iterable<Entry<byte[], MeasureAggregator[]>> {
             final PriorityQueue<Entry<byte[], Integer>> minHeap;
-            final List<Iterator<Pair<byte[], byte[]>>> dumpIterators;
-            final List<Object[]> dumpCurrentValues;
+            final List<Iterator<Pair<byte[], Object[]>>> inputIterators;
+            final List<Object[]> inputCurrentValues;
             final MeasureAggregator[] resultMeasureAggregators = newAggregators();
             final MeasureAggregators resultAggrs = new MeasureAggregators(resultMeasureAggregators);
 
-            public DumpMerger(List<Dump> dumps) {
-                minHeap = new PriorityQueue<>(dumps.size(), new Comparator<Entry<byte[], Integer>>() {
+            /**
+             * Merges the dumps and optionally the in-mem buffer, all of which are in key order.
+             */
+            public DumpMerger(List<Dump> dumps, Iterator<Entry<byte[], MeasureAggregator[]>> buffEntries) {
+                int inputCount = dumps.size() + (buffEntries == null ? 0 : 1);
+                logger.info("Merging {} spilled dumps{}", dumps.size(),
+                        buffEntries == null ? "" : " with " + buffSize() + " in-mem entries");
+
+                minHeap = new PriorityQueue<>(inputCount, new Comparator<Entry<byte[], Integer>>() {
                     @Override
                     public int compare(Entry<byte[], Integer> o1, Entry<byte[], Integer> o2) {
                         return bytesComparator.compare(o1.getKey(), o2.getKey());
                     }
                 });
-                dumpIterators = Lists.newArrayListWithCapacity(dumps.size());
-                dumpCurrentValues = Lists.newArrayListWithCapacity(dumps.size());
+                inputIterators = Lists.newArrayListWithCapacity(inputCount);
+                inputCurrentValues = Lists.newArrayListWithCapacity(inputCount);
 
-                Iterator<Pair<byte[], byte[]>> it;
-                for (int i = 0; i < dumps.size(); i++) {
-                    it = dumps.get(i).iterator();
-                    dumpCurrentValues.add(i, null);
+                List<Iterator<Pair<byte[], Object[]>>> inputs = Lists.newArrayListWithCapacity(inputCount);
+                for (Dump dump : dumps) {
+                    Iterator<Pair<byte[], byte[]>> dumpIt = dump.iterator();
+                    if (spillReaderPool != null) {
+                        dumpIt = new PrefetchIterator<>(dumpIt, spillReaderPool);
+                    }
+                    inputs.add(Iterators.transform(dumpIt, new Function<Pair<byte[], byte[]>, Pair<byte[], Object[]>>() {
+                        @Override
+                        public Pair<byte[], Object[]> apply(Pair<byte[], byte[]> pair) {
+                            Object[] metricValues = new Object[metrics.trueBitCount()];
+                            measureCodec.decode(ByteBuffer.wrap(pair.getValue()), metricValues);
+                            return new Pair<>(pair.getKey(), metricValues);
+                        }
+                    }));
+                }
+                if (buffEntries != null) {
+                    inputs.add(Iterators.transform(buffEntries,
+                            new Function<Entry<byte[], MeasureAggregator[]>, Pair<byte[], Object[]>>() {
+                                @Override
+                                public Pair<byte[], Object[]> apply(Entry<byte[], MeasureAggregator[]> entry) {
+                                    Object[] metricValues = new Object[metrics.trueBitCount()];
+                                    new MeasureAggregators(entry.getValue()).collectStates(metricValues);
+                                    return new Pair<>(entry.getKey(), metricValues);
+                                }
+                            }));
+                }
+
+                Iterator<Pair<byte[], Object[]>> it;
+                for (int i = 0; i < inputs.size(); i++) {
+                    it = inputs.get(i);
+                    inputCurrentValues.add(i, null);
                     if (it.hasNext()) {
-                        dumpIterators.add(i, it);
-                        enqueueFromDump(i);
+                        inputIterators.add(i, it);
+                        enqueueFromInput(i);
                     } else {
-                        dumpIterators.add(i, null);
+                        inputIterators.add(i, null);
                     }
                 }
             }
 
-            private void enqueueFromDump(int index) {
-                if (dumpIterators.get(index) != null && dumpIterators.get(index).hasNext()) {
-                    Pair<byte[], byte[]> pair = dumpIterators.get(index).next();
+            private void enqueueFromInput(int index) {
+                if (inputIterators.get(index) != null && inputIterators.get(index).hasNext()) {
+                    Pair<byte[], Object[]> pair = inputIterators.get(index).next();
                     minHeap.offer(new SimpleEntry(pair.getKey(), index));
-                    Object[] metricValues = new Object[metrics.trueBitCount()];
-                    measureCodec.decode(ByteBuffer.wrap(pair.getValue()), metricValues);
-                    dumpCurrentValues.set(index, metricValues);
+                    inputCurrentValues.set(index, pair.getValue());
                 }
             }
 
@@ -779,14 +925,14 @@ public class GTAggregateScanner implements IGTScanner, IGTBypassChecker {
 
                     private void internalAggregate() {
                         Entry<byte[], Integer> peekEntry = minHeap.poll();
-                        resultAggrs.aggregate(dumpCurrentValues.get(peekEntry.getValue()));
-                        enqueueFromDump(peekEntry.getValue());
+                        resultAggrs.aggregate(inputCurrentValues.get(peekEntry.getValue()));
+                        enqueueFromInput(peekEntry.getValue());
                     }
 
                     @Override
                     public Entry<byte[], MeasureAggregator[]> next() {
                         // Use minimum heap to merge sort the keys,
-                        // also do aggregation for measures with same keys in different dumps
+                        // also do aggregation for measures with same keys in different inputs
                         resultAggrs.reset();
 
                         byte[] peekKey = minHeap.peek().getKey();
@@ -808,6 +954,72 @@ public class GTAggregateScanner implements IGTScanner, IGTBypassChecker {
         }
     }
 
+    /**
+     * Reads the next batch of the source in a pooled thread while the caller consumes the current batch.
+     * Each source has at most one read pending and a read never waits on the caller, so a pool smaller
+     * than the number of sources cannot dead lock.
+     */
+    private static class PrefetchIterator<T> implements Iterator<T> {
+        static final int BATCH_SIZE = 1000;
+
+        final Iterator<T> source;
+        final ExecutorService executor;
+        Future<List<T>> pending;
+        List<T> batch = Collections.emptyList();
+        int cursor = 0;
+
+        PrefetchIterator(Iterator<T> source, ExecutorService executor) {
+            this.source = source;
+            this.executor = executor;
+            this.pending = readAhead();
+        }
+
+        private Future<List<T>> readAhead() {
+            return executor.submit(new Callable<List<T>>() {
+                @Override
+                public List<T> call() throws Exception {
+                    List<T> result = Lists.newArrayListWithCapacity(BATCH_SIZE);
+                    while (result.size() < BATCH_SIZE && source.hasNext()) {
+                        result.add(source.next());
+                    }
+                    return result;
+                }
+            });
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (cursor < batch.size())
+                return true;
+            if (pending == null)
+                return false;
+
+            try {
+                batch = pending.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted when reading dumped file", e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Cannot read AggregationCache from dumped file", e.getCause());
+            }
+            cursor = 0;
+            pending = batch.size() < BATCH_SIZE ? null : readAhead();
+            return cursor < batch.size();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return batch.get(cursor++);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
     private static class SimpleEntry<K, V> implements Entry<K, V> {
         K k;
         V v;
@@ -0,0 +1,403 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.gridtable;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.metadata.filter.ColumnTupleFilter;
+import org.apache.kylin.metadata.filter.CompareTupleFilter;
+import org.apache.kylin.metadata.filter.ConstantTupleFilter;
+import org.apache.kylin.metadata.filter.IFilterCodeSystem;
+import org.apache.kylin.metadata.filter.LogicalTupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter.FilterOperatorEnum;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.metadata.tuple.IEvaluatableTuple;
+
+/**
+ * Compiles a filter on grid table into evaluators that work on the encoded column bytes of GTRecord, avoiding
+ * the per record walk of the TupleFilter tree and the comparisons through IFilterCodeSystem. Encoded values of
+ * up to 8 bytes, e.g. dictionary ids, are compared as longs, and IN-lists become a bitmap or a sorted array.
+ *
+ * The result is the same as TupleFilter.evaluate() with DefaultGTComparator. Filters other than logical, compare
+ * and constant ones, e.g. functions, are left to TupleFilter.evaluate().
+ */
+public class GTFilterCompiler {
+
+    // IN-lists spanning up to this many codes are checked with a bitmap
+    static final int MAX_BITMAP_RANGE = 64 * 1024;
+
+    public static abstract class Evaluator {
+        public abstract boolean evaluate(GTRecord record);
+    }
+
+    /**
+     * @return the compiled filter, or null if the code system does not compare by bytes
+     */
+    public static Evaluator compile(TupleFilter filter, GTInfo info) {
+        if (filter == null || !(info.getCodeSystem().getComparator() instanceof DefaultGTComparator)) {
+            return null;
+        }
+        return new GTFilterCompiler(info).compile(filter);
+    }
+
+    // ============================================================================
+
+    private final GTInfo info;
+    private final IGTComparator comparator;
+    private final IFilterCodeSystem<ByteArray> filterCodeSystem;
+
+    private GTFilterCompiler(GTInfo info) {
+        this.info = info;
+        this.comparator = info.getCodeSystem().getComparator();
+        this.filterCodeSystem = GTUtil.wrap(comparator);
+    }
+
+    private Evaluator compile(TupleFilter filter) {
+        Evaluator result = null;
+        if (filter instanceof LogicalTupleFilter) {
+            result = compileLogical((LogicalTupleFilter) filter);
+        } else if (filter instanceof CompareTupleFilter) {
+            result = compileCompare((CompareTupleFilter) filter);
+        } else if (filter instanceof ConstantTupleFilter) {
+            result = new ConstantEvaluator(!filter.getValues().isEmpty());
+        }
+        return result != null ? result : new InterpretedEvaluator(filter, filterCodeSystem);
+    }
+
+    private Evaluator compileLogical(LogicalTupleFilter filter) {
+        List<? extends TupleFilter> children = filter.getChildren();
+        Evaluator[] evaluators = new Evaluator[children.size()];
+        for (int i = 0; i < evaluators.length; i++) {
+            evaluators[i] = compile(children.get(i));
+        }
+
+        switch (filter.getOperator()) {
+        case AND:
+            return new AndEvaluator(evaluators);
+        case OR:
+            return new OrEvaluator(evaluators);
+        case NOT:
+            return new NotEvaluator(evaluators[0]);
+        default:
+            return null;
+        }
+    }
+
+    private Evaluator compileCompare(CompareTupleFilter filter) {
+        // only the form of column compared with constants
+        TblColRef column = null;
+        for (TupleFilter child : filter.getChildren()) {
+            if (child instanceof ColumnTupleFilter && column == null) {
+                column = ((ColumnTupleFilter) child).getColumn();
+            } else if (!(child instanceof ConstantTupleFilter)) {
+                return null;
+            }
+        }
+        if (column == null) {
+            return null;
+        }
+        int col = column.getColumnDesc().getZeroBasedIndex();
+
+        FilterOperatorEnum op = filter.getOperator();
+        if (op == FilterOperatorEnum.ISNULL || op == FilterOperatorEnum.ISNOTNULL) {
+            return new CompareEvaluator(comparator, op, col, info.getCodeSystem().maxCodeLength(col), null);
+        }
+
+        Set<?> values = filter.getValues();
+        if (values.isEmpty()) {
+            return null;
+        }
+        for (Object v : values) {
+            if (!(v instanceof ByteArray) || ((ByteArray) v).array() == null) {
+                return null;
+            }
+        }
+        // the interpreter yields false whenever the first value is null
+        ByteArray first = (ByteArray) filter.getFirstValue();
+        if (comparator.isNull(first)) {
+            return new ConstantEvaluator(false);
+        }
+
+        switch (op) {
+        case EQ:
+        case NEQ:
+        case LT:
+        case LTE:
+        case GT:
+        case GTE:
+            return new CompareEvaluator(comparator, op, col, first.length(), first);
+        case IN:
+        case NOTIN:
+            @SuppressWarnings("unchecked")
+            Set<ByteArray> inValues = (Set<ByteArray>) values;
+            return new InEvaluator(comparator, op == FilterOperatorEnum.NOTIN, col, inValues);
+        default:
+            return null;
+        }
+    }
+
+    // encoded bytes as an unsigned big-endian number, shifted by MIN_VALUE so that signed comparison works
+    static long toKey(byte[] bytes, int offset, int length) {
+        long v = 0;
+        for (int i = 0; i < length; i++) {
+            v = (v << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return v ^ Long.MIN_VALUE;
+    }
+
+    private static boolean isKeyLength(int length) {
+        return length > 0 && length <= 8;
+    }
+
+    private static long nullKey(int length) {
+        byte[] nulls = new byte[length];
+        Arrays.fill(nulls, (byte) 0xFF);
+        return toKey(nulls, 0, length);
+    }
+
+    // ============================================================================
+
+    private static class ConstantEvaluator extends Evaluator {
+        final boolean value;
+
+        ConstantEvaluator(boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean evaluate(GTRecord record) {
+            return value;
+        }
+    }
+
+    private static class AndEvaluator extends Evaluator {
+        final Evaluator[] children;
+
+        AndEvaluator(Evaluator[] children) {
+            this.children = children;
+        }
+
+        @Override
+        public boolean evaluate(GTRecord record) {
+            for (Evaluator child : children) {
+                if (!child.evaluate(record))
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    private static class OrEvaluator extends Evaluator {
+        final Evaluator[] children;
+
+        OrEvaluator(Evaluator[] children) {
+            this.children = children;
+        }
+
+        @Override
+        public boolean evaluate(GTRecord record) {
+            for (Evaluator child : children) {
+                if (child.evaluate(record))
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    private static class NotEvaluator extends Evaluator {
+        final Evaluator child;
+
+        NotEvaluator(Evaluator child) {
+            this.child = child;
+        }
+
+        @Override
+        public boolean evaluate(GTRecord record) {
+            return !child.evaluate(record);
+        }
+    }
+
+    private static class CompareEvaluator extends Evaluator {
+        final IGTComparator comparator;
+        final FilterOperatorEnum op;
+        final int col;
+        final int keyLength; // values of other length are compared as bytes
+        final long nullKey;
+        final ByteArray value;
+        final long valueKey;
+
+        CompareEvaluator(IGTComparator comparator, FilterOperatorEnum op, int col, int length, ByteArray value) {
+            this.comparator = comparator;
+            this.op = op;
+            this.col = col;
+            this.keyLength = isKeyLength(length) ? length : -1;
+            this.nullKey = isKeyLength(length) ? nullKey(length) : 0;
+            this.value = value;
+            this.valueKey = value != null && isKeyLength(length) ? toKey(value.array(), value.offset(), length) : 0;
+        }
+
+        @Override
+        public boolean evaluate(GTRecord record) {
+            ByteArray v = record.get(col);
+            if (v.length() == keyLength && v.array() != null) {
+                long key = toKey(v.array(), v.offset(), keyLength);
+                if (key == nullKey) {
+                    return op == FilterOperatorEnum.ISNULL;
+                }
+                return compareResult(key < valueKey ? -1 : (key == valueKey ? 0 : 1));
+            }
+
+            if (comparator.isNull(v)) {
+                return op == FilterOperatorEnum.ISNULL;
+            }
+            return compareResult(value == null ? 0 : comparator.compare(v, value));
+        }
+
+        private boolean compareResult(int comp) {
+            switch (op) {
+            case EQ:
+                return comp == 0;
+            case NEQ:
+                return comp != 0;
+            case LT:
+                return comp < 0;
+            case LTE:
+                return comp <= 0;
+            case GT:
+                return comp > 0;
+            case GTE:
+                return comp >= 0;
+            case ISNOTNULL:
+                return true;
+            default:
+                return false;
+            }
+        }
+    }
+
+    private static class InEvaluator extends Evaluator {
+        final IGTComparator comparator;
+        final boolean not;
+        final int col;
+        final Set<ByteArray> values;
+
+        final int keyLength; // -1 if the values are not of the same key length
+        final long nullKey;
+        final long minKey;
+        final long[] bitmap; // bits of key - minKey, or null if the keys spread too wide
+        final long[] sortedKeys;
+
+        InEvaluator(IGTComparator comparator, boolean not, int col, Set<ByteArray> values) {
+            this.comparator = comparator;
+            this.not = not;
+            this.col = col;
+            this.values = values;
+
+            int length = values.iterator().next().length();
+            for (ByteArray v : values) {
+                if (v.length() != length) {
+                    length = -1;
+                    break;
+                }
+            }
+            if (!isKeyLength(length)) {
+                keyLength = -1;
+                nullKey = minKey = 0;
+                bitmap = sortedKeys = null;
+                return;
+            }
+
+            long[] keys = new long[values.size()];
+            int i = 0;
+            for (ByteArray v : values) {
+                keys[i++] = toKey(v.array(), v.offset(), length);
+            }
+            Arrays.sort(keys);
+
+            keyLength = length;
+            nullKey = nullKey(length);
+            minKey = keys[0];
+            long range = keys[keys.length - 1] - keys[0];
+            if (range >= 0 && range < MAX_BITMAP_RANGE) {
+                bitmap = new long[(int) (range >>> 6) + 1];
+                for (long key : keys) {
+                    long bit = key - minKey;
+                    bitmap[(int) (bit >>> 6)] |= 1L << bit;
+                }
+                sortedKeys = null;
+            } else {
+                bitmap = null;
+                sortedKeys = keys;
+            }
+        }
+
+        @Override
+        public boolean evaluate(GTRecord record) {
+            ByteArray v = record.get(col);
+            if (v.length() == keyLength && v.array() != null) {
+                long key = toKey(v.array(), v.offset(), keyLength);
+                if (key == nullKey) {
+                    return false;
+                }
+                return contains(key) != not;
+            }
+
+            if (comparator.isNull(v)) {
+                return false;
+            }
+            return values.contains(v) != not;
+        }
+
+        private boolean contains(long key) {
+            if (bitmap != null) {
+                long bit = key - minKey;
+                return bit >= 0 && bit < ((long) bitmap.length << 6) && (bitmap[(int) (bit >>> 6)] & (1L << bit)) != 0;
+            }
+            return Arrays.binarySearch(sortedKeys, key) >= 0;
+        }
+    }
+
+    private static class InterpretedEvaluator extends Evaluator {
+        final TupleFilter filter;
+        final IFilterCodeSystem<ByteArray> filterCodeSystem;
+        final IEvaluatableTuple tuple;
+        GTRecord current;
+
+        InterpretedEvaluator(TupleFilter filter, IFilterCodeSystem<ByteArray> filterCodeSystem) {
+            this.filter = filter;
+            this.filterCodeSystem = filterCodeSystem;
+            this.tuple = new IEvaluatableTuple() {
+                @Override
+                public Object getValue(TblColRef col) {
+                    return current.get(col.getColumnDesc().getZeroBasedIndex());
+                }
+            };
+        }
+
+        @Override
+        public boolean evaluate(GTRecord record) {
+            current = record;
+            return filter.evaluate(tuple, filterCodeSystem);
+        }
+    }
+}
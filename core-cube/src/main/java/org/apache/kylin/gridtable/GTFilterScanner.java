@@ -35,6 +35,7 @@ import org.apache.kylin.metadata.tuple.IEvaluatableTuple;
 public class GTFilterScanner extends GTForwardingScanner {
 
     private TupleFilter filter;
+    private GTFilterCompiler.Evaluator compiledFilter;
     private IFilterCodeSystem<ByteArray> filterCodeSystem;
     private IEvaluatableTuple oneTuple; // avoid instance creation
 
@@ -43,6 +44,13 @@ public class GTFilterScanner extends GTForwardingScanner {
     private IGTBypassChecker checker = null;
 
     public GTFilterScanner(IGTScanner delegated, GTScanRequest req, IGTBypassChecker checker) {
+        this(delegated, req, checker, true);
+    }
+
+    /**
+     * @param compileFilter whether to compile the filter into an evaluator on encoded bytes, or to interpret it
+     */
+    public GTFilterScanner(IGTScanner delegated, GTScanRequest req, IGTBypassChecker checker, boolean compileFilter) {
         super(delegated);
         this.checker = checker;
 
@@ -58,6 +66,10 @@ public class GTFilterScanner extends GTForwardingScanner {
 
             if (!TupleFilter.isEvaluableRecursively(filter))
                 throw new IllegalArgumentException();
+
+            if (compileFilter) {
+                this.compiledFilter = GTFilterCompiler.compile(filter, getInfo());
+            }
         }
     }
 
@@ -101,7 +113,8 @@ public class GTFilterScanner extends GTForwardingScanner {
                 if (cachedResult != null)
                     return cachedResult[0];
 
-                boolean result = filter.evaluate(oneTuple, filterCodeSystem);
+                boolean result = compiledFilter != null ? compiledFilter.evaluate(next)
+                        : filter.evaluate(oneTuple, filterCodeSystem);
                 resultCache.setLastResult(result);
                 return result;
             }
@@ -72,6 +72,7 @@ public class GTScanRequest {
     private long timeout;
     private boolean allowStorageAggregation;
     private double aggCacheMemThreshold;
+    private boolean hashAggregation;
     private int storageScanRowNumThreshold;
     //valid value iff GTCubeStorageQueryBase.enableStorageLimitIfPossible is true
     private int storagePushDownLimit;
@@ -79,11 +80,13 @@ public class GTScanRequest {
 
     // runtime computed fields
     private transient boolean doingStorageAggregation = false;
+    private transient long estimatedScanRowCount = -1; // by the scan range planner, for logging on query server
 
     GTScanRequest(GTInfo info, List<GTScanRange> ranges, ImmutableBitSet dimensions, ImmutableBitSet aggrGroupBy, //
             ImmutableBitSet aggrMetrics, String[] aggrMetricsFuncs, TupleFilter filterPushDown,
             TupleFilter havingFilterPushDown, // 
-            boolean allowStorageAggregation, double aggCacheMemThreshold, int storageScanRowNumThreshold, //
+            boolean allowStorageAggregation, double aggCacheMemThreshold, boolean hashAggregation,
+            int storageScanRowNumThreshold, //
             int storagePushDownLimit, StorageLimitLevel storageLimitLevel, String storageBehavior, long startTime,
             long timeout) {
         this.info = info;
@@ -105,6 +108,7 @@ public class GTScanRequest {
         this.timeout = timeout;
         this.allowStorageAggregation = allowStorageAggregation;
         this.aggCacheMemThreshold = aggCacheMemThreshold;
+        this.hashAggregation = hashAggregation;
         this.storageScanRowNumThreshold = storageScanRowNumThreshold;
         this.storagePushDownLimit = storagePushDownLimit;
         this.storageLimitLevel = storageLimitLevel;
@@ -322,6 +326,13 @@ public class GTScanRequest {
         this.aggCacheMemThreshold = 0;
     }
 
+    /**
+     * whether storage aggregation should use a hash table instead of a tree map, output is sorted either way
+     */
+    public boolean isHashAggregation() {
+        return hashAggregation;
+    }
+
     public int getStorageScanRowNumThreshold() {
         return storageScanRowNumThreshold;
     }
@@ -346,6 +357,14 @@ public class GTScanRequest {
         return timeout;
     }
 
+    public long getEstimatedScanRowCount() {
+        return estimatedScanRowCount;
+    }
+
+    public void setEstimatedScanRowCount(long estimatedScanRowCount) {
+        this.estimatedScanRowCount = estimatedScanRowCount;
+    }
+
     @Override
     public String toString() {
         return "GTScanRequest [range=" + ranges + ", columns=" + columns + ", filterPushDown=" + filterPushDown
@@ -365,6 +384,7 @@ public class GTScanRequest {
 
     private static final int SERIAL_0_BASE = 0;
     private static final int SERIAL_1_HAVING_FILTER = 1;
+    private static final int SERIAL_2_HASH_AGGREGATION = 2;
 
     public static final BytesSerializer<GTScanRequest> serializer = new BytesSerializer<GTScanRequest>() {
         @Override
@@ -402,6 +422,10 @@ public class GTScanRequest {
             BytesUtil.writeVLong(value.startTime, out);
             BytesUtil.writeVLong(value.timeout, out);
             BytesUtil.writeUTFString(value.storageBehavior, out);
+
+            if (serialLevel >= SERIAL_2_HASH_AGGREGATION) {
+                BytesUtil.writeVInt(value.hashAggregation ? 1 : 0, out);
+            }
         }
 
         @Override
@@ -445,10 +469,17 @@ public class GTScanRequest {
             long timeout = BytesUtil.readVLong(in);
             String storageBehavior = BytesUtil.readUTFString(in);
 
+            boolean sHashAggregation = false;
+            // a sender of a lower level stops here, e.g. a query server not yet upgraded
+            if (serialLevel >= SERIAL_2_HASH_AGGREGATION && in.hasRemaining()) {
+                sHashAggregation = (BytesUtil.readVInt(in) == 1);
+            }
+
             return new GTScanRequestBuilder().setInfo(sInfo).setRanges(sRanges).setDimensions(sColumns)
                     .setAggrGroupBy(sAggGroupBy).setAggrMetrics(sAggrMetrics).setAggrMetricsFuncs(sAggrMetricFuncs)
                     .setFilterPushDown(sGTFilter).setHavingFilterPushDown(sGTHavingFilter)
                     .setAllowStorageAggregation(sAllowPreAggr).setAggCacheMemThreshold(sAggrCacheGB)
+                    .setHashAggregation(sHashAggregation)
                     .setStorageScanRowNumThreshold(storageScanRowNumThreshold)
                     .setStoragePushDownLimit(storagePushDownLimit).setStorageLimitLevel(storageLimitLevel)
                     .setStartTime(startTime).setTimeout(timeout).setStorageBehavior(storageBehavior)
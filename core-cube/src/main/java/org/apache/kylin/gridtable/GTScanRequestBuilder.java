@@ -36,6 +36,7 @@ public class GTScanRequestBuilder {
     private String[] aggrMetricsFuncs = null;
     private boolean allowStorageAggregation = true;
     private double aggCacheMemThreshold = 0;
+    private boolean hashAggregation = false;
     private int storageScanRowNumThreshold = Integer.MAX_VALUE;// storage should terminate itself when $storageScanRowNumThreshold cuboid rows are scanned, and throw exception.   
     private int storagePushDownLimit = Integer.MAX_VALUE;// storage can quit scanning safely when $toragePushDownLimit aggregated rows are produced. 
     private StorageLimitLevel storageLimitLevel = StorageLimitLevel.NO_LIMIT;
@@ -93,6 +94,11 @@ public class GTScanRequestBuilder {
         return this;
     }
 
+    public GTScanRequestBuilder setHashAggregation(boolean hashAggregation) {
+        this.hashAggregation = hashAggregation;
+        return this;
+    }
+
     public GTScanRequestBuilder setStorageScanRowNumThreshold(int storageScanRowNumThreshold) {
         this.storageScanRowNumThreshold = storageScanRowNumThreshold;
         return this;
@@ -146,7 +152,8 @@ public class GTScanRequestBuilder {
         this.timeout = timeout == -1 ? 300000 : timeout;
 
         return new GTScanRequest(info, ranges, dimensions, aggrGroupBy, aggrMetrics, aggrMetricsFuncs, filterPushDown,
-                havingFilterPushDown, allowStorageAggregation, aggCacheMemThreshold, storageScanRowNumThreshold,
+                havingFilterPushDown, allowStorageAggregation, aggCacheMemThreshold, hashAggregation,
+                storageScanRowNumThreshold,
                 storagePushDownLimit, storageLimitLevel, storageBehavior, startTime, timeout);
     }
 }
@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.gridtable.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.gridtable.GTFilterScanner;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTInfo.Builder;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTSampleCodeSystem;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.gridtable.GTScanRequestBuilder;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.metadata.datatype.DataType;
+import org.apache.kylin.metadata.filter.ColumnTupleFilter;
+import org.apache.kylin.metadata.filter.CompareTupleFilter;
+import org.apache.kylin.metadata.filter.ConstantTupleFilter;
+import org.apache.kylin.metadata.filter.LogicalTupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter.FilterOperatorEnum;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Benchmark of filtering 10 million GTRecords with the compiled filter vs. the interpreted TupleFilter.
+ * 5 dimensions of type int4, and 2 measures of type long8. The filter result cache is off, so that every record
+ * is evaluated.
+ */
+public class GTFilterBenchmark {
+
+    final GTInfo info;
+    final SortedGTRecordGenerator gen;
+
+    final long N = 10000000; // 10M
+    final long genTime;
+
+    public GTFilterBenchmark() {
+        Builder builder = GTInfo.builder();
+        builder.setCodeSystem(new GTSampleCodeSystem());
+        DataType tint = DataType.getType("int4");
+        DataType tlong = DataType.getType("long8");
+        builder.setColumns(tint, tint, tint, tint, tint, tlong, tlong);
+        builder.setPrimaryKey(ImmutableBitSet.valueOf(0, 1, 2, 3, 4));
+        info = builder.build();
+
+        gen = new SortedGTRecordGenerator(info);
+        gen.addDimension(10, 4, null);
+        gen.addDimension(10, 4, null);
+        gen.addDimension(100, 4, null);
+        gen.addDimension(1000, 4, null);
+        gen.addDimension(100000, 4, null);
+        gen.addMeasure(8);
+        gen.addMeasure(8);
+
+        // warm up
+        long t = System.currentTimeMillis();
+        testGenerate();
+        genTime = System.currentTimeMillis() - t;
+    }
+
+    @SuppressWarnings("unused")
+    public void testGenerate() {
+        long count = 0;
+        for (GTRecord rec : gen.generate(N)) {
+            count++;
+        }
+    }
+
+    public void testCompare() throws IOException {
+        testFilter("compare", //
+                and(//
+                        gt(col(3), 100), //
+                        lt(col(4), 50000)));
+    }
+
+    public void testInList() throws IOException {
+        testFilter("in-list", eq(col(4), range(0, 100000, 7)));
+    }
+
+    public void testSparseInList() throws IOException {
+        testFilter("sparse in-list", eq(col(4), 1, 3, 5, 9, 12, 14, 23, 43, 52, 78, 92, 1000, 10000, 99999));
+    }
+
+    public void testMixed() throws IOException {
+        testFilter("mixed", //
+                and(//
+                        gt(col(0), 2), //
+                        eq(col(4), range(0, 100000, 3)), //
+                        or(//
+                                eq(col(2), 2, 4), //
+                                eq(col(3), range(0, 1000, 2)))));
+    }
+
+    private void testFilter(String name, TupleFilter filter) throws IOException {
+        GTFilterScanner.FilterResultCache.ENABLED = false;
+        try {
+            long interpreted = runFilter(filter, false);
+            long compiled = runFilter(filter, true);
+            System.out.println(name + ": " + calcSpeed(interpreted) + "K rec/sec interpreted, " + calcSpeed(compiled)
+                    + "K rec/sec compiled");
+        } finally {
+            GTFilterScanner.FilterResultCache.ENABLED = true;
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private long runFilter(TupleFilter filter, boolean compile) throws IOException {
+        long t = System.currentTimeMillis();
+        GTScanRequest req = new GTScanRequestBuilder().setInfo(info).setRanges(null).setDimensions(info.getAllColumns()).setFilterPushDown(filter).createGTScanRequest();
+        IGTScanner scanner = new GTFilterScanner(gen.generate(N), req, null, compile);
+
+        long count = 0;
+        for (GTRecord rec : scanner) {
+            count++;
+        }
+        return System.currentTimeMillis() - t;
+    }
+
+    private int calcSpeed(long t) {
+        double sec = (double) Math.max(1, t - genTime) / 1000;
+        return (int) (N / sec / 1000);
+    }
+
+    private int[] range(int from, int to, int step) {
+        int[] result = new int[(to - from + step - 1) / step];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = from + i * step;
+        }
+        return result;
+    }
+
+    private LogicalTupleFilter and(TupleFilter... filters) {
+        return logical(FilterOperatorEnum.AND, filters);
+    }
+
+    private LogicalTupleFilter or(TupleFilter... filters) {
+        return logical(FilterOperatorEnum.OR, filters);
+    }
+
+    private LogicalTupleFilter logical(FilterOperatorEnum op, TupleFilter[] filters) {
+        LogicalTupleFilter r = new LogicalTupleFilter(op);
+        for (TupleFilter f : filters)
+            r.addChild(f);
+        return r;
+    }
+
+    private CompareTupleFilter gt(ColumnTupleFilter col, int v) {
+        return compare(FilterOperatorEnum.GT, col, v);
+    }
+
+    private CompareTupleFilter lt(ColumnTupleFilter col, int v) {
+        return compare(FilterOperatorEnum.LT, col, v);
+    }
+
+    private CompareTupleFilter compare(FilterOperatorEnum op, ColumnTupleFilter col, int v) {
+        CompareTupleFilter r = new CompareTupleFilter(op);
+        r.addChild(col);
+        r.addChild(new ConstantTupleFilter(encode(col, v)));
+        return r;
+    }
+
+    private CompareTupleFilter eq(ColumnTupleFilter col, int... values) {
+        CompareTupleFilter r = new CompareTupleFilter(FilterOperatorEnum.IN);
+        r.addChild(col);
+
+        List<ByteArray> list = Lists.newArrayList();
+        for (int v : values) {
+            list.add(encode(col, v));
+        }
+        r.addChild(new ConstantTupleFilter(list));
+        return r;
+    }
+
+    private ByteArray encode(ColumnTupleFilter col, int v) {
+        int c = col.getColumn().getColumnDesc().getZeroBasedIndex();
+        int len = info.getCodeSystem().maxCodeLength(c);
+        ByteArray bytes = new ByteArray(len);
+        BytesUtil.writeLong(v, bytes.array(), bytes.offset(), len);
+        return bytes;
+    }
+
+    private ColumnTupleFilter col(int i) {
+        return new ColumnTupleFilter(info.colRef(i));
+    }
+
+    public static void main(String[] args) throws IOException {
+        GTFilterBenchmark benchmark = new GTFilterBenchmark();
+
+        benchmark.testCompare();
+        benchmark.testInList();
+        benchmark.testSparseInList();
+        benchmark.testMixed();
+    }
+}
@@ -19,7 +19,10 @@
 package org.apache.kylin.cube;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.List;
@@ -30,6 +33,10 @@ import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.common.util.LocalFileMetadataTestCase;
 import org.apache.kylin.cube.model.CubeDesc;
+import org.apache.kylin.dict.lookup.LookupStringTable;
+import org.apache.kylin.dict.lookup.SnapshotLookupTable;
+import org.apache.kylin.metadata.model.JoinDesc;
+import org.apache.kylin.metadata.model.JoinTableDesc;
 import org.apache.kylin.metadata.model.SegmentRange;
 import org.apache.kylin.metadata.model.SegmentRange.TSRange;
 import org.apache.kylin.metadata.model.SegmentStatusEnum;
@@ -316,6 +323,32 @@ public class CubeManagerTest extends LocalFileMetadataTestCase {
         }
     }
 
+    @Test
+    public void testSnapshotLookupTableShared() throws Exception {
+        CubeManager mgr = CubeManager.getInstance(getTestConfig());
+        CubeSegment seg = mgr.getCube("test_kylin_cube_with_slr_ready").getFirstSegment();
+        JoinDesc join = null;
+        for (JoinTableDesc joinTable : seg.getModel().getJoinTables()) {
+            if (joinTable.getTableRef().getTableIdentity().equals("EDW.TEST_SITES"))
+                join = joinTable.getJoin();
+        }
+
+        // a new hash map table per call by default
+        LookupStringTable table = mgr.getLookupTable(seg, join);
+        assertFalse(table instanceof SnapshotLookupTable);
+        assertNotSame(table, mgr.getLookupTable(seg, join));
+
+        System.setProperty("kylin.query.snapshot-lookup-index-enabled", "true");
+        try {
+            table = mgr.getLookupTable(seg, join);
+            assertTrue(table instanceof SnapshotLookupTable);
+            assertSame(table, mgr.getLookupTable(seg, join));
+            assertEquals(table.getAllRows().size(), mgr.getLookupTable(seg, join).getAllRows().size());
+        } finally {
+            System.clearProperty("kylin.query.snapshot-lookup-index-enabled");
+        }
+    }
+
     public CubeDescManager getCubeDescManager() {
         return CubeDescManager.getInstance(getTestConfig());
     }
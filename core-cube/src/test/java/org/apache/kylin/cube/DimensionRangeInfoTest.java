@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.cube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.kv.RowKeyColumnOrder;
+import org.apache.kylin.cube.model.RowKeyColDesc;
+import org.apache.kylin.dict.AppendTrieDictionary;
+import org.apache.kylin.dict.DictionaryGenerator;
+import org.apache.kylin.dict.IterableDictionaryValueEnumerator;
+import org.apache.kylin.metadata.datatype.DataType;
+import org.apache.kylin.metadata.model.DataModelDesc;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+public class DimensionRangeInfoTest extends LocalFileMetadataTestCase {
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+    }
+
+    @After
+    public void after() throws Exception {
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testBuildFromDictionaries() {
+        CubeSegment segment = CubeManager.getInstance(KylinConfig.getInstanceFromEnv())
+                .getCube("test_kylin_cube_with_slr_ready").getSegments().get(0);
+        Map<String, DimensionRangeInfo> rangeMap = DimensionRangeInfo.buildFromDictionaries(segment);
+        assertFalse(rangeMap.isEmpty());
+
+        for (RowKeyColDesc rowKeyCol : segment.getCubeDesc().getRowkey().getRowKeyColumns()) {
+            TblColRef col = rowKeyCol.getColRef();
+            DimensionRangeInfo range = rangeMap.get(col.getIdentity());
+            Dictionary<String> dict = rowKeyCol.isUsingDictionary() ? segment.getDictionary(col) : null;
+            if (dict == null || col.getType().isDateTimeFamily()) {
+                assertNull(col.toString(), range);
+                continue;
+            }
+
+            // the range is the real min and max of the dictionary
+            RowKeyColumnOrder order = RowKeyColumnOrder.getInstance(col.getType());
+            String min = null, max = null;
+            for (int id = dict.getMinId(); id <= dict.getMaxId(); id++) {
+                String value = dict.getValueFromId(id);
+                if (value != null) {
+                    min = min == null ? value : order.min(min, value);
+                    max = max == null ? value : order.max(max, value);
+                }
+            }
+            assertEquals(col.toString(), min, range.getMin());
+            assertEquals(col.toString(), max, range.getMax());
+        }
+    }
+
+    @Test
+    public void testGetRange() throws Exception {
+        DimensionRangeInfo range = DimensionRangeInfo.getRange(DictionaryGenerator.buildDictionary(
+                DataType.getType("varchar(10)"), new IterableDictionaryValueEnumerator("CN", "US", "DE")));
+        assertEquals("CN", range.getMin());
+        assertEquals("US", range.getMax());
+
+        // in numeric order, not string order
+        range = DimensionRangeInfo.getRange(DictionaryGenerator.buildDictionary(DataType.getType("integer"),
+                new IterableDictionaryValueEnumerator("9", "100", "-5")));
+        assertEquals("-5", range.getMin());
+        assertEquals("100", range.getMax());
+
+        // ids of a global dictionary are in the order values are appended
+        assertNull(DimensionRangeInfo.getRange(new AppendTrieDictionary<String>()));
+        assertNull(DimensionRangeInfo.getRange(null));
+    }
+
+    @Test
+    public void testMergeRangeMap() {
+        DataModelDesc model = CubeManager.getInstance(KylinConfig.getInstanceFromEnv())
+                .getCube("test_kylin_cube_with_slr_ready").getModel();
+        String site = model.findColumn("TEST_KYLIN_FACT.LSTG_SITE_ID").getIdentity();
+        String format = model.findColumn("TEST_KYLIN_FACT.LSTG_FORMAT_NAME").getIdentity();
+        String dropped = "TEST_KYLIN_FACT.NOT_A_COLUMN";
+
+        Map<String, DimensionRangeInfo> map1 = Maps.newHashMap();
+        map1.put(site, new DimensionRangeInfo("3", "20"));
+        map1.put(format, new DimensionRangeInfo("B", "C"));
+        map1.put(dropped, new DimensionRangeInfo("a", "b"));
+        Map<String, DimensionRangeInfo> map2 = Maps.newHashMap();
+        map2.put(site, new DimensionRangeInfo("10", "100"));
+        map2.put(format, new DimensionRangeInfo("A", "BB"));
+        map2.put(dropped, new DimensionRangeInfo("a", "b"));
+        Map<String, DimensionRangeInfo> map3 = Maps.newHashMap();
+        map3.put(site, new DimensionRangeInfo("-1", "9"));
+
+        Map<String, DimensionRangeInfo> merged = DimensionRangeInfo.mergeRangeMap(model, Arrays.asList(map1, map2));
+        assertEquals(2, merged.size());
+        assertRange("3", "100", merged.get(site));
+        assertRange("A", "C", merged.get(format));
+
+        // a column missing in any segment is not kept
+        merged = DimensionRangeInfo.mergeRangeMap(model, Arrays.asList(map1, map2, map3));
+        assertEquals(1, merged.size());
+        assertRange("-1", "100", merged.get(site));
+
+        assertTrue(DimensionRangeInfo.mergeRangeMap(model, Collections.<Map<String, DimensionRangeInfo>> emptyList()).isEmpty());
+    }
+
+    private void assertRange(String min, String max, DimensionRangeInfo range) {
+        assertEquals(min, range.getMin());
+        assertEquals(max, range.getMax());
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.cube.inmemcubing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.gridtable.CubeGridTable;
+import org.apache.kylin.cube.kv.CubeDimEncMap;
+import org.apache.kylin.cube.model.CubeDesc;
+import org.apache.kylin.cube.model.CubeJoinedFlatTableDesc;
+import org.apache.kylin.cube.model.CubeJoinedFlatTableEnrich;
+import org.apache.kylin.dict.DictionaryGenerator;
+import org.apache.kylin.dict.IterableDictionaryValueEnumerator;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.metadata.datatype.DataType;
+import org.apache.kylin.metadata.model.FunctionDesc;
+import org.apache.kylin.metadata.model.IJoinedFlatTableDesc;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+public class InMemCubeBuilderInputConverterTest extends LocalFileMetadataTestCase {
+
+    // has RAW measures, which encode their values by dictionary
+    private static final String CUBE_NAME = "test_kylin_cube_without_slr_left_join_ready";
+
+    private CubeDesc cubeDesc;
+    private IJoinedFlatTableDesc flatDesc;
+    private CubeJoinedFlatTableEnrich flatDescEnrich;
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+        cubeDesc = CubeManager.getInstance(getTestConfig()).getCube(CUBE_NAME).getDescriptor();
+        flatDesc = new CubeJoinedFlatTableDesc(cubeDesc);
+        flatDescEnrich = new CubeJoinedFlatTableEnrich(flatDesc, cubeDesc);
+    }
+
+    @After
+    public void after() throws Exception {
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testConvertBatchSameAsConvert() throws Exception {
+        List<List<String>> rows = mockupRows(300);
+        Map<TblColRef, Dictionary<String>> dictionaryMap = buildDictionaries(rows);
+        assertFalse(dictionaryMap.isEmpty());
+
+        GTInfo info = CubeGridTable.newGTInfo(Cuboid.getBaseCuboid(cubeDesc),
+                new CubeDimEncMap(cubeDesc, dictionaryMap));
+        InMemCubeBuilderInputConverter rowConverter = new InMemCubeBuilderInputConverter(cubeDesc, flatDesc,
+                dictionaryMap, info);
+        InMemCubeBuilderInputConverter batchConverter = new InMemCubeBuilderInputConverter(cubeDesc, flatDesc,
+                dictionaryMap, info);
+
+        // several batches, so that later ones hit the codes cached by earlier ones
+        int batchSize = 64;
+        for (int start = 0; start < rows.size(); start += batchSize) {
+            List<List<String>> batch = rows.subList(start, Math.min(rows.size(), start + batchSize));
+            List<GTRecord> records = batchConverter.convertBatch(batch);
+            assertEquals(batch.size(), records.size());
+            for (int i = 0; i < batch.size(); i++) {
+                assertEquals(rowConverter.convert(batch.get(i)), records.get(i));
+            }
+        }
+    }
+
+    private List<List<String>> mockupRows(int count) {
+        List<TblColRef> columns = flatDesc.getAllColumns();
+        List<List<String>> rows = Lists.newArrayList();
+        for (int i = 0; i < count; i++) {
+            List<String> row = Lists.newArrayListWithCapacity(columns.size());
+            for (int c = 0; c < columns.size(); c++) {
+                row.add(mockupValue(columns.get(c).getType(), (i * (c + 3)) % 11));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static String mockupValue(DataType type, int k) {
+        if (type.isDateTimeFamily()) {
+            return String.format("2012-01-%02d", k + 1);
+        } else if (type.isIntegerFamily()) {
+            return String.valueOf(k + 1);
+        } else if (type.isNumberFamily()) {
+            return (k + 1) + ".25";
+        } else {
+            return "V" + k;
+        }
+    }
+
+    private Map<TblColRef, Dictionary<String>> buildDictionaries(List<List<String>> rows) throws Exception {
+        Map<TblColRef, Dictionary<String>> result = Maps.newHashMap();
+
+        List<TblColRef> columns = Cuboid.getBaseCuboid(cubeDesc).getColumns();
+        for (int c = 0; c < columns.size(); c++) {
+            TblColRef col = columns.get(c);
+            if (cubeDesc.getRowkey().isUseDictionary(col)) {
+                result.put(col, buildDictionary(col, rows, flatDescEnrich.getRowKeyColumnIndexes()[c]));
+            }
+        }
+
+        for (int m = 0; m < cubeDesc.getMeasures().size(); m++) {
+            FunctionDesc func = cubeDesc.getMeasures().get(m).getFunction();
+            List<TblColRef> dictCols = func.getMeasureType().getColumnsNeedDictionary(func);
+            List<TblColRef> paramCols = func.getParameter().getColRefs();
+            for (int i = 0; i < paramCols.size(); i++) {
+                TblColRef col = paramCols.get(i);
+                if (dictCols.contains(col) && !result.containsKey(col)) {
+                    result.put(col, buildDictionary(col, rows, flatDescEnrich.getMeasureColumnIndexes()[m][i]));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Dictionary<String> buildDictionary(TblColRef col, List<List<String>> rows, int flatIndex)
+            throws Exception {
+        List<String> values = Lists.newArrayList();
+        for (List<String> row : rows) {
+            values.add(row.get(flatIndex));
+        }
+        return DictionaryGenerator.buildDictionary(col.getType(), new IterableDictionaryValueEnumerator(values));
+    }
+}
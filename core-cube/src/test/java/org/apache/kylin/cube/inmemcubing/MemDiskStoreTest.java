@@ -25,6 +25,7 @@ import java.util.List;
 
 import org.apache.kylin.common.util.LocalFileMetadataTestCase;
 import org.apache.kylin.common.util.MemoryBudgetController;
+import org.apache.kylin.common.util.MemoryBudgetController.NotEnoughBudgetException;
 import org.apache.kylin.gridtable.GTBuilder;
 import org.apache.kylin.gridtable.GTInfo;
 import org.apache.kylin.gridtable.GTRecord;
@@ -87,6 +88,42 @@ public class MemDiskStoreTest extends LocalFileMetadataTestCase {
         System.out.println("Cost " + (end - start) + " millis");
     }
 
+    @Test
+    public void testOffHeapWriteRead() throws IOException {
+        MemDiskStore store = new MemDiskStore(info, budgetCtrl, true);
+        GridTable table = new GridTable(info, store);
+        verifyWriteAndRead(table);
+        verifyWriteAndRead(table); // again on recycled chunks
+        store.close();
+    }
+
+    @Test
+    public void testOffHeapReadAfterFreeUp() throws IOException, InterruptedException {
+        MemoryBudgetController budget = new MemoryBudgetController(20);
+        MemDiskStore store = new MemDiskStore(info, budget, true);
+        GridTable table = new GridTable(info, store);
+        write(table);
+
+        // another consumer takes all the budget, the released chunks are read from disk
+        MemoryBudgetController.MemoryConsumer other = new MemoryBudgetController.MemoryConsumer() {
+            @Override
+            public int freeUp(int mb) {
+                return 0;
+            }
+        };
+        while (true) {
+            try {
+                budget.reserve(other, 20);
+                break;
+            } catch (NotEnoughBudgetException ex) {
+                Thread.sleep(10); // chunk not yet flushed to disk
+            }
+        }
+        assertEquals(0, budget.getRemainingBudgetMB());
+        read(table);
+        store.close();
+    }
+
     private void verifyOneTableWriteAndRead() throws IOException {
         MemDiskStore store = new MemDiskStore(info, budgetCtrl);
         GridTable table = new GridTable(info, store);
@@ -94,19 +131,26 @@ public class MemDiskStoreTest extends LocalFileMetadataTestCase {
     }
 
     private void verifyWriteAndRead(GridTable table) throws IOException {
-        GTInfo info = table.getInfo();
+        write(table);
+        read(table);
+    }
 
+    private void write(GridTable table) throws IOException {
         GTBuilder builder = table.rebuild();
         for (GTRecord r : data) {
             builder.write(r);
         }
         builder.close();
+    }
 
+    private void read(GridTable table) throws IOException {
+        GTInfo info = table.getInfo();
         IGTScanner scanner = table.scan(new GTScanRequestBuilder().setInfo(info).setRanges(null).setDimensions(null).setFilterPushDown(null).createGTScanRequest());
         int i = 0;
         for (GTRecord r : scanner) {
             assertEquals(data.get(i++), r);
         }
+        assertEquals(data.size(), i);
         scanner.close();
     }
 }
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.cube.kv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTSampleCodeSystem;
+import org.apache.kylin.measure.BufferedMeasureCodec;
+import org.apache.kylin.metadata.datatype.DataType;
+import org.apache.kylin.metadata.model.FunctionDesc;
+import org.apache.kylin.metadata.model.MeasureDesc;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class ColumnarValueCodecTest extends LocalFileMetadataTestCase {
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        staticCreateTestMetadata();
+    }
+
+    @AfterClass
+    public static void after() throws Exception {
+        cleanAfterClass();
+    }
+
+    private final String[] types = new String[] { "double", "long8", "bigint", "decimal(19,4)", "double", "long8" };
+    private final List<Integer> columns = Lists.newArrayList(1, 2, 3, 4, 5, 6);
+
+    @Test
+    public void testRoundTrip() {
+        MeasureDesc[] measures = new MeasureDesc[types.length];
+        for (int i = 0; i < types.length; i++) {
+            measures[i] = measure(types[i]);
+        }
+        Object[] values = new Object[] { 100.0, 3L, 123456789L, new BigDecimal("333.1234"), 0.1, -5L };
+
+        ByteBuffer cell = new ColumnarValueCodec(measures).encode(values);
+        byte[] cellBytes = new byte[cell.position()];
+        System.arraycopy(cell.array(), 0, cellBytes, 0, cellBytes.length);
+
+        BufferedMeasureCodec measureCodec = new BufferedMeasureCodec(measures);
+        ByteBuffer raw = measureCodec.encode(values);
+        int[] sizes = measureCodec.getMeasureSizes();
+        // the round double and the small long are packed
+        assertTrue(cellBytes.length < raw.position());
+
+        GTRecord record = new GTRecord(newInfo());
+        byte[] scratch = new byte[ColumnarValueCodec.scratchSize(columns.size())];
+        ColumnarValueCodec.decode(ByteBuffer.wrap(cellBytes), columns, ImmutableBitSet.valueOf(1, 2, 3, 4, 5, 6), record, scratch);
+
+        for (int i = 0, pos = 0; i < sizes.length; pos += sizes[i], i++) {
+            ByteBuffer expected = ByteBuffer.wrap(raw.array(), pos, sizes[i]);
+            assertEquals(expected, record.get(columns.get(i)).asBuffer());
+        }
+    }
+
+    @Test
+    public void testSelectedColumns() {
+        MeasureDesc[] measures = new MeasureDesc[types.length];
+        for (int i = 0; i < types.length; i++) {
+            measures[i] = measure(types[i]);
+        }
+        Object[] values = new Object[] { 1.5, 7L, 8L, new BigDecimal("1.0000"), 2.0, 9L };
+        ByteBuffer cell = new ColumnarValueCodec(measures).encode(values);
+        cell.flip();
+
+        GTRecord record = new GTRecord(newInfo());
+        byte[] scratch = new byte[ColumnarValueCodec.scratchSize(columns.size())];
+        ColumnarValueCodec.decode(cell, columns, ImmutableBitSet.valueOf(3, 6), record, scratch);
+
+        assertEquals(cell.limit(), cell.position());
+        assertNull(record.get(1).array());
+        assertNull(record.get(2).array());
+        assertEquals(8L, decode("bigint", record.get(3).asBuffer()));
+        assertEquals(9L, decode("long8", record.get(6).asBuffer()));
+    }
+
+    private GTInfo newInfo() {
+        GTInfo.Builder builder = GTInfo.builder();
+        builder.setCodeSystem(new GTSampleCodeSystem());
+        DataType[] colTypes = new DataType[types.length + 1];
+        colTypes[0] = DataType.getType("varchar(10)");
+        for (int i = 0; i < types.length; i++) {
+            colTypes[i + 1] = DataType.getType(types[i]);
+        }
+        builder.setColumns(colTypes);
+        builder.setPrimaryKey(ImmutableBitSet.valueOf(0));
+        return builder.build();
+    }
+
+    private MeasureDesc measure(String returnType) {
+        MeasureDesc desc = new MeasureDesc();
+        FunctionDesc func = FunctionDesc.newInstance(null, null, returnType);
+        desc.setFunction(func);
+        return desc;
+    }
+
+    private Object decode(String type, ByteBuffer buf) {
+        Object[] result = new Object[1];
+        new BufferedMeasureCodec(type).decode(buf, result);
+        return result[0];
+    }
+}
@@ -20,12 +20,15 @@ package org.apache.kylin.gridtable;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
+import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.util.ImmutableBitSet;
 import org.apache.kylin.common.util.LocalFileMetadataTestCase;
 import org.junit.AfterClass;
@@ -131,4 +134,130 @@ public class AggregationCacheSpillTest extends LocalFileMetadataTestCase {
         assertEquals(10, count);
         scanner.close();
     }
+
+    @Test
+    public void testHashAggregationSpill() throws IOException {
+        IGTScanner inputScanner = new IGTScanner() {
+            @Override
+            public GTInfo getInfo() {
+                return INFO;
+            }
+
+            @Override
+            public void close() throws IOException {
+            }
+
+            @Override
+            public Iterator<GTRecord> iterator() {
+                return TEST_DATA.iterator();
+            }
+        };
+
+        // hash aggregation must return the same sorted result as tree map
+        List<String> expected = Lists.newArrayList();
+        List<String> actual = Lists.newArrayList();
+        for (boolean hash : new boolean[] { false, true }) {
+            GTScanRequest scanRequest = new GTScanRequestBuilder().setInfo(INFO).setRanges(null).setDimensions(new ImmutableBitSet(0, 3)).setAggrGroupBy(new ImmutableBitSet(0, 3)).setAggrMetrics(new ImmutableBitSet(3, 6)).setAggrMetricsFuncs(new String[] { "SUM", "SUM", "COUNT_DISTINCT" }).setFilterPushDown(null).setAggCacheMemThreshold(0.5).setHashAggregation(hash).createGTScanRequest();
+
+            GTAggregateScanner scanner = new GTAggregateScanner(inputScanner, scanRequest);
+            for (GTRecord record : scanner) {
+                assertNotNull(record);
+                Object[] returnRecord = record.getValues();
+                assertEquals(20, ((Long) returnRecord[3]).longValue());
+                assertEquals(21, ((BigDecimal) returnRecord[4]).longValue());
+                (hash ? actual : expected).add(Arrays.toString(Arrays.copyOf(returnRecord, 5)));
+            }
+            scanner.close();
+        }
+        assertEquals(DATA_CARDINALITY, actual.size());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testHashAggregationInMem() throws IOException {
+        IGTScanner inputScanner = new IGTScanner() {
+            @Override
+            public GTInfo getInfo() {
+                return INFO;
+            }
+
+            @Override
+            public void close() throws IOException {
+            }
+
+            @Override
+            public Iterator<GTRecord> iterator() {
+                return TEST_DATA.iterator();
+            }
+        };
+
+        // group by part of the dimensions, the others are ignored when hashing
+        GTScanRequest scanRequest = new GTScanRequestBuilder().setInfo(INFO).setRanges(null).setDimensions(new ImmutableBitSet(0, 3)).setAggrGroupBy(new ImmutableBitSet(1, 3)).setAggrMetrics(new ImmutableBitSet(3, 6)).setAggrMetricsFuncs(new String[] { "SUM", "SUM", "COUNT_DISTINCT" }).setFilterPushDown(null).setAggCacheMemThreshold(0.5).setHashAggregation(true).createGTScanRequest();
+
+        GTAggregateScanner scanner = new GTAggregateScanner(inputScanner, scanRequest);
+
+        int count = 0;
+        for (GTRecord record : scanner) {
+            assertNotNull(record);
+            Object[] returnRecord = record.getValues();
+            assertEquals(80000, ((Long) returnRecord[3]).longValue());
+            assertEquals(84000, ((BigDecimal) returnRecord[4]).longValue());
+            count++;
+        }
+        assertEquals(10, count);
+        scanner.close();
+    }
+
+    @Test
+    public void testSpillMergedWithInMemBuffer() throws IOException {
+        // more rows than the spill check interval, so the cache spills once and keeps the rest in mem
+        final List<GTRecord> data = Lists.newArrayList();
+        for (int i = 0; i < 3; i++)
+            data.addAll(TEST_DATA.subList(0, DATA_CARDINALITY));
+
+        IGTScanner inputScanner = new IGTScanner() {
+            @Override
+            public GTInfo getInfo() {
+                return INFO;
+            }
+
+            @Override
+            public void close() throws IOException {
+            }
+
+            @Override
+            public Iterator<GTRecord> iterator() {
+                return data.iterator();
+            }
+        };
+
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        List<String> expected = null;
+        for (String[] setting : new String[][] { { "none", "0" }, { "gzip", "0" }, { "none", "2" }, { "gzip", "1" } }) {
+            config.setProperty("kylin.storage.partition.aggr-spill-compression", setting[0]);
+            config.setProperty("kylin.storage.partition.aggr-spill-reader-threads", setting[1]);
+            for (boolean hash : new boolean[] { false, true }) {
+                GTScanRequest scanRequest = new GTScanRequestBuilder().setInfo(INFO).setRanges(null).setDimensions(new ImmutableBitSet(0, 3)).setAggrGroupBy(new ImmutableBitSet(0, 3)).setAggrMetrics(new ImmutableBitSet(3, 6)).setAggrMetricsFuncs(new String[] { "SUM", "SUM", "COUNT_DISTINCT" }).setFilterPushDown(null).setAggCacheMemThreshold(0.01).setHashAggregation(hash).createGTScanRequest();
+
+                GTAggregateScanner scanner = new GTAggregateScanner(inputScanner, scanRequest);
+                List<String> actual = Lists.newArrayList();
+                for (GTRecord record : scanner) {
+                    Object[] returnRecord = record.getValues();
+                    assertEquals(30, ((Long) returnRecord[3]).longValue());
+                    assertEquals(0, new BigDecimal("31.5").compareTo((BigDecimal) returnRecord[4]));
+                    actual.add(Arrays.toString(Arrays.copyOf(returnRecord, 5)));
+                }
+                assertTrue(scanner.getNumOfSpills() > 0);
+                scanner.close();
+
+                assertEquals(DATA_CARDINALITY, actual.size());
+                if (expected == null)
+                    expected = actual;
+                else
+                    assertEquals(expected, actual);
+            }
+        }
+        config.setProperty("kylin.storage.partition.aggr-spill-compression", "none");
+        config.setProperty("kylin.storage.partition.aggr-spill-reader-threads", "0");
+    }
 }
@@ -0,0 +1,272 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.gridtable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.metadata.datatype.DataType;
+import org.apache.kylin.metadata.filter.ColumnTupleFilter;
+import org.apache.kylin.metadata.filter.CompareTupleFilter;
+import org.apache.kylin.metadata.filter.ConstantTupleFilter;
+import org.apache.kylin.metadata.filter.IFilterCodeSystem;
+import org.apache.kylin.metadata.filter.LogicalTupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter.FilterOperatorEnum;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.metadata.tuple.IEvaluatableTuple;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class GTFilterCompilerTest extends LocalFileMetadataTestCase {
+
+    private static final FilterOperatorEnum[] COMPARE_OPS = { FilterOperatorEnum.EQ, FilterOperatorEnum.NEQ,
+            FilterOperatorEnum.LT, FilterOperatorEnum.LTE, FilterOperatorEnum.GT, FilterOperatorEnum.GTE,
+            FilterOperatorEnum.ISNULL, FilterOperatorEnum.ISNOTNULL, FilterOperatorEnum.IN,
+            FilterOperatorEnum.NOTIN };
+
+    private final Random random = new Random(1234);
+    private GTInfo info;
+    private List<GTRecord> records;
+
+    @Before
+    public void setUp() throws Exception {
+        createTestMetadata();
+
+        GTInfo.Builder builder = GTInfo.builder();
+        builder.setCodeSystem(new GTSampleCodeSystem());
+        DataType tint = DataType.getType("int4");
+        builder.setColumns(tint, tint, tint, DataType.getType("varchar(10)"));
+        builder.setPrimaryKey(ImmutableBitSet.valueOf(0, 1, 2, 3));
+        info = builder.build();
+
+        records = Lists.newArrayList();
+        for (int i = 0; i < 1000; i++) {
+            GTRecord rec = new GTRecord(info);
+            rec.set(0, intValue(smallValue()));
+            rec.set(1, intValue(smallValue()));
+            rec.set(2, intValue(random.nextInt(4) == 0 ? -1 : random.nextInt(1 << 20)));
+            rec.set(3, bytesValue(random.nextInt(4)));
+            records.add(rec);
+        }
+    }
+
+    @After
+    public void after() throws Exception {
+        cleanupTestMetadata();
+    }
+
+    @Test
+    public void testSameAsInterpreter() {
+        for (int i = 0; i < 500; i++) {
+            TupleFilter filter = randomFilter(3);
+            GTFilterCompiler.Evaluator compiled = GTFilterCompiler.compile(filter, info);
+            for (GTRecord rec : records) {
+                assertEquals(filter.toString(), interpret(filter, rec), compiled.evaluate(rec));
+            }
+        }
+    }
+
+    @Test
+    public void testInList() {
+        // a wide IN-list goes sorted rather than bitmap
+        int[] values = new int[100];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(1 << 20);
+        }
+        // and one that matches
+        values[0] = (int) BytesUtil.readLong(records.get(0).get(2).array(), 0, 4);
+        for (FilterOperatorEnum op : new FilterOperatorEnum[] { FilterOperatorEnum.IN, FilterOperatorEnum.NOTIN }) {
+            TupleFilter filter = compare(op, 2, values);
+            GTFilterCompiler.Evaluator compiled = GTFilterCompiler.compile(filter, info);
+            for (GTRecord rec : records) {
+                assertEquals(interpret(filter, rec), compiled.evaluate(rec));
+            }
+        }
+    }
+
+    @Test
+    public void testNotCompiled() {
+        assertNull(GTFilterCompiler.compile(null, info));
+    }
+
+    @Test
+    public void testScanner() throws IOException {
+        TupleFilter filter = randomFilter(3);
+        GTScanRequest req = new GTScanRequestBuilder().setInfo(info).setRanges(null)
+                .setDimensions(info.getAllColumns()).setFilterPushDown(filter).createGTScanRequest();
+
+        int expected = 0;
+        for (GTRecord rec : records) {
+            if (interpret(filter, rec))
+                expected++;
+        }
+
+        for (boolean compile : new boolean[] { false, true }) {
+            int count = 0;
+            for (GTRecord rec : new GTFilterScanner(new ListScanner(info, records), req, null, compile)) {
+                count++;
+            }
+            assertEquals(expected, count);
+        }
+    }
+
+    private boolean interpret(TupleFilter filter, final GTRecord rec) {
+        IFilterCodeSystem<ByteArray> cs = GTUtil.wrap(info.getCodeSystem().getComparator());
+        return filter.evaluate(new IEvaluatableTuple() {
+            @Override
+            public Object getValue(TblColRef col) {
+                return rec.get(col.getColumnDesc().getZeroBasedIndex());
+            }
+        }, cs);
+    }
+
+    private TupleFilter randomFilter(int depth) {
+        int kind = random.nextInt(depth > 0 ? 10 : 6);
+        if (kind < 4) {
+            FilterOperatorEnum op = COMPARE_OPS[random.nextInt(COMPARE_OPS.length)];
+            int col = random.nextInt(4);
+            int[] values = new int[1 + random.nextInt(5)];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = col == 3 ? random.nextInt(4) : smallValue();
+            }
+            return compare(op, col, values);
+        } else if (kind == 4) {
+            return random.nextBoolean() ? ConstantTupleFilter.TRUE : ConstantTupleFilter.FALSE;
+        } else if (kind == 5) {
+            return new EvenFilter(info.colRef(random.nextInt(2)));
+        } else {
+            FilterOperatorEnum op = kind == 9 ? FilterOperatorEnum.NOT
+                    : (random.nextBoolean() ? FilterOperatorEnum.AND : FilterOperatorEnum.OR);
+            LogicalTupleFilter r = new LogicalTupleFilter(op);
+            int n = op == FilterOperatorEnum.NOT ? 1 : 1 + random.nextInt(3);
+            for (int i = 0; i < n; i++) {
+                r.addChild(randomFilter(depth - 1));
+            }
+            return r;
+        }
+    }
+
+    private CompareTupleFilter compare(FilterOperatorEnum op, int col, int... values) {
+        CompareTupleFilter r = new CompareTupleFilter(op);
+        r.addChild(new ColumnTupleFilter(info.colRef(col)));
+        if (op != FilterOperatorEnum.ISNULL && op != FilterOperatorEnum.ISNOTNULL) {
+            List<ByteArray> list = Lists.newArrayList();
+            for (int v : values) {
+                list.add(col == 3 ? bytesValue(v) : intValue(v));
+            }
+            r.addChild(new ConstantTupleFilter(list));
+        }
+        return r;
+    }
+
+    private int smallValue() {
+        // -1 encodes as all 0xFF, i.e. null
+        return random.nextInt(20) - 1;
+    }
+
+    private ByteArray intValue(int v) {
+        ByteArray bytes = new ByteArray(4);
+        BytesUtil.writeLong(v, bytes.array(), 0, 4);
+        return bytes;
+    }
+
+    private ByteArray bytesValue(int length) {
+        // values of variable length, compared as bytes
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) ('a' + length));
+        return new ByteArray(bytes);
+    }
+
+    // a filter the compiler does not know, left to the interpreter
+    private static class EvenFilter extends TupleFilter {
+        final TblColRef col;
+
+        EvenFilter(TblColRef col) {
+            super(Collections.<TupleFilter> emptyList(), FilterOperatorEnum.UNSUPPORTED);
+            this.col = col;
+        }
+
+        @Override
+        public boolean isEvaluable() {
+            return true;
+        }
+
+        @Override
+        public boolean evaluate(IEvaluatableTuple tuple, IFilterCodeSystem<?> cs) {
+            ByteArray v = (ByteArray) tuple.getValue(col);
+            return (v.array()[v.offset() + v.length() - 1] & 1) == 0;
+        }
+
+        @Override
+        public Collection<?> getValues() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void serialize(IFilterCodeSystem<?> cs, ByteBuffer buffer) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void deserialize(IFilterCodeSystem<?> cs, ByteBuffer buffer) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class ListScanner implements IGTScanner {
+        final GTInfo info;
+        final List<GTRecord> records;
+
+        ListScanner(GTInfo info, List<GTRecord> records) {
+            this.info = info;
+            this.records = records;
+        }
+
+        @Override
+        public GTInfo getInfo() {
+            return info;
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+
+        @Override
+        public Iterator<GTRecord> iterator() {
+            return records.iterator();
+        }
+    }
+}
@@ -100,6 +100,33 @@ public class GTScanReqSerDerTest extends LocalFileMetadataTestCase {
         this.compareTwoGTInfo(info, sInfo);
     }
 
+    @Test
+    public void testHashAggregationLevel() {
+        GTScanRequest req = new GTScanRequestBuilder().setInfo(UnitTestSupport.basicInfo()).setRanges(null)
+                .setDimensions(new ImmutableBitSet(0, 3)).setAggrGroupBy(new ImmutableBitSet(0, 3))
+                .setAggrMetrics(new ImmutableBitSet(3, 5)).setAggrMetricsFuncs(new String[] { "SUM", "SUM" })
+                .setFilterPushDown(null).setHashAggregation(true).createGTScanRequest();
+
+        // level 1 by default, the flag is not sent
+        Assert.assertEquals(1, KylinConfig.getInstanceFromEnv().getGTScanRequestSerializationLevel());
+        GTScanRequest.serializer.serialize(req, buffer);
+        buffer.flip();
+
+        // a receiver of level 2 still reads a level 1 request
+        System.setProperty("kylin.storage.partition.aggr-hash-enabled", "true");
+        try {
+            Assert.assertEquals(2, KylinConfig.getInstanceFromEnv().getGTScanRequestSerializationLevel());
+            Assert.assertFalse(GTScanRequest.serializer.deserialize(buffer).isHashAggregation());
+
+            buffer.clear();
+            GTScanRequest.serializer.serialize(req, buffer);
+            buffer.flip();
+            Assert.assertTrue(GTScanRequest.serializer.deserialize(buffer).isHashAggregation());
+        } finally {
+            System.clearProperty("kylin.storage.partition.aggr-hash-enabled");
+        }
+    }
+
     private void compareTwoGTInfo(GTInfo info, GTInfo sInfo) {
         Assert.assertEquals(info.tableName, sInfo.tableName);
         Assert.assertEquals(info.primaryKey, sInfo.primaryKey);
@@ -135,6 +135,12 @@ public class AppendTrieDictionary<T> extends CacheDictionary<T> {
         return metadata.maxValueLength;
     }
 
+    @Override
+    protected long estimateMemoryBytes() {
+        // slices are loaded on demand into a cache of its own
+        return 0;
+    }
+
     @Override
     protected byte[] getValueBytesFromIdWithoutCache(int id) {
         throw new UnsupportedOperationException("AppendTrieDictionary can't retrieve value from id");
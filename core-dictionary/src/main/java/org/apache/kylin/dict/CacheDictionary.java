@@ -18,20 +18,32 @@
 
 package org.apache.kylin.dict;
 
-import org.apache.kylin.common.util.Dictionary;
+import java.util.concurrent.atomic.AtomicLong;
 
-import java.lang.ref.SoftReference;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import org.apache.kylin.common.util.Dictionary;
 
 /**
+ * A dictionary that caches its value/id lookups in the process wide {@link DictionaryCache}.
+ *
+ * In front of it, id to value lookups go through a small direct mapped array of the dictionary, which does not
+ * allocate on hit.
  */
 public abstract class CacheDictionary<T> extends Dictionary<T> {
     private static final long serialVersionUID = 1L;
 
-    private transient SoftReference<ConcurrentHashMap> valueToIdCache;
+    // slots of the direct mapped id to value array, a power of 2
+    private static final int MAX_ID_TO_VALUE_SLOTS = 4096;
+    // rough heap cost of a slot besides the value itself
+    private static final int ID_TO_VALUE_SLOT_OVERHEAD = 32;
+
+    // entries of this dictionary in DictionaryCache, 0 means cache disabled
+    private transient long cacheOwnerId;
 
-    private transient SoftReference<Object[]> idToValueCache;
+    private transient IdValue[] idToValueSlots;
+
+    private transient AtomicLong cacheHitCount;
+
+    private transient AtomicLong cacheMissCount;
 
     protected transient int baseId;
 
@@ -44,18 +56,19 @@ public abstract class CacheDictionary<T> extends Dictionary<T> {
     //value --> id
     @Override
     protected final int getIdFromValueImpl(T value, int roundingFlag) {
-        if (this.valueToIdCache != null && roundingFlag == 0) {
-            Map cache = valueToIdCache.get(); // SoftReference to skip cache gracefully when short of memory
-            if (cache != null) {
-                Integer id;
-                id = (Integer) cache.get(value);
-                if (id != null)
-                    return id.intValue();
-                byte[] valueBytes = bytesConvert.convertToBytes(value);
-                id = getIdFromValueBytesWithoutCache(valueBytes, 0, valueBytes.length, roundingFlag);
-                cache.put(value, id);
-                return id;
+        long ownerId = cacheOwnerId;
+        if (ownerId != 0 && roundingFlag == 0) {
+            DictionaryCache cache = DictionaryCache.getInstance();
+            Integer id = (Integer) cache.getLookup(ownerId, true, value);
+            if (id != null) {
+                cacheHitCount.incrementAndGet();
+                return id.intValue();
             }
+            cacheMissCount.incrementAndGet();
+            byte[] valueBytes = bytesConvert.convertToBytes(value);
+            id = getIdFromValueBytesWithoutCache(valueBytes, 0, valueBytes.length, roundingFlag);
+            cache.putLookup(ownerId, true, value, id, valueBytes.length);
+            return id;
         }
         byte[] valueBytes = bytesConvert.convertToBytes(value);
         return getIdFromValueBytesWithoutCache(valueBytes, 0, valueBytes.length, roundingFlag);
@@ -64,17 +77,33 @@ public abstract class CacheDictionary<T> extends Dictionary<T> {
     //id --> value
     @Override
     protected final T getValueFromIdImpl(int id) {
-        if (this.idToValueCache != null) {
-            Object[] cache = idToValueCache.get();
-            if (cache != null) {
-                int seq = calcSeqNoFromId(id);
-                if (cache[seq] != null)
-                    return (T) cache[seq];
+        long ownerId = cacheOwnerId;
+        IdValue[] slots = idToValueSlots;
+        if (ownerId != 0 && slots != null) {
+            // also rejects an invalid id before it is looked up or cached
+            int slot = calcSeqNoFromId(id) & (slots.length - 1);
+            IdValue cached = slots[slot];
+            if (cached != null && cached.id == id) {
+                cacheHitCount.incrementAndGet();
+                return (T) cached.value;
+            }
+
+            DictionaryCache cache = DictionaryCache.getInstance();
+            T value = (T) cache.getLookup(ownerId, false, id);
+            if (value != null) {
+                cacheHitCount.incrementAndGet();
+            } else {
+                cacheMissCount.incrementAndGet();
                 byte[] valueBytes = getValueBytesFromIdWithoutCache(id);
-                T value = bytesConvert.convertFromBytes(valueBytes, 0, valueBytes.length);
-                cache[seq] = value;
-                return value;
+                value = bytesConvert.convertFromBytes(valueBytes, 0, valueBytes.length);
+                if (value != null) {
+                    cache.putLookup(ownerId, false, id, value, valueBytes.length);
+                }
+            }
+            if (value != null) {
+                slots[slot] = new IdValue(id, value);
             }
+            return value;
         }
         byte[] valueBytes = getValueBytesFromIdWithoutCache(id);
         return bytesConvert.convertFromBytes(valueBytes, 0, valueBytes.length);
@@ -89,19 +118,54 @@ public abstract class CacheDictionary<T> extends Dictionary<T> {
     }
 
     public final void enableCache() {
-        if (this.valueToIdCache == null)
-            this.valueToIdCache = new SoftReference<>(new ConcurrentHashMap());
-        if (this.idToValueCache == null)
-            this.idToValueCache = new SoftReference<>(new Object[getSize()]);
+        if (this.cacheOwnerId == 0) {
+            this.cacheHitCount = new AtomicLong();
+            this.cacheMissCount = new AtomicLong();
+            this.idToValueSlots = new IdValue[idToValueSlotCount()];
+            this.cacheOwnerId = DictionaryCache.getInstance().newOwnerId();
+        }
     }
 
     public final void disableCache() {
-        this.valueToIdCache = null;
-        this.idToValueCache = null;
+        // the entries already cached are left to eviction
+        this.cacheOwnerId = 0;
+        this.idToValueSlots = null;
+    }
+
+    public long getCacheHitCount() {
+        return cacheHitCount == null ? 0 : cacheHitCount.get();
+    }
+
+    public long getCacheMissCount() {
+        return cacheMissCount == null ? 0 : cacheMissCount.get();
+    }
+
+    /**
+     * Estimated heap bytes of the dictionary itself, used to weigh it in DictionaryCache.
+     */
+    protected long estimateMemoryBytes() {
+        long slotBytes = (long) idToValueSlotCount() * (ID_TO_VALUE_SLOT_OVERHEAD + getSizeOfValue());
+        return (long) getSize() * (getSizeOfValue() + getSizeOfId()) + slotBytes;
+    }
+
+    private int idToValueSlotCount() {
+        int size = Math.max(1, Math.min(MAX_ID_TO_VALUE_SLOTS, getSize()));
+        int slots = Integer.highestOneBit(size);
+        return slots == size ? slots : slots << 1;
     }
 
     abstract protected byte[] getValueBytesFromIdWithoutCache(int id);
 
     abstract protected int getIdFromValueBytesWithoutCache(byte[] valueBytes, int offset, int length, int roundingFlag);
 
+    private static final class IdValue {
+        final int id;
+        final Object value;
+
+        IdValue(int id, Object value) {
+            this.id = id;
+            this.value = value;
+        }
+    }
+
 }
@@ -0,0 +1,303 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.dict;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.metrics.common.Metrics;
+import org.apache.kylin.common.metrics.common.MetricsConstant;
+import org.apache.kylin.common.metrics.common.MetricsFactory;
+import org.apache.kylin.common.metrics.common.MetricsNameBuilder;
+import org.apache.kylin.common.metrics.common.MetricsVariable;
+import org.apache.kylin.common.util.Dictionary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Maps;
+
+/**
+ * One cache per process for the loaded dictionaries of DictionaryManager and the value/id lookups of
+ * CacheDictionary, bounded by the estimated bytes of its entries and evicted in LRU order. It replaces the
+ * soft references which were cleared all at once under memory pressure.
+ *
+ * Dictionaries and lookups are kept apart, lookups in a smaller share of the budget, so that a burst of
+ * lookups does not evict the dictionaries they are looked up in.
+ */
+public class DictionaryCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DictionaryCache.class);
+
+    // rough heap cost of a lookup entry besides the value itself: key, boxed id and the cache entry
+    private static final int LOOKUP_ENTRY_OVERHEAD = 96;
+    private static final int MIN_DICT_WEIGHT = 1024;
+    // share of the budget for the lookups, the rest for the dictionaries
+    private static final double LOOKUP_BUDGET_RATIO = 0.2;
+
+    private static volatile DictionaryCache instance;
+
+    public static DictionaryCache getInstance() {
+        if (instance == null) {
+            synchronized (DictionaryCache.class) {
+                if (instance == null) {
+                    instance = new DictionaryCache(getConfiguredMaxBytes());
+                    if (isMetricsEnabled()) {
+                        instance.registerMetrics();
+                    }
+                }
+            }
+        }
+        return instance;
+    }
+
+    private static long getConfiguredMaxBytes() {
+        int maxMB = 0;
+        try {
+            KylinConfig config = KylinConfig.getInstanceFromEnv();
+            maxMB = config.getDictionaryCacheMaxMB();
+            if (config.getCachedDictMaxEntrySize() > 0) {
+                logger.warn("kylin.dictionary.max-cache-entry is deprecated and ignored, the dictionary cache is bounded by kylin.dictionary.cache-max-mb");
+            }
+        } catch (RuntimeException e) {
+            // no kylin config in some processes, e.g. coprocessor, fall back to default
+            logger.warn("Failed to read dictionary cache size from config, use default", e);
+        }
+        return maxMB > 0 ? maxMB * 1024L * 1024L : Runtime.getRuntime().maxMemory() / 10;
+    }
+
+    private static boolean isMetricsEnabled() {
+        try {
+            return KylinConfig.getInstanceFromEnv().getQueryMetrics2Enabled();
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    // ============================================================================
+
+    private final long maxBytes;
+    private final Cache<Key, DictionaryInfo> dictCache;
+    private final Cache<Key, Object> lookupCache;
+    private final AtomicLong nextOwnerId = new AtomicLong(1);
+
+    DictionaryCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        long lookupBytes = (long) (maxBytes * LOOKUP_BUDGET_RATIO);
+        this.dictCache = CacheBuilder.newBuilder()//
+                // one segment so that a large dictionary is weighed against the whole budget, which is fine
+                // as dictionaries are got once per load rather than once per value
+                .concurrencyLevel(1)//
+                .maximumWeight(maxBytes - lookupBytes)//
+                .weigher(new Weigher<Key, DictionaryInfo>() {
+                    @Override
+                    public int weigh(Key key, DictionaryInfo value) {
+                        return estimateBytes(value.getDictionaryObject());
+                    }
+                })//
+                .removalListener(new RemovalListener<Key, DictionaryInfo>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<Key, DictionaryInfo> notification) {
+                        Dictionary<String> dict = notification.getValue().getDictionaryObject();
+                        logger.info("Dict with resource path " + notification.getKey().value + " is removed due to "
+                                + notification.getCause() + ", " + describe(dict));
+                    }
+                })//
+                .expireAfterAccess(1, TimeUnit.DAYS)//
+                .recordStats()//
+                .build();
+        this.lookupCache = CacheBuilder.newBuilder()//
+                .maximumWeight(lookupBytes)//
+                .weigher(new Weigher<Key, Object>() {
+                    @Override
+                    public int weigh(Key key, Object value) {
+                        return key.weight;
+                    }
+                })//
+                .expireAfterAccess(1, TimeUnit.DAYS)//
+                .recordStats()//
+                .build();
+        logger.info("Dictionary cache created with max " + maxBytes + " bytes, " + lookupBytes + " of them for lookups");
+    }
+
+    /**
+     * @return an id to tell apart the entries of different dictionaries or dictionary managers
+     */
+    long newOwnerId() {
+        return nextOwnerId.getAndIncrement();
+    }
+
+    Object getLookup(long ownerId, boolean valueToId, Object lookupKey) {
+        return lookupCache.getIfPresent(new Key(ownerId, valueToId ? Key.VALUE_TO_ID : Key.ID_TO_VALUE, lookupKey, 0));
+    }
+
+    void putLookup(long ownerId, boolean valueToId, Object lookupKey, Object result, int valueBytesLength) {
+        int weight = LOOKUP_ENTRY_OVERHEAD + 2 * valueBytesLength;
+        lookupCache.put(new Key(ownerId, valueToId ? Key.VALUE_TO_ID : Key.ID_TO_VALUE, lookupKey, weight), result);
+    }
+
+    DictionaryInfo getDictionaryInfo(long ownerId, String resourcePath, Callable<DictionaryInfo> loader)
+            throws ExecutionException {
+        return dictCache.get(new Key(ownerId, Key.DICT_INFO, resourcePath, 0), loader);
+    }
+
+    void putDictionaryInfo(long ownerId, String resourcePath, DictionaryInfo dictInfo) {
+        dictCache.put(new Key(ownerId, Key.DICT_INFO, resourcePath, 0), dictInfo);
+    }
+
+    void invalidateDictionaryInfo(long ownerId, String resourcePath) {
+        dictCache.invalidate(new Key(ownerId, Key.DICT_INFO, resourcePath, 0));
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long size() {
+        return dictCache.size() + lookupCache.size();
+    }
+
+    public CacheStats stats() {
+        return dictCache.stats();
+    }
+
+    public CacheStats lookupStats() {
+        return lookupCache.stats();
+    }
+
+    /**
+     * The lookup hits and misses of each cached dictionary by resource path, counted since it was loaded. Only the
+     * hit and miss counts are set.
+     */
+    public Map<String, CacheStats> dictionaryStats() {
+        Map<String, CacheStats> result = Maps.newTreeMap();
+        for (Map.Entry<Key, DictionaryInfo> entry : dictCache.asMap().entrySet()) {
+            Dictionary<String> dict = entry.getValue().getDictionaryObject();
+            if (dict instanceof CacheDictionary) {
+                CacheDictionary<?> cacheDict = (CacheDictionary<?>) dict;
+                CacheStats stats = new CacheStats(cacheDict.getCacheHitCount(), cacheDict.getCacheMissCount(), 0, 0, 0, 0);
+                // the same path may be loaded by more than one DictionaryManager
+                String path = (String) entry.getKey().value;
+                CacheStats existing = result.get(path);
+                result.put(path, existing == null ? stats : existing.plus(stats));
+            }
+        }
+        return result;
+    }
+
+    private void registerMetrics() {
+        Metrics metrics = MetricsFactory.getInstance();
+        metrics.addGauge(MetricsNameBuilder.buildMetricName(MetricsNameBuilder.DICTIONARY_CACHE, MetricsConstant.DICTIONARY_LOOKUP_HITS),
+                new MetricsVariable<Long>() {
+                    @Override
+                    public Long getValue() {
+                        long hits = 0;
+                        for (CacheStats stats : dictionaryStats().values()) {
+                            hits += stats.hitCount();
+                        }
+                        return hits;
+                    }
+                });
+        metrics.addGauge(MetricsNameBuilder.buildMetricName(MetricsNameBuilder.DICTIONARY_CACHE, MetricsConstant.DICTIONARY_LOOKUP_MISSES),
+                new MetricsVariable<Long>() {
+                    @Override
+                    public Long getValue() {
+                        long misses = 0;
+                        for (CacheStats stats : dictionaryStats().values()) {
+                            misses += stats.missCount();
+                        }
+                        return misses;
+                    }
+                });
+        metrics.addGauge(MetricsNameBuilder.buildMetricName(MetricsNameBuilder.DICTIONARY_CACHE, MetricsConstant.DICTIONARY_COUNT),
+                new MetricsVariable<Long>() {
+                    @Override
+                    public Long getValue() {
+                        return dictCache.size();
+                    }
+                });
+    }
+
+    public void invalidateAll() {
+        dictCache.invalidateAll();
+        lookupCache.invalidateAll();
+    }
+
+    static int estimateBytes(Dictionary<?> dict) {
+        if (dict instanceof CacheDictionary) {
+            long bytes = ((CacheDictionary<?>) dict).estimateMemoryBytes();
+            return (int) Math.min(Integer.MAX_VALUE, Math.max(MIN_DICT_WEIGHT, bytes));
+        }
+        // the others compute values rather than store them
+        return MIN_DICT_WEIGHT;
+    }
+
+    private static String describe(Dictionary<?> dict) {
+        if (dict instanceof CacheDictionary) {
+            CacheDictionary<?> cacheDict = (CacheDictionary<?>) dict;
+            return "lookup cache hits " + cacheDict.getCacheHitCount() + " misses " + cacheDict.getCacheMissCount();
+        }
+        return "not a cache dictionary";
+    }
+
+    private static class Key {
+        static final byte DICT_INFO = 0;
+        static final byte VALUE_TO_ID = 1;
+        static final byte ID_TO_VALUE = 2;
+
+        final long ownerId;
+        final byte kind;
+        final Object value;
+        final int weight; // not part of equality
+
+        Key(long ownerId, byte kind, Object value, int weight) {
+            this.ownerId = ownerId;
+            this.kind = kind;
+            this.value = value;
+            this.weight = weight;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = (int) (ownerId ^ (ownerId >>> 32));
+            result = 31 * result + kind;
+            result = 31 * result + value.hashCode();
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return ownerId == other.ownerId && kind == other.kind && value.equals(other.value);
+        }
+    }
+}
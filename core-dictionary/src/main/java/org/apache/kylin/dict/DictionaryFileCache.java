@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.dict;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.kylin.common.persistence.RawResource;
+import org.apache.kylin.common.persistence.ResourceStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Copies dictionaries from the resource store to a local directory and memory maps them from there, so that
+ * trie dictionaries are queried in place rather than deserialized into heap. A cache file is named after the
+ * resource path and its timestamp, a changed resource gets a new file and the old one is deleted.
+ */
+public class DictionaryFileCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DictionaryFileCache.class);
+
+    private final File baseDir;
+
+    public DictionaryFileCache(File baseDir) {
+        this.baseDir = baseDir;
+    }
+
+    /**
+     * @return the dictionary mapped from local file, or null if the resource does not exist
+     */
+    public DictionaryInfo load(ResourceStore store, String resourcePath) throws IOException {
+        long timestamp = store.getResourceTimestamp(resourcePath);
+        File file = getCacheFile(resourcePath, timestamp);
+        if (timestamp == 0 || !file.exists()) {
+            RawResource res = store.getResource(resourcePath);
+            if (res == null) {
+                return null;
+            }
+            timestamp = res.timestamp;
+            file = getCacheFile(resourcePath, timestamp);
+            download(res, file);
+        }
+        return map(file, timestamp);
+    }
+
+    private DictionaryInfo map(File file, long timestamp) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            DictionaryInfo info = DictionaryInfoSerializer.FULL_SERIALIZER.deserialize(buffer);
+            info.setLastModified(timestamp);
+            return info;
+        }
+    }
+
+    private void download(RawResource res, File file) throws IOException {
+        File dir = file.getParentFile();
+        if (!dir.exists() && !dir.mkdirs() && !dir.exists()) {
+            IOUtils.closeQuietly(res.inputStream);
+            throw new IOException("Failed to create dictionary cache dir " + dir);
+        }
+
+        // write to a temp file then rename, so that a concurrent reader never sees a partial file
+        File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            IOUtils.copyLarge(res.inputStream, out);
+        } finally {
+            IOUtils.closeQuietly(res.inputStream);
+        }
+        if (!tmp.renameTo(file) && !file.exists()) {
+            tmp.delete();
+            throw new IOException("Failed to rename " + tmp + " to " + file);
+        }
+        tmp.delete();
+        logger.info("Dictionary cached to local file " + file + ", " + file.length() + " bytes");
+
+        deleteOtherVersions(file);
+    }
+
+    private void deleteOtherVersions(File file) {
+        String prefix = getFileNamePrefix(file.getName());
+        File[] siblings = file.getParentFile().listFiles();
+        if (siblings == null) {
+            return;
+        }
+        for (File sibling : siblings) {
+            if (!sibling.equals(file) && !sibling.getName().endsWith(".tmp")
+                    && getFileNamePrefix(sibling.getName()).equals(prefix)) {
+                logger.info("Deleting outdated dictionary cache file " + sibling);
+                sibling.delete();
+            }
+        }
+    }
+
+    private String getFileNamePrefix(String fileName) {
+        int cut = fileName.lastIndexOf('.');
+        return cut < 0 ? fileName : fileName.substring(0, cut);
+    }
+
+    File getCacheFile(String resourcePath, long timestamp) {
+        return new File(baseDir, resourcePath + "." + timestamp);
+    }
+}
@@ -21,8 +21,10 @@ package org.apache.kylin.dict;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import org.apache.kylin.common.persistence.Serializer;
+import org.apache.kylin.common.util.ByteBufferBackedInputStream;
 import org.apache.kylin.common.util.ClassUtil;
 import org.apache.kylin.common.util.Dictionary;
 import org.apache.kylin.common.util.JsonUtil;
@@ -57,6 +59,18 @@ public class DictionaryInfoSerializer implements Serializer<DictionaryInfo> {
 
     @Override
     public DictionaryInfo deserialize(DataInputStream in) throws IOException {
+        return deserialize(in, null);
+    }
+
+    /**
+     * Deserializes from a buffer, e.g. a memory mapped file. A dictionary implementing IMappableDictionary
+     * is read in place, the others are copied out as usual.
+     */
+    public DictionaryInfo deserialize(ByteBuffer in) throws IOException {
+        return deserialize(new DataInputStream(new ByteBufferBackedInputStream(in)), in);
+    }
+
+    private DictionaryInfo deserialize(DataInputStream in, ByteBuffer buffer) throws IOException {
         String json = in.readUTF();
         DictionaryInfo obj = JsonUtil.readValue(json, DictionaryInfo.class);
 
@@ -71,7 +85,10 @@ public class DictionaryInfoSerializer implements Serializer<DictionaryInfo> {
             } catch (ClassNotFoundException e) {
                 throw new RuntimeException(e);
             }
-            dict.readFields(in);
+            if (buffer != null && dict instanceof IMappableDictionary)
+                ((IMappableDictionary) dict).readFields(buffer);
+            else
+                dict.readFields(in);
             obj.setDictionaryObject(dict);
         }
         return obj;
@@ -21,14 +21,16 @@ package org.apache.kylin.dict;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.util.List;
 import java.util.NavigableSet;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.common.util.ClassUtil;
@@ -42,11 +44,6 @@ import org.apache.kylin.source.IReadableTable.TableSignature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import com.google.common.cache.RemovalListener;
-import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.Lists;
 
 public class DictionaryManager {
@@ -82,30 +79,16 @@ public class DictionaryManager {
     // ============================================================================
 
     private KylinConfig config;
-    private LoadingCache<String, DictionaryInfo> dictCache; // resource
+    private long dictCacheOwnerId; // loaded dictionaries are kept in DictionaryCache
+    private DictionaryFileCache fileCache; // null if dictionaries are not mapped from local files
 
     private DictionaryManager(KylinConfig config) {
         this.config = config;
-        this.dictCache = CacheBuilder.newBuilder()//
-                .softValues()//
-                .removalListener(new RemovalListener<String, DictionaryInfo>() {
-                    @Override
-                    public void onRemoval(RemovalNotification<String, DictionaryInfo> notification) {
-                        DictionaryManager.logger.info("Dict with resource path " + notification.getKey() + " is removed due to " + notification.getCause());
-                    }
-                })//
-                .maximumSize(config.getCachedDictMaxEntrySize())//
-                .expireAfterWrite(1, TimeUnit.DAYS).build(new CacheLoader<String, DictionaryInfo>() {
-                    @Override
-                    public DictionaryInfo load(String key) throws Exception {
-                        DictionaryInfo dictInfo = DictionaryManager.this.load(key, true);
-                        if (dictInfo == null) {
-                            return NONE_INDICATOR;
-                        } else {
-                            return dictInfo;
-                        }
-                    }
-                });
+        this.dictCacheOwnerId = DictionaryCache.getInstance().newOwnerId();
+        String localCacheDir = config.getDictionaryLocalCacheDir();
+        if (!StringUtils.isEmpty(localCacheDir)) {
+            this.fileCache = new DictionaryFileCache(new File(localCacheDir));
+        }
     }
 
     public Dictionary<String> getDictionary(String resourcePath) throws IOException {
@@ -115,7 +98,18 @@ public class DictionaryManager {
 
     public DictionaryInfo getDictionaryInfo(final String resourcePath) throws IOException {
         try {
-            DictionaryInfo result = dictCache.get(resourcePath);
+            DictionaryInfo result = DictionaryCache.getInstance().getDictionaryInfo(dictCacheOwnerId, resourcePath,
+                    new Callable<DictionaryInfo>() {
+                        @Override
+                        public DictionaryInfo call() throws Exception {
+                            DictionaryInfo dictInfo = load(resourcePath, true);
+                            if (dictInfo == null) {
+                                return NONE_INDICATOR;
+                            } else {
+                                return dictInfo;
+                            }
+                        }
+                    });
             if (result == NONE_INDICATOR) {
                 return null;
             } else {
@@ -205,7 +199,7 @@ public class DictionaryManager {
     private DictionaryInfo saveNewDict(DictionaryInfo newDictInfo) throws IOException {
 
         save(newDictInfo);
-        dictCache.put(newDictInfo.getResourcePath(), newDictInfo);
+        DictionaryCache.getInstance().putDictionaryInfo(dictCacheOwnerId, newDictInfo.getResourcePath(), newDictInfo);
 
         return newDictInfo;
     }
@@ -378,7 +372,7 @@ public class DictionaryManager {
         logger.info("Remvoing dict: " + resourcePath);
         ResourceStore store = DataModelManager.getInstance(config).getStore();
         store.deleteResource(resourcePath);
-        dictCache.invalidate(resourcePath);
+        DictionaryCache.getInstance().invalidateDictionaryInfo(dictCacheOwnerId, resourcePath);
     }
 
     public void removeDictionaries(String srcTable, String srcCol) throws IOException {
@@ -415,6 +409,13 @@ public class DictionaryManager {
         ResourceStore store = DataModelManager.getInstance(config).getStore();
 
         logger.info("DictionaryManager(" + System.identityHashCode(this) + ") loading DictionaryInfo(loadDictObj:" + loadDictObj + ") at " + resourcePath);
+        if (loadDictObj && fileCache != null) {
+            try {
+                return fileCache.load(store, resourcePath);
+            } catch (IOException e) {
+                logger.warn("Failed to map dictionary from local file cache, read it from store instead", e);
+            }
+        }
         DictionaryInfo info = store.getResource(resourcePath, DictionaryInfo.class, loadDictObj ? DictionaryInfoSerializer.FULL_SERIALIZER : DictionaryInfoSerializer.INFO_SERIALIZER);
         return info;
     }
@@ -0,0 +1,33 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.dict;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A dictionary that can be queried in place on its serialized form, e.g. a memory mapped file.
+ */
+public interface IMappableDictionary {
+
+    /**
+     * Reads the dictionary written by Dictionary.write() from the position of the buffer, and leaves the position
+     * at its end. The dictionary keeps referring to the buffer content rather than copying it.
+     */
+    void readFields(ByteBuffer in);
+}
@@ -27,6 +27,7 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.PrintStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import org.apache.kylin.common.util.Bytes;
@@ -52,7 +53,7 @@ import com.google.common.base.Preconditions;
  * @author yangli9
  */
 @SuppressWarnings({"rawtypes", "unchecked"})
-public class TrieDictionary<T> extends CacheDictionary<T> {
+public class TrieDictionary<T> extends CacheDictionary<T> implements IMappableDictionary {
     private static final long serialVersionUID = 1L;
 
     public static final byte[] MAGIC = new byte[]{0x54, 0x72, 0x69, 0x65, 0x44, 0x69, 0x63, 0x74}; // "TrieDict"
@@ -65,6 +66,9 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
 
     private byte[] trieBytes;
 
+    // a slice of a memory mapped file, set instead of trieBytes; always position 0 and limit the trie length
+    transient private ByteBuffer mappedTrie;
+
     // non-persistent part
     transient private int headSize;
     @SuppressWarnings("unused")
@@ -88,12 +92,28 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
 
     private void init(byte[] trieBytes) {
         this.trieBytes = trieBytes;
-        if (BytesUtil.compareBytes(MAGIC, 0, trieBytes, 0, MAGIC.length) != 0)
+        this.mappedTrie = null;
+        init();
+    }
+
+    private void init(ByteBuffer mappedTrie) {
+        this.trieBytes = null;
+        this.mappedTrie = mappedTrie;
+        init();
+    }
+
+    private void init() {
+        byte[] magic = new byte[MAGIC_SIZE_I];
+        copyBytes(0, magic, 0, MAGIC_SIZE_I);
+        if (BytesUtil.compareBytes(MAGIC, 0, magic, 0, MAGIC.length) != 0)
             throw new IllegalArgumentException("Wrong file type (magic does not match)");
 
         try {
+            // copy the head out, the body is read in place
+            byte[] head = new byte[(int) readLong(MAGIC_SIZE_I, 2)];
+            copyBytes(0, head, 0, head.length);
             DataInputStream headIn = new DataInputStream(//
-                    new ByteArrayInputStream(trieBytes, MAGIC_SIZE_I, trieBytes.length - MAGIC_SIZE_I));
+                    new ByteArrayInputStream(head, MAGIC_SIZE_I, head.length - MAGIC_SIZE_I));
             this.headSize = headIn.readShort();
             this.bodyLen = headIn.readInt();
             this.sizeChildOffset = headIn.read();
@@ -109,7 +129,7 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
             if (converterName.isEmpty() == false)
                 setConverterByName(converterName);
 
-            this.nValues = BytesUtil.readUnsigned(trieBytes, headSize + sizeChildOffset, sizeNoValuesBeneath);
+            this.nValues = readUnsigned(headSize + sizeChildOffset, sizeNoValuesBeneath);
             this.sizeOfId = BytesUtil.sizeForValue(baseId + nValues + 1L); // note baseId could raise 1 byte in ID space, +1 to reserve all 0xFF for NULL case
             this.childOffsetMask = ~((long) (BIT_IS_LAST_CHILD | BIT_IS_END_OF_VALUE) << ((sizeChildOffset - 1) * 8));
             this.firstByteOffset = sizeChildOffset + sizeNoValuesBeneath + 1; // the offset from begin of node to its first value byte
@@ -146,6 +166,11 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
         return maxValueLength;
     }
 
+    @Override
+    protected long estimateMemoryBytes() {
+        // a mapped trie lives in page cache
+        return trieBytes != null ? trieBytes.length : 0;
+    }
 
     @Override
     protected int getIdFromValueBytesWithoutCache(byte[] value, int offset, int len, int roundingFlag) {
@@ -177,12 +202,13 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
             // match the current node, note [0] of node's value has been matched
             // when this node is selected by its parent
             int p = n + firstByteOffset; // start of node's value
-            int end = p + BytesUtil.readUnsigned(trieBytes, p - 1, 1); // end of node's value
+            int end = p + readUnsigned(p - 1, 1); // end of node's value
             for (p++; p < end && o < inpEnd; p++, o++) { // note matching start from [1]
-                if (trieBytes[p] != inp[o]) {
-                    int comp = BytesUtil.compareByteUnsigned(trieBytes[p], inp[o]);
+                byte b = byteAt(p);
+                if (b != inp[o]) {
+                    int comp = BytesUtil.compareByteUnsigned(b, inp[o]);
                     if (comp < 0) {
-                        seq += BytesUtil.readUnsigned(trieBytes, n + sizeChildOffset, sizeNoValuesBeneath);
+                        seq += readUnsigned(n + sizeChildOffset, sizeNoValuesBeneath);
                     }
                     return roundSeqNo(roundingFlag, seq - 1, -1, seq); // mismatch
                 }
@@ -204,16 +230,16 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
             int comp;
             while (true) {
                 p = c + firstByteOffset;
-                comp = BytesUtil.compareByteUnsigned(trieBytes[p], inpByte);
+                comp = BytesUtil.compareByteUnsigned(byteAt(p), inpByte);
                 if (comp == 0) { // continue in the matching child, reset n and loop again
                     n = c;
                     o++;
                     break;
                 } else if (comp < 0) { // try next child
-                    seq += BytesUtil.readUnsigned(trieBytes, c + sizeChildOffset, sizeNoValuesBeneath);
+                    seq += readUnsigned(c + sizeChildOffset, sizeNoValuesBeneath);
                     if (checkFlag(c, BIT_IS_LAST_CHILD))
                         return roundSeqNo(roundingFlag, seq - 1, -1, seq); // no child can match the next byte of input
-                    c = p + BytesUtil.readUnsigned(trieBytes, p - 1, 1);
+                    c = p + readUnsigned(p - 1, 1);
                 } else { // children are ordered by their first value byte
                     return roundSeqNo(roundingFlag, seq - 1, -1, seq); // no child can match the next byte of input
                 }
@@ -222,11 +248,55 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
     }
 
     private int getChildOffset(int n) {
-        long offset = headSize + (BytesUtil.readLong(trieBytes, n, sizeChildOffset) & childOffsetMask);
-        assert offset < trieBytes.length;
+        long offset = headSize + (readLong(n, sizeChildOffset) & childOffsetMask);
+        assert offset < getTrieLength();
         return (int) offset;
     }
 
+    // heap tries read the byte[] directly, only mapped tries go through the ByteBuffer
+
+    private byte byteAt(int offset) {
+        return trieBytes != null ? trieBytes[offset] : mappedTrie.get(offset);
+    }
+
+    private int readUnsigned(int offset, int size) {
+        if (trieBytes != null)
+            return BytesUtil.readUnsigned(trieBytes, offset, size);
+
+        int integer = 0;
+        for (int i = offset, n = offset + size; i < n; i++) {
+            integer <<= 8;
+            integer |= (int) mappedTrie.get(i) & 0xFF;
+        }
+        return integer;
+    }
+
+    private long readLong(int offset, int size) {
+        if (trieBytes != null)
+            return BytesUtil.readLong(trieBytes, offset, size);
+
+        long integer = 0;
+        for (int i = offset, n = offset + size; i < n; i++) {
+            integer <<= 8;
+            integer |= (long) mappedTrie.get(i) & 0xFF;
+        }
+        return integer;
+    }
+
+    private void copyBytes(int offset, byte[] dst, int dstOffset, int len) {
+        if (trieBytes != null) {
+            System.arraycopy(trieBytes, offset, dst, dstOffset, len);
+        } else {
+            ByteBuffer dup = mappedTrie.duplicate();
+            dup.position(offset);
+            dup.get(dst, dstOffset, len);
+        }
+    }
+
+    private int getTrieLength() {
+        return trieBytes != null ? trieBytes.length : mappedTrie.limit();
+    }
+
     private int roundSeqNo(int roundingFlag, int i, int j, int k) {
         if (roundingFlag == 0)
             return j;
@@ -269,8 +339,8 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
         while (true) {
             // write current node value
             int p = n + firstByteOffset;
-            int len = BytesUtil.readUnsigned(trieBytes, p - 1, 1);
-            System.arraycopy(trieBytes, p, returnValue, o, len);
+            int len = readUnsigned(p - 1, 1);
+            copyBytes(p, returnValue, o, len);
             o += len;
 
             // if the value is ended
@@ -287,7 +357,7 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
                 return -1; // no child? corrupted dictionary!
             int nValuesBeneath;
             while (true) {
-                nValuesBeneath = BytesUtil.readUnsigned(trieBytes, c + sizeChildOffset, sizeNoValuesBeneath);
+                nValuesBeneath = readUnsigned(c + sizeChildOffset, sizeNoValuesBeneath);
                 if (seq - nValuesBeneath < 0) { // value is under this child, reset n and loop again
                     n = c;
                     break;
@@ -296,14 +366,14 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
                     if (checkFlag(c, BIT_IS_LAST_CHILD))
                         return -1; // no more child? corrupted dictionary!
                     p = c + firstByteOffset;
-                    c = p + BytesUtil.readUnsigned(trieBytes, p - 1, 1);
+                    c = p + readUnsigned(p - 1, 1);
                 }
             }
         }
     }
 
     private boolean checkFlag(int offset, int bit) {
-        return (trieBytes[offset] & bit) > 0;
+        return (byteAt(offset) & bit) > 0;
     }
 
     private int calcIdFromSeqNo(int seq) {
@@ -315,7 +385,16 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
 
     @Override
     public void write(DataOutput out) throws IOException {
-        out.write(trieBytes);
+        out.write(getTrieBytes());
+    }
+
+    private byte[] getTrieBytes() {
+        if (trieBytes != null)
+            return trieBytes;
+
+        byte[] bytes = new byte[mappedTrie.limit()];
+        copyBytes(0, bytes, 0, bytes.length);
+        return bytes;
     }
 
     @Override
@@ -339,7 +418,28 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
         init(all);
     }
 
+    @Override
+    public void readFields(ByteBuffer in) {
+        int start = in.position();
+        int headSize = in.getShort(start + MAGIC_SIZE_I);
+        int bodyLen = in.getInt(start + MAGIC_SIZE_I + 2);
+
+        ByteBuffer dup = in.duplicate();
+        dup.limit(start + headSize + bodyLen);
+        in.position(start + headSize + bodyLen);
+
+        if (dup.isDirect()) {
+            init(dup.slice());
+        } else {
+            // a heap buffer gains nothing from being read in place
+            byte[] all = new byte[headSize + bodyLen];
+            dup.get(all);
+            init(all);
+        }
+    }
+
     private void writeObject(java.io.ObjectOutputStream stream) throws IOException {
+        byte[] trieBytes = getTrieBytes();
         stream.writeInt(trieBytes.length);
         stream.write(trieBytes);
     }
@@ -367,7 +467,7 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(trieBytes);
+        return Arrays.hashCode(getTrieBytes());
     }
 
     @Override
@@ -377,7 +477,7 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
             return false;
         }
         TrieDictionary that = (TrieDictionary) o;
-        return Arrays.equals(this.trieBytes, that.trieBytes);
+        return Arrays.equals(this.getTrieBytes(), that.getTrieBytes());
     }
 
     @Override
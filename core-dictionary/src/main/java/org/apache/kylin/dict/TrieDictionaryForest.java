@@ -19,15 +19,18 @@ package org.apache.kylin.dict;
 
 import java.io.ByteArrayOutputStream;
 import java.io.DataInput;
+import java.io.DataInputStream;
 import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.ByteBufferBackedInputStream;
 import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.common.util.BytesUtil;
 import org.apache.kylin.common.util.ClassUtil;
@@ -40,7 +43,7 @@ import org.apache.kylin.common.util.Dictionary;
  * <p>
  * Created by xiefan on 16-10-26.
  */
-public class TrieDictionaryForest<T> extends CacheDictionary<T> {
+public class TrieDictionaryForest<T> extends CacheDictionary<T> implements IMappableDictionary {
     private static final long serialVersionUID = 1L;
 
     private ArrayList<TrieDictionary<T>> trees;
@@ -97,6 +100,15 @@ public class TrieDictionaryForest<T> extends CacheDictionary<T> {
         return this.sizeOfValue;
     }
 
+    @Override
+    protected long estimateMemoryBytes() {
+        long bytes = 0;
+        for (TrieDictionary<T> tree : trees) {
+            bytes += tree.estimateMemoryBytes();
+        }
+        return bytes;
+    }
+
     @Override
     protected int getIdFromValueBytesWithoutCache(byte[] value, int offset, int len, int roundingFlag) throws IllegalArgumentException {
         int index;
@@ -204,6 +216,22 @@ public class TrieDictionaryForest<T> extends CacheDictionary<T> {
 
     @Override
     public void readFields(DataInput in) throws IOException {
+        readFields(in, null);
+    }
+
+    @Override
+    public void readFields(ByteBuffer in) {
+        try {
+            readFields(new DataInputStream(new ByteBufferBackedInputStream(in)), in);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @param treeBuffer if not null, the trees are read in place from it, the same content as in
+     */
+    private void readFields(DataInput in, ByteBuffer treeBuffer) throws IOException {
         try {
             @SuppressWarnings("unused")
             int headSize = in.readInt();
@@ -231,7 +259,10 @@ public class TrieDictionaryForest<T> extends CacheDictionary<T> {
             ArrayList<TrieDictionary<T>> trees = new ArrayList<>();
             for (int i = 0; i < treeSize; i++) {
                 TrieDictionary<T> dict = new TrieDictionary<>();
-                dict.readFields(in);
+                if (treeBuffer != null)
+                    dict.readFields(treeBuffer);
+                else
+                    dict.readFields(in);
                 trees.add(dict);
             }
             init(trees, valueDivide, accuOffset, bytesConverter, baseId);
@@ -67,6 +67,11 @@ public class LookupStringTable extends LookupTable<String> {
 
     @Override
     protected void init() throws IOException {
+        initColumnTypes();
+        super.init();
+    }
+
+    protected void initColumnTypes() {
         ColumnDesc[] cols = tableDesc.getColumns();
         colIsDateTime = new boolean[cols.length];
         colIsNumber = new boolean[cols.length];
@@ -75,8 +80,6 @@ public class LookupStringTable extends LookupTable<String> {
             colIsDateTime[i] = t.isDateTimeFamily();
             colIsNumber[i] = t.isNumberFamily();
         }
-
-        super.init();
     }
 
     @Override
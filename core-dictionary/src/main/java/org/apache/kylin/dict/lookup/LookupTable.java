@@ -34,6 +34,8 @@ import org.apache.kylin.metadata.model.TableDesc;
 import org.apache.kylin.source.IReadableTable;
 import org.apache.kylin.source.IReadableTable.TableReader;
 
+import com.google.common.base.Predicate;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 /**
@@ -146,6 +148,41 @@ abstract public class LookupTable<T> {
         return result;
     }
 
+    /**
+     * Finds the rows whose cell at colIdx is one of the values, and returns the cells at returnIdx of them.
+     */
+    public Collection<T[]> findRows(int colIdx, Collection<T> values, int[] returnIdx) {
+        List<T[]> result = Lists.newArrayList();
+        for (T[] row : getAllRows()) {
+            if (values.contains(row[colIdx])) {
+                result.add(project(row, returnIdx));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the rows whose cell at colIdx satisfies the condition, and returns the cells at returnIdx of them.
+     */
+    public Collection<T[]> findRows(int colIdx, Predicate<T> condition, int[] returnIdx) {
+        List<T[]> result = Lists.newArrayList();
+        for (T[] row : getAllRows()) {
+            if (condition.apply(row[colIdx])) {
+                result.add(project(row, returnIdx));
+            }
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected T[] project(T[] row, int[] idx) {
+        T[] result = (T[]) java.lang.reflect.Array.newInstance(getType(), idx.length);
+        for (int i = 0; i < idx.length; i++) {
+            result[i] = row[idx[i]];
+        }
+        return result;
+    }
+
     private boolean between(T beginValue, T v, T endValue, Comparator<T> comp) {
         return (beginValue == null || comp.compare(beginValue, v) <= 0) && (endValue == null || comp.compare(v, endValue) <= 0);
     }
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.dict.lookup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.dict.TrieDictionary;
+
+/**
+ * A column of a columnar snapshot: a dictionary of the column values, and the id of each row in fixed width.
+ *
+ * On disk a column is one block: the dictionary, the id width, then the ids. A column read from disk keeps the block
+ * as it is, and deserializes the dictionary when the column is first accessed, so that columns never used by queries
+ * cost only their bytes.
+ */
+class SnapshotColumn {
+
+    private final int rowCount;
+    private byte[] block;
+    private volatile Dictionary<String> dict;
+    private int sizeOfId;
+    private int idsOffset;
+
+    SnapshotColumn(Dictionary<String> dict, int[] ids) throws IOException {
+        this.rowCount = ids.length;
+        this.sizeOfId = dict.getSizeOfId();
+
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buf);
+        dict.write(out);
+        out.writeByte(sizeOfId);
+        out.flush();
+
+        this.idsOffset = buf.size();
+        byte[] bytes = new byte[idsOffset + rowCount * sizeOfId];
+        System.arraycopy(buf.toByteArray(), 0, bytes, 0, idsOffset);
+        for (int i = 0; i < rowCount; i++) {
+            BytesUtil.writeUnsigned(ids[i], bytes, idsOffset + i * sizeOfId, sizeOfId);
+        }
+        this.block = bytes;
+        this.dict = dict;
+    }
+
+    private SnapshotColumn(byte[] block, int rowCount) {
+        this.rowCount = rowCount;
+        this.block = block;
+    }
+
+    static SnapshotColumn read(DataInput in, int rowCount) throws IOException {
+        byte[] block = new byte[in.readInt()];
+        in.readFully(block);
+        return new SnapshotColumn(block, rowCount);
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeInt(block.length);
+        out.write(block);
+    }
+
+    Dictionary<String> getDictionary() {
+        Dictionary<String> result = dict;
+        if (result == null) {
+            result = decode();
+        }
+        return result;
+    }
+
+    int getId(int row) {
+        getDictionary();
+        return BytesUtil.readUnsigned(block, idsOffset + row * sizeOfId, sizeOfId);
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    private synchronized Dictionary<String> decode() {
+        if (dict != null) {
+            return dict;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(block));
+            TrieDictionary<String> result = new TrieDictionary<String>();
+            result.readFields(in);
+            sizeOfId = in.readUnsignedByte();
+            idsOffset = block.length - in.available();
+            dict = result;
+            return result;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to decode snapshot column", e);
+        }
+    }
+}
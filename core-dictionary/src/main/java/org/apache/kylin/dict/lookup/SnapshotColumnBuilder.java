@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.dict.lookup;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.dict.StringBytesConverter;
+import org.apache.kylin.dict.TrieDictionaryBuilder;
+import org.apache.kylin.metadata.model.TableDesc;
+import org.apache.kylin.source.IReadableTable;
+import org.apache.kylin.source.IReadableTable.TableReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Builds the columns of a columnar snapshot, reading the source table only once.
+ *
+ * The rows are spilled to a local file as they are read. Then the columns are split among a few threads, each of
+ * which builds the dictionaries of its columns from the spill file, and encodes the ids of its columns in a second
+ * read of the spill file.
+ */
+class SnapshotColumnBuilder {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotColumnBuilder.class);
+
+    private final TableDesc tableDesc;
+    private final int threads;
+
+    private File spillFile;
+    private int rowCount;
+
+    SnapshotColumnBuilder(TableDesc tableDesc, int threads) {
+        this.tableDesc = tableDesc;
+        this.threads = Math.max(1, threads);
+    }
+
+    SnapshotColumn[] build(IReadableTable table) throws IOException {
+        int columnCount = tableDesc.getColumnCount();
+        spillFile = File.createTempFile("kylin_snapshot_", ".spill");
+        try {
+            long start = System.currentTimeMillis();
+            spill(table, columnCount);
+            logger.info("Spilled {} rows of {} in {} ms", rowCount, tableDesc.getIdentity(), System.currentTimeMillis() - start);
+
+            SnapshotColumn[] columns = new SnapshotColumn[columnCount];
+            if (rowCount > 0) {
+                buildColumns(columns);
+            }
+            logger.info("Built {} snapshot columns of {} in {} ms", columnCount, tableDesc.getIdentity(), System.currentTimeMillis() - start);
+            return columns;
+        } finally {
+            if (!spillFile.delete()) {
+                spillFile.deleteOnExit();
+            }
+        }
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    private void spill(IReadableTable table, int columnCount) throws IOException {
+        int maxIndex = tableDesc.getMaxColumnIndex();
+        TableReader reader = table.getReader();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile)));
+        try {
+            while (reader.next()) {
+                String[] row = reader.getRow();
+                if (row.length <= maxIndex) {
+                    throw new IllegalStateException("Bad hive table row, " + tableDesc + " expect " + (maxIndex + 1) + " columns, but got " + Arrays.toString(row));
+                }
+                for (int c = 0; c < columnCount; c++) {
+                    writeCell(out, row[c]);
+                }
+                rowCount++;
+            }
+        } finally {
+            IOUtils.closeQuietly(out);
+            IOUtils.closeQuietly(reader);
+        }
+    }
+
+    // length and UTF-8 bytes, writeUTF() is limited to 64KB; -1 for null
+    static void writeCell(DataOutputStream out, String cell) throws IOException {
+        if (cell == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = Bytes.toBytes(cell);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readCell(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return Bytes.toString(bytes);
+    }
+
+    private void buildColumns(SnapshotColumn[] columns) throws IOException {
+        int taskCount = Math.min(threads, columns.length);
+        ExecutorService executor = Executors.newFixedThreadPool(taskCount);
+        try {
+            List<Future<?>> futures = Lists.newArrayListWithCapacity(taskCount);
+            for (int t = 0; t < taskCount; t++) {
+                futures.add(executor.submit(new ColumnTask(columns, t, taskCount)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted when building snapshot of " + tableDesc.getIdentity(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IllegalStateException("Failed to build snapshot of " + tableDesc.getIdentity(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Builds the columns c, c + step, c + 2 * step...
+     */
+    private class ColumnTask implements Callable<Void> {
+
+        private final SnapshotColumn[] columns;
+        private final int first;
+        private final int step;
+
+        ColumnTask(SnapshotColumn[] columns, int first, int step) {
+            this.columns = columns;
+            this.first = first;
+            this.step = step;
+        }
+
+        @Override
+        public Void call() throws Exception {
+            int columnCount = columns.length;
+
+            @SuppressWarnings("unchecked")
+            TrieDictionaryBuilder<String>[] builders = new TrieDictionaryBuilder[columnCount];
+            for (int c = first; c < columnCount; c += step) {
+                builders[c] = new TrieDictionaryBuilder<String>(new StringBytesConverter());
+            }
+            DataInputStream in = openSpill();
+            try {
+                for (int r = 0; r < rowCount; r++) {
+                    for (int c = 0; c < columnCount; c++) {
+                        String cell = readCell(in);
+                        if (cell != null && builders[c] != null) {
+                            builders[c].addValue(cell);
+                        }
+                    }
+                }
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
+
+            @SuppressWarnings("unchecked")
+            Dictionary<String>[] dicts = new Dictionary[columnCount];
+            int[][] ids = new int[columnCount][];
+            for (int c = first; c < columnCount; c += step) {
+                dicts[c] = builders[c].build(0);
+                builders[c] = null;
+                ids[c] = new int[rowCount];
+            }
+
+            in = openSpill();
+            try {
+                for (int r = 0; r < rowCount; r++) {
+                    for (int c = 0; c < columnCount; c++) {
+                        String cell = readCell(in);
+                        if (dicts[c] != null) {
+                            ids[c][r] = dicts[c].getIdFromValue(cell);
+                        }
+                    }
+                }
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
+
+            for (int c = first; c < columnCount; c += step) {
+                columns[c] = new SnapshotColumn(dicts[c], ids[c]);
+            }
+            return null;
+        }
+
+        private DataInputStream openSpill() throws IOException {
+            return new DataInputStream(new BufferedInputStream(new FileInputStream(spillFile)));
+        }
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.dict.lookup;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.kylin.common.util.DateFormat;
+import org.apache.kylin.common.util.Dictionary;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Indexes of a snapshot table on the dictionary ids of its cells, without materializing the rows as strings.
+ *
+ * The index of a column is built on first use: the rows sorted by their ids in the column, so that the rows of a
+ * value, or of a range of ids, are found by binary search. Cells of date time columns are seen as millis, the same
+ * as {@link LookupStringTable}, so the ids of equal millis are unified into one.
+ *
+ * The indexes are kept with the snapshot, and shared by all lookup tables on it.
+ */
+public class SnapshotLookupIndex {
+
+    static final int NOT_FOUND = Integer.MIN_VALUE;
+
+    private final SnapshotTable snapshot;
+    private final boolean[] colIsDateTime;
+    private final ColumnIndex[] columnIndexes;
+    private final Set<String> checkedKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    SnapshotLookupIndex(SnapshotTable snapshot, boolean[] colIsDateTime) {
+        this.snapshot = snapshot;
+        this.colIsDateTime = colIsDateTime;
+        this.columnIndexes = new ColumnIndex[snapshot.getColumnCount()];
+    }
+
+    public int getRowCount() {
+        return snapshot.getRowCount();
+    }
+
+    public String getValue(int row, int col) {
+        return toValue(col, snapshot.getCellId(row, col));
+    }
+
+    public String[] getRow(int row) {
+        String[] result = new String[columnIndexes.length];
+        for (int c = 0; c < result.length; c++) {
+            result[c] = getValue(row, c);
+        }
+        return result;
+    }
+
+    /** @return the id of value in column, or NOT_FOUND; values of date time columns are in millis */
+    int idOf(int col, String value) {
+        if (getRowCount() == 0) {
+            return NOT_FOUND;
+        }
+        if (isDateTime(col) && value != null) {
+            Integer id = columnIndex(col).millisIds.get(value);
+            return id == null ? NOT_FOUND : id;
+        }
+        try {
+            return snapshot.getDictionary(col).getIdFromValue(value);
+        } catch (IllegalArgumentException e) {
+            return NOT_FOUND;
+        }
+    }
+
+    /** @return the first id not less than value in the order of dictionary, or NOT_FOUND */
+    int ceilingIdOf(int col, String value) {
+        if (getRowCount() == 0) {
+            return NOT_FOUND;
+        }
+        try {
+            return snapshot.getDictionary(col).getIdFromValue(value, 1);
+        } catch (IllegalArgumentException e) {
+            return NOT_FOUND;
+        }
+    }
+
+    /** @return the last id not greater than value in the order of dictionary, or NOT_FOUND */
+    int floorIdOf(int col, String value) {
+        if (getRowCount() == 0) {
+            return NOT_FOUND;
+        }
+        try {
+            return snapshot.getDictionary(col).getIdFromValue(value, -1);
+        } catch (IllegalArgumentException e) {
+            return NOT_FOUND;
+        }
+    }
+
+    /** @return the row of given key, or -1 if not found */
+    public int findRow(int[] keyCols, String[] key) {
+        if (getRowCount() == 0) {
+            return -1;
+        }
+
+        int[] keyIds = new int[keyCols.length];
+        for (int i = 0; i < keyCols.length; i++) {
+            keyIds[i] = idOf(keyCols[i], key[i]);
+            if (keyIds[i] == NOT_FOUND) {
+                return -1;
+            }
+        }
+
+        ColumnIndex index = columnIndex(keyCols[0]);
+        for (int i = index.from(keyIds[0]), to = index.to(keyIds[0]); i < to; i++) {
+            int row = index.rows[i];
+            if (matches(row, keyCols, keyIds)) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks each key appears in one row at most, once for each key columns.
+     *
+     * @throws IllegalStateException if a duplicated key is found
+     */
+    public void checkUniqueKey(int[] keyCols, String tableName) {
+        if (getRowCount() == 0 || checkedKeys.contains(Arrays.toString(keyCols))) {
+            return;
+        }
+
+        // rows of the same id in keyCols[0] are sorted by the ids of the other key columns, so that a duplicated
+        // key is found between neighbours
+        ColumnIndex index = columnIndex(keyCols[0]);
+        for (int start = 0, end; start < index.ids.length; start = end) {
+            end = index.to(index.ids[start]);
+            if (end - start < 2) {
+                continue;
+            }
+
+            final int[][] keyIds = new int[end - start][keyCols.length - 1];
+            Integer[] order = new Integer[end - start];
+            for (int i = 0; i < order.length; i++) {
+                for (int k = 1; k < keyCols.length; k++) {
+                    keyIds[i][k - 1] = id(index.rows[start + i], keyCols[k]);
+                }
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return compareIds(keyIds[a], keyIds[b]);
+                }
+            });
+
+            for (int i = 1; i < order.length; i++) {
+                if (compareIds(keyIds[order[i - 1]], keyIds[order[i]]) == 0) {
+                    int row1 = index.rows[start + order[i - 1]];
+                    int row2 = index.rows[start + order[i]];
+                    throw new IllegalStateException("The table: " + tableName + " Dup key found, key=" + Arrays.toString(project(row1, keyCols)) + ", value1=" + Arrays.toString(getRow(row1)) + ", value2=" + Arrays.toString(getRow(row2)));
+                }
+            }
+        }
+        checkedKeys.add(Arrays.toString(keyCols));
+    }
+
+    public String[] project(int row, int[] cols) {
+        String[] result = new String[cols.length];
+        for (int i = 0; i < cols.length; i++) {
+            result[i] = getValue(row, cols[i]);
+        }
+        return result;
+    }
+
+    private static int compareIds(int[] ids1, int[] ids2) {
+        for (int k = 0; k < ids1.length; k++) {
+            if (ids1[k] != ids2[k]) {
+                return ids1[k] < ids2[k] ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    private boolean matches(int row, int[] keyCols, int[] keyIds) {
+        for (int k = 0; k < keyCols.length; k++) {
+            if (id(row, keyCols[k]) != keyIds[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** the id of a cell, unified for date time columns */
+    int id(int row, int col) {
+        int id = snapshot.getCellId(row, col);
+        return isDateTime(col) ? columnIndex(col).unify(id) : id;
+    }
+
+    private String toValue(int col, int id) {
+        String value = snapshot.getDictionary(col).getValueFromId(id);
+        if (isDateTime(col) && value != null) {
+            value = String.valueOf(DateFormat.stringToMillis(value));
+        }
+        return value;
+    }
+
+    private boolean isDateTime(int col) {
+        return col < colIsDateTime.length && colIsDateTime[col];
+    }
+
+    ColumnIndex columnIndex(int col) {
+        ColumnIndex index = columnIndexes[col];
+        if (index == null) {
+            synchronized (this) {
+                index = columnIndexes[col];
+                if (index == null) {
+                    index = new ColumnIndex(col);
+                    columnIndexes[col] = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * The rows sorted by their ids in a column.
+     */
+    class ColumnIndex {
+        final int[] ids; // sorted
+        final int[] rows; // in the order of ids
+        final Map<String, Integer> millisIds; // millis => unified id, for date time column only
+        final Map<Integer, Integer> unifiedIds; // id => unified id, for date time column only
+
+        ColumnIndex(int col) {
+            int n = getRowCount();
+            Dictionary<String> dict = snapshot.getDictionary(col);
+            if (isDateTime(col)) {
+                millisIds = Maps.newHashMap();
+                unifiedIds = Maps.newHashMap();
+                for (int r = 0; r < n; r++) {
+                    int id = snapshot.getCellId(r, col);
+                    if (unifiedIds.containsKey(id) || dict.isNullId(id)) {
+                        continue;
+                    }
+                    String millis = toValue(col, id);
+                    Integer unified = millisIds.get(millis);
+                    if (unified == null) {
+                        unified = id;
+                        millisIds.put(millis, id);
+                    }
+                    unifiedIds.put(id, unified);
+                }
+            } else {
+                millisIds = null;
+                unifiedIds = null;
+            }
+
+            long[] sorted = new long[n];
+            for (int r = 0; r < n; r++) {
+                sorted[r] = ((long) unify(snapshot.getCellId(r, col)) << 32) | r;
+            }
+            Arrays.sort(sorted);
+
+            ids = new int[n];
+            rows = new int[n];
+            for (int i = 0; i < n; i++) {
+                ids[i] = (int) (sorted[i] >> 32);
+                rows[i] = (int) sorted[i];
+            }
+        }
+
+        int unify(int id) {
+            if (unifiedIds == null) {
+                return id;
+            }
+            Integer unified = unifiedIds.get(id);
+            return unified == null ? id : unified;
+        }
+
+        /** the first position of id, or where it would be */
+        int from(int id) {
+            int low = 0;
+            int high = ids.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (ids[mid] < id) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /** the position after the last of id */
+        int to(int id) {
+            return id == Integer.MAX_VALUE ? ids.length : from(id + 1);
+        }
+    }
+}
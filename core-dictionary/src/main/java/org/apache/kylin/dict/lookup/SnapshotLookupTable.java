@@ -0,0 +1,250 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.dict.lookup;
+
+import java.io.IOException;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.kylin.common.util.Array;
+import org.apache.kylin.common.util.Pair;
+import org.apache.kylin.dict.lookup.SnapshotLookupIndex.ColumnIndex;
+import org.apache.kylin.metadata.model.TableDesc;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * A lookup table that reads the cells of a snapshot in place, by their dictionary ids, instead of copying all rows
+ * into a hash map. Key lookups and scans go through the {@link SnapshotLookupIndex} of the snapshot, which is shared
+ * by all lookup tables on the same snapshot. The cells are presented the same as {@link LookupStringTable}.
+ */
+public class SnapshotLookupTable extends LookupStringTable {
+
+    private SnapshotLookupIndex index;
+    private int[] keyIndex;
+
+    public SnapshotLookupTable(TableDesc tableDesc, String[] keyColumns, SnapshotTable snapshot) throws IOException {
+        super(tableDesc, keyColumns, snapshot);
+    }
+
+    @Override
+    protected void init() throws IOException {
+        initColumnTypes();
+
+        keyIndex = new int[keyColumns.length];
+        for (int i = 0; i < keyColumns.length; i++) {
+            keyIndex[i] = tableDesc.findColumnByName(keyColumns[i]).getZeroBasedIndex();
+        }
+
+        index = ((SnapshotTable) table).getLookupIndex(tableDesc);
+        index.checkUniqueKey(keyIndex, tableDesc.getName());
+    }
+
+    @Override
+    public String[] getRow(Array<String> key) {
+        int row = index.findRow(keyIndex, key.data);
+        return row < 0 ? null : index.getRow(row);
+    }
+
+    @Override
+    public Collection<String[]> getAllRows() {
+        return new AbstractCollection<String[]>() {
+            @Override
+            public Iterator<String[]> iterator() {
+                return new Iterator<String[]>() {
+                    int row = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return row < index.getRowCount();
+                    }
+
+                    @Override
+                    public String[] next() {
+                        return index.getRow(row++);
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return index.getRowCount();
+            }
+        };
+    }
+
+    @Override
+    public Collection<String[]> findRows(int colIdx, Collection<String> values, int[] returnIdx) {
+        List<String[]> result = Lists.newArrayList();
+        if (index.getRowCount() == 0) {
+            return result;
+        }
+
+        ColumnIndex colIndex = index.columnIndex(colIdx);
+        for (String value : Sets.newHashSet(values)) {
+            int id = index.idOf(colIdx, value);
+            if (id == SnapshotLookupIndex.NOT_FOUND) {
+                continue;
+            }
+            for (int i = colIndex.from(id), to = colIndex.to(id); i < to; i++) {
+                result.add(index.project(colIndex.rows[i], returnIdx));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The condition is tested once for each distinct value of the column.
+     */
+    @Override
+    public Collection<String[]> findRows(int colIdx, Predicate<String> condition, int[] returnIdx) {
+        List<String[]> result = Lists.newArrayList();
+        if (index.getRowCount() == 0) {
+            return result;
+        }
+
+        ColumnIndex colIndex = index.columnIndex(colIdx);
+        for (int start = 0, end; start < colIndex.ids.length; start = end) {
+            end = colIndex.to(colIndex.ids[start]);
+            if (condition.apply(index.getValue(colIndex.rows[start], colIdx))) {
+                for (int i = start; i < end; i++) {
+                    result.add(index.project(colIndex.rows[i], returnIdx));
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<String> scan(String col, List<String> values, String returnCol) {
+        List<String> result = Lists.newArrayList();
+        for (String[] row : findRows(columnIndexOf(col), values, new int[] { columnIndexOf(returnCol) })) {
+            result.add(row[0]);
+        }
+        return result;
+    }
+
+    @Override
+    public Set<String> mapValues(String col, Set<String> values, String returnCol) {
+        Set<String> result = Sets.newHashSetWithExpectedSize(values.size());
+        for (String[] row : findRows(columnIndexOf(col), values, new int[] { columnIndexOf(returnCol) })) {
+            result.add(row[0]);
+        }
+        return result;
+    }
+
+    @Override
+    public Pair<String, String> mapRange(String col, final String beginValue, final String endValue, String returnCol) {
+        final int colIdx = columnIndexOf(col);
+        int returnIdx = columnIndexOf(returnCol);
+
+        Collection<String[]> rows;
+        if (colIsDateTime[colIdx] || colIsNumber[colIdx]) {
+            final Comparator<String> colComp = getComparator(colIdx);
+            rows = findRows(colIdx, new Predicate<String>() {
+                @Override
+                public boolean apply(String value) {
+                    return value != null && (beginValue == null || colComp.compare(beginValue, value) <= 0) && (endValue == null || colComp.compare(value, endValue) <= 0);
+                }
+            }, new int[] { returnIdx });
+        } else {
+            // the snapshot dictionaries preserve the order of strings, so the range maps to a range of ids
+            rows = findRowsInIdRange(colIdx, beginValue, endValue, returnIdx);
+        }
+
+        Comparator<String> returnComp = getComparator(returnIdx);
+        String returnBegin = null;
+        String returnEnd = null;
+        for (String[] row : rows) {
+            String returnValue = row[0];
+            if (returnBegin == null || returnComp.compare(returnValue, returnBegin) < 0) {
+                returnBegin = returnValue;
+            }
+            if (returnEnd == null || returnComp.compare(returnValue, returnEnd) > 0) {
+                returnEnd = returnValue;
+            }
+        }
+        if (returnBegin == null && returnEnd == null)
+            return null;
+        else
+            return Pair.newPair(returnBegin, returnEnd);
+    }
+
+    private Collection<String[]> findRowsInIdRange(int colIdx, String beginValue, String endValue, int returnIdx) {
+        List<String[]> result = Lists.newArrayList();
+        if (index.getRowCount() == 0) {
+            return result;
+        }
+
+        ColumnIndex colIndex = index.columnIndex(colIdx);
+        int from = 0;
+        int to = colIndex.ids.length;
+        if (beginValue != null) {
+            int beginId = index.ceilingIdOf(colIdx, beginValue);
+            if (beginId == SnapshotLookupIndex.NOT_FOUND) {
+                return result;
+            }
+            from = colIndex.from(beginId);
+        }
+        if (endValue != null) {
+            int endId = index.floorIdOf(colIdx, endValue);
+            if (endId == SnapshotLookupIndex.NOT_FOUND) {
+                return result;
+            }
+            to = colIndex.to(endId);
+        }
+
+        int[] returnCols = new int[] { returnIdx };
+        for (int i = from; i < to; i++) {
+            int row = colIndex.rows[i];
+            if (index.getValue(row, colIdx) != null) {
+                result.add(index.project(row, returnCols));
+            }
+        }
+        return result;
+    }
+
+    private int columnIndexOf(String col) {
+        return tableDesc.findColumnByName(col).getZeroBasedIndex();
+    }
+
+    @Override
+    public void dump() {
+        for (int row = 0; row < index.getRowCount(); row++) {
+            System.out.println(Arrays.toString(index.project(row, keyIndex)) + " => " + Arrays.toString(index.getRow(row)));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SnapshotLookupTable [path=" + table + "]";
+    }
+}
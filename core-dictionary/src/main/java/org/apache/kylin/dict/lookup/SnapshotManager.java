@@ -136,7 +136,7 @@ public class SnapshotManager {
                     + " MB, but " + tableDesc + " size is " + snapshot.getSignature().getSize());
         }
 
-        snapshot.takeSnapshot(table, tableDesc);
+        takeSnapshot(snapshot, table, tableDesc);
 
         return trySaveNewSnapshot(snapshot);
     }
@@ -145,7 +145,7 @@ public class SnapshotManager {
         SnapshotTable snapshot = new SnapshotTable(table, tableDesc.getIdentity());
         snapshot.setUuid(overwriteUUID);
 
-        snapshot.takeSnapshot(table, tableDesc);
+        takeSnapshot(snapshot, table, tableDesc);
 
         SnapshotTable existing = getSnapshotTable(snapshot.getResourcePath());
         snapshot.setLastModified(existing.getLastModified());
@@ -156,6 +156,14 @@ public class SnapshotManager {
         return snapshot;
     }
 
+    private void takeSnapshot(SnapshotTable snapshot, IReadableTable table, TableDesc tableDesc) throws IOException {
+        if (config.isSnapshotColumnarEnabled()) {
+            snapshot.takeColumnarSnapshot(table, tableDesc, config.getSnapshotBuildThreads());
+        } else {
+            snapshot.takeSnapshot(table, tableDesc);
+        }
+    }
+
     public SnapshotTable trySaveNewSnapshot(SnapshotTable snapshotTable) throws IOException {
 
         String dupTable = checkDupByContent(snapshotTable);
@@ -197,7 +205,7 @@ public class SnapshotManager {
 
         for (String existing : existings) {
             SnapshotTable existingTable = load(existing, true); // skip cache, direct load from store
-            if (existingTable != null && existingTable.equals(snapshot))
+            if (existingTable != null && existingTable.hasSameRows(snapshot))
                 return existing;
         }
 
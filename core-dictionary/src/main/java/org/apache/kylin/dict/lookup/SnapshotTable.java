@@ -26,6 +26,7 @@ import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 
 import com.google.common.base.Strings;
 import org.apache.commons.io.IOUtils;
@@ -42,6 +43,7 @@ import org.apache.kylin.source.IReadableTable;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 /**
@@ -57,10 +59,20 @@ public class SnapshotTable extends RootPersistentEntity implements IReadableTabl
     private TableSignature signature;
     @JsonProperty("useDictionary")
     private boolean useDictionary;
+    @JsonProperty("columnar")
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private boolean columnar;
 
+    // row based, all columns share one dictionary
     private ArrayList<int[]> rowIndices;
     private Dictionary<String> dict;
 
+    // columnar, each column has its own dictionary
+    private SnapshotColumn[] columns;
+    private int rowCount;
+
+    private volatile SnapshotLookupIndex lookupIndex;
+
     // default constructor for JSON serialization
     public SnapshotTable() {
     }
@@ -113,6 +125,72 @@ public class SnapshotTable extends RootPersistentEntity implements IReadableTabl
         }
 
         this.rowIndices = allRowIndices;
+        this.columnar = false;
+        this.columns = null;
+        this.lookupIndex = null;
+    }
+
+    /**
+     * Takes a columnar snapshot, which reads the table only once and builds the column dictionaries in parallel.
+     */
+    public void takeColumnarSnapshot(IReadableTable table, TableDesc tableDesc, int threads) throws IOException {
+        this.signature = table.getSignature();
+
+        SnapshotColumnBuilder builder = new SnapshotColumnBuilder(tableDesc, threads);
+        this.columns = builder.build(table);
+        this.rowCount = builder.getRowCount();
+        this.columnar = true;
+        this.rowIndices = null;
+        this.dict = null;
+        this.lookupIndex = null;
+    }
+
+    public boolean isColumnar() {
+        return columnar;
+    }
+
+    int getRowCount() {
+        return columnar ? rowCount : rowIndices.size();
+    }
+
+    int getColumnCount() {
+        if (getRowCount() == 0)
+            return 0;
+        return columnar ? columns.length : rowIndices.get(0).length;
+    }
+
+    int getCellId(int row, int col) {
+        return columnar ? columns[col].getId(row) : rowIndices.get(row)[col];
+    }
+
+    Dictionary<String> getDictionary(int col) {
+        return columnar ? columns[col].getDictionary() : dict;
+    }
+
+    String getCell(int row, int col) {
+        return getDictionary(col).getValueFromId(getCellId(row, col));
+    }
+
+    /**
+     * The lookup index on this snapshot, created on first call and shared afterwards.
+     */
+    public SnapshotLookupIndex getLookupIndex(TableDesc tableDesc) {
+        SnapshotLookupIndex index = lookupIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = lookupIndex;
+                if (index == null) {
+                    ColumnDesc[] cols = tableDesc.getColumns();
+                    boolean[] colIsDateTime = new boolean[cols.length];
+                    for (int i = 0; i < cols.length; i++) {
+                        colIsDateTime[i] = cols[i].getType().isDateTimeFamily();
+                    }
+                    index = new SnapshotLookupIndex(this, colIsDateTime);
+                    lookupIndex = index;
+                }
+            }
+        }
+        return index;
     }
 
     public String getResourcePath() {
@@ -140,15 +218,14 @@ public class SnapshotTable extends RootPersistentEntity implements IReadableTabl
             @Override
             public boolean next() throws IOException {
                 i++;
-                return i < rowIndices.size();
+                return i < getRowCount();
             }
 
             @Override
             public String[] getRow() {
-                int[] rowIndex = rowIndices.get(i);
-                String[] row = new String[rowIndex.length];
+                String[] row = new String[getColumnCount()];
                 for (int x = 0; x < row.length; x++) {
-                    row[x] = dict.getValueFromId(rowIndex[x]);
+                    row[x] = getCell(i, x);
                 }
                 return row;
             }
@@ -176,9 +253,20 @@ public class SnapshotTable extends RootPersistentEntity implements IReadableTabl
      */
     @Override
     public int hashCode() {
-        int[] parts = new int[this.rowIndices.size()];
-        for (int i = 0; i < parts.length; ++i)
-            parts[i] = Arrays.hashCode(this.rowIndices.get(i));
+        if (!columnar) {
+            int[] parts = new int[this.rowIndices.size()];
+            for (int i = 0; i < parts.length; ++i)
+                parts[i] = Arrays.hashCode(this.rowIndices.get(i));
+            return Arrays.hashCode(parts);
+        }
+
+        int[] parts = new int[getRowCount()];
+        for (int i = 0; i < parts.length; ++i) {
+            for (int j = 0; j < getColumnCount(); ++j) {
+                String cell = getCell(i, j);
+                parts[i] = 31 * parts[i] + (cell == null ? 0 : cell.hashCode());
+            }
+        }
         return Arrays.hashCode(parts);
     }
 
@@ -188,6 +276,12 @@ public class SnapshotTable extends RootPersistentEntity implements IReadableTabl
             return false;
         SnapshotTable that = (SnapshotTable) o;
 
+        // snapshots of different layouts are never equal, to keep hashCode() cheap for the row layout
+        if (this.columnar != that.columnar)
+            return false;
+        if (this.columnar)
+            return equalsByCell(that);
+
         if (this.dict.equals(that.dict) == false)
             return false;
 
@@ -202,6 +296,25 @@ public class SnapshotTable extends RootPersistentEntity implements IReadableTabl
         return true;
     }
 
+    /**
+     * Whether the two snapshots have the same rows, regardless of their layouts.
+     */
+    public boolean hasSameRows(SnapshotTable that) {
+        return this.columnar == that.columnar ? equals(that) : equalsByCell(that);
+    }
+
+    private boolean equalsByCell(SnapshotTable that) {
+        if (this.getRowCount() != that.getRowCount() || this.getColumnCount() != that.getColumnCount())
+            return false;
+        for (int i = 0; i < getRowCount(); ++i) {
+            for (int j = 0; j < getColumnCount(); ++j) {
+                if (!Objects.equals(this.getCell(i, j), that.getCell(i, j)))
+                    return false;
+            }
+        }
+        return true;
+    }
+
     private static String NULL_STR;
     {
         try {
@@ -213,6 +326,17 @@ public class SnapshotTable extends RootPersistentEntity implements IReadableTabl
     }
 
     void writeData(DataOutput out) throws IOException {
+        if (columnar) {
+            out.writeInt(rowCount);
+            if (rowCount > 0) {
+                out.writeInt(columns.length);
+                for (SnapshotColumn column : columns) {
+                    column.write(out);
+                }
+            }
+            return;
+        }
+
         out.writeInt(rowIndices.size());
         if (rowIndices.size() > 0) {
             int n = rowIndices.get(0).length;
@@ -240,6 +364,17 @@ public class SnapshotTable extends RootPersistentEntity implements IReadableTabl
     }
 
     void readData(DataInput in) throws IOException {
+        lookupIndex = null;
+        if (columnar) {
+            // the columns are decoded on first access
+            rowCount = in.readInt();
+            columns = new SnapshotColumn[rowCount > 0 ? in.readInt() : 0];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = SnapshotColumn.read(in, rowCount);
+            }
+            return;
+        }
+
         int rowNum = in.readInt();
         if (rowNum > 0) {
             int n = in.readInt();
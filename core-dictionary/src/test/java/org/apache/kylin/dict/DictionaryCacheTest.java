@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.dict;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+
+import org.apache.kylin.common.util.Dictionary;
+import org.junit.Test;
+
+import com.google.common.cache.CacheStats;
+
+public class DictionaryCacheTest {
+
+    @Test
+    public void testEvictByBytes() {
+        DictionaryCache cache = new DictionaryCache(100 * 1024);
+        long owner = cache.newOwnerId();
+        for (int i = 0; i < 10000; i++) {
+            cache.putLookup(owner, true, "value" + i, i, 10);
+        }
+        // each entry weighs 116 bytes, lookups have a fifth of the budget
+        assertTrue(cache.size() <= 20 * 1024 / 116);
+        assertEquals(9999, cache.getLookup(owner, true, "value9999"));
+        assertNull(cache.getLookup(owner, true, "value0"));
+        assertNull(cache.getLookup(cache.newOwnerId(), true, "value9999"));
+    }
+
+    @Test
+    public void testDictionaryWeighedAgainstWholeBudget() throws Exception {
+        DictionaryCache cache = new DictionaryCache(1024 * 1024);
+        long owner = cache.newOwnerId();
+
+        TrieDictionaryBuilder<String> builder = new TrieDictionaryBuilder<String>(new StringBytesConverter());
+        for (int i = 0; i < 10000; i++) {
+            builder.addValue(i + "-0123456789012345678901234567890123456789");
+        }
+        final DictionaryInfo info = new DictionaryInfo();
+        info.setDictionaryObject(builder.build(0));
+        assertTrue(DictionaryCache.estimateBytes(info.getDictionaryObject()) > 1024 * 1024 / 4);
+
+        DictionaryInfo loaded = cache.getDictionaryInfo(owner, "/dict/a", new Callable<DictionaryInfo>() {
+            @Override
+            public DictionaryInfo call() throws Exception {
+                return info;
+            }
+        });
+        assertTrue(loaded == info);
+        assertEquals(1, cache.size());
+
+        // lookups do not evict the dictionary
+        for (int i = 0; i < 100000; i++) {
+            cache.putLookup(owner, true, "value" + i, i, 10);
+        }
+        assertTrue(cache.getDictionaryInfo(owner, "/dict/a", new Callable<DictionaryInfo>() {
+            @Override
+            public DictionaryInfo call() throws Exception {
+                throw new IllegalStateException("should be cached");
+            }
+        }) == info);
+
+        long lookups = cache.size() - 1;
+        cache.invalidateDictionaryInfo(owner, "/dict/a");
+        assertEquals(lookups, cache.size());
+    }
+
+    @Test
+    public void testLookupHitAndMiss() {
+        TrieDictionaryBuilder<String> builder = new TrieDictionaryBuilder<String>(new StringBytesConverter());
+        builder.addValue("a");
+        builder.addValue("b");
+        TrieDictionary<String> dict = builder.build(0);
+
+        int id = dict.getIdFromValue("b");
+        assertEquals(id, dict.getIdFromValue("b"));
+        assertEquals("b", dict.getValueFromId(id));
+        assertEquals("b", dict.getValueFromId(id));
+        assertEquals(2, dict.getCacheHitCount());
+        assertEquals(2, dict.getCacheMissCount());
+    }
+
+    @Test
+    public void testDictionaryStats() throws Exception {
+        DictionaryCache cache = new DictionaryCache(1024 * 1024);
+        long owner = cache.newOwnerId();
+
+        TrieDictionaryBuilder<String> builder = new TrieDictionaryBuilder<String>(new StringBytesConverter());
+        builder.addValue("a");
+        builder.addValue("b");
+        final DictionaryInfo info = new DictionaryInfo();
+        info.setDictionaryObject(builder.build(0));
+        cache.putDictionaryInfo(owner, "/dict/a", info);
+
+        Dictionary<String> dict = info.getDictionaryObject();
+        int id = dict.getIdFromValue("a");
+        dict.getIdFromValue("a");
+        dict.getIdFromValue("a");
+
+        // counted while the dictionary is cached
+        CacheStats stats = cache.dictionaryStats().get("/dict/a");
+        assertEquals(2, stats.hitCount());
+        assertEquals(1, stats.missCount());
+
+        dict.getValueFromId(id);
+        assertEquals(2, cache.dictionaryStats().get("/dict/a").missCount());
+
+        cache.invalidateDictionaryInfo(owner, "/dict/a");
+        assertTrue(cache.dictionaryStats().isEmpty());
+    }
+
+    @Test
+    public void testIdToValueSlots() {
+        TrieDictionaryBuilder<String> builder = new TrieDictionaryBuilder<String>(new StringBytesConverter());
+        for (int i = 0; i < 10000; i++) {
+            builder.addValue("v" + i);
+        }
+        TrieDictionary<String> dict = builder.build(0);
+
+        // more ids than slots, colliding ids replace each other
+        for (int round = 0; round < 2; round++) {
+            for (int id = dict.getMinId(); id <= dict.getMaxId(); id++) {
+                assertEquals(id, dict.getIdFromValue(dict.getValueFromId(id)));
+            }
+        }
+        int id = dict.getIdFromValue("v42");
+        long hits = dict.getCacheHitCount();
+        assertEquals("v42", dict.getValueFromId(id));
+        assertEquals("v42", dict.getValueFromId(id));
+        assertEquals(hits + 2, dict.getCacheHitCount());
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.dict;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.persistence.ResourceStore;
+import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DictionaryFileCacheTest extends LocalFileMetadataTestCase {
+
+    private File cacheDir;
+
+    @Before
+    public void setup() throws Exception {
+        createTestMetadata();
+        cacheDir = File.createTempFile("dict_file_cache", "");
+        cacheDir.delete();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteQuietly(cacheDir);
+        cleanupTestMetadata();
+    }
+
+    @Test
+    public void testTrieDictionaryInPlace() throws IOException {
+        TrieDictionary<String> dict = newTrieDictionary();
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        dict.write(new DataOutputStream(buf));
+
+        // read in place from an off heap buffer, followed by some other content
+        ByteBuffer direct = ByteBuffer.allocateDirect(buf.size() + 4);
+        direct.put(buf.toByteArray());
+        direct.putInt(123);
+        direct.flip();
+
+        TrieDictionary<String> mapped = new TrieDictionary<>();
+        mapped.readFields(direct);
+        assertEquals(123, direct.getInt());
+        assertEquals(dict, mapped);
+        assertEquals(0, mapped.estimateMemoryBytes());
+        assertLookups(dict, mapped);
+    }
+
+    @Test
+    public void testLoadAndRefresh() throws IOException {
+        ResourceStore store = ResourceStore.getStore(KylinConfig.getInstanceFromEnv());
+        String path = "/dict/TEST_TABLE/TEST_COL/test.dict";
+        TrieDictionaryForestBuilder<String> builder = new TrieDictionaryForestBuilder<>(new StringBytesConverter());
+        for (int i = 0; i < 1000; i++) {
+            builder.addValue(String.format("%04d", i));
+        }
+        Dictionary<String> forest = builder.build();
+        store.putResource(path, serialize(forest), 1000);
+
+        DictionaryFileCache fileCache = new DictionaryFileCache(cacheDir);
+        DictionaryInfo info = fileCache.load(store, path);
+        assertTrue(fileCache.getCacheFile(path, 1000).exists());
+        assertEquals(1000, info.getLastModified());
+        assertTrue(info.getDictionaryObject() instanceof TrieDictionaryForest);
+        assertLookups(forest, info.getDictionaryObject());
+
+        // loaded from the existing local file
+        assertLookups(forest, fileCache.load(store, path).getDictionaryObject());
+
+        // a changed resource replaces the local file
+        Dictionary<String> dict = newTrieDictionary();
+        store.putResource(path, serialize(dict), 2000);
+        info = fileCache.load(store, path);
+        assertFalse(fileCache.getCacheFile(path, 1000).exists());
+        assertTrue(fileCache.getCacheFile(path, 2000).exists());
+        assertLookups(dict, info.getDictionaryObject());
+
+        assertNull(fileCache.load(store, "/dict/TEST_TABLE/TEST_COL/not_exist.dict"));
+    }
+
+    private TrieDictionary<String> newTrieDictionary() {
+        TrieDictionaryBuilder<String> builder = new TrieDictionaryBuilder<>(new StringBytesConverter());
+        for (int i = 0; i < 1000; i++) {
+            builder.addValue("value" + i);
+        }
+        return builder.build(0);
+    }
+
+    private ByteArrayInputStream serialize(Dictionary<String> dict) throws IOException {
+        DictionaryInfo info = new DictionaryInfo("TEST_TABLE", "TEST_COL", 0, "string", null);
+        info.setDictionaryObject(dict);
+        info.setDictionaryClass(dict.getClass().getName());
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        DictionaryInfoSerializer.FULL_SERIALIZER.serialize(info, new DataOutputStream(buf));
+        return new ByteArrayInputStream(buf.toByteArray());
+    }
+
+    private void assertLookups(Dictionary<String> expected, Dictionary<String> actual) {
+        assertEquals(expected.getSize(), actual.getSize());
+        for (int id = expected.getMinId(); id <= expected.getMaxId(); id++) {
+            String value = expected.getValueFromId(id);
+            assertEquals(value, actual.getValueFromId(id));
+            assertEquals(id, actual.getIdFromValue(value));
+        }
+    }
+}
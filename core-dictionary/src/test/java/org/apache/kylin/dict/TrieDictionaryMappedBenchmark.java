@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.dict;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.UUID;
+
+import org.apache.kylin.common.util.Bytes;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Compares lookups on a heap trie (read from byte[]) and on the same trie
+ * read through a direct ByteBuffer, the way a memory mapped dictionary is.
+ */
+@Ignore
+public class TrieDictionaryMappedBenchmark {
+
+    private TrieDictionary<String> heapDict;
+
+    private TrieDictionary<String> mappedDict;
+
+    private ArrayList<byte[]> rawData;
+
+    private int testTimes = 20;
+
+    @Before
+    public void before() throws IOException {
+        int dataSize = 100 * 1000;
+        Random rand = new Random(0);
+        TrieDictionaryBuilder<String> b = new TrieDictionaryBuilder<>(new StringBytesConverter());
+        this.rawData = new ArrayList<>(dataSize);
+        for (int i = 0; i < dataSize; i++) {
+            String str = UUID.randomUUID().toString().substring(0, 8 + rand.nextInt(24));
+            b.addValue(str);
+            rawData.add(Bytes.toBytes(str));
+        }
+        this.heapDict = b.build(0);
+        heapDict.disableCache();
+
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        heapDict.write(new DataOutputStream(buf));
+        ByteBuffer direct = ByteBuffer.allocateDirect(buf.size());
+        direct.put(buf.toByteArray());
+        direct.flip();
+        this.mappedDict = new TrieDictionary<>();
+        mappedDict.readFields(direct);
+        mappedDict.disableCache();
+    }
+
+    @Test
+    public void benchmark() {
+        // warm up both paths before timing
+        runQueryId(heapDict);
+        runQueryId(mappedDict);
+        runQueryValueBytes(heapDict);
+        runQueryValueBytes(mappedDict);
+
+        System.out.println("heap dict value bytes --> id : " + runQueryId(heapDict));
+        System.out.println("mapped dict value bytes --> id : " + runQueryId(mappedDict));
+        System.out.println("heap dict id --> value bytes : " + runQueryValueBytes(heapDict));
+        System.out.println("mapped dict id --> value bytes : " + runQueryValueBytes(mappedDict));
+    }
+
+    private long runQueryId(TrieDictionary<String> dict) {
+        long startTime = System.currentTimeMillis();
+        int step = 0;
+        for (int i = 0; i < testTimes; i++) {
+            for (byte[] value : rawData) {
+                step |= dict.getIdFromValueBytesWithoutCache(value, 0, value.length, 0);
+            }
+        }
+        return System.currentTimeMillis() - startTime + (step & 0);
+    }
+
+    private long runQueryValueBytes(TrieDictionary<String> dict) {
+        long startTime = System.currentTimeMillis();
+        int step = 0;
+        byte[] buf = new byte[dict.getSizeOfValue()];
+        for (int i = 0; i < testTimes; i++) {
+            for (int id = dict.getMinId(); id <= dict.getMaxId(); id++) {
+                step |= dict.getValueBytesFromIdImpl(id, buf, 0);
+            }
+        }
+        return System.currentTimeMillis() - startTime + (step & 0);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.dict.lookup;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.Array;
+import org.apache.kylin.common.util.DateFormat;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.metadata.TableMetadataManager;
+import org.apache.kylin.metadata.model.TableDesc;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * Checks SnapshotLookupTable answers the same as LookupStringTable on the same snapshot.
+ */
+public class SnapshotLookupTableTest extends LocalFileMetadataTestCase {
+
+    private static final String SNAPSHOT_PATH = "/table_snapshot/TEST_CAL_DT.csv/4af48c94-86de-4e22-a4fd-c49b06cbaa4f.snapshot";
+
+    private SnapshotTable snapshot;
+    private TableDesc tableDesc;
+    private LookupStringTable expected;
+    private SnapshotLookupTable actual;
+
+    @Before
+    public void setup() throws Exception {
+        createTestMetadata();
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        snapshot = SnapshotManager.getInstance(config).getSnapshotTable(SNAPSHOT_PATH);
+        tableDesc = TableMetadataManager.getInstance(config).getTableDesc("EDW.TEST_CAL_DT", "default");
+        String[] pkCols = new String[] { "CAL_DT" };
+        expected = new LookupStringTable(tableDesc, pkCols, snapshot);
+        actual = new SnapshotLookupTable(tableDesc, pkCols, snapshot);
+    }
+
+    @After
+    public void tearDown() {
+        cleanupTestMetadata();
+    }
+
+    @Test
+    public void testGetRow() {
+        Assert.assertEquals(expected.getAllRows().size(), actual.getAllRows().size());
+        for (String[] row : expected.getAllRows()) {
+            Assert.assertArrayEquals(row, actual.getRow(new Array<String>(new String[] { row[0] })));
+        }
+        Assert.assertNull(actual.getRow(new Array<String>(new String[] { millis("1900-01-01") })));
+        Assert.assertNull(actual.getRow(new Array<String>(new String[] { "not a date" })));
+    }
+
+    @Test
+    public void testScanAndMapValues() {
+        List<String> values = Lists.newArrayList(millis("2012-01-24"), millis("2012-12-30"), millis("1900-01-01"));
+        Assert.assertEquals(Sets.newHashSet(expected.scan("CAL_DT", values, "YEAR_BEG_DT")), Sets.newHashSet(actual.scan("CAL_DT", values, "YEAR_BEG_DT")));
+        Assert.assertEquals(expected.scan("CAL_DT", values, "YEAR_BEG_DT").size(), actual.scan("CAL_DT", values, "YEAR_BEG_DT").size());
+
+        Set<String> yearBegins = new HashSet<String>(Lists.newArrayList(millis("2012-01-01")));
+        Assert.assertEquals(expected.mapValues("YEAR_BEG_DT", yearBegins, "CAL_DT"), actual.mapValues("YEAR_BEG_DT", yearBegins, "CAL_DT"));
+    }
+
+    @Test
+    public void testMapRange() {
+        assertSameRange("CAL_DT", millis("2012-01-24"), millis("2012-12-30"), "QTR_BEG_DT");
+        assertSameRange("WEEK_BEG_DT", millis("2013-05-01"), millis("2013-08-01"), "CAL_DT");
+        assertSameRange("WEEK_BEG_DT", null, millis("2013-08-01"), "CAL_DT");
+        assertSameRange("DAY_OF_YEAR_ID", "10", "20", "CAL_DT");
+        assertSameRange("YEAR_END_DT", "2012", "2013-06", "CAL_DT");
+        assertSameRange("YEAR_END_DT", "2012-12-31", "2012-12-31", "CAL_DT");
+        assertSameRange("YEAR_END_DT", "zzz", null, "CAL_DT");
+    }
+
+    @Test
+    public void testFindRows() {
+        int colIdx = tableDesc.findColumnByName("WEEK_BEG_DT").getZeroBasedIndex();
+        int[] returnIdx = new int[] { 0, colIdx };
+        Predicate<String> condition = new Predicate<String>() {
+            @Override
+            public boolean apply(String value) {
+                return value != null && value.endsWith("0000");
+            }
+        };
+        Assert.assertEquals(asSet(expected.findRows(colIdx, condition, returnIdx)), asSet(actual.findRows(colIdx, condition, returnIdx)));
+
+        List<String> values = Lists.newArrayList(millis("2013-05-05"), millis("2011-01-02"));
+        Assert.assertEquals(asSet(expected.findRows(colIdx, values, returnIdx)), asSet(actual.findRows(colIdx, values, returnIdx)));
+    }
+
+    @Test
+    public void testSharedIndex() throws Exception {
+        SnapshotLookupTable another = new SnapshotLookupTable(tableDesc, new String[] { "CAL_DT" }, snapshot);
+        Assert.assertSame(snapshot.getLookupIndex(tableDesc), snapshot.getLookupIndex(tableDesc));
+        Assert.assertArrayEquals(actual.getAllRows().iterator().next(), another.getAllRows().iterator().next());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDupKey() throws Exception {
+        new SnapshotLookupTable(tableDesc, new String[] { "YEAR_BEG_DT" }, snapshot);
+    }
+
+    @Test
+    public void testCompositeKey() throws Exception {
+        SnapshotLookupTable composite = new SnapshotLookupTable(tableDesc, new String[] { "YEAR_BEG_DT", "CAL_DT" }, snapshot);
+        Assert.assertEquals(expected.getAllRows().size(), composite.getAllRows().size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCompositeDupKey() throws Exception {
+        new SnapshotLookupTable(tableDesc, new String[] { "YEAR_BEG_DT", "QTR_BEG_DT" }, snapshot);
+    }
+
+    private void assertSameRange(String col, String begin, String end, String returnCol) {
+        Assert.assertEquals(expected.mapRange(col, begin, end, returnCol), actual.mapRange(col, begin, end, returnCol));
+    }
+
+    private Set<List<String>> asSet(Collection<String[]> rows) {
+        Set<List<String>> result = Sets.newHashSet();
+        for (String[] row : rows) {
+            result.add(Lists.newArrayList(row));
+        }
+        return result;
+    }
+
+    private String millis(String dateStr) {
+        return String.valueOf(DateFormat.stringToMillis(dateStr));
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.dict.lookup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.Array;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.dict.MockupReadableTable;
+import org.apache.kylin.metadata.TableMetadataManager;
+import org.apache.kylin.metadata.model.TableDesc;
+import org.apache.kylin.source.IReadableTable;
+import org.apache.kylin.source.IReadableTable.TableReader;
+import org.apache.kylin.source.IReadableTable.TableSignature;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SnapshotTableTest extends LocalFileMetadataTestCase {
+
+    private static final String SNAPSHOT_PATH = "/table_snapshot/TEST_CAL_DT.csv/4af48c94-86de-4e22-a4fd-c49b06cbaa4f.snapshot";
+
+    private SnapshotTable source;
+    private TableDesc tableDesc;
+
+    @Before
+    public void setup() throws Exception {
+        createTestMetadata();
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        source = SnapshotManager.getInstance(config).getSnapshotTable(SNAPSHOT_PATH);
+        tableDesc = TableMetadataManager.getInstance(config).getTableDesc("EDW.TEST_CAL_DT", "default");
+    }
+
+    @After
+    public void tearDown() {
+        cleanupTestMetadata();
+    }
+
+    @Test
+    public void testColumnarSnapshot() throws IOException {
+        SnapshotTable columnar = new SnapshotTable(source, tableDesc.getIdentity());
+        columnar.takeColumnarSnapshot(source, tableDesc, 3);
+        Assert.assertTrue(columnar.isColumnar());
+        assertSameRows(source, columnar);
+        Assert.assertTrue(source.hasSameRows(columnar));
+        Assert.assertTrue(columnar.hasSameRows(source));
+        Assert.assertFalse(source.equals(columnar));
+
+        SnapshotTable loaded = roundTrip(columnar);
+        Assert.assertTrue(loaded.isColumnar());
+        assertSameRows(source, loaded);
+        Assert.assertEquals(columnar, loaded);
+        Assert.assertEquals(columnar.hashCode(), loaded.hashCode());
+
+        String[] pkCols = new String[] { "CAL_DT" };
+        LookupStringTable expected = new LookupStringTable(tableDesc, pkCols, source);
+        SnapshotLookupTable actual = new SnapshotLookupTable(tableDesc, pkCols, loaded);
+        for (String[] row : expected.getAllRows()) {
+            Assert.assertArrayEquals(row, actual.getRow(new Array<String>(new String[] { row[0] })));
+        }
+    }
+
+    @Test
+    public void testNullsAndEmpty() throws IOException {
+        int n = tableDesc.getColumnCount();
+        List<String[]> rows = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            String[] row = new String[n];
+            row[0] = "2012-01-0" + (i + 1);
+            row[n - 1] = i == 1 ? null : "v" + i;
+            rows.add(row);
+        }
+        IReadableTable table = new MockupReadableTable(rows, new TableSignature("mockup", 0, 0), true);
+        SnapshotTable snapshot = new SnapshotTable(table, tableDesc.getIdentity());
+        snapshot.takeColumnarSnapshot(table, tableDesc, 2);
+        SnapshotTable loaded = roundTrip(snapshot);
+        assertSameRows(table, loaded);
+
+        IReadableTable empty = new MockupReadableTable(new ArrayList<String[]>(), new TableSignature("mockup", 0, 0), true);
+        snapshot = new SnapshotTable(empty, tableDesc.getIdentity());
+        snapshot.takeColumnarSnapshot(empty, tableDesc, 2);
+        loaded = roundTrip(snapshot);
+        Assert.assertFalse(loaded.getReader().next());
+        Assert.assertNull(new SnapshotLookupTable(tableDesc, new String[] { "CAL_DT" }, loaded).getRow(new Array<String>(new String[] { "0" })));
+    }
+
+    @Test
+    public void testSpillLongCell() throws IOException {
+        // beyond the 64KB limit of writeUTF()
+        String longCell = StringUtils.repeat("\u00e9", 40000);
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buf);
+        SnapshotColumnBuilder.writeCell(out, longCell);
+        SnapshotColumnBuilder.writeCell(out, null);
+        SnapshotColumnBuilder.writeCell(out, "");
+        out.close();
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(buf.toByteArray()));
+        Assert.assertEquals(longCell, SnapshotColumnBuilder.readCell(in));
+        Assert.assertNull(SnapshotColumnBuilder.readCell(in));
+        Assert.assertEquals("", SnapshotColumnBuilder.readCell(in));
+    }
+
+    private SnapshotTable roundTrip(SnapshotTable snapshot) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        SnapshotTableSerializer.FULL_SERIALIZER.serialize(snapshot, new DataOutputStream(buf));
+        return SnapshotTableSerializer.FULL_SERIALIZER.deserialize(new DataInputStream(new ByteArrayInputStream(buf.toByteArray())));
+    }
+
+    private void assertSameRows(IReadableTable expected, IReadableTable actual) throws IOException {
+        TableReader expectedReader = expected.getReader();
+        TableReader actualReader = actual.getReader();
+        try {
+            while (expectedReader.next()) {
+                Assert.assertTrue(actualReader.next());
+                Assert.assertArrayEquals(expectedReader.getRow(), actualReader.getRow());
+            }
+            Assert.assertFalse(actualReader.next());
+        } finally {
+            IOUtils.closeQuietly(expectedReader);
+            IOUtils.closeQuietly(actualReader);
+        }
+    }
+}
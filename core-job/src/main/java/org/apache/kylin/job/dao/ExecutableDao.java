@@ -20,24 +20,36 @@ package org.apache.kylin.job.dao;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.NavigableSet;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.persistence.JsonSerializer;
 import org.apache.kylin.common.persistence.ResourceStore;
+import org.apache.kylin.common.persistence.RootPersistentEntity;
 import org.apache.kylin.common.persistence.Serializer;
 import org.apache.kylin.job.exception.PersistentException;
+import org.apache.kylin.job.execution.ExecutableManager;
+import org.apache.kylin.metadata.cachesync.Broadcaster;
 import org.apache.kylin.metadata.model.DataModelManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 /**
+ * Reads and writes jobs and their outputs. Unless disabled, jobs and outputs are cached in memory for the listing
+ * methods. Jobs never change once added, outputs are refreshed by asking the store for those modified since the
+ * last refresh, dropped jobs are removed on broadcast, and everything is reloaded once in a while for what is
+ * deleted behind the cache. The content of an output, i.e. the step log, is not cached and is read from the store
+ * by {@link #getJobOutput(String)}.
  */
 public class ExecutableDao {
 
@@ -46,8 +58,18 @@ public class ExecutableDao {
     private static final Logger logger = LoggerFactory.getLogger(ExecutableDao.class);
     private static final ConcurrentMap<KylinConfig, ExecutableDao> CACHE = new ConcurrentHashMap<KylinConfig, ExecutableDao>();
 
+    // a write may land in the store with a timestamp earlier than the last refresh, e.g. clock skew between servers
+    private static final long SYNC_MARGIN_MILLIS = 60 * 1000L;
+
     private ResourceStore store;
 
+    private final boolean cacheEnabled;
+    private final long resyncIntervalMillis;
+    private final ConcurrentMap<String, ExecutablePO> jobCache = Maps.newConcurrentMap();
+    private final ConcurrentMap<String, ExecutableOutputPO> outputCache = Maps.newConcurrentMap();
+    private long lastSyncTime = 0; // guarded by this
+    private volatile long lastFullSyncTime = 0;
+
     public static ExecutableDao getInstance(KylinConfig config) {
         ExecutableDao r = CACHE.get(config);
         if (r == null) {
@@ -74,6 +96,134 @@ public class ExecutableDao {
     private ExecutableDao(KylinConfig config) {
         logger.info("Using metadata url: " + config);
         this.store = DataModelManager.getInstance(config).getStore();
+        this.cacheEnabled = config.isJobDaoCacheEnabled();
+        this.resyncIntervalMillis = config.getJobDaoCacheResyncIntervalSecond() * 1000L;
+        if (cacheEnabled) {
+            Broadcaster.getInstance(config).registerListener(new JobSyncListener(), ExecutableManager.SYNC_ENTITY);
+        }
+    }
+
+    private class JobSyncListener extends Broadcaster.Listener {
+        @Override
+        public void onClearAll(Broadcaster broadcaster) throws IOException {
+            lastFullSyncTime = 0;
+        }
+
+        @Override
+        public void onEntityChange(Broadcaster broadcaster, String entity, Broadcaster.Event event, String cacheKey)
+                throws IOException {
+            // other changes are found by their timestamp on the next refresh
+            if (event == Broadcaster.Event.DROP) {
+                jobCache.remove(cacheKey);
+                // the outputs of steps are keyed by the job id followed by the step sequence
+                for (String id : outputCache.keySet()) {
+                    if (id.startsWith(cacheKey)) {
+                        outputCache.remove(id);
+                    }
+                }
+            }
+        }
+    }
+
+    private synchronized void syncCache() throws IOException {
+        long now = System.currentTimeMillis();
+        if (now - lastFullSyncTime > resyncIntervalMillis) {
+            List<ExecutablePO> jobs = store.getAllResources(ResourceStore.EXECUTE_RESOURCE_ROOT, ExecutablePO.class, JOB_SERIALIZER);
+            List<ExecutableOutputPO> outputs = store.getAllResources(ResourceStore.EXECUTE_OUTPUT_RESOURCE_ROOT, ExecutableOutputPO.class, JOB_OUTPUT_SERIALIZER);
+            for (ExecutableOutputPO output : outputs) {
+                output.setContent(null);
+            }
+            reload(jobCache, jobs);
+            reload(outputCache, outputs);
+            lastFullSyncTime = now;
+            logger.debug("Job cache reloaded with " + jobs.size() + " jobs and " + outputs.size() + " outputs in " + (System.currentTimeMillis() - now) + " ms");
+        } else {
+            long timeStart = lastSyncTime - SYNC_MARGIN_MILLIS;
+            for (ExecutablePO job : store.getAllResources(ResourceStore.EXECUTE_RESOURCE_ROOT, timeStart, Long.MAX_VALUE, ExecutablePO.class, JOB_SERIALIZER)) {
+                jobCache.put(job.getUuid(), job);
+            }
+            for (ExecutableOutputPO output : store.getAllResources(ResourceStore.EXECUTE_OUTPUT_RESOURCE_ROOT, timeStart, Long.MAX_VALUE, ExecutableOutputPO.class, JOB_OUTPUT_SERIALIZER)) {
+                cacheOutput(output);
+            }
+        }
+        lastSyncTime = now;
+    }
+
+    private static <T extends RootPersistentEntity> void reload(ConcurrentMap<String, T> cache, List<T> entities) {
+        Set<String> ids = Sets.newHashSetWithExpectedSize(entities.size());
+        for (T entity : entities) {
+            cache.put(entity.getUuid(), entity);
+            ids.add(entity.getUuid());
+        }
+        cache.keySet().retainAll(ids);
+    }
+
+    // keeps the newer one in case a refresh races with a write, the given output must not be shared
+    private void cacheOutput(ExecutableOutputPO output) {
+        // the step log can be large and stays in the store
+        output.setContent(null);
+        while (true) {
+            ExecutableOutputPO cached = outputCache.putIfAbsent(output.getUuid(), output);
+            if (cached == null || cached.getLastModified() > output.getLastModified()
+                    || outputCache.replace(output.getUuid(), cached, output)) {
+                return;
+            }
+        }
+    }
+
+    // cached outputs are not shared with callers, who may modify and write them back
+    private static ExecutableOutputPO copyOf(ExecutableOutputPO output) {
+        ExecutableOutputPO copy = new ExecutableOutputPO();
+        copy.setUuid(output.getUuid());
+        copy.setLastModified(output.getLastModified());
+        copy.setVersion(output.getVersion());
+        copy.setStatus(output.getStatus());
+        copy.setContent(output.getContent());
+        if (output.getInfo() != null) {
+            copy.setInfo(Maps.newHashMap(output.getInfo()));
+        }
+        return copy;
+    }
+
+    private static List<ExecutableOutputPO> copyOf(Collection<ExecutableOutputPO> outputs, long timeStart, long timeEndExclusive) {
+        List<ExecutableOutputPO> result = Lists.newArrayListWithCapacity(outputs.size());
+        for (ExecutableOutputPO output : outputs) {
+            if (output.getLastModified() >= timeStart && output.getLastModified() < timeEndExclusive) {
+                result.add(copyOf(output));
+            }
+        }
+        return result;
+    }
+
+    // cached jobs are not shared with callers either, the copy includes the tasks
+    private static ExecutablePO copyOf(ExecutablePO job) {
+        ExecutablePO copy = new ExecutablePO();
+        copy.setUuid(job.getUuid());
+        copy.setLastModified(job.getLastModified());
+        copy.setVersion(job.getVersion());
+        copy.setName(job.getName());
+        copy.setType(job.getType());
+        if (job.getParams() != null) {
+            copy.setParams(Maps.newHashMap(job.getParams()));
+        }
+        if (job.getTasks() != null) {
+            List<ExecutablePO> tasks = Lists.newArrayListWithCapacity(job.getTasks().size());
+            for (ExecutablePO task : job.getTasks()) {
+                tasks.add(copyOf(task));
+            }
+            copy.setTasks(tasks);
+        }
+        return copy;
+    }
+
+    private static List<ExecutablePO> copyOf(Collection<ExecutablePO> jobs, long timeStart, long timeEndExclusive) {
+        List<ExecutablePO> result = Lists.newArrayListWithCapacity(jobs.size());
+        for (ExecutablePO job : jobs) {
+            if (job.getLastModified() >= timeStart && job.getLastModified() < timeEndExclusive) {
+                result.add(copyOf(job));
+            }
+        }
+        return result;
     }
 
     private String pathOfJob(ExecutablePO job) {
@@ -105,16 +255,19 @@ public class ExecutableDao {
     }
 
     public List<ExecutableOutputPO> getJobOutputs() throws PersistentException {
-        try {
-            return store.getAllResources(ResourceStore.EXECUTE_OUTPUT_RESOURCE_ROOT, ExecutableOutputPO.class, JOB_OUTPUT_SERIALIZER);
-        } catch (IOException e) {
-            logger.error("error get all Jobs:", e);
-            throw new PersistentException(e);
-        }
+        return getJobOutputs(Long.MIN_VALUE, Long.MAX_VALUE);
     }
 
+    /**
+     * Lists the outputs modified in given time range. If cached, they come without content, read that by
+     * {@link #getJobOutput(String)} before writing an output back.
+     */
     public List<ExecutableOutputPO> getJobOutputs(long timeStart, long timeEndExclusive) throws PersistentException {
         try {
+            if (cacheEnabled) {
+                syncCache();
+                return copyOf(outputCache.values(), timeStart, timeEndExclusive);
+            }
             return store.getAllResources(ResourceStore.EXECUTE_OUTPUT_RESOURCE_ROOT, timeStart, timeEndExclusive, ExecutableOutputPO.class, JOB_OUTPUT_SERIALIZER);
         } catch (IOException e) {
             logger.error("error get all Jobs:", e);
@@ -122,17 +275,38 @@ public class ExecutableDao {
         }
     }
 
-    public List<ExecutablePO> getJobs() throws PersistentException {
+    /**
+     * Reads the outputs of given ids from the store in one batch, those not exist are absent from the result.
+     */
+    public List<ExecutableOutputPO> getJobOutputs(Collection<String> uuids) throws PersistentException {
+        List<String> paths = Lists.newArrayListWithCapacity(uuids.size());
+        for (String uuid : uuids) {
+            paths.add(pathOfJobOutput(uuid));
+        }
         try {
-            return store.getAllResources(ResourceStore.EXECUTE_RESOURCE_ROOT, ExecutablePO.class, JOB_SERIALIZER);
+            List<ExecutableOutputPO> result = store.getResources(paths, ExecutableOutputPO.class, JOB_OUTPUT_SERIALIZER);
+            if (cacheEnabled) {
+                for (ExecutableOutputPO output : result) {
+                    cacheOutput(copyOf(output));
+                }
+            }
+            return result;
         } catch (IOException e) {
-            logger.error("error get all Jobs:", e);
+            logger.error("error get job outputs:" + uuids, e);
             throw new PersistentException(e);
         }
     }
 
+    public List<ExecutablePO> getJobs() throws PersistentException {
+        return getJobs(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
     public List<ExecutablePO> getJobs(long timeStart, long timeEndExclusive) throws PersistentException {
         try {
+            if (cacheEnabled) {
+                syncCache();
+                return copyOf(jobCache.values(), timeStart, timeEndExclusive);
+            }
             return store.getAllResources(ResourceStore.EXECUTE_RESOURCE_ROOT, timeStart, timeEndExclusive, ExecutablePO.class, JOB_SERIALIZER);
         } catch (IOException e) {
             logger.error("error get all Jobs:", e);
@@ -159,6 +333,17 @@ public class ExecutableDao {
 
     public ExecutablePO getJob(String uuid) throws PersistentException {
         try {
+            if (cacheEnabled) {
+                ExecutablePO job = jobCache.get(uuid);
+                if (job == null) {
+                    job = readJobResource(pathOfJob(uuid));
+                    if (job == null) {
+                        return null;
+                    }
+                    jobCache.put(uuid, job);
+                }
+                return copyOf(job);
+            }
             return readJobResource(pathOfJob(uuid));
         } catch (IOException e) {
             logger.error("error get job:" + uuid, e);
@@ -171,6 +356,7 @@ public class ExecutableDao {
             if (getJob(job.getUuid()) != null) {
                 throw new IllegalArgumentException("job id:" + job.getUuid() + " already exists");
             }
+            // not cached to keep the object apart from the caller, the next refresh will find it
             writeJobResource(pathOfJob(job), job);
             return job;
         } catch (IOException e) {
@@ -182,6 +368,7 @@ public class ExecutableDao {
     public void deleteJob(String uuid) throws PersistentException {
         try {
             store.deleteResource(pathOfJob(uuid));
+            jobCache.remove(uuid);
         } catch (IOException e) {
             logger.error("error delete job:" + uuid, e);
             throw new PersistentException(e);
@@ -190,12 +377,16 @@ public class ExecutableDao {
 
     public ExecutableOutputPO getJobOutput(String uuid) throws PersistentException {
         try {
+            // always from the store, the output is often modified and written back
             ExecutableOutputPO result = readJobOutputResource(pathOfJobOutput(uuid));
             if (result == null) {
                 result = new ExecutableOutputPO();
                 result.setUuid(uuid);
                 return result;
             }
+            if (cacheEnabled) {
+                cacheOutput(copyOf(result));
+            }
             return result;
         } catch (IOException e) {
             logger.error("error get job output id:" + uuid, e);
@@ -206,7 +397,12 @@ public class ExecutableDao {
     public void addJobOutput(ExecutableOutputPO output) throws PersistentException {
         try {
             output.setLastModified(0);
-            writeJobOutputResource(pathOfJobOutput(output.getUuid()), output);
+            final long ts = writeJobOutputResource(pathOfJobOutput(output.getUuid()), output);
+            if (cacheEnabled) {
+                ExecutableOutputPO cached = copyOf(output);
+                cached.setLastModified(ts);
+                cacheOutput(cached);
+            }
         } catch (IOException e) {
             logger.error("error update job output id:" + output.getUuid(), e);
             throw new PersistentException(e);
@@ -217,6 +413,9 @@ public class ExecutableDao {
         try {
             final long ts = writeJobOutputResource(pathOfJobOutput(output.getUuid()), output);
             output.setLastModified(ts);
+            if (cacheEnabled) {
+                cacheOutput(copyOf(output));
+            }
         } catch (IOException e) {
             logger.error("error update job output id:" + output.getUuid(), e);
             throw new PersistentException(e);
@@ -226,6 +425,7 @@ public class ExecutableDao {
     public void deleteJobOutput(String uuid) throws PersistentException {
         try {
             store.deleteResource(pathOfJobOutput(uuid));
+            outputCache.remove(uuid);
         } catch (IOException e) {
             logger.error("error delete job:" + uuid, e);
             throw new PersistentException(e);
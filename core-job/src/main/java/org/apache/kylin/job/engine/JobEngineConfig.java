@@ -141,6 +141,10 @@ public class JobEngineConfig {
         return config.getSchedulerPollIntervalSecond();
     }
 
+    public int getIndexResyncIntervalSecond() {
+        return config.getSchedulerIndexResyncIntervalSecond();
+    }
+
     /*
      * (non-Javadoc)
      * 
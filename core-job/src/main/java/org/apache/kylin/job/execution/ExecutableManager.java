@@ -23,6 +23,7 @@ import static org.apache.kylin.job.constant.ExecutableConstants.YARN_APP_ID;
 import static org.apache.kylin.job.constant.ExecutableConstants.YARN_APP_URL;
 
 import java.lang.reflect.Constructor;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.IllegalFormatException;
 import java.util.List;
@@ -39,6 +40,7 @@ import org.apache.kylin.job.dao.ExecutableOutputPO;
 import org.apache.kylin.job.dao.ExecutablePO;
 import org.apache.kylin.job.exception.IllegalStateTranferException;
 import org.apache.kylin.job.exception.PersistentException;
+import org.apache.kylin.metadata.cachesync.Broadcaster;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -53,6 +55,9 @@ public class ExecutableManager {
     private static final Logger logger = LoggerFactory.getLogger(ExecutableManager.class);
     private static final ConcurrentMap<KylinConfig, ExecutableManager> CACHE = new ConcurrentHashMap<KylinConfig, ExecutableManager>();
 
+    // the broadcast entity of job changes, cache key is the job id
+    public static final String SYNC_ENTITY = "execute_output";
+
     private final KylinConfig config;
     private final ExecutableDao executableDao;
 
@@ -108,6 +113,23 @@ public class ExecutableManager {
             logger.error("fail to submit job:" + executable.getId(), e);
             throw new RuntimeException(e);
         }
+        announceJobChange(executable.getId(), Broadcaster.Event.CREATE, true);
+    }
+
+    /**
+     * Tells the job scheduler, in this server and optionally in the others, that the state of a job has changed.
+     * Other servers only need to know what may start a job: a new job, a job becoming READY, or a dropped job.
+     */
+    private void announceJobChange(String jobId, Broadcaster.Event event, boolean toOtherServers) {
+        Broadcaster broadcaster = Broadcaster.getInstance(config);
+        try {
+            broadcaster.notifyListener(SYNC_ENTITY, event, jobId);
+        } catch (Exception e) {
+            logger.warn("fail to notify change of job:" + jobId, e);
+        }
+        if (toOtherServers) {
+            broadcaster.queue(SYNC_ENTITY, event.getType(), jobId);
+        }
     }
 
     private void addJobOutput(AbstractExecutable executable) throws PersistentException {
@@ -129,6 +151,7 @@ public class ExecutableManager {
             logger.error("fail to delete job:" + jobId, e);
             throw new RuntimeException(e);
         }
+        announceJobChange(jobId, Broadcaster.Event.DROP, true);
     }
 
     public AbstractExecutable getJob(String uuid) {
@@ -151,6 +174,22 @@ public class ExecutableManager {
         }
     }
 
+    /**
+     * Reads the outputs of given jobs or steps in one batch, the ids without output are absent from the result.
+     */
+    public Map<String, Output> getOutputs(Collection<String> uuids) {
+        try {
+            HashMap<String, Output> result = Maps.newHashMap();
+            for (ExecutableOutputPO jobOutput : executableDao.getJobOutputs(uuids)) {
+                result.put(jobOutput.getId(), parseOutput(jobOutput));
+            }
+            return result;
+        } catch (PersistentException e) {
+            logger.error("fail to get job outputs:" + uuids, e);
+            throw new RuntimeException(e);
+        }
+    }
+
     private DefaultOutput parseOutput(ExecutableOutputPO jobOutput) {
         final DefaultOutput result = new DefaultOutput();
         result.setExtra(jobOutput.getInfo());
@@ -274,10 +313,13 @@ public class ExecutableManager {
     public void updateAllRunningJobsToError() {
         try {
             final List<ExecutableOutputPO> jobOutputs = executableDao.getJobOutputs();
-            for (ExecutableOutputPO executableOutputPO : jobOutputs) {
-                if (executableOutputPO.getStatus().equalsIgnoreCase(ExecutableState.RUNNING.toString())) {
+            for (ExecutableOutputPO listed : jobOutputs) {
+                if (listed.getStatus().equalsIgnoreCase(ExecutableState.RUNNING.toString())) {
+                    // the listed output may come without content, which must not be written back
+                    ExecutableOutputPO executableOutputPO = executableDao.getJobOutput(listed.getId());
                     executableOutputPO.setStatus(ExecutableState.ERROR.toString());
                     executableDao.updateJobOutput(executableOutputPO);
+                    announceJobChange(executableOutputPO.getId(), Broadcaster.Event.UPDATE, false);
                 }
             }
         } catch (PersistentException e) {
@@ -289,10 +331,13 @@ public class ExecutableManager {
     public void resumeAllRunningJobs() {
         try {
             final List<ExecutableOutputPO> jobOutputs = executableDao.getJobOutputs();
-            for (ExecutableOutputPO executableOutputPO : jobOutputs) {
-                if (executableOutputPO.getStatus().equalsIgnoreCase(ExecutableState.RUNNING.toString())) {
+            for (ExecutableOutputPO listed : jobOutputs) {
+                if (listed.getStatus().equalsIgnoreCase(ExecutableState.RUNNING.toString())) {
+                    // the listed output may come without content, which must not be written back
+                    ExecutableOutputPO executableOutputPO = executableDao.getJobOutput(listed.getId());
                     executableOutputPO.setStatus(ExecutableState.READY.toString());
                     executableDao.updateJobOutput(executableOutputPO);
+                    announceJobChange(executableOutputPO.getId(), Broadcaster.Event.UPDATE, false);
                 }
             }
         } catch (PersistentException e) {
@@ -419,6 +464,9 @@ public class ExecutableManager {
             }
             executableDao.updateJobOutput(jobOutput);
             logger.info("job id:" + jobId + " from " + oldStatus + " to " + newStatus);
+            if (newStatus != null && oldStatus != newStatus) {
+                announceJobChange(jobId, Broadcaster.Event.UPDATE, newStatus == ExecutableState.READY);
+            }
         } catch (PersistentException e) {
             logger.error("error change job:" + jobId + " to " + newStatus);
             throw new RuntimeException(e);
@@ -435,6 +483,7 @@ public class ExecutableManager {
                 jobOutput.setContent(output);
             }
             executableDao.updateJobOutput(jobOutput);
+            announceJobChange(jobId, Broadcaster.Event.UPDATE, state == ExecutableState.READY);
         } catch (PersistentException e) {
             throw new RuntimeException(e);
         }
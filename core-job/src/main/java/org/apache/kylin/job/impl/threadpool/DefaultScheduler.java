@@ -18,9 +18,13 @@
 
 package org.apache.kylin.job.impl.threadpool;
 
+import java.io.IOException;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -29,6 +33,11 @@ import java.util.concurrent.TimeUnit;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.state.ConnectionState;
 import org.apache.curator.framework.state.ConnectionStateListener;
+import org.apache.kylin.common.metrics.common.Metrics;
+import org.apache.kylin.common.metrics.common.MetricsConstant;
+import org.apache.kylin.common.metrics.common.MetricsFactory;
+import org.apache.kylin.common.metrics.common.MetricsNameBuilder;
+import org.apache.kylin.common.metrics.common.MetricsVariable;
 import org.apache.kylin.common.util.SetThreadName;
 import org.apache.kylin.job.Scheduler;
 import org.apache.kylin.job.engine.JobEngineConfig;
@@ -40,10 +49,13 @@ import org.apache.kylin.job.execution.ExecutableManager;
 import org.apache.kylin.job.execution.ExecutableState;
 import org.apache.kylin.job.execution.Output;
 import org.apache.kylin.job.lock.JobLock;
+import org.apache.kylin.metadata.cachesync.Broadcaster;
+import org.apache.kylin.metadata.cachesync.Broadcaster.Event;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 /**
  */
@@ -55,14 +67,36 @@ public class DefaultScheduler implements Scheduler<AbstractExecutable>, Connecti
     private ScheduledExecutorService fetcherPool;
     private ExecutorService jobPool;
     private DefaultContext context;
+    private JobStateIndex jobStateIndex;
 
     private static final Logger logger = LoggerFactory.getLogger(DefaultScheduler.class);
     private volatile boolean initialized = false;
     private volatile boolean hasStarted = false;
+    private boolean metricsEnabled = false;
     private JobEngineConfig jobEngineConfig;
 
     private static DefaultScheduler INSTANCE = null;
 
+    // a static listener survives broadcaster cache wipe, it forwards job changes to the current scheduler
+    private static final Broadcaster.Listener JOB_SYNC_LISTENER = new Broadcaster.Listener() {
+        @Override
+        public void onClearAll(Broadcaster broadcaster) throws IOException {
+            DefaultScheduler scheduler = getInstance();
+            if (scheduler != null && scheduler.jobStateIndex != null) {
+                scheduler.jobStateIndex.seed();
+            }
+        }
+
+        @Override
+        public void onEntityChange(Broadcaster broadcaster, String entity, Event event, String cacheKey)
+                throws IOException {
+            DefaultScheduler scheduler = getInstance();
+            if (scheduler != null) {
+                scheduler.onJobChange(event, cacheKey);
+            }
+        }
+    };
+
     public DefaultScheduler() {
         if (INSTANCE != null) {
             throw new IllegalStateException("DefaultScheduler has been initiated.");
@@ -73,6 +107,7 @@ public class DefaultScheduler implements Scheduler<AbstractExecutable>, Connecti
 
         @Override
         synchronized public void run() {
+            long startTime = System.currentTimeMillis();
             try {
                 // logger.debug("Job Fetcher is running...");
                 Map<String, Executable> runningJobs = context.getRunningJobs();
@@ -81,23 +116,48 @@ public class DefaultScheduler implements Scheduler<AbstractExecutable>, Connecti
                     return;
                 }
 
+                // in case any job change was missed, e.g. a failed broadcast
+                if (startTime - jobStateIndex.getLastSeedTime() > jobEngineConfig.getIndexResyncIntervalSecond()
+                        * 1000L) {
+                    jobStateIndex.seed();
+                }
+
+                // the index may lag behind, confirm the ready ones with the store in one batch before scheduling
+                Map<String, ExecutableState> jobStates = jobStateIndex.getJobStates();
+                Set<String> readyIds = Sets.newHashSet();
+                for (Map.Entry<String, ExecutableState> entry : jobStates.entrySet()) {
+                    if (entry.getValue() == ExecutableState.READY && !runningJobs.containsKey(entry.getKey())) {
+                        readyIds.add(entry.getKey());
+                    }
+                }
+                Map<String, Output> readyOutputs = readyIds.isEmpty() ? Collections.<String, Output> emptyMap()
+                        : executableManager.getOutputs(readyIds);
+
                 int nRunning = 0, nReady = 0, nStopped = 0, nOthers = 0, nError = 0, nDiscarded = 0, nSUCCEED = 0;
-                for (final String id : executableManager.getAllJobIds()) {
+                for (Map.Entry<String, ExecutableState> entry : jobStates.entrySet()) {
+                    final String id = entry.getKey();
                     if (runningJobs.containsKey(id)) {
                         // logger.debug("Job id:" + id + " is already running");
                         nRunning++;
                         continue;
                     }
-                    final Output output = executableManager.getOutput(id);
-                    if ((output.getState() != ExecutableState.READY)) {
+                    ExecutableState state = entry.getValue();
+                    if (state == ExecutableState.READY) {
+                        // the index is live, a job may become ready after the batch
+                        Output output = readyIds.contains(id) ? readyOutputs.get(id) : executableManager.getOutput(id);
+                        // a job without output is taken as ready, as the output would default to READY once written
+                        state = output == null ? ExecutableState.READY : output.getState();
+                        jobStateIndex.update(id, state);
+                    }
+                    if (state != ExecutableState.READY) {
                         // logger.debug("Job id:" + id + " not runnable");
-                        if (output.getState() == ExecutableState.DISCARDED) {
+                        if (state == ExecutableState.DISCARDED) {
                             nDiscarded++;
-                        } else if (output.getState() == ExecutableState.ERROR) {
+                        } else if (state == ExecutableState.ERROR) {
                             nError++;
-                        } else if (output.getState() == ExecutableState.SUCCEED) {
+                        } else if (state == ExecutableState.SUCCEED) {
                             nSUCCEED++;
-                        } else if (output.getState() == ExecutableState.STOPPED) {
+                        } else if (state == ExecutableState.STOPPED) {
                             nStopped++;
                         } else {
                             nOthers++;
@@ -122,9 +182,17 @@ public class DefaultScheduler implements Scheduler<AbstractExecutable>, Connecti
                 }
                 logger.info("Job Fetcher: " + nRunning + " should running, " + runningJobs.size() + " actual running, "
                         + nStopped + " stopped, " + nReady + " ready, " + nSUCCEED + " already succeed, " + nError
-                        + " error, " + nDiscarded + " discarded, " + nOthers + " others");
+                        + " error, " + nDiscarded + " discarded, " + nOthers + " others, fetched in "
+                        + (System.currentTimeMillis() - startTime) + " ms");
             } catch (Exception e) {
                 logger.warn("Job Fetcher caught a exception " + e);
+            } finally {
+                if (metricsEnabled) {
+                    MetricsFactory.getInstance().updateTimer(
+                            MetricsNameBuilder.buildMetricName(MetricsNameBuilder.JOB_SCHEDULER,
+                                    MetricsConstant.JOB_FETCH_DURATION),
+                            System.currentTimeMillis() - startTime, TimeUnit.MILLISECONDS);
+                }
             }
         }
     }
@@ -158,6 +226,52 @@ public class DefaultScheduler implements Scheduler<AbstractExecutable>, Connecti
         return INSTANCE;
     }
 
+    private void onJobChange(Event event, String jobId) {
+        if (jobStateIndex == null) {
+            return;
+        }
+
+        if (event == Event.DROP) {
+            jobStateIndex.remove(jobId);
+            return;
+        }
+
+        ExecutableState state = jobStateIndex.refresh(jobId, event == Event.CREATE);
+        if (state == ExecutableState.READY) {
+            // start the job now rather than at next poll
+            try {
+                fetcherPool.schedule(fetcher, 0, TimeUnit.SECONDS);
+            } catch (RejectedExecutionException e) {
+                logger.debug("Job Fetcher has shut down, job " + jobId + " is not scheduled");
+            }
+        }
+    }
+
+    private void registerMetrics() {
+        metricsEnabled = jobEngineConfig.getConfig().isSchedulerMetricsEnabled();
+        if (!metricsEnabled) {
+            return;
+        }
+
+        Metrics metrics = MetricsFactory.getInstance();
+        metrics.addGauge(
+                MetricsNameBuilder.buildMetricName(MetricsNameBuilder.JOB_SCHEDULER, MetricsConstant.JOB_READY_COUNT),
+                new MetricsVariable<Integer>() {
+                    @Override
+                    public Integer getValue() {
+                        return jobStateIndex.getJobCount(ExecutableState.READY);
+                    }
+                });
+        metrics.addGauge(
+                MetricsNameBuilder.buildMetricName(MetricsNameBuilder.JOB_SCHEDULER, MetricsConstant.JOB_RUNNING_COUNT),
+                new MetricsVariable<Integer>() {
+                    @Override
+                    public Integer getValue() {
+                        return context.getRunningJobs().size();
+                    }
+                });
+    }
+
     @Override
     public void stateChanged(CuratorFramework client, ConnectionState newState) {
         if ((newState == ConnectionState.SUSPENDED) || (newState == ConnectionState.LOST)) {
@@ -221,9 +335,15 @@ public class DefaultScheduler implements Scheduler<AbstractExecutable>, Connecti
 
         executableManager.resumeAllRunningJobs();
 
+        fetcher = new FetcherRunner();
+        jobStateIndex = new JobStateIndex(executableManager);
+        Broadcaster.getInstance(jobEngineConfig.getConfig()).registerStaticListener(JOB_SYNC_LISTENER,
+                ExecutableManager.SYNC_ENTITY);
+        jobStateIndex.seed();
+        registerMetrics();
+
         int pollSecond = jobEngineConfig.getPollIntervalSecond();
         logger.info("Fetching jobs every {} seconds", pollSecond);
-        fetcher = new FetcherRunner();
         fetcherPool.scheduleAtFixedRate(fetcher, pollSecond / 10, pollSecond, TimeUnit.SECONDS);
         hasStarted = true;
     }
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.job.impl.threadpool;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.kylin.job.execution.ExecutableManager;
+import org.apache.kylin.job.execution.ExecutableState;
+import org.apache.kylin.job.execution.Output;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Maps;
+
+/**
+ * In memory state of all top level jobs, so that the job fetcher doesn't read the output of every job ever
+ * submitted on each poll. It is seeded from the store once, then follows the job changes announced by
+ * ExecutableManager, either locally or from other servers through Broadcaster.
+ *
+ * The index may lag behind the store, a READY job should be confirmed with the store before it is scheduled.
+ */
+public class JobStateIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobStateIndex.class);
+
+    private final ExecutableManager executableManager;
+    private final ConcurrentMap<String, ExecutableState> jobStates = Maps.newConcurrentMap();
+    private volatile long lastSeedTime = 0;
+
+    public JobStateIndex(ExecutableManager executableManager) {
+        this.executableManager = executableManager;
+    }
+
+    /**
+     * Reloads the state of all top level jobs from the store.
+     */
+    public synchronized void seed() {
+        long startTime = System.currentTimeMillis();
+        Map<String, Output> allOutputs = executableManager.getAllOutputs();
+        Map<String, ExecutableState> states = Maps.newHashMap();
+        for (String id : executableManager.getAllJobIds()) {
+            Output output = allOutputs.get(id);
+            if (output != null) {
+                states.put(id, output.getState());
+            }
+        }
+        jobStates.keySet().retainAll(states.keySet());
+        jobStates.putAll(states);
+        lastSeedTime = System.currentTimeMillis();
+        logger.info("Job state index seeded with " + states.size() + " jobs in " + (lastSeedTime - startTime) + " ms");
+    }
+
+    /**
+     * Reloads the state of one job from the store. Jobs not in the index are ignored, unless it is a new job,
+     * because the outputs of sub tasks change too and they are not scheduled on their own.
+     *
+     * @return the state in index after refresh, or null if the job is not in the index
+     */
+    public synchronized ExecutableState refresh(String jobId, boolean isNewJob) {
+        if (!isNewJob && !jobStates.containsKey(jobId)) {
+            return null;
+        }
+
+        Output output;
+        try {
+            output = executableManager.getOutput(jobId);
+        } catch (IllegalArgumentException e) {
+            // no output, the job has gone
+            jobStates.remove(jobId);
+            return null;
+        }
+        jobStates.put(jobId, output.getState());
+        return output.getState();
+    }
+
+    public synchronized void update(String jobId, ExecutableState state) {
+        if (jobStates.containsKey(jobId)) {
+            jobStates.put(jobId, state);
+        }
+    }
+
+    public void remove(String jobId) {
+        jobStates.remove(jobId);
+    }
+
+    public Map<String, ExecutableState> getJobStates() {
+        return Collections.unmodifiableMap(jobStates);
+    }
+
+    public int getJobCount(ExecutableState state) {
+        int count = 0;
+        for (ExecutableState s : jobStates.values()) {
+            if (s == state) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public long getLastSeedTime() {
+        return lastSeedTime;
+    }
+}
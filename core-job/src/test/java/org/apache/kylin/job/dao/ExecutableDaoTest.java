@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.job.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.persistence.JsonSerializer;
+import org.apache.kylin.common.persistence.ResourceStore;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.job.execution.ExecutableManager;
+import org.apache.kylin.metadata.cachesync.Broadcaster;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class ExecutableDaoTest extends LocalFileMetadataTestCase {
+
+    private ExecutableDao dao;
+
+    @Before
+    public void setup() throws Exception {
+        createTestMetadata();
+        dao = ExecutableDao.getInstance(KylinConfig.getInstanceFromEnv());
+        for (String jobId : dao.getJobIds()) {
+            dao.deleteJob(jobId);
+            dao.deleteJobOutput(jobId);
+        }
+    }
+
+    @After
+    public void after() throws Exception {
+        cleanupTestMetadata();
+    }
+
+    @Test
+    public void testListingFollowsStore() throws Exception {
+        addJob("job1");
+        assertEquals(1, dao.getJobs().size());
+        assertEquals("READY", dao.getJobOutputs().get(0).getStatus());
+
+        // written behind the cache, e.g. by another server
+        ExecutableOutputPO output = dao.getJobOutput("job1");
+        output.setStatus("RUNNING");
+        ResourceStore store = ResourceStore.getStore(KylinConfig.getInstanceFromEnv());
+        store.putResource(ExecutableDao.pathOfJobOutput("job1"), output,
+                new JsonSerializer<ExecutableOutputPO>(ExecutableOutputPO.class));
+        addJob("job2");
+
+        assertEquals(2, dao.getJobs().size());
+        List<ExecutableOutputPO> outputs = dao.getJobOutputs();
+        assertEquals(2, outputs.size());
+        for (ExecutableOutputPO po : outputs) {
+            assertEquals(po.getUuid().equals("job1") ? "RUNNING" : "READY", po.getStatus());
+        }
+    }
+
+    @Test
+    public void testOutputsNotShared() throws Exception {
+        addJob("job1");
+        ExecutableOutputPO output = dao.getJobOutputs().get(0);
+        output.setStatus("ERROR");
+        output.getInfo().put("key", "value");
+        assertEquals("READY", dao.getJobOutputs().get(0).getStatus());
+        assertNull(dao.getJobOutputs().get(0).getInfo().get("key"));
+
+        dao.updateJobOutput(output);
+        output.setStatus("SUCCEED");
+        assertEquals("ERROR", dao.getJobOutputs().get(0).getStatus());
+    }
+
+    @Test
+    public void testContentNotCached() throws Exception {
+        addJob("job1");
+        ExecutableOutputPO output = dao.getJobOutput("job1");
+        output.setContent("step log");
+        dao.updateJobOutput(output);
+
+        assertNull(dao.getJobOutputs().get(0).getContent());
+        assertEquals("step log", dao.getJobOutput("job1").getContent());
+        assertEquals("step log", dao.getJobOutputs(Arrays.asList("job1")).get(0).getContent());
+    }
+
+    @Test
+    public void testJobsNotShared() throws Exception {
+        addJob("job1");
+        ExecutablePO job = dao.getJobs().get(0);
+        job.setName("changed");
+        job.getParams().put("key", "value");
+        assertEquals("job1", dao.getJobs().get(0).getName());
+        assertNull(dao.getJobs().get(0).getParams().get("key"));
+
+        job = dao.getJob("job1");
+        job.setName("changed");
+        job.getTasks().get(0).setName("changed");
+        assertEquals("job1", dao.getJob("job1").getName());
+        assertEquals("task1", dao.getJob("job1").getTasks().get(0).getName());
+    }
+
+    @Test
+    public void testBulkOutputs() throws Exception {
+        addJob("job1");
+        addJob("job2");
+        List<ExecutableOutputPO> outputs = dao.getJobOutputs(Arrays.asList("job1", "job2", "not_exist"));
+        assertEquals(2, outputs.size());
+        assertEquals("job1", outputs.get(0).getUuid());
+        assertEquals("job2", outputs.get(1).getUuid());
+    }
+
+    @Test
+    public void testDropBroadcast() throws Exception {
+        addJob("job1");
+        ExecutableOutputPO stepOutput = new ExecutableOutputPO();
+        stepOutput.setUuid("job1-00");
+        dao.addJobOutput(stepOutput);
+        assertEquals(1, dao.getJobs().size());
+        assertEquals(2, dao.getJobOutputs().size());
+
+        // deleted behind the cache, then announced
+        ResourceStore store = ResourceStore.getStore(KylinConfig.getInstanceFromEnv());
+        store.deleteResource(ExecutableDao.pathOfJob("job1"));
+        store.deleteResource(ExecutableDao.pathOfJobOutput("job1"));
+        store.deleteResource(ExecutableDao.pathOfJobOutput("job1-00"));
+        Broadcaster.getInstance(KylinConfig.getInstanceFromEnv()).notifyListener(ExecutableManager.SYNC_ENTITY,
+                Broadcaster.Event.DROP, "job1");
+
+        assertEquals(0, dao.getJobs().size());
+        assertEquals(0, dao.getJobOutputs().size());
+        assertNull(dao.getJob("job1"));
+    }
+
+    private void addJob(String uuid) throws Exception {
+        ExecutablePO job = new ExecutablePO();
+        job.setUuid(uuid);
+        job.setName(uuid);
+        job.setType("org.apache.kylin.job.SucceedTestExecutable");
+        ExecutablePO task = new ExecutablePO();
+        task.setUuid(uuid + "-00");
+        task.setName("task1");
+        task.setType("org.apache.kylin.job.SucceedTestExecutable");
+        job.setTasks(Lists.newArrayList(task));
+        dao.addJob(job);
+        ExecutableOutputPO output = new ExecutableOutputPO();
+        output.setUuid(uuid);
+        dao.addJobOutput(output);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.job.impl.threadpool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.job.BaseTestExecutable;
+import org.apache.kylin.job.SucceedTestExecutable;
+import org.apache.kylin.job.execution.DefaultChainedExecutable;
+import org.apache.kylin.job.execution.ExecutableManager;
+import org.apache.kylin.job.execution.ExecutableState;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JobStateIndexTest extends LocalFileMetadataTestCase {
+
+    private ExecutableManager manager;
+
+    @Before
+    public void setup() throws Exception {
+        createTestMetadata();
+        manager = ExecutableManager.getInstance(KylinConfig.getInstanceFromEnv());
+        for (String jobId : manager.getAllJobIds()) {
+            manager.deleteJob(jobId);
+        }
+    }
+
+    @After
+    public void after() throws Exception {
+        cleanupTestMetadata();
+    }
+
+    @Test
+    public void testSeedAndRefresh() {
+        DefaultChainedExecutable job1 = new DefaultChainedExecutable();
+        BaseTestExecutable task1 = new SucceedTestExecutable();
+        job1.addTask(task1);
+        manager.addJob(job1);
+
+        JobStateIndex index = new JobStateIndex(manager);
+        index.seed();
+        // only top level jobs are indexed
+        assertEquals(1, index.getJobStates().size());
+        assertEquals(ExecutableState.READY, index.getJobStates().get(job1.getId()));
+
+        manager.discardJob(job1.getId());
+        assertNull(index.refresh(task1.getId(), false));
+        assertEquals(ExecutableState.DISCARDED, index.refresh(job1.getId(), false));
+        assertEquals(0, index.getJobCount(ExecutableState.READY));
+
+        DefaultChainedExecutable job2 = new DefaultChainedExecutable();
+        job2.addTask(new SucceedTestExecutable());
+        manager.addJob(job2);
+        assertNull(index.refresh(job2.getId(), false));
+        assertEquals(ExecutableState.READY, index.refresh(job2.getId(), true));
+        assertEquals(1, index.getJobCount(ExecutableState.READY));
+
+        manager.deleteJob(job2.getId());
+        index.seed();
+        assertFalse(index.getJobStates().containsKey(job2.getId()));
+        assertEquals(1, index.getJobStates().size());
+    }
+}
@@ -18,16 +18,30 @@
 
 package org.apache.kylin.measure.bitmap;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.kylin.measure.MeasureAggregator;
 
+/**
+ * Aggregates bitmaps by buffering the incoming values and OR-ing them all at once, which is much cheaper than
+ * OR-ing them into the result one by one when a group has many rows.
+ */
 public class BitmapAggregator extends MeasureAggregator<BitmapCounter> {
     private static final BitmapCounterFactory bitmapFactory = RoaringBitmapCounterFactory.INSTANCE;
 
+    // bound the buffered values, so that the memory held in buffer is not far from the union's
+    static final int MAX_PENDING = 256;
+
     private BitmapCounter sum;
+    private List<BitmapCounter> pending;
+    private int pendingBytes;
 
     @Override
     public void reset() {
         sum = null;
+        pending = null;
+        pendingBytes = 0;
     }
 
     @Override
@@ -40,7 +54,24 @@ public class BitmapAggregator extends MeasureAggregator<BitmapCounter> {
             return;
         }
 
-        sum.orWith(value);
+        if (pending == null) {
+            pending = new ArrayList<>();
+        }
+        pending.add(value);
+        pendingBytes += value.getMemBytes();
+        if (pending.size() >= MAX_PENDING) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        if (pending == null || pending.isEmpty()) {
+            return;
+        }
+        pending.add(sum);
+        sum = bitmapFactory.union(pending);
+        pending.clear();
+        pendingBytes = 0;
     }
 
     @Override
@@ -57,11 +88,16 @@ public class BitmapAggregator extends MeasureAggregator<BitmapCounter> {
 
     @Override
     public BitmapCounter getState() {
+        flush();
         return sum;
     }
 
     @Override
     public int getMemBytesEstimate() {
-        return sum == null ? 0 : sum.getMemBytes();
+        if (sum == null) {
+            return 0;
+        }
+        int pendingRefs = pending == null ? 0 : 8 * pending.size();
+        return sum.getMemBytes() + pendingBytes + pendingRefs;
     }
 }
@@ -20,6 +20,7 @@ package org.apache.kylin.measure.bitmap;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.List;
 
 public interface BitmapCounterFactory {
     BitmapCounter newBitmap();
@@ -29,4 +30,9 @@ public interface BitmapCounterFactory {
     BitmapCounter newBitmap(long counter);
 
     BitmapCounter newBitmap(ByteBuffer in) throws IOException;
+
+    /**
+     * @return a new bitmap of the union of the given ones in a single pass, the given ones are not modified
+     */
+    BitmapCounter union(List<BitmapCounter> counters);
 }
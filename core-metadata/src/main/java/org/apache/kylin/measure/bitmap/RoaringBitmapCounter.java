@@ -19,6 +19,7 @@
 package org.apache.kylin.measure.bitmap;
 
 import org.apache.kylin.common.util.ByteBufferOutputStream;
+import org.roaringbitmap.buffer.BufferFastAggregation;
 import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
 import org.roaringbitmap.buffer.MutableRoaringBitmap;
 
@@ -28,6 +29,7 @@ import java.io.Serializable;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * A {@link BitmapCounter} based on roaring bitmap.
@@ -60,6 +62,19 @@ public class RoaringBitmapCounter implements BitmapCounter, Serializable {
         return result;
     }
 
+    static RoaringBitmapCounter union(List<BitmapCounter> counters) {
+        ImmutableRoaringBitmap[] bitmaps = new ImmutableRoaringBitmap[counters.size()];
+        for (int i = 0; i < bitmaps.length; i++) {
+            BitmapCounter counter = counters.get(i);
+            if (!(counter instanceof RoaringBitmapCounter)) {
+                throw new IllegalArgumentException("Unsupported type: " + counter.getClass().getCanonicalName());
+            }
+            bitmaps[i] = ((RoaringBitmapCounter) counter).bitmap;
+        }
+        // horizontal OR merges the containers of each key once, rather than the whole bitmaps pair by pair
+        return new RoaringBitmapCounter(BufferFastAggregation.horizontal_or(bitmaps));
+    }
+
     @Override
     public void add(int value) {
         getMutableBitmap().add(value);
@@ -23,6 +23,7 @@ import org.roaringbitmap.buffer.MutableRoaringBitmap;
 import java.io.IOException;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
+import java.util.List;
 
 public class RoaringBitmapCounterFactory implements BitmapCounterFactory, Serializable {
     public static final BitmapCounterFactory INSTANCE = new RoaringBitmapCounterFactory();
@@ -50,4 +51,9 @@ public class RoaringBitmapCounterFactory implements BitmapCounterFactory, Serial
         counter.readFields(in);
         return counter;
     }
+
+    @Override
+    public BitmapCounter union(List<BitmapCounter> counters) {
+        return RoaringBitmapCounter.union(counters);
+    }
 }
@@ -47,10 +47,13 @@ public class DenseRegister implements Register, java.io.Serializable {
     @Override
     public void merge(Register another) {
         if (another.getRegisterType() == RegisterType.DENSE) {
-            DenseRegister dr = (DenseRegister) another;
-            for (int i = 0; i < register.length; i++) {
-                if (dr.register[i] > register[i])
-                    register[i] = dr.register[i];
+            // local array refs of equal length let JIT drop the bounds checks and unroll the max loop
+            byte[] dst = register;
+            byte[] src = ((DenseRegister) another).register;
+            if (src.length != dst.length)
+                throw new IllegalArgumentException("Cannot merge registers of " + src.length + " into " + dst.length);
+            for (int i = 0; i < dst.length; i++) {
+                dst[i] = (byte) Math.max(dst[i], src[i]);
             }
         } else if (another.getRegisterType() == RegisterType.SPARSE) {
             SparseRegister sr = (SparseRegister) another;
@@ -0,0 +1,524 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.measure.topn;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.kylin.common.util.ByteArray;
+
+/**
+ * A TopNCounter of ByteArray which keeps the counters in parallel arrays with an open addressing index, instead
+ * of a hash map of Counter nodes plus a linked list. Offer and merge allocate nothing once the arrays are grown.
+ * Merge only selects the top elements when over capacity, the full sort is deferred till the counters are read.
+ *
+ * Each slot remembers its position in the counter list of TopNCounter, equal counts are ordered by that position
+ * like the stable sort of TopNCounter does.
+ */
+@SuppressWarnings("serial")
+public class ByteArrayTopNCounter extends TopNCounter<ByteArray> {
+
+    private static final int INIT_SLOTS = 16;
+    private static final int SORT_THRESHOLD = 16;
+
+    private ByteArray[] items;
+    private double[] counts;
+    private int[] hashes;
+    private int[] seqs; // position in the counter list, the first is the toppest element
+    private int size;
+
+    private int headSeq = -1; // seq of the next element put to head
+    private int tailSeq = 0; // seq of the next element put to tail
+
+    private int[] index; // slot + 1 of the elements, 0 for empty
+    private int[] perm; // reused by sort
+
+    private boolean ordered = true; // the counter list is sorted by count
+    private boolean slotsInListOrder = true; // the slots are in the order of the counter list
+
+    public ByteArrayTopNCounter(int capacity) {
+        super(capacity, false);
+        int slots = Math.max(1, Math.min(capacity, INIT_SLOTS));
+        items = new ByteArray[slots];
+        counts = new double[slots];
+        hashes = new int[slots];
+        seqs = new int[slots];
+        index = new int[tableSizeFor(slots)];
+    }
+
+    @Override
+    public void offer(ByteArray item, double incrementCount) {
+        int hash = item.hashCode();
+        int slot = find(item, hash);
+        if (slot < 0) {
+            append(item, hash, incrementCount, tailSeq++);
+        } else {
+            counts[slot] += incrementCount;
+        }
+        ordered = false;
+    }
+
+    @Override
+    public void offerToHead(ByteArray item, double count) {
+        int hash = item.hashCode();
+        int slot = find(item, hash);
+        if (slot < 0) {
+            append(item, hash, count, headSeq--);
+        } else {
+            counts[slot] = count;
+            seqs[slot] = headSeq--;
+        }
+        slotsInListOrder = size <= 1;
+    }
+
+    @Override
+    public void sortAndRetain() {
+        int keep = Math.min(size, capacity);
+        int[] p = newPerm();
+        if (keep < size) {
+            select(p, 0, size, keep);
+        }
+        sort(p, 0, keep);
+        permute(p);
+        truncate(keep);
+        ordered = true;
+    }
+
+    @Override
+    public List<Counter<ByteArray>> topK(int k) {
+        if (!ordered) {
+            sortAndRetain();
+        }
+        ensureListOrder();
+        int n = Math.min(k, size);
+        List<Counter<ByteArray>> topK = new ArrayList<>(k);
+        for (int i = 0; i < n; i++) {
+            topK.add(new Counter<>(items[i], counts[i]));
+        }
+        return topK;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return a copy of the counters, changes to it do not affect this counter
+     */
+    @Override
+    public LinkedList<Counter<ByteArray>> getCounterList() {
+        ensureListOrder();
+        LinkedList<Counter<ByteArray>> list = new LinkedList<>();
+        for (int i = 0; i < size; i++) {
+            list.add(new Counter<>(items[i], counts[i]));
+        }
+        return list;
+    }
+
+    @Override
+    public String toString() {
+        ensureListOrder();
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        for (int i = 0; i < size; i++) {
+            sb.append(items[i]);
+            sb.append(':');
+            sb.append(counts[i]);
+        }
+        sb.append(']');
+        return sb.toString();
+    }
+
+    @Override
+    public TopNCounter<ByteArray> merge(TopNCounter<ByteArray> another) {
+        ByteArrayTopNCounter that = another instanceof ByteArrayTopNCounter ? (ByteArrayTopNCounter) another
+                : copyOf(another);
+
+        boolean thisFull = this.size >= this.capacity;
+        boolean anotherFull = that.size >= that.capacity;
+        // the minimum is the last count when sorted
+        double m1 = thisFull ? this.getMinCount() : 0.0;
+        double m2 = anotherFull ? that.getMinCount() : 0.0;
+
+        if (anotherFull) {
+            for (int i = 0; i < size; i++) {
+                counts[i] += m2;
+            }
+        }
+
+        for (int j = 0; j < that.size; j++) {
+            int slot = find(that.items[j], that.hashes[j]);
+            if (slot < 0) {
+                append(that.items[j], that.hashes[j], that.counts[j] + m1, tailSeq++);
+            } else {
+                counts[slot] += that.counts[j] - m2;
+            }
+        }
+        ordered = false;
+
+        retainTop(capacity);
+        return this;
+    }
+
+    @Override
+    public void retain(int newCapacity) {
+        this.capacity = newCapacity;
+        if (size > newCapacity) {
+            if (ordered) {
+                ensureListOrder();
+                truncate(newCapacity);
+            } else {
+                retainTop(newCapacity);
+            }
+        }
+    }
+
+    @Override
+    public double[] getCounters() {
+        ensureListOrder();
+        double[] result = new double[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = counts[size - 1 - i];
+        }
+        return result;
+    }
+
+    @Override
+    public Iterator<Counter<ByteArray>> iterator() {
+        ensureListOrder();
+        return new Iterator<Counter<ByteArray>>() {
+            int next = size - 1;
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public Counter<ByteArray> next() {
+                if (next < 0)
+                    throw new NoSuchElementException();
+                Counter<ByteArray> counter = new Counter<>(items[next], counts[next]);
+                next--;
+                return counter;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private static ByteArrayTopNCounter copyOf(TopNCounter<ByteArray> another) {
+        ByteArrayTopNCounter copy = new ByteArrayTopNCounter(another.getCapacity());
+        for (Counter<ByteArray> counter : another.getCounterList()) {
+            copy.offer(counter.getItem(), counter.getCount());
+        }
+        return copy;
+    }
+
+    private double getMinCount() {
+        if (size == 0) {
+            return 0.0;
+        }
+        double min = counts[0];
+        for (int i = 1; i < size; i++) {
+            min = Math.min(min, counts[i]);
+        }
+        return min;
+    }
+
+    // keeps the top n elements without sorting them
+    private void retainTop(int n) {
+        if (size > n) {
+            int[] p = newPerm();
+            select(p, 0, size, n);
+            permute(p);
+            truncate(n);
+        }
+    }
+
+    // ============================================================================
+
+    private int find(ByteArray item, int hash) {
+        int mask = index.length - 1;
+        for (int i = spread(hash) & mask;; i = (i + 1) & mask) {
+            int slot = index[i] - 1;
+            if (slot < 0) {
+                return -1;
+            }
+            if (hashes[slot] == hash && items[slot].equals(item)) {
+                return slot;
+            }
+        }
+    }
+
+    private void append(ByteArray item, int hash, double count, int seq) {
+        if (size == items.length) {
+            int newLength = items.length * 2;
+            items = Arrays.copyOf(items, newLength);
+            counts = Arrays.copyOf(counts, newLength);
+            hashes = Arrays.copyOf(hashes, newLength);
+            seqs = Arrays.copyOf(seqs, newLength);
+        }
+        items[size] = item;
+        counts[size] = count;
+        hashes[size] = hash;
+        seqs[size] = seq;
+        size++;
+
+        if (size * 2 > index.length) {
+            index = new int[index.length * 2];
+            rebuildIndex();
+        } else {
+            insertIndex(size - 1);
+        }
+    }
+
+    private void insertIndex(int slot) {
+        int mask = index.length - 1;
+        int i = spread(hashes[slot]) & mask;
+        while (index[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        index[i] = slot + 1;
+    }
+
+    private void rebuildIndex() {
+        Arrays.fill(index, 0);
+        for (int i = 0; i < size; i++) {
+            insertIndex(i);
+        }
+    }
+
+    private void truncate(int newSize) {
+        if (newSize < size) {
+            Arrays.fill(items, newSize, size, null);
+            size = newSize;
+        }
+        // the slots were moved around, so renumber them and refill the index
+        for (int i = 0; i < size; i++) {
+            seqs[i] = i;
+        }
+        headSeq = -1;
+        tailSeq = size;
+        slotsInListOrder = true;
+        rebuildIndex();
+    }
+
+    /**
+     * Moves the slots into the order of the counter list, sorted unless the counter was filled by offerToHead().
+     */
+    private void ensureListOrder() {
+        if (!ordered) {
+            int[] p = newPerm();
+            sort(p, 0, size);
+            permute(p);
+            truncate(size);
+            ordered = true;
+            return;
+        }
+        if (slotsInListOrder) {
+            return;
+        }
+
+        boolean reversed = true;
+        for (int i = 1; i < size && reversed; i++) {
+            reversed = seqs[i] < seqs[i - 1];
+        }
+        if (reversed) {
+            // e.g. deserialized by offerToHead() in ascending order
+            for (int i = 0, j = size - 1; i < j; i++, j--) {
+                swap(i, j);
+            }
+        } else {
+            int[] p = newPerm();
+            sortBySeq(p, 0, size);
+            permute(p);
+        }
+        truncate(size);
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int tableSizeFor(int slots) {
+        return Integer.highestOneBit(Math.max(2, slots * 2 - 1)) << 1;
+    }
+
+    // ============================================================================
+    // selection and sort on a permutation of slots, the order is count descending then seq ascending
+
+    private int[] newPerm() {
+        if (perm == null || perm.length < size) {
+            perm = new int[items.length];
+        }
+        for (int i = 0; i < size; i++) {
+            perm[i] = i;
+        }
+        return perm;
+    }
+
+    private boolean before(int a, int b) {
+        return counts[a] > counts[b] || (counts[a] == counts[b] && seqs[a] < seqs[b]);
+    }
+
+    // partially sorts p[from, to) so that p[from, from + k) are the first k slots
+    private void select(int[] p, int from, int to, int k) {
+        int target = from + k;
+        while (to - from > SORT_THRESHOLD) {
+            int cut = partition(p, from, to);
+            if (cut == target) {
+                return;
+            } else if (cut < target) {
+                from = cut;
+            } else {
+                to = cut;
+            }
+        }
+        insertionSort(p, from, to);
+    }
+
+    private void sort(int[] p, int from, int to) {
+        while (to - from > SORT_THRESHOLD) {
+            int cut = partition(p, from, to);
+            // recurse into the smaller part to bound the stack depth
+            if (cut - from < to - cut) {
+                sort(p, from, cut);
+                from = cut;
+            } else {
+                sort(p, cut, to);
+                to = cut;
+            }
+        }
+        insertionSort(p, from, to);
+    }
+
+    // returns cut so that p[from, cut) are before p[cut, to), both parts non-empty
+    private int partition(int[] p, int from, int to) {
+        int mid = (from + to - 1) >>> 1;
+        int last = to - 1;
+        // median of three as pivot, moved to mid
+        if (before(p[mid], p[from]))
+            swapInt(p, mid, from);
+        if (before(p[last], p[mid])) {
+            swapInt(p, last, mid);
+            if (before(p[mid], p[from]))
+                swapInt(p, mid, from);
+        }
+        int pivot = p[mid];
+
+        int i = from - 1;
+        int j = to;
+        while (true) {
+            do {
+                i++;
+            } while (before(p[i], pivot));
+            do {
+                j--;
+            } while (before(pivot, p[j]));
+            if (i >= j) {
+                return j + 1;
+            }
+            swapInt(p, i, j);
+        }
+    }
+
+    private void insertionSort(int[] p, int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            int v = p[i];
+            int j = i - 1;
+            while (j >= from && before(v, p[j])) {
+                p[j + 1] = p[j];
+                j--;
+            }
+            p[j + 1] = v;
+        }
+    }
+
+    private void sortBySeq(int[] p, int from, int to) {
+        // seqs are distinct, so sorting the (seq, slot) pairs packed in longs is enough
+        long[] keys = new long[to - from];
+        for (int i = from; i < to; i++) {
+            keys[i - from] = ((long) seqs[p[i]] << 32) | (p[i] & 0xFFFFFFFFL);
+        }
+        Arrays.sort(keys);
+        for (int i = from; i < to; i++) {
+            p[i] = (int) keys[i - from];
+        }
+    }
+
+    // moves slot p[i] to i for all i, following the cycles of the permutation in place
+    private void permute(int[] p) {
+        for (int i = 0; i < size; i++) {
+            if (p[i] < 0 || p[i] == i) {
+                continue;
+            }
+            ByteArray item = items[i];
+            double count = counts[i];
+            int hash = hashes[i];
+            int seq = seqs[i];
+            int j = i;
+            while (true) {
+                int from = p[j];
+                p[j] = -1;
+                if (from == i) {
+                    items[j] = item;
+                    counts[j] = count;
+                    hashes[j] = hash;
+                    seqs[j] = seq;
+                    break;
+                }
+                items[j] = items[from];
+                counts[j] = counts[from];
+                hashes[j] = hashes[from];
+                seqs[j] = seqs[from];
+                j = from;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        ByteArray item = items[i];
+        items[i] = items[j];
+        items[j] = item;
+        double count = counts[i];
+        counts[i] = counts[j];
+        counts[j] = count;
+        int hash = hashes[i];
+        hashes[i] = hashes[j];
+        hashes[j] = hash;
+        int seq = seqs[i];
+        seqs[i] = seqs[j];
+        seqs[j] = seq;
+    }
+
+    private static void swapInt(int[] p, int i, int j) {
+        int t = p[i];
+        p[i] = p[j];
+        p[j] = t;
+    }
+}
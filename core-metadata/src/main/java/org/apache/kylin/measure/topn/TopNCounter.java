@@ -25,7 +25,6 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -54,9 +53,19 @@ public class TopNCounter<T> implements Iterable<Counter<T>>, java.io.Serializabl
      * @param capacity maximum size (larger capacities improve accuracy)
      */
     public TopNCounter(int capacity) {
+        this(capacity, true);
+    }
+
+    /**
+     * For subclasses which keep the counters in their own structures, the map and list of this class are not
+     * allocated, so every method reading them must be overridden.
+     */
+    protected TopNCounter(int capacity, boolean withStorage) {
         this.capacity = capacity;
-        counterMap = Maps.newHashMap();
-        counterList = Lists.newLinkedList();
+        if (withStorage) {
+            counterMap = Maps.newHashMap();
+            counterList = Lists.newLinkedList();
+        }
     }
 
     public int getCapacity() {
@@ -156,9 +165,11 @@ public class TopNCounter<T> implements Iterable<Counter<T>>, java.io.Serializabl
      */
     public TopNCounter<T> merge(TopNCounter<T> another) {
         boolean thisFull = this.size() >= this.capacity;
-        boolean anotherFull = another.size() >= another.capacity;
+        boolean anotherFull = another.size() >= another.getCapacity();
         double m1 = thisFull ? this.counterList.getLast().count : 0.0;
-        double m2 = anotherFull ? another.counterList.getLast().count : 0.0;
+        // the iterator starts from the last counter; another is read by the public API only, a subclass may not
+        // keep its counters in the map and list of this class
+        double m2 = anotherFull ? another.iterator().next().getCount() : 0.0;
 
         if (anotherFull == true) {
             for (Counter<T> entry : this.counterMap.values()) {
@@ -166,11 +177,11 @@ public class TopNCounter<T> implements Iterable<Counter<T>>, java.io.Serializabl
             }
         }
 
-        for (Map.Entry<T, Counter<T>> entry : another.counterMap.entrySet()) {
-            if (this.counterMap.containsKey(entry.getKey())) {
-                this.offer(entry.getValue().getItem(), (entry.getValue().count - m2));
+        for (Counter<T> entry : another) {
+            if (this.counterMap.containsKey(entry.getItem())) {
+                this.offer(entry.getItem(), (entry.getCount() - m2));
             } else {
-                this.offer(entry.getValue().getItem(), entry.getValue().count + m1);
+                this.offer(entry.getItem(), entry.getCount() + m1);
             }
         }
 
@@ -38,4 +38,6 @@ public class IRealizationConstants {
 
     public final static String HTableGitTag = "GIT_COMMIT";
 
+    public final static String HTableColumnarValue = "COLUMNAR_VALUE";
+
 }
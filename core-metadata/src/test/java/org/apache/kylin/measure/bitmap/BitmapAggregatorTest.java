@@ -22,9 +22,11 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class BitmapAggregatorTest {
     private static final BitmapCounterFactory factory = RoaringBitmapCounterFactory.INSTANCE;
@@ -87,4 +89,44 @@ public class BitmapAggregatorTest {
 
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testAggregatorManyValues() {
+        BitmapCounter first = factory.newBitmap(0, 1);
+        BitmapAggregator aggregator = new BitmapAggregator();
+        aggregator.aggregate(first);
+
+        BitmapCounter expected = factory.newBitmap(0, 1);
+        int valueCount = BitmapAggregator.MAX_PENDING * 2 + 10;
+        int lastEstimate = aggregator.getMemBytesEstimate();
+        for (int i = 1; i < valueCount; i++) {
+            BitmapCounter value = factory.newBitmap(i, i * 100, 1 << 20 | i);
+            expected.orWith(value);
+            aggregator.aggregate(value);
+
+            if (i == 1 || i == 2) {
+                // buffered values are accounted before they are merged
+                assertTrue(aggregator.getMemBytesEstimate() > lastEstimate);
+                lastEstimate = aggregator.getMemBytesEstimate();
+            }
+        }
+
+        assertEquals(expected, aggregator.getState());
+        assertEquals(expected.getCount(), aggregator.getState().getCount());
+        // the input values are not modified
+        assertEquals(factory.newBitmap(0, 1), first);
+
+        // getState() in the middle does not lose values
+        aggregator.aggregate(factory.newBitmap(-1, -2));
+        expected.add(-1);
+        expected.add(-2);
+        assertEquals(expected, aggregator.getState());
+    }
+
+    @Test
+    public void testUnion() {
+        assertEquals(factory.newBitmap(1, 2, 3, 5),
+                factory.union(Arrays.asList(factory.newBitmap(1, 2), factory.newBitmap(), factory.newBitmap(2, 3, 5))));
+        assertEquals(0, factory.union(Arrays.<BitmapCounter> asList()).getCount());
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.measure.topn;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.Bytes;
+import org.junit.Test;
+
+public class ByteArrayTopNCounterTest {
+
+    private final Random random = new Random(12345);
+
+    @Test
+    public void testOfferAndSort() {
+        // equal counts are common here, they shall be ordered the same as TopNCounter
+        TopNCounter<ByteArray> expected = new TopNCounter<>(100);
+        TopNCounter<ByteArray> actual = new ByteArrayTopNCounter(100);
+        for (int i = 0; i < 10000; i++) {
+            ByteArray key = key(random.nextInt(500));
+            double count = random.nextInt(3);
+            expected.offer(key, count);
+            actual.offer(key, count);
+        }
+        assertEquals(500, actual.size());
+
+        expected.sortAndRetain();
+        actual.sortAndRetain();
+        assertEquals(100, actual.size());
+        assertEquals(expected.toString(), actual.toString());
+        assertArrayEquals(expected.getCounters(), actual.getCounters(), 0.0);
+        assertEquals(expected.topK(10).toString(), actual.topK(10).toString());
+
+        expected.retain(50);
+        actual.retain(50);
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    @Test
+    public void testMerge() {
+        TopNCounter<ByteArray> expected = new TopNCounter<>(200);
+        TopNCounter<ByteArray> actual = new ByteArrayTopNCounter(200);
+        for (int round = 0; round < 50; round++) {
+            TopNCounter<ByteArray> value1 = new TopNCounter<>(20);
+            TopNCounter<ByteArray> value2 = new ByteArrayTopNCounter(20);
+            for (int i = 0; i < 100; i++) {
+                // distinct counts, so that the result does not depend on how ties are cut
+                ByteArray key = key(random.nextInt(1000));
+                double count = random.nextDouble();
+                value1.offer(key, count);
+                value2.offer(key, count);
+            }
+            value1.sortAndRetain();
+            value2.sortAndRetain();
+
+            expected.merge(value1);
+            actual.merge(value2);
+            assertEquals(expected.size(), actual.size());
+        }
+
+        expected.retain(20);
+        actual.retain(20);
+        assertCountersEqual(expected, actual);
+
+        // merge a TopNCounter into ByteArrayTopNCounter
+        TopNCounter<ByteArray> generic = new TopNCounter<>(10);
+        generic.offer(key(1), 1000.0);
+        generic.offer(key(2), 2000.0);
+        generic.sortAndRetain();
+        expected.merge(generic);
+        actual.merge(generic);
+        assertCountersEqual(expected, actual);
+    }
+
+    @Test
+    public void testMergeIntoTopNCounter() {
+        TopNCounter<ByteArray> generic = new TopNCounter<>(10);
+        ByteArrayTopNCounter byteArray = new ByteArrayTopNCounter(10);
+        for (int i = 0; i < 30; i++) {
+            double count = random.nextDouble();
+            generic.offer(key(i), count);
+            byteArray.offer(key(i), count);
+        }
+        generic.sortAndRetain();
+        byteArray.sortAndRetain();
+
+        TopNCounter<ByteArray> expected = new TopNCounter<>(10);
+        TopNCounter<ByteArray> actual = new TopNCounter<>(10);
+        for (int i = 0; i < 20; i += 2) {
+            expected.offer(key(i), 0.5);
+            actual.offer(key(i), 0.5);
+        }
+        expected.sortAndRetain();
+        actual.sortAndRetain();
+
+        // both arguments are full
+        expected.merge(generic);
+        actual.merge(byteArray);
+        assertCountersEqual(expected, actual);
+    }
+
+    @Test
+    public void testOfferToHead() {
+        ByteArrayTopNCounter counter = new ByteArrayTopNCounter(10);
+        for (int i = 0; i < 5; i++) {
+            counter.offerToHead(key(i), i);
+        }
+        assertEquals("[4, 3, 2, 1, 0]", itemsOf(counter.topK(10)));
+        assertArrayEquals(new double[] { 0, 1, 2, 3, 4 }, counter.getCounters(), 0.0);
+
+        counter.offer(key(0), 10);
+        assertEquals("[0, 4, 3, 2, 1]", itemsOf(counter.topK(10)));
+    }
+
+    private void assertCountersEqual(TopNCounter<ByteArray> expected, TopNCounter<ByteArray> actual) {
+        assertEquals(expected.size(), actual.size());
+        assertArrayEquals(expected.getCounters(), actual.getCounters(), 1e-9);
+        Iterator<Counter<ByteArray>> it1 = expected.iterator();
+        Iterator<Counter<ByteArray>> it2 = actual.iterator();
+        while (it1.hasNext()) {
+            assertEquals(it1.next().getItem(), it2.next().getItem());
+        }
+    }
+
+    private static String itemsOf(List<Counter<ByteArray>> counters) {
+        StringBuilder sb = new StringBuilder("[");
+        for (Counter<ByteArray> c : counters) {
+            if (sb.length() > 1)
+                sb.append(", ");
+            sb.append(Bytes.toInt(c.getItem().array(), c.getItem().offset(), c.getItem().length()));
+        }
+        return sb.append(']').toString();
+    }
+
+    private static ByteArray key(int i) {
+        return new ByteArray(Bytes.toBytes(i));
+    }
+}
@@ -67,6 +67,32 @@ public class TopNCounterSerializerTest extends LocalFileMetadataTestCase {
 
     }
 
+    @Test
+    public void testSerializationSameAsTopNCounter() {
+        TopNCounter<ByteArray> vs = new TopNCounter<ByteArray>(50);
+        TopNCounter<ByteArray> vs2 = new ByteArrayTopNCounter(50);
+        Integer[] stream = { 1, 1, 2, 9, 1, 2, 3, 7, 7, 1, 3, 1, 1 };
+        for (Integer i : stream) {
+            vs.offer(new ByteArray(Bytes.toBytes(i)));
+            vs2.offer(new ByteArray(Bytes.toBytes(i)));
+        }
+        vs.sortAndRetain();
+        vs2.sortAndRetain();
+
+        ByteBuffer out = ByteBuffer.allocate(1024);
+        serializer.serialize(vs, out);
+        ByteBuffer out2 = ByteBuffer.allocate(1024);
+        serializer.serialize(vs2, out2);
+        Assert.assertEquals(out.flip(), out2.flip());
+
+        // deserialized is ready to serialize again
+        TopNCounter<ByteArray> vsNew = serializer.deserialize(out2);
+        Assert.assertTrue(vsNew instanceof ByteArrayTopNCounter);
+        ByteBuffer out3 = ByteBuffer.allocate(1024);
+        serializer.serialize(vsNew, out3);
+        Assert.assertEquals(out.rewind(), out3.flip());
+    }
+
     @Test
     public void testValueOf() {
         // FIXME need a good unit test for valueOf()
@@ -56,6 +56,7 @@ public class StorageContext {
     private AtomicLong processedRowCount = new AtomicLong();
     private Cuboid cuboid;
     private boolean partialResultReturned = false;
+    private int segmentScanParallelism = 1;
 
     private Range<Long> reusedPeriod;
 
@@ -247,6 +248,14 @@ public class StorageContext {
         this.storageQuery = storageQuery;
     }
 
+    public int getSegmentScanParallelism() {
+        return segmentScanParallelism;
+    }
+
+    public void setSegmentScanParallelism(int segmentScanParallelism) {
+        this.segmentScanParallelism = segmentScanParallelism;
+    }
+
     public boolean isStreamAggregateEnabled() {
         return enableStreamAggregate;
     }
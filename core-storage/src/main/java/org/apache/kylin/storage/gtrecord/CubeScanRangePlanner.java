@@ -62,8 +62,14 @@ public class CubeScanRangePlanner extends ScanRangePlannerBase {
 
     private static final Logger logger = LoggerFactory.getLogger(CubeScanRangePlanner.class);
 
+    // fuzzy keys may go beyond maxFuzzyKeys by this factor, if the range has enough rows for each key
+    private static final int FUZZY_KEY_CAP_FACTOR = 10;
+
     protected int maxScanRanges;
     protected int maxFuzzyKeys;
+    protected boolean costBased;
+    protected long fuzzyKeyMinRows;
+    protected ScanRangeCostModel costModel;
 
     //non-GT
     protected CubeSegment cubeSegment;
@@ -78,6 +84,8 @@ public class CubeScanRangePlanner extends ScanRangePlannerBase {
 
         this.maxScanRanges = cubeSegment.getConfig().getQueryStorageVisitScanRangeMax();
         this.maxFuzzyKeys = cubeSegment.getConfig().getQueryScanFuzzyKeyMax();
+        this.costBased = cubeSegment.getConfig().isQueryScanRangeCostBased();
+        this.fuzzyKeyMinRows = cubeSegment.getConfig().getQueryScanFuzzyKeyMinRows();
 
         this.cubeSegment = cubeSegment;
         this.cubeDesc = cubeSegment.getCubeDesc();
@@ -87,6 +95,7 @@ public class CubeScanRangePlanner extends ScanRangePlannerBase {
         TupleFilter.collectColumns(filter, filterDims);
 
         this.gtInfo = CubeGridTable.newGTInfo(cuboid, new CubeDimEncMap(cubeSegment));
+        this.costModel = ScanRangeCostModel.create(gtInfo, cubeSegment, cuboid.getId());
         CuboidToGridTableMapping mapping = cuboid.getCuboidToGridTableMapping();
 
         IGTComparator comp = gtInfo.getCodeSystem().getComparator();
@@ -125,8 +134,11 @@ public class CubeScanRangePlanner extends ScanRangePlannerBase {
 
         this.maxScanRanges = KylinConfig.getInstanceFromEnv().getQueryStorageVisitScanRangeMax();
         this.maxFuzzyKeys = KylinConfig.getInstanceFromEnv().getQueryScanFuzzyKeyMax();
+        this.costBased = KylinConfig.getInstanceFromEnv().isQueryScanRangeCostBased();
+        this.fuzzyKeyMinRows = KylinConfig.getInstanceFromEnv().getQueryScanFuzzyKeyMinRows();
 
         this.gtInfo = info;
+        this.costModel = new ScanRangeCostModel(info, -1);
 
         IGTComparator comp = gtInfo.getCodeSystem().getComparator();
         //start key GTRecord compare to start key GTRecord
@@ -147,8 +159,9 @@ public class CubeScanRangePlanner extends ScanRangePlannerBase {
         if (scanRanges != null && scanRanges.size() != 0) {
             scanRequest = new GTScanRequestBuilder().setInfo(gtInfo).setRanges(scanRanges).setDimensions(gtDimensions).//
                     setAggrGroupBy(gtAggrGroups).setAggrMetrics(gtAggrMetrics).setAggrMetricsFuncs(gtAggrFuncs).setFilterPushDown(gtFilter).//
-                    setAllowStorageAggregation(context.isNeedStorageAggregation()).setAggCacheMemThreshold(cubeSegment.getConfig().getQueryCoprocessorMemGB()).//
+                    setAllowStorageAggregation(context.isNeedStorageAggregation()).setAggCacheMemThreshold(cubeSegment.getConfig().getQueryCoprocessorMemGB()).setHashAggregation(cubeSegment.getConfig().getQueryCoprocessorHashAggrEnabled()).//
                     setStoragePushDownLimit(context.getFinalPushDownLimit()).setStorageLimitLevel(context.getStorageLimitLevel()).setHavingFilterPushDown(havingFilter).createGTScanRequest();
+            scanRequest.setEstimatedScanRowCount(costModel.estimateRows(scanRanges));
         } else {
             scanRequest = null;
         }
@@ -174,6 +187,9 @@ public class CubeScanRangePlanner extends ScanRangePlannerBase {
         List<GTScanRange> mergedRanges = mergeOverlapRanges(scanRanges);
         mergedRanges = mergeTooManyRanges(mergedRanges, maxScanRanges);
 
+        if (costModel.isRowCountKnown()) {
+            logger.info("Estimated {} rows to scan in {} ranges, out of {} rows of the cuboid", costModel.estimateRows(mergedRanges), mergedRanges.size(), costModel.getCuboidRows());
+        }
         return mergedRanges;
     }
 
@@ -224,13 +240,11 @@ public class CubeScanRangePlanner extends ScanRangePlannerBase {
             }
         }
 
-        fuzzyKeys =
-
-                buildFuzzyKeys(fuzzyValues);
+        fuzzyKeys = buildFuzzyKeys(fuzzyValues, getFuzzyKeyCap(pkStart, pkEnd));
         return new GTScanRange(pkStart, pkEnd, fuzzyKeys);
     }
 
-    private List<GTRecord> buildFuzzyKeys(Map<Integer, Set<ByteArray>> fuzzyValueSet) {
+    private List<GTRecord> buildFuzzyKeys(Map<Integer, Set<ByteArray>> fuzzyValueSet, int fuzzyKeyCap) {
         ArrayList<GTRecord> result = Lists.newArrayList();
 
         if (fuzzyValueSet.isEmpty())
@@ -242,7 +256,11 @@ public class CubeScanRangePlanner extends ScanRangePlannerBase {
             return result;
         }
 
-        List<Map<Integer, ByteArray>> fuzzyValueCombinations = FuzzyValueCombination.calculate(fuzzyValueSet, maxFuzzyKeys);
+        if (costBased) {
+            fuzzyValueSet = reduceFuzzyValues(fuzzyValueSet, fuzzyKeyCap);
+        }
+
+        List<Map<Integer, ByteArray>> fuzzyValueCombinations = FuzzyValueCombination.calculate(fuzzyValueSet, fuzzyKeyCap);
 
         for (Map<Integer, ByteArray> fuzzyValue : fuzzyValueCombinations) {
 
@@ -260,6 +278,42 @@ public class CubeScanRangePlanner extends ScanRangePlannerBase {
         return result;
     }
 
+    // instead of abandoning all fuzzy keys, leave out the columns of most values until the combinations fit in the cap,
+    // a column of many values filters little anyway
+    private Map<Integer, Set<ByteArray>> reduceFuzzyValues(Map<Integer, Set<ByteArray>> fuzzyValueSet, int fuzzyKeyCap) {
+        Map<Integer, Set<ByteArray>> result = Maps.newHashMap(fuzzyValueSet);
+        while (result.size() > 1 && countCombinations(result) > fuzzyKeyCap) {
+            Integer mostValuesCol = null;
+            for (Map.Entry<Integer, Set<ByteArray>> entry : result.entrySet()) {
+                if (mostValuesCol == null || entry.getValue().size() > result.get(mostValuesCol).size()) {
+                    mostValuesCol = entry.getKey();
+                }
+            }
+            logger.debug("Fuzzy key combinations exceed {}, leave out column {} of {} values", fuzzyKeyCap, mostValuesCol, result.get(mostValuesCol).size());
+            result.remove(mostValuesCol);
+        }
+        return result;
+    }
+
+    private long countCombinations(Map<Integer, Set<ByteArray>> fuzzyValueSet) {
+        long count = 1;
+        for (Set<ByteArray> values : fuzzyValueSet.values()) {
+            count *= Math.max(values.size(), 1);
+        }
+        return count;
+    }
+
+    // a range of many rows for each fuzzy key skips a lot by fuzzy filtering, so it deserves more fuzzy keys,
+    // which needs the real rows of the cuboid, an upper bound would raise the cap of every range
+    private int getFuzzyKeyCap(GTRecord pkStart, GTRecord pkEnd) {
+        if (!costBased || !costModel.isRowCountFromCuboidStats() || fuzzyKeyMinRows <= 0) {
+            return maxFuzzyKeys;
+        }
+        long rows = costModel.estimateRows(pkStart, pkEnd);
+        long cap = Math.min(rows / fuzzyKeyMinRows, (long) maxFuzzyKeys * FUZZY_KEY_CAP_FACTOR);
+        return (int) Math.max(cap, maxFuzzyKeys);
+    }
+
     protected List<GTScanRange> mergeOverlapRanges(List<GTScanRange> ranges) {
         if (ranges.size() <= 1) {
             return ranges;
@@ -320,7 +374,7 @@ public class CubeScanRangePlanner extends ScanRangePlannerBase {
 
         // if any range is non-fuzzy, then all fuzzy keys must be cleared
         // also too many fuzzy keys will slow down HBase scan
-        if (hasNonFuzzyRange || newFuzzyKeys.size() > maxFuzzyKeys) {
+        if (hasNonFuzzyRange || newFuzzyKeys.size() > getFuzzyKeyCap(start, end)) {
             newFuzzyKeys.clear();
         }
 
@@ -332,10 +386,45 @@ public class CubeScanRangePlanner extends ScanRangePlannerBase {
             return ranges;
         }
 
-        // TODO: check the distance between range and merge the large distance range
-        List<GTScanRange> result = new ArrayList<GTScanRange>(1);
-        GTScanRange mergedRange = mergeKeyRange(ranges);
-        result.add(mergedRange);
+        if (!costBased || maxRanges < 1) {
+            List<GTScanRange> result = new ArrayList<GTScanRange>(1);
+            GTScanRange mergedRange = mergeKeyRange(ranges);
+            result.add(mergedRange);
+            return result;
+        }
+
+        // the ranges are sorted and apart, close the smallest gaps so that the least extra rows are scanned
+        final double[] gaps = new double[ranges.size() - 1];
+        List<Integer> gapIndexes = Lists.newArrayListWithCapacity(gaps.length);
+        for (int i = 0; i < gaps.length; i++) {
+            gaps[i] = costModel.gap(ranges.get(i), ranges.get(i + 1));
+            gapIndexes.add(i);
+        }
+        Collections.sort(gapIndexes, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Double.compare(gaps[a], gaps[b]);
+            }
+        });
+
+        boolean[] closed = new boolean[gaps.length];
+        double closedGaps = 0;
+        for (int i = 0; i < ranges.size() - maxRanges; i++) {
+            closed[gapIndexes.get(i)] = true;
+            closedGaps += gaps[gapIndexes.get(i)];
+        }
+
+        List<GTScanRange> result = new ArrayList<GTScanRange>(maxRanges);
+        int mergeBeginIndex = 0;
+        for (int i = 0; i < gaps.length; i++) {
+            if (!closed[i]) {
+                result.add(mergeKeyRange(ranges.subList(mergeBeginIndex, i + 1)));
+                mergeBeginIndex = i + 1;
+            }
+        }
+        result.add(mergeKeyRange(ranges.subList(mergeBeginIndex, ranges.size())));
+
+        logger.info("Merged {} scan ranges into {}, estimated {} more rows to scan", ranges.size(), result.size(), costModel.toRows(closedGaps));
         return result;
     }
 
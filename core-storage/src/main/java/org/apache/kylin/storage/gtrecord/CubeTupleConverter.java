@@ -27,6 +27,7 @@ import java.util.Set;
 
 import org.apache.kylin.common.util.Array;
 import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.cube.CubeManager;
 import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.cube.cuboid.Cuboid;
 import org.apache.kylin.cube.model.CubeDesc.DeriveInfo;
@@ -264,6 +265,11 @@ public class CubeTupleConverter implements ITupleConverter {
     }
 
     public LookupStringTable getLookupTable(CubeSegment cubeSegment, JoinDesc join) {
+        if (cubeSegment.getConfig().isQuerySnapshotLookupIndexEnabled()) {
+            // shared by all segments on the same snapshot
+            return CubeManager.getInstance(cubeSegment.getConfig()).getLookupTable(cubeSegment, join);
+        }
+
         long ts = System.currentTimeMillis();
 
         TableMetadataManager metaMgr = TableMetadataManager.getInstance(cubeSeg.getCubeInstance().getConfig());
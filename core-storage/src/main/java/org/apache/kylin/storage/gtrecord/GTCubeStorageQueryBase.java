@@ -26,6 +26,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.kylin.common.QueryContext;
 import org.apache.kylin.common.util.Pair;
 import org.apache.kylin.cube.CubeInstance;
 import org.apache.kylin.cube.CubeManager;
@@ -79,6 +80,7 @@ public abstract class GTCubeStorageQueryBase implements IStorageQuery {
         GTCubeStorageQueryRequest request = getStorageQueryRequest(context, sqlDigest, returnTupleInfo);
 
         List<CubeSegmentScanner> scanners = Lists.newArrayList();
+        SegmentPruner segmentPruner = new SegmentPruner(request.getFilter());
         for (CubeSegment cubeSeg : cubeInstance.getSegments(SegmentStatusEnum.READY)) {
             CubeSegmentScanner scanner;
 
@@ -87,6 +89,12 @@ public abstract class GTCubeStorageQueryBase implements IStorageQuery {
                 continue;
             }
 
+            if (cubeDesc.getConfig().isSkippingSegmentsByDimensionRange() && !segmentPruner.check(cubeSeg)) {
+                logger.info("Skip cube segment {} because its dimension ranges do not match the filter", cubeSeg);
+                QueryContext.current().addAndGetPrunedSegments(1);
+                continue;
+            }
+
             scanner = new CubeSegmentScanner(cubeSeg, request.getCuboid(), request.getDimensions(), request.getGroups(),
                     request.getMetrics(), request.getFilter(), request.getHavingFilter(), request.getContext());
             if (!scanner.isSegmentSkipped())
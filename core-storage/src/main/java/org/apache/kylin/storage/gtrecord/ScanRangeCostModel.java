@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.gtrecord;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRange;
+
+/**
+ * Estimates the rows that scan ranges read, assuming the rows of a cuboid spread evenly over the key space of its
+ * primary key. A range covers a fraction of the key space, so does the gap between two ranges.
+ *
+ * The row count of the cuboid comes from the cuboid statistics kept by the cube, bounded by the input records of
+ * the segment. Without the statistics, the input records are an upper bound of the row count only. Without any of
+ * them the fractions still order the ranges and gaps, only the row estimates are unknown.
+ */
+public class ScanRangeCostModel {
+
+    // bytes of key compared from the first difference, a double holds 53 bits
+    private static final int PRECISION_BYTES = 6;
+
+    /**
+     * @return the model of the cuboid in the segment, with the estimated rows of the cuboid
+     */
+    public static ScanRangeCostModel create(GTInfo info, CubeSegment segment, long cuboidId) {
+        long inputRecords = segment.getInputRecords();
+        Map<Long, Long> cuboidRows = segment.getCubeInstance().getCachedCuboids();
+        Long rows = cuboidRows == null ? null : cuboidRows.get(cuboidId);
+
+        if (rows != null && rows > 0) {
+            return new ScanRangeCostModel(info, inputRecords > 0 ? Math.min(rows, inputRecords) : rows, true);
+        }
+        return new ScanRangeCostModel(info, inputRecords > 0 ? inputRecords : -1, false);
+    }
+
+    // ============================================================================
+
+    private final GTInfo info;
+    private final long cuboidRows;
+    private final boolean fromCuboidStats;
+    private final int keyLength;
+
+    public ScanRangeCostModel(GTInfo info, long cuboidRows) {
+        this(info, cuboidRows, false);
+    }
+
+    /**
+     * @param fromCuboidStats whether the row count is of the cuboid, rather than an upper bound like the input records
+     */
+    public ScanRangeCostModel(GTInfo info, long cuboidRows, boolean fromCuboidStats) {
+        this.info = info;
+        this.cuboidRows = cuboidRows;
+        this.fromCuboidStats = fromCuboidStats && cuboidRows > 0;
+
+        int len = 0;
+        ImmutableBitSet pk = info.getPrimaryKey();
+        for (int i = 0; i < pk.trueBitCount(); i++) {
+            len += info.getCodeSystem().maxCodeLength(pk.trueBitAt(i));
+        }
+        this.keyLength = len;
+    }
+
+    public boolean isRowCountKnown() {
+        return cuboidRows > 0;
+    }
+
+    public boolean isRowCountFromCuboidStats() {
+        return fromCuboidStats;
+    }
+
+    public long getCuboidRows() {
+        return cuboidRows;
+    }
+
+    /**
+     * @return the fraction of key space from start to end, both inclusive
+     */
+    public double fraction(GTRecord pkStart, GTRecord pkEnd) {
+        return distance(toKey(pkStart, false), toKey(pkEnd, true)) + Math.pow(256, -keyLength);
+    }
+
+    /**
+     * @return the fraction of key space between the end of one range and the start of the next
+     */
+    public double gap(GTScanRange range, GTScanRange next) {
+        return distance(toKey(range.pkEnd, true), toKey(next.pkStart, false));
+    }
+
+    /**
+     * @return the estimated rows from start to end, or -1 if unknown
+     */
+    public long estimateRows(GTRecord pkStart, GTRecord pkEnd) {
+        return toRows(fraction(pkStart, pkEnd));
+    }
+
+    /**
+     * @return the estimated rows of the ranges, or -1 if unknown
+     */
+    public long estimateRows(List<GTScanRange> ranges) {
+        if (ranges == null || !isRowCountKnown())
+            return -1;
+
+        long rows = 0;
+        for (GTScanRange range : ranges) {
+            rows += estimateRows(range.pkStart, range.pkEnd);
+        }
+        return Math.min(rows, cuboidRows);
+    }
+
+    public long toRows(double fraction) {
+        if (!isRowCountKnown())
+            return -1;
+        return (long) Math.ceil(Math.min(1, fraction) * cuboidRows);
+    }
+
+    // a missing column on start side is the lowest, and on end side the highest
+    private byte[] toKey(GTRecord record, boolean isEnd) {
+        byte[] key = new byte[keyLength];
+        ImmutableBitSet pk = info.getPrimaryKey();
+        int p = 0;
+        for (int i = 0; i < pk.trueBitCount(); i++) {
+            int c = pk.trueBitAt(i);
+            int len = info.getCodeSystem().maxCodeLength(c);
+            ByteArray v = record.get(c);
+            if (v.array() == null) {
+                Arrays.fill(key, p, p + len, isEnd ? (byte) 0xFF : 0);
+            } else {
+                System.arraycopy(v.array(), v.offset(), key, p, Math.min(len, v.length()));
+            }
+            p += len;
+        }
+        return key;
+    }
+
+    // (to - from) as a fraction of the key space, 0 if to is before from
+    private double distance(byte[] from, byte[] to) {
+        int d = 0;
+        while (d < keyLength && from[d] == to[d]) {
+            d++;
+        }
+        if (d == keyLength || (from[d] & 0xFF) > (to[d] & 0xFF)) {
+            return 0;
+        }
+
+        double diff = 0;
+        int end = Math.min(keyLength, d + PRECISION_BYTES);
+        for (int i = d; i < end; i++) {
+            diff = diff * 256 + ((to[i] & 0xFF) - (from[i] & 0xFF));
+        }
+        return diff * Math.pow(256, -end);
+    }
+}
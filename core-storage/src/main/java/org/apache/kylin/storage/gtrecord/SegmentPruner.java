@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.gtrecord;
+
+import java.util.Comparator;
+import java.util.Map;
+
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.DimensionRangeInfo;
+import org.apache.kylin.cube.kv.RowKeyColumnOrder;
+import org.apache.kylin.metadata.filter.CompareTupleFilter;
+import org.apache.kylin.metadata.filter.ConstantTupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Checks a filter against the dimension ranges of a segment, to tell segments that have no matching rows.
+ *
+ * The check is conservative: a segment is pruned only if the filter is sure to be false on all its rows. Filters
+ * that cannot be checked against ranges, like NOT or NEQ, keep the segment.
+ */
+public class SegmentPruner {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentPruner.class);
+
+    // the order of TrieDictionary, which the string ranges come from, differs from String.compareTo() for
+    // supplementary characters
+    private static final Comparator<String> UTF8_ORDER = new Comparator<String>() {
+        @Override
+        public int compare(String o1, String o2) {
+            return Bytes.compareTo(Bytes.toBytes(o1), Bytes.toBytes(o2));
+        }
+    };
+
+    private final TupleFilter filter;
+
+    public SegmentPruner(TupleFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * @return false if no row of the segment can satisfy the filter
+     */
+    public boolean check(CubeSegment segment) {
+        Map<String, DimensionRangeInfo> rangeMap = segment.getDimensionRangeInfoMap();
+        if (filter == null || rangeMap == null || rangeMap.isEmpty())
+            return true;
+
+        try {
+            return mayMatch(filter, rangeMap);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to check filter " + filter + " against the dimension ranges of segment " + segment, e);
+            return true;
+        }
+    }
+
+    private boolean mayMatch(TupleFilter filter, Map<String, DimensionRangeInfo> rangeMap) {
+        switch (filter.getOperator()) {
+        case AND:
+            for (TupleFilter child : filter.getChildren()) {
+                if (!mayMatch(child, rangeMap))
+                    return false;
+            }
+            return true;
+        case OR:
+            for (TupleFilter child : filter.getChildren()) {
+                if (mayMatch(child, rangeMap))
+                    return true;
+            }
+            return false;
+        case CONSTANT:
+            return filter != ConstantTupleFilter.FALSE;
+        case EQ:
+        case IN:
+        case LT:
+        case LTE:
+        case GT:
+        case GTE:
+            return mayMatch((CompareTupleFilter) filter, rangeMap);
+        default:
+            return true;
+        }
+    }
+
+    private boolean mayMatch(CompareTupleFilter compf, Map<String, DimensionRangeInfo> rangeMap) {
+        TblColRef col = compf.getColumn();
+        if (col == null || compf.getFunction() != null || compf.getValues().isEmpty())
+            return true;
+
+        DimensionRangeInfo range = rangeMap.get(col.getIdentity());
+        if (range == null)
+            return true;
+
+        Comparator<String> order = UTF8_ORDER;
+        if (col.getType().isNumberFamily() || col.getType().isDateTimeFamily())
+            order = RowKeyColumnOrder.getInstance(col.getType());
+        for (Object v : compf.getValues()) {
+            if (!(v instanceof String))
+                return true;
+        }
+
+        switch (compf.getOperator()) {
+        case EQ:
+        case IN:
+            for (Object v : compf.getValues()) {
+                if (order.compare((String) v, range.getMin()) >= 0 && order.compare((String) v, range.getMax()) <= 0)
+                    return true;
+            }
+            return false;
+        case LT:
+            return order.compare(range.getMin(), (String) compf.getFirstValue()) < 0;
+        case LTE:
+            return order.compare(range.getMin(), (String) compf.getFirstValue()) <= 0;
+        case GT:
+            return order.compare(range.getMax(), (String) compf.getFirstValue()) > 0;
+        case GTE:
+            return order.compare(range.getMax(), (String) compf.getFirstValue()) >= 0;
+        default:
+            return true;
+        }
+    }
+}
@@ -0,0 +1,494 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.gtrecord;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.kylin.common.exceptions.KylinTimeoutException;
+import org.apache.kylin.common.util.DaemonThreadFactory;
+import org.apache.kylin.metadata.tuple.ITuple;
+import org.apache.kylin.metadata.tuple.ITupleIterator;
+import org.apache.kylin.storage.StorageContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+
+/**
+ * Scans the segments of a query in parallel. Each segment is drained by a thread from a pool shared by all
+ * queries into a bounded buffer, and a query has no more than the given number of segments in flight at a time.
+ *
+ * The caller scans a segment itself when no pool thread has it: a segment not picked up yet when the caller
+ * reaches it, a segment the pool rejected as saturated, and a segment whose producer gave up its thread because
+ * the buffer stayed full. So a pool thread is never held by a consumer that stopped draining, and a busy pool
+ * slows a query down instead of stalling it.
+ *
+ * In ordered mode every segment is read through its own iterator, which keeps the order inside a segment and
+ * lets the caller decide the order among segments. In unordered mode tuples are returned as soon as any segment
+ * has them.
+ */
+public class SegmentTuplePrefetcher implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentTuplePrefetcher.class);
+
+    private static final int BATCH_SIZE = 100;
+    // a producer waits this long for buffer space before handing the segment back to the caller
+    private static final long DEFAULT_STALL_MILLIS = 5000;
+    private static final long POLL_MILLIS = 100;
+
+    private static final int NEW = 0;
+    private static final int PRODUCING = 1; // scanned by a pool thread
+    private static final int INLINE = 2; // scanned by the caller
+    private static final int YIELDED = 3; // the producer stopped, the rest is left to the caller
+    private static final int CLOSED = 4;
+
+    private static volatile ExecutorService sharedPool;
+
+    private static ExecutorService getSharedPool(int poolSize) {
+        if (sharedPool == null) {
+            synchronized (SegmentTuplePrefetcher.class) {
+                if (sharedPool == null) {
+                    logger.info("Creating segment scan pool of {} threads", poolSize);
+                    // the queue is bounded, a rejected segment is scanned by its query
+                    ThreadPoolExecutor pool = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<Runnable>(poolSize), new DaemonThreadFactory());
+                    pool.allowCoreThreadTimeOut(true);
+                    sharedPool = pool;
+                }
+            }
+        }
+        return sharedPool;
+    }
+
+    private final List<? extends ITupleIterator> segments;
+    private final long deadline;
+    private final long stallMillis;
+    private final ExecutorService pool;
+    private final SegmentBuffer[] buffers;
+    private final BlockingQueue<Batch> sharedQueue; // unordered mode only
+    private int nextToSubmit = 0;
+    private volatile boolean closed = false;
+
+    public SegmentTuplePrefetcher(List<? extends ITupleIterator> segments, int parallelism, int poolSize,
+            int bufferRows, boolean ordered, StorageContext context) {
+        this(segments, parallelism, getSharedPool(poolSize), bufferRows, ordered, context.getDeadline(),
+                DEFAULT_STALL_MILLIS);
+    }
+
+    SegmentTuplePrefetcher(List<? extends ITupleIterator> segments, int parallelism, ExecutorService pool,
+            int bufferRows, boolean ordered, long deadline, long stallMillis) {
+        this.segments = segments;
+        this.deadline = deadline;
+        this.stallMillis = stallMillis;
+        this.pool = pool;
+
+        int bufferBatches = Math.max(1, bufferRows / BATCH_SIZE);
+        this.sharedQueue = ordered ? null : new LinkedBlockingQueue<Batch>(bufferBatches * parallelism);
+        this.buffers = new SegmentBuffer[segments.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = new SegmentBuffer(i,
+                    ordered ? new LinkedBlockingQueue<Batch>(bufferBatches) : sharedQueue);
+        }
+
+        for (int i = 0; i < parallelism; i++) {
+            submitNext();
+        }
+    }
+
+    /**
+     * One iterator per segment, in segment order. Ordered mode only.
+     */
+    public List<Iterator<ITuple>> segmentIterators() {
+        List<Iterator<ITuple>> result = Lists.newArrayListWithCapacity(buffers.length);
+        for (SegmentBuffer buffer : buffers) {
+            result.add(new SegmentIterator(buffer));
+        }
+        return result;
+    }
+
+    /**
+     * Tuples of all segments, in the order they arrive. Unordered mode only.
+     */
+    public Iterator<ITuple> unorderedIterator() {
+        return new BatchIterator() {
+            int remainingSegments = buffers.length;
+            Iterator<ITuple> inline;
+
+            @Override
+            protected List<ITuple> nextBatch() {
+                while (remainingSegments > 0) {
+                    if (inline != null) {
+                        List<ITuple> tuples = readBatch(inline);
+                        if (!tuples.isEmpty()) {
+                            return tuples;
+                        }
+                        inline = null;
+                        remainingSegments--;
+                        continue;
+                    }
+
+                    Batch batch = sharedQueue.poll();
+                    if (batch == null) {
+                        inline = claimInline();
+                        if (inline != null) {
+                            continue;
+                        }
+                        batch = poll(sharedQueue);
+                        if (batch == null) {
+                            continue;
+                        }
+                    }
+                    batch.checkError();
+                    if (batch.isEnd()) {
+                        remainingSegments--;
+                    } else {
+                        return batch.tuples;
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+    // takes over a segment no pool thread has, in unordered mode the order among and inside segments is free
+    private Iterator<ITuple> claimInline() {
+        for (SegmentBuffer buffer : buffers) {
+            if (buffer.state.compareAndSet(NEW, INLINE)) {
+                return segments.get(buffer.index);
+            }
+            if (buffer.state.compareAndSet(YIELDED, INLINE)) {
+                return buffer.takeOver(Collections.<Batch> emptyList());
+            }
+        }
+        return null;
+    }
+
+    private List<ITuple> readBatch(Iterator<ITuple> inline) {
+        List<ITuple> tuples = Lists.newArrayListWithCapacity(BATCH_SIZE);
+        while (tuples.size() < BATCH_SIZE && inline.hasNext()) {
+            tuples.add(inline.next().makeCopy());
+        }
+        return tuples;
+    }
+
+    private void submitNext() {
+        SegmentBuffer next;
+        synchronized (this) {
+            if (closed || nextToSubmit >= buffers.length) {
+                return;
+            }
+            next = buffers[nextToSubmit++];
+        }
+
+        try {
+            pool.execute(new Producer(next));
+        } catch (RejectedExecutionException e) {
+            // the pool is saturated, the segment stays new for the caller to scan
+            logger.debug("Segment scan pool rejected segment {}, leaving it to the query thread", next.index);
+        }
+    }
+
+    /**
+     * @return the next batch, or null if none in a short while
+     */
+    private Batch poll(BlockingQueue<Batch> queue) {
+        if (System.currentTimeMillis() > deadline) {
+            throw new KylinTimeoutException("Query timeout after \"kylin.query.timeout-seconds\" seconds");
+        }
+        try {
+            Batch batch = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (batch != null) {
+                batch.checkError();
+            }
+            return batch;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted when waiting segment scan", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (SegmentBuffer buffer : buffers) {
+            // a producing segment is closed by its producer on exit
+            int state = buffer.state.getAndSet(CLOSED);
+            if (state == NEW || state == INLINE || state == YIELDED) {
+                segments.get(buffer.index).close();
+            }
+        }
+    }
+
+    private class Producer implements Runnable {
+        final SegmentBuffer buffer;
+
+        Producer(SegmentBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (buffer.state.compareAndSet(NEW, PRODUCING)) {
+                    produce();
+                }
+            } finally {
+                submitNext();
+            }
+        }
+
+        private void produce() {
+            ITupleIterator segment = segments.get(buffer.index);
+            boolean yielded = false;
+            try {
+                List<ITuple> tuples = Lists.newArrayListWithCapacity(BATCH_SIZE);
+                while (!closed && segment.hasNext()) {
+                    // segment iterator reuses its tuple
+                    tuples.add(segment.next().makeCopy());
+                    if (tuples.size() == BATCH_SIZE) {
+                        Batch batch = new Batch(tuples);
+                        if (!put(batch)) {
+                            yielded = handBack(batch);
+                            return;
+                        }
+                        tuples = Lists.newArrayListWithCapacity(BATCH_SIZE);
+                    }
+                }
+                if (!tuples.isEmpty()) {
+                    Batch batch = new Batch(tuples);
+                    if (!put(batch)) {
+                        yielded = handBack(batch);
+                        return;
+                    }
+                }
+                Batch end = Batch.end(null);
+                if (!put(end)) {
+                    yielded = handBack(end);
+                }
+            } catch (Throwable e) {
+                logger.error("Error when scanning segment " + buffer.index, e);
+                Batch end = Batch.end(e);
+                try {
+                    if (!put(end)) {
+                        yielded = handBack(end);
+                    }
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            } finally {
+                if (!yielded) {
+                    segment.close();
+                }
+            }
+        }
+
+        // waits for buffer space, unless the query is closed, timed out or the caller stopped draining
+        private boolean put(Batch batch) throws InterruptedException {
+            long stallDeadline = System.currentTimeMillis() + stallMillis;
+            while (!closed && System.currentTimeMillis() < deadline) {
+                if (buffer.queue.offer(batch, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+                if (System.currentTimeMillis() > stallDeadline) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        // hands the rest of the segment to the caller and frees the thread, false if the query is over
+        private boolean handBack(Batch pending) {
+            if (closed || System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            buffer.pending = pending;
+            if (buffer.state.compareAndSet(PRODUCING, YIELDED)) {
+                logger.info("Segment {} is not drained in {} ms, leaving the rest to the query thread", buffer.index,
+                        stallMillis);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private class SegmentIterator extends BatchIterator {
+        final SegmentBuffer buffer;
+        boolean started = false;
+        boolean ended = false;
+        Iterator<ITuple> inline;
+
+        SegmentIterator(SegmentBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!started) {
+                started = true;
+                if (buffer.state.compareAndSet(NEW, INLINE)) {
+                    inline = segments.get(buffer.index);
+                }
+            }
+            // reading the buffer may take the segment over from a yielded producer
+            if (inline == null && super.hasNext()) {
+                return true;
+            }
+            return inline != null && inline.hasNext();
+        }
+
+        @Override
+        public ITuple next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return inline != null ? inline.next() : super.next();
+        }
+
+        @Override
+        protected List<ITuple> nextBatch() {
+            while (!ended) {
+                Batch batch = poll(buffer.queue);
+                if (batch == null) {
+                    if (buffer.state.compareAndSet(YIELDED, INLINE)) {
+                        // nothing is added to the queue after the producer yields
+                        List<Batch> rest = new ArrayList<>();
+                        buffer.queue.drainTo(rest);
+                        inline = buffer.takeOver(rest);
+                        ended = true;
+                        return null;
+                    }
+                    continue;
+                }
+                if (batch.isEnd()) {
+                    ended = true;
+                    return null;
+                }
+                return batch.tuples;
+            }
+            return null;
+        }
+    }
+
+    private abstract static class BatchIterator implements Iterator<ITuple> {
+        List<ITuple> batch = Collections.emptyList();
+        int cursor = 0;
+
+        /**
+         * @return next non-empty batch, or null if no more
+         */
+        abstract protected List<ITuple> nextBatch();
+
+        @Override
+        public boolean hasNext() {
+            if (batch == null)
+                return false;
+            if (cursor < batch.size())
+                return true;
+
+            batch = nextBatch();
+            cursor = 0;
+            return batch != null;
+        }
+
+        @Override
+        public ITuple next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return batch.get(cursor++);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private class SegmentBuffer {
+        final int index;
+        final AtomicInteger state = new AtomicInteger(NEW);
+        final BlockingQueue<Batch> queue;
+        // the batch the producer could not put before it yielded, published by the state change
+        Batch pending;
+
+        SegmentBuffer(int index, BlockingQueue<Batch> queue) {
+            this.index = index;
+            this.queue = queue;
+        }
+
+        // the tuples left in the buffer, then the pending batch, then the rest of the segment
+        Iterator<ITuple> takeOver(List<Batch> rest) {
+            List<Iterator<ITuple>> parts = Lists.newArrayList();
+            for (Batch batch : rest) {
+                if (!batch.isEnd()) {
+                    parts.add(batch.tuples.iterator());
+                }
+            }
+            if (pending.isEnd()) {
+                pending.checkError();
+            } else {
+                parts.add(pending.tuples.iterator());
+                parts.add(segments.get(index));
+            }
+            return Iterators.concat(parts.iterator());
+        }
+    }
+
+    private static class Batch {
+        final List<ITuple> tuples; // null marks the end of a segment
+        final Throwable error;
+
+        static Batch end(Throwable error) {
+            return new Batch(null, error);
+        }
+
+        Batch(List<ITuple> tuples) {
+            this(tuples, null);
+        }
+
+        private Batch(List<ITuple> tuples, Throwable error) {
+            this.tuples = tuples;
+            this.error = error;
+        }
+
+        boolean isEnd() {
+            return tuples == null;
+        }
+
+        void checkError() {
+            if (error != null) {
+                if (error instanceof RuntimeException)
+                    throw (RuntimeException) error;
+                throw new RuntimeException("Error when scanning segment", error);
+            }
+        }
+    }
+}
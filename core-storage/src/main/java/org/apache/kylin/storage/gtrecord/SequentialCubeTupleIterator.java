@@ -25,6 +25,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 
+import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.exceptions.KylinTimeoutException;
 import org.apache.kylin.cube.cuboid.Cuboid;
 import org.apache.kylin.metadata.model.FunctionDesc;
@@ -49,6 +50,7 @@ public class SequentialCubeTupleIterator implements ITupleIterator {
     protected List<SegmentCubeTupleIterator> segmentCubeTupleIterators;
     protected Iterator<ITuple> tupleIterator;
     protected StorageContext context;
+    protected SegmentTuplePrefetcher prefetcher; // null if segments are scanned one after another
 
     private int scanCount;
     private int scanCountDelta;
@@ -63,15 +65,34 @@ public class SequentialCubeTupleIterator implements ITupleIterator {
             segmentCubeTupleIterators.add(new SegmentCubeTupleIterator(scanner, cuboid, selectedDimensions, selectedMetrics, returnTupleInfo, context));
         }
 
-        if (context.mergeSortPartitionResults() && !sqlDigest.isRawQuery) {
+        boolean mergeSort = context.mergeSortPartitionResults() && !sqlDigest.isRawQuery;
+        // segment order matters to merge sort, and to sort/limit push down
+        boolean ordered = mergeSort || context.hasSort() || context.isLimitPushDownEnabled();
+
+        KylinConfig config = cuboid.getCubeDesc().getConfig();
+        int parallelism = Math.min(config.getQuerySegmentScanParallelism(), segmentCubeTupleIterators.size());
+        if (parallelism > 1) {
+            logger.info("Scanning {} segments with parallelism {}, {}", segmentCubeTupleIterators.size(), parallelism,
+                    ordered ? "in order" : "out of order");
+            prefetcher = new SegmentTuplePrefetcher(segmentCubeTupleIterators, parallelism,
+                    config.getQuerySegmentScanPoolSize(), config.getQuerySegmentScanBufferRows(), ordered, context);
+            context.setSegmentScanParallelism(parallelism);
+        }
+
+        if (mergeSort) {
             //query with limit
             logger.info("Using SortedIteratorMergerWithLimit to merge segment results");
-            Iterator<Iterator<ITuple>> transformed = (Iterator<Iterator<ITuple>>) (Iterator<?>) segmentCubeTupleIterators.iterator();
+            Iterator<Iterator<ITuple>> transformed = prefetcher != null ? prefetcher.segmentIterators().iterator()
+                    : (Iterator<Iterator<ITuple>>) (Iterator<?>) segmentCubeTupleIterators.iterator();
             tupleIterator = new SortedIteratorMergerWithLimit<ITuple>(transformed, context.getFinalPushDownLimit(), getTupleDimensionComparator(cuboid, groups, returnTupleInfo)).getIterator();
+        } else if (prefetcher != null && !ordered) {
+            logger.info("Using SegmentTuplePrefetcher to merge segment results out of order");
+            tupleIterator = prefetcher.unorderedIterator();
         } else {
             //normal case
             logger.info("Using Iterators.concat to merge segment results");
-            tupleIterator = Iterators.concat(segmentCubeTupleIterators.iterator());
+            tupleIterator = Iterators.concat(prefetcher != null ? prefetcher.segmentIterators().iterator()
+                    : segmentCubeTupleIterators.iterator());
         }
     }
 
@@ -162,6 +183,11 @@ public class SequentialCubeTupleIterator implements ITupleIterator {
         // close all the remaining segmentIterator
         flushScanCountDelta();
 
+        if (prefetcher != null) {
+            prefetcher.close();
+            return;
+        }
+
         for (SegmentCubeTupleIterator iterator : segmentCubeTupleIterators) {
             iterator.close();
         }
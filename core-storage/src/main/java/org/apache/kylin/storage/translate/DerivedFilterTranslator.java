@@ -18,6 +18,7 @@
 
 package org.apache.kylin.storage.translate;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -32,6 +33,7 @@ import org.apache.kylin.metadata.filter.ColumnTupleFilter;
 import org.apache.kylin.metadata.filter.CompareTupleFilter;
 import org.apache.kylin.metadata.filter.ConstantTupleFilter;
 import org.apache.kylin.metadata.filter.FilterCodeSystemFactory;
+import org.apache.kylin.metadata.filter.IFilterCodeSystem;
 import org.apache.kylin.metadata.filter.LogicalTupleFilter;
 import org.apache.kylin.metadata.filter.TupleFilter;
 import org.apache.kylin.metadata.filter.TupleFilter.FilterOperatorEnum;
@@ -40,6 +42,7 @@ import org.apache.kylin.metadata.tuple.IEvaluatableTuple;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Predicate;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
@@ -50,7 +53,7 @@ public class DerivedFilterTranslator {
 
     private static final Logger logger = LoggerFactory.getLogger(DerivedFilterTranslator.class);
 
-    public static Pair<TupleFilter, Boolean> translate(LookupStringTable lookup, DeriveInfo hostInfo, CompareTupleFilter compf) {
+    public static Pair<TupleFilter, Boolean> translate(LookupStringTable lookup, DeriveInfo hostInfo, final CompareTupleFilter compf) {
 
         TblColRef derivedCol = compf.getColumn();
         TblColRef[] hostCols = hostInfo.columns;
@@ -74,13 +77,26 @@ public class DerivedFilterTranslator {
             pi[i] = pkCols[i].getColumnDesc().getZeroBasedIndex();
         }
 
+        Collection<String[]> hostRecords;
+        if (isValueMatch(derivedCol, compf)) {
+            @SuppressWarnings("unchecked")
+            Set<String> values = (Set<String>) compf.getValues();
+            hostRecords = lookup.findRows(di, values, pi);
+        } else {
+            final SingleColumnTuple tuple = new SingleColumnTuple(derivedCol);
+            final IFilterCodeSystem<?> codeSystem = FilterCodeSystemFactory.getFilterCodeSystem(derivedCol.getColumnDesc().getType());
+            hostRecords = lookup.findRows(di, new Predicate<String>() {
+                @Override
+                public boolean apply(String value) {
+                    tuple.value = value;
+                    return compf.evaluate(tuple, codeSystem);
+                }
+            }, pi);
+        }
+
         Set<Array<String>> satisfyingHostRecords = Sets.newHashSet();
-        SingleColumnTuple tuple = new SingleColumnTuple(derivedCol);
-        for (String[] row : lookup.getAllRows()) {
-            tuple.value = row[di];
-            if (compf.evaluate(tuple, FilterCodeSystemFactory.getFilterCodeSystem(derivedCol.getColumnDesc().getType()))) {
-                collect(row, pi, satisfyingHostRecords);
-            }
+        for (String[] rec : hostRecords) {
+            satisfyingHostRecords.add(new Array<String>(rec));
         }
 
         TupleFilter translated;
@@ -99,13 +115,19 @@ public class DerivedFilterTranslator {
         return new Pair<TupleFilter, Boolean>(translated, loosened);
     }
 
-    private static void collect(String[] row, int[] pi, Set<Array<String>> satisfyingHostRecords) {
-        // TODO when go beyond IN_THRESHOLD, only keep min/max is enough
-        String[] rec = new String[pi.length];
-        for (int i = 0; i < pi.length; i++) {
-            rec[i] = row[pi[i]];
+    /**
+     * EQ and IN on a string column can be answered by looking up the values, instead of evaluating the filter.
+     */
+    private static boolean isValueMatch(TblColRef derivedCol, CompareTupleFilter compf) {
+        if (compf.getOperator() != FilterOperatorEnum.EQ && compf.getOperator() != FilterOperatorEnum.IN)
+            return false;
+        if (!derivedCol.getType().isStringFamily() || compf.getValues().isEmpty())
+            return false;
+        for (Object value : compf.getValues()) {
+            if (!(value instanceof String))
+                return false;
         }
-        satisfyingHostRecords.add(new Array<String>(rec));
+        return true;
     }
 
     private static TupleFilter buildInFilter(TblColRef[] hostCols, Set<Array<String>> satisfyingHostRecords) {
@@ -282,7 +282,20 @@ public class DictGridTableTest extends LocalFileMetadataTestCase {
             assertEquals("[1421280000000, 30]-[1421280000000, 30]", r.get(2).toString());
             planner.setMaxScanRanges(2);
             List<GTScanRange> r2 = planner.planScanRanges();
-            assertEquals("[[1421280000000, 10]-[1421280000000, 30]]", r2.toString());
+            assertEquals("[[1421280000000, 10]-[1421280000000, 20], [1421280000000, 30]-[1421280000000, 30]]", r2.toString());
+            planner.setMaxScanRanges(1);
+            List<GTScanRange> r3 = planner.planScanRanges();
+            assertEquals("[[1421280000000, 10]-[1421280000000, 30]]", r3.toString());
+        }
+
+        // merge the ranges of smallest gap
+        {
+            LogicalTupleFilter filter = or(and(timeComp6, ageComp1), and(timeComp4, ageComp1),
+                    and(timeComp4, ageComp2));
+            CubeScanRangePlanner planner = new CubeScanRangePlanner(info, null, null, filter);
+            planner.setMaxScanRanges(2);
+            List<GTScanRange> r = planner.planScanRanges();
+            assertEquals("[[1421193600000, 10]-[1421193600000, 10], [1421280000000, 10]-[1421280000000, 20]]", r.toString());
         }
     }
 
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.gtrecord;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTSampleCodeSystem;
+import org.apache.kylin.gridtable.GTScanRange;
+import org.apache.kylin.metadata.datatype.DataType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+public class ScanRangeCostModelTest extends LocalFileMetadataTestCase {
+
+    private static final double DELTA = 1e-9;
+
+    private GTInfo info;
+
+    @Before
+    public void setUp() throws Exception {
+        createTestMetadata();
+        GTInfo.Builder builder = GTInfo.builder();
+        builder.setCodeSystem(new GTSampleCodeSystem());
+        DataType tint = DataType.getType("int4");
+        builder.setColumns(tint, tint);
+        builder.setPrimaryKey(ImmutableBitSet.valueOf(0, 1));
+        info = builder.build();
+    }
+
+    @After
+    public void after() throws Exception {
+        cleanupTestMetadata();
+    }
+
+    @Test
+    public void testFraction() {
+        ScanRangeCostModel model = new ScanRangeCostModel(info, 1000);
+
+        // all open is the whole key space
+        assertEquals(1.0, model.fraction(record(null, null), record(null, null)), DELTA);
+
+        // a quarter of the first column
+        assertEquals(0.25, model.fraction(record(0, null), record(0x3FFFFFFF, null)), DELTA);
+
+        // one value of the first column, the second open
+        assertEquals(Math.pow(2, -32), model.fraction(record(0x40000000, null), record(0x40000000, null)), 1e-15);
+
+        // a single key is not empty
+        assertEquals(Math.pow(2, -64), model.fraction(record(1, 2), record(1, 2)), 1e-25);
+
+        // start after end
+        assertEquals(Math.pow(2, -64), model.fraction(record(2, null), record(1, null)), 1e-25);
+    }
+
+    @Test
+    public void testGap() {
+        ScanRangeCostModel model = new ScanRangeCostModel(info, 1000);
+        GTScanRange first = range(0, 0x3FFFFFFF);
+        GTScanRange second = range(0x80000000, 0xBFFFFFFF);
+        GTScanRange third = range(0xC0000000, 0xFFFFFFFF);
+
+        assertEquals(0.25, model.gap(first, second), DELTA);
+        // adjacent
+        assertEquals(0, model.gap(second, third), DELTA);
+        // overlapping or out of order
+        assertEquals(0, model.gap(second, first), DELTA);
+        assertEquals(0, model.gap(second, second), DELTA);
+    }
+
+    @Test
+    public void testEstimateRows() {
+        ScanRangeCostModel model = new ScanRangeCostModel(info, 1000);
+        assertEquals(250, model.estimateRows(record(0, null), record(0x3FFFFFFF, null)));
+        assertEquals(1, model.estimateRows(record(1, 2), record(1, 2)));
+
+        assertEquals(500, model.estimateRows(Arrays.asList(range(0, 0x3FFFFFFF), range(0xC0000000, 0xFFFFFFFF))));
+        // overlapping ranges do not count more than the cuboid
+        assertEquals(1000, model.estimateRows(Arrays.asList(range(0, 0xFFFFFFFF), range(0, 0xFFFFFFFF))));
+
+        // unknown row count
+        ScanRangeCostModel unknown = new ScanRangeCostModel(info, -1);
+        assertFalse(unknown.isRowCountKnown());
+        assertEquals(-1, unknown.estimateRows(record(0, null), record(0x3FFFFFFF, null)));
+        assertEquals(-1, unknown.estimateRows(Arrays.asList(range(0, 0x3FFFFFFF))));
+        assertEquals(0.25, unknown.fraction(record(0, null), record(0x3FFFFFFF, null)), DELTA);
+    }
+
+    @Test
+    public void testCreate() {
+        CubeInstance cube = CubeManager.getInstance(getTestConfig()).getCube("test_kylin_cube_with_slr_ready");
+        CubeSegment segment = cube.getFirstSegment();
+        long cuboidId = 255;
+        segment.setInputRecords(1000);
+
+        // the input records are only an upper bound
+        cube.setCuboids(Maps.<Long, Long> newHashMap());
+        ScanRangeCostModel model = ScanRangeCostModel.create(info, segment, cuboidId);
+        assertEquals(1000, model.getCuboidRows());
+        assertFalse(model.isRowCountFromCuboidStats());
+
+        Map<Long, Long> cuboids = Maps.newHashMap();
+        cuboids.put(cuboidId, 400L);
+        cuboids.put(1L, 5000L);
+        cube.setCuboids(cuboids);
+        model = ScanRangeCostModel.create(info, segment, cuboidId);
+        assertEquals(400, model.getCuboidRows());
+        assertTrue(model.isRowCountFromCuboidStats());
+        // bounded by the input records
+        assertEquals(1000, ScanRangeCostModel.create(info, segment, 1L).getCuboidRows());
+        // a cuboid without statistics
+        assertFalse(ScanRangeCostModel.create(info, segment, 2L).isRowCountFromCuboidStats());
+
+        // parsed once for the same bytes
+        assertSame(cube.getCachedCuboids(), cube.getCachedCuboids());
+        assertEquals(cuboids, cube.getCachedCuboids());
+
+        segment.setInputRecords(0);
+        assertEquals(5000, ScanRangeCostModel.create(info, segment, 1L).getCuboidRows());
+        assertEquals(-1, ScanRangeCostModel.create(info, segment, 2L).getCuboidRows());
+    }
+
+    // ranges of the first column, the second open
+    private GTScanRange range(int start, int end) {
+        return new GTScanRange(record(start, null), record(end, null));
+    }
+
+    private GTRecord record(Integer c0, Integer c1) {
+        GTRecord record = new GTRecord(info);
+        if (c0 != null) {
+            record.set(0, new ByteArray(Bytes.toBytes(c0)));
+        }
+        if (c1 != null) {
+            record.set(1, new ByteArray(Bytes.toBytes(c1)));
+        }
+        return record;
+    }
+}
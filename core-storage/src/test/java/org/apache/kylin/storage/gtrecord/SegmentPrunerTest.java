@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.gtrecord;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.DimensionRangeInfo;
+import org.apache.kylin.metadata.filter.ColumnTupleFilter;
+import org.apache.kylin.metadata.filter.CompareTupleFilter;
+import org.apache.kylin.metadata.filter.ConstantTupleFilter;
+import org.apache.kylin.metadata.filter.LogicalTupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter.FilterOperatorEnum;
+import org.apache.kylin.metadata.model.TableDesc;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+public class SegmentPrunerTest extends LocalFileMetadataTestCase {
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        staticCreateTestMetadata();
+    }
+
+    @AfterClass
+    public static void after() throws Exception {
+        cleanAfterClass();
+    }
+
+    private final TableDesc table = TableDesc.mockup("table_a");
+    private final TblColRef site = TblColRef.mockup(table, 1, "site_id", "integer");
+    private final TblColRef country = TblColRef.mockup(table, 2, "country", "string");
+    private final TblColRef other = TblColRef.mockup(table, 3, "other", "string");
+
+    @Test
+    public void testCompare() {
+        CubeSegment seg = segment();
+
+        assertTrue(check(compare(site, FilterOperatorEnum.EQ, "7"), seg));
+        assertFalse(check(compare(site, FilterOperatorEnum.EQ, "70"), seg));
+        assertFalse(check(compare(site, FilterOperatorEnum.EQ, "2"), seg)); // numeric, not string order
+        assertTrue(check(compare(country, FilterOperatorEnum.IN, "AA", "CN"), seg));
+        assertFalse(check(compare(country, FilterOperatorEnum.IN, "AA", "ZZ"), seg));
+
+        assertFalse(check(compare(site, FilterOperatorEnum.LT, "3"), seg));
+        assertTrue(check(compare(site, FilterOperatorEnum.LTE, "3"), seg));
+        assertFalse(check(compare(site, FilterOperatorEnum.GT, "20"), seg));
+        assertTrue(check(compare(site, FilterOperatorEnum.GTE, "20"), seg));
+
+        // no range, or not checkable
+        assertTrue(check(compare(other, FilterOperatorEnum.EQ, "x"), seg));
+        assertTrue(check(compare(site, FilterOperatorEnum.NEQ, "70"), seg));
+        assertTrue(check(null, seg));
+        assertTrue(check(compare(site, FilterOperatorEnum.EQ, "70"), new CubeSegment()));
+    }
+
+    @Test
+    public void testSupplementaryCharacters() {
+        // U+1F600 is after U+FF21 in UTF-8 bytes, like in the dictionary, but before it in UTF-16
+        String emoji = new String(Character.toChars(0x1F600));
+        String fullwidthA = "\uFF21";
+        Map<String, DimensionRangeInfo> rangeMap = Maps.newHashMap();
+        rangeMap.put(country.getIdentity(), new DimensionRangeInfo(fullwidthA, emoji));
+        CubeSegment seg = new CubeSegment();
+        seg.setDimensionRangeInfoMap(rangeMap);
+
+        assertTrue(check(compare(country, FilterOperatorEnum.EQ, emoji), seg));
+        assertTrue(check(compare(country, FilterOperatorEnum.EQ, fullwidthA), seg));
+        assertTrue(check(compare(country, FilterOperatorEnum.GT, fullwidthA), seg));
+        assertTrue(check(compare(country, FilterOperatorEnum.LT, emoji), seg));
+        assertFalse(check(compare(country, FilterOperatorEnum.EQ, "\uE000"), seg));
+    }
+
+    @Test
+    public void testLogical() {
+        CubeSegment seg = segment();
+        TupleFilter match = compare(site, FilterOperatorEnum.EQ, "7");
+        TupleFilter miss = compare(country, FilterOperatorEnum.EQ, "ZZ");
+
+        assertFalse(check(logical(FilterOperatorEnum.AND, match, miss), seg));
+        assertTrue(check(logical(FilterOperatorEnum.OR, match, miss), seg));
+        assertFalse(check(logical(FilterOperatorEnum.OR, miss, compare(site, FilterOperatorEnum.GT, "20")), seg));
+        assertTrue(check(logical(FilterOperatorEnum.NOT, miss), seg));
+    }
+
+    private CubeSegment segment() {
+        Map<String, DimensionRangeInfo> rangeMap = Maps.newHashMap();
+        rangeMap.put(site.getIdentity(), new DimensionRangeInfo("3", "20"));
+        rangeMap.put(country.getIdentity(), new DimensionRangeInfo("CN", "US"));
+        CubeSegment seg = new CubeSegment();
+        seg.setDimensionRangeInfoMap(rangeMap);
+        return seg;
+    }
+
+    private boolean check(TupleFilter filter, CubeSegment seg) {
+        return new SegmentPruner(filter).check(seg);
+    }
+
+    private CompareTupleFilter compare(TblColRef col, FilterOperatorEnum op, String... values) {
+        CompareTupleFilter filter = new CompareTupleFilter(op);
+        filter.addChild(new ColumnTupleFilter(col));
+        filter.addChild(new ConstantTupleFilter(Arrays.asList(values)));
+        return filter;
+    }
+
+    private LogicalTupleFilter logical(FilterOperatorEnum op, TupleFilter... children) {
+        LogicalTupleFilter filter = new LogicalTupleFilter(op);
+        for (TupleFilter child : children) {
+            filter.addChild(child);
+        }
+        return filter;
+    }
+}
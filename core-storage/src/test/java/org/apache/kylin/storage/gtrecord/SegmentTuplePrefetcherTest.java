@@ -0,0 +1,292 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *  
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.gtrecord;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kylin.common.exceptions.KylinTimeoutException;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.metadata.tuple.ITuple;
+import org.apache.kylin.metadata.tuple.ITupleIterator;
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+
+public class SegmentTuplePrefetcherTest {
+
+    private static final int ROWS = 1000;
+
+    private final ThreadPoolExecutor pool = new ThreadPoolExecutor(2, 2, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>());
+
+    @After
+    public void after() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void testOrdered() throws Exception {
+        List<FakeSegment> segments = segments(4, ROWS, -1);
+        SegmentTuplePrefetcher prefetcher = new SegmentTuplePrefetcher(segments, 2, pool, 200, true,
+                Long.MAX_VALUE, 60000);
+        List<Integer> result = values(Iterators.concat(prefetcher.segmentIterators().iterator()));
+        prefetcher.close();
+
+        assertEquals(expected(4, ROWS), result);
+        assertAllClosed(segments);
+    }
+
+    @Test
+    public void testUnordered() throws Exception {
+        List<FakeSegment> segments = segments(4, ROWS, -1);
+        SegmentTuplePrefetcher prefetcher = new SegmentTuplePrefetcher(segments, 2, pool, 200, false,
+                Long.MAX_VALUE, 60000);
+        List<Integer> result = values(prefetcher.unorderedIterator());
+        prefetcher.close();
+
+        Collections.sort(result);
+        assertEquals(expected(4, ROWS), result);
+        assertAllClosed(segments);
+    }
+
+    @Test
+    public void testProducerError() throws Exception {
+        for (boolean ordered : new boolean[] { true, false }) {
+            List<FakeSegment> segments = segments(4, ROWS, 150);
+            SegmentTuplePrefetcher prefetcher = new SegmentTuplePrefetcher(segments, 2, pool, 200, ordered,
+                    Long.MAX_VALUE, 60000);
+            Iterator<ITuple> iterator = ordered ? Iterators.concat(prefetcher.segmentIterators().iterator())
+                    : prefetcher.unorderedIterator();
+            try {
+                values(iterator);
+                fail("error expected");
+            } catch (IllegalStateException e) {
+                assertEquals("scan failed", e.getMessage());
+            }
+            prefetcher.close();
+            assertAllClosed(segments);
+        }
+    }
+
+    @Test
+    public void testCloseWithBlockedProducers() throws Exception {
+        List<FakeSegment> segments = segments(4, ROWS * 10, -1);
+        SegmentTuplePrefetcher prefetcher = new SegmentTuplePrefetcher(segments, 2, pool, 100, true,
+                Long.MAX_VALUE, 60000);
+        Iterator<ITuple> iterator = Iterators.concat(prefetcher.segmentIterators().iterator());
+        iterator.next();
+        waitForFullBuffers();
+
+        prefetcher.close();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+        assertAllClosed(segments);
+    }
+
+    @Test
+    public void testStalledConsumer() throws Exception {
+        for (boolean ordered : new boolean[] { true, false }) {
+            List<FakeSegment> segments = segments(4, ROWS, -1);
+            SegmentTuplePrefetcher prefetcher = new SegmentTuplePrefetcher(segments, 2, pool, 100, ordered,
+                    Long.MAX_VALUE, 200);
+            Iterator<ITuple> iterator = ordered ? Iterators.concat(prefetcher.segmentIterators().iterator())
+                    : prefetcher.unorderedIterator();
+            List<Integer> result = Lists.newArrayList();
+            result.add((Integer) iterator.next().getAllValues()[0]);
+
+            // the producers give the segments back instead of holding the threads
+            long waitUntil = System.currentTimeMillis() + 5000;
+            while (pool.getActiveCount() > 0 && System.currentTimeMillis() < waitUntil) {
+                Thread.sleep(50);
+            }
+            assertEquals(0, pool.getActiveCount());
+
+            result.addAll(values(iterator));
+            prefetcher.close();
+            if (!ordered) {
+                Collections.sort(result);
+            }
+            assertEquals(expected(4, ROWS), result);
+            assertAllClosed(segments);
+        }
+    }
+
+    @Test
+    public void testDeadline() throws Exception {
+        List<FakeSegment> segments = segments(4, ROWS * 10, -1);
+        SegmentTuplePrefetcher prefetcher = new SegmentTuplePrefetcher(segments, 2, pool, 100, true,
+                System.currentTimeMillis() + 500, 60000);
+        Iterator<ITuple> iterator = Iterators.concat(prefetcher.segmentIterators().iterator());
+        iterator.next();
+        Thread.sleep(1000);
+
+        // the producers stop waiting for buffer space after the deadline
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+        try {
+            values(iterator);
+            fail("timeout expected");
+        } catch (KylinTimeoutException e) {
+            // expected
+        }
+        prefetcher.close();
+        assertAllClosed(segments);
+    }
+
+    @Test
+    public void testRejectedSegments() throws Exception {
+        pool.shutdown(); // rejects everything
+        for (boolean ordered : new boolean[] { true, false }) {
+            List<FakeSegment> segments = segments(4, ROWS, -1);
+            SegmentTuplePrefetcher prefetcher = new SegmentTuplePrefetcher(segments, 2, pool, 200, ordered,
+                    Long.MAX_VALUE, 60000);
+            Iterator<ITuple> iterator = ordered ? Iterators.concat(prefetcher.segmentIterators().iterator())
+                    : prefetcher.unorderedIterator();
+            List<Integer> result = values(iterator);
+            prefetcher.close();
+
+            Collections.sort(result);
+            assertEquals(expected(4, ROWS), result);
+            assertAllClosed(segments);
+        }
+    }
+
+    private void waitForFullBuffers() throws InterruptedException {
+        // both threads are busy on segments whose buffers hold one batch
+        Thread.sleep(500);
+        assertEquals(2, pool.getActiveCount());
+    }
+
+    private static List<FakeSegment> segments(int count, int rows, int failAt) {
+        List<FakeSegment> segments = Lists.newArrayList();
+        for (int i = 0; i < count; i++) {
+            segments.add(new FakeSegment(i * rows, rows, i == 1 ? failAt : -1));
+        }
+        return segments;
+    }
+
+    private static List<Integer> expected(int count, int rows) {
+        List<Integer> result = Lists.newArrayList();
+        for (int i = 0; i < count * rows; i++) {
+            result.add(i);
+        }
+        return result;
+    }
+
+    private static List<Integer> values(Iterator<ITuple> iterator) {
+        List<Integer> result = Lists.newArrayList();
+        while (iterator.hasNext()) {
+            result.add((Integer) iterator.next().getAllValues()[0]);
+        }
+        return result;
+    }
+
+    private static void assertAllClosed(List<FakeSegment> segments) throws InterruptedException {
+        // a producer closes its segment after the prefetcher is closed
+        long waitUntil = System.currentTimeMillis() + 5000;
+        for (FakeSegment segment : segments) {
+            while (segment.closeCount == 0 && System.currentTimeMillis() < waitUntil) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, segment.closeCount);
+        }
+    }
+
+    private static class FakeSegment implements ITupleIterator {
+        final int start;
+        final int end;
+        final int failAt;
+        final IntTuple tuple = new IntTuple(); // reused like a segment iterator does
+        int next;
+        volatile int closeCount = 0;
+
+        FakeSegment(int start, int rows, int failAt) {
+            this.start = start;
+            this.end = start + rows;
+            this.failAt = failAt < 0 ? -1 : start + failAt;
+            this.next = start;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == failAt) {
+                throw new IllegalStateException("scan failed");
+            }
+            return next < end;
+        }
+
+        @Override
+        public ITuple next() {
+            tuple.value = next++;
+            return tuple;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public synchronized void close() {
+            closeCount++;
+        }
+    }
+
+    private static class IntTuple implements ITuple {
+        int value;
+
+        @Override
+        public List<String> getAllFields() {
+            return Collections.singletonList("V");
+        }
+
+        @Override
+        public List<TblColRef> getAllColumns() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Object[] getAllValues() {
+            return new Object[] { value };
+        }
+
+        @Override
+        public ITuple makeCopy() {
+            IntTuple copy = new IntTuple();
+            copy.value = value;
+            return copy;
+        }
+
+        @Override
+        public Object getValue(TblColRef col) {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.engine.mr.steps;
+
+import java.util.Arrays;
+
+import org.apache.kylin.measure.hllc.HLLCounter;
+
+/**
+ * Buffers the distinct row key column hashes of sampled rows, so that the cuboid HLL counters are updated once
+ * for each distinct row of base cuboid, instead of once for each row. The cardinality of any cuboid only depends
+ * on the distinct rows of base cuboid, so the counters end up the same as updating them row by row.
+ *
+ * The column hashes are those of the new sampling algorithm (KYLIN-2518), the hash of a cuboid is their sum.
+ *
+ * When base cuboid rows hardly repeat, buffering only adds work, see {@link #isMostlyDistinct()}.
+ */
+public class DistinctRowKeyHashBuffer {
+
+    // a window of rows more distinct than this saves too little to be worth buffering
+    static final double MAX_DISTINCT_RATIO = 0.9;
+
+    private final int nRowKey;
+    private final int capacity;
+
+    private final long[] hashes; // rows of nRowKey hashes, in the order of add
+    private final int[] slots; // open addressing on rows, row index + 1, or 0 if empty
+    private int size;
+    private long added; // rows added since last flush, including the repeated
+
+    /**
+     * @param capacity the max distinct rows held before flush
+     */
+    public DistinctRowKeyHashBuffer(int nRowKey, int capacity) {
+        this.nRowKey = nRowKey;
+        this.capacity = Math.max(1, capacity);
+        this.hashes = new long[this.capacity * nRowKey];
+        this.slots = new int[Integer.highestOneBit(this.capacity * 2 - 1) << 1];
+    }
+
+    /**
+     * @return the rows that fit in the given bytes, at least 1
+     */
+    public static int capacityOf(int nRowKey, long bytes) {
+        long bytesPerRow = (long) nRowKey * 8 + 8; // hashes and two slots
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE / 2 / Math.max(1, nRowKey), bytes / bytesPerRow));
+    }
+
+    /**
+     * @return true if the buffer is full and should be flushed
+     */
+    public boolean add(long[] rowHashes) {
+        added++;
+        int mask = slots.length - 1;
+        int slot = (int) mix(rowHashes) & mask;
+        while (slots[slot] != 0) {
+            if (rowEquals(slots[slot] - 1, rowHashes)) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        System.arraycopy(rowHashes, 0, hashes, size * nRowKey, nRowKey);
+        slots[slot] = ++size;
+        return size >= capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if nearly all rows added since the last flush are distinct, so that updating the counters row
+     * by row costs about the same
+     */
+    public boolean isMostlyDistinct() {
+        return added > 0 && size > MAX_DISTINCT_RATIO * added;
+    }
+
+    /**
+     * Adds the hash of every buffered row to the counter of every cuboid, and clears the buffer.
+     *
+     * @param cuboidsBitSet the row key column indexes of each cuboid
+     */
+    public void flush(Integer[][] cuboidsBitSet, HLLCounter[] cuboidsHLL) {
+        int[] columns = new int[nRowKey];
+        for (int i = 0; i < cuboidsBitSet.length; i++) {
+            Integer[] bitSet = cuboidsBitSet[i];
+            for (int c = 0; c < bitSet.length; c++) {
+                columns[c] = bitSet[c];
+            }
+
+            HLLCounter hll = cuboidsHLL[i];
+            for (int r = 0, offset = 0; r < size; r++, offset += nRowKey) {
+                long value = 0;
+                for (int c = 0; c < bitSet.length; c++) {
+                    value += hashes[offset + columns[c]];
+                }
+                hll.addHashDirectly(value);
+            }
+        }
+
+        Arrays.fill(slots, 0);
+        size = 0;
+        added = 0;
+    }
+
+    private boolean rowEquals(int row, long[] rowHashes) {
+        int offset = row * nRowKey;
+        for (int i = 0; i < nRowKey; i++) {
+            if (hashes[offset + i] != rowHashes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long mix(long[] rowHashes) {
+        long h = 0;
+        for (int i = 0; i < nRowKey; i++) {
+            h = h * 31 + rowHashes[i];
+        }
+        return h ^ (h >>> 32) ^ (h >>> 17);
+    }
+}
@@ -66,6 +66,7 @@ public class FactDistinctColumnsMapper<KEYIN> extends FactDistinctColumnsMapperB
     private int samplingPercentage;
     //private ByteArray[] row_hashcodes = null;
     private long[] rowHashCodesLong = null;
+    private DistinctRowKeyHashBuffer rowHashBuffer = null;
     private ByteBuffer tmpbuf;
     private static final Text EMPTY_TEXT = new Text();
     public static final byte MARK_FOR_PARTITION_COL = (byte) 0xFE;
@@ -124,6 +125,13 @@ public class FactDistinctColumnsMapper<KEYIN> extends FactDistinctColumnsMapperB
                 rowHashCodesLong = new long[nRowKey];
                 hf = Hashing.murmur3_128();
                 logger.info("Found KylinVersion : {}. Use new algorithm for cuboid sampling. About the details of the new algorithm, please refer to KYLIN-2518", cubeDesc.getVersion());
+
+                int bufferMB = cubeDesc.getConfig().getCubeStatsBufferMB();
+                if (bufferMB > 0) {
+                    int bufferRows = DistinctRowKeyHashBuffer.capacityOf(nRowKey, bufferMB * 1024L * 1024L);
+                    rowHashBuffer = new DistinctRowKeyHashBuffer(nRowKey, bufferRows);
+                    logger.info("Buffer up to {} distinct rows for cuboid sampling", bufferRows);
+                }
             }
         }
 
@@ -264,6 +272,20 @@ public class FactDistinctColumnsMapper<KEYIN> extends FactDistinctColumnsMapperB
             rowHashCodesLong[i] = (Bytes.toLong(bytes) + i);//add column ordinal to the hash value to distinguish between (a,b) and (b,a)
         }
 
+        // the same row of base cuboid adds nothing to any cuboid, so count each distinct row only once
+        if (rowHashBuffer != null) {
+            if (rowHashBuffer.add(rowHashCodesLong)) {
+                boolean mostlyDistinct = rowHashBuffer.isMostlyDistinct();
+                rowHashBuffer.flush(allCuboidsBitSet, allCuboidsHLL);
+                if (mostlyDistinct) {
+                    // base cuboid rows hardly repeat, go row by row for the rest
+                    logger.info("Stop buffering distinct rows for cuboid sampling, the sampled rows hardly repeat");
+                    rowHashBuffer = null;
+                }
+            }
+            return;
+        }
+
         // user the row key column hash to get a consolidated hash for each cuboid
         for (int i = 0, n = allCuboidsBitSet.length; i < n; i++) {
             long value = 0;
@@ -277,6 +299,10 @@ public class FactDistinctColumnsMapper<KEYIN> extends FactDistinctColumnsMapperB
     @Override
     protected void doCleanup(Context context) throws IOException, InterruptedException {
         if (collectStatistics) {
+            if (rowHashBuffer != null) {
+                rowHashBuffer.flush(allCuboidsBitSet, allCuboidsHLL);
+            }
+
             ByteBuffer hllBuf = ByteBuffer.allocate(BufferedMeasureCodec.DEFAULT_BUFFER_SIZE);
             // output each cuboid's hll to reducer, key is 0 - cuboidId
             HLLCounter hll;
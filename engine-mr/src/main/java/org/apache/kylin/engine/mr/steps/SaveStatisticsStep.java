@@ -19,6 +19,7 @@
 package org.apache.kylin.engine.mr.steps;
 
 import java.io.IOException;
+import java.util.Map;
 
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileSystem;
@@ -27,7 +28,10 @@ import org.apache.hadoop.io.IOUtils;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.common.util.HadoopUtil;
+import org.apache.kylin.cube.CubeManager;
 import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.CubeUpdate;
+import org.apache.kylin.cube.DimensionRangeInfo;
 import org.apache.kylin.engine.mr.CubingJob;
 import org.apache.kylin.engine.mr.common.BatchConstants;
 import org.apache.kylin.engine.mr.common.StatisticsDecisionUtil;
@@ -69,6 +73,9 @@ public class SaveStatisticsStep extends AbstractExecutable {
                 String statisticsFileName = newSegment.getStatisticsResourcePath();
                 rs.putResource(statisticsFileName, is, System.currentTimeMillis());
 
+                // record the dimension ranges, by which queries prune the segment
+                saveDimensionRangeInfo(newSegment);
+
                 CubingJob cubingJob = (CubingJob) getManager()
                         .getJob(CubingExecutableUtil.getCubingJobId(this.getParams()));
                 StatisticsDecisionUtil.decideCubingAlgorithm(cubingJob, newSegment);
@@ -84,4 +91,14 @@ public class SaveStatisticsStep extends AbstractExecutable {
         }
     }
 
+    private void saveDimensionRangeInfo(CubeSegment segment) throws IOException {
+        Map<String, DimensionRangeInfo> rangeInfoMap = DimensionRangeInfo.buildFromDictionaries(segment);
+        logger.info("Dimension ranges of segment {}: {}", segment, rangeInfoMap);
+
+        segment.setDimensionRangeInfoMap(rangeInfoMap);
+        CubeUpdate cubeBuilder = new CubeUpdate(segment.getCubeInstance());
+        cubeBuilder.setToUpdateSegs(segment);
+        CubeManager.getInstance(segment.getConfig()).updateCube(cubeBuilder);
+    }
+
 }
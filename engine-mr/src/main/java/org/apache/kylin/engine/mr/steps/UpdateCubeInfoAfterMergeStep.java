@@ -20,11 +20,13 @@ package org.apache.kylin.engine.mr.steps;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.cube.CubeInstance;
 import org.apache.kylin.cube.CubeManager;
 import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.DimensionRangeInfo;
 import org.apache.kylin.engine.mr.CubingJob;
 import org.apache.kylin.job.exception.ExecuteException;
 import org.apache.kylin.job.execution.AbstractExecutable;
@@ -33,6 +35,8 @@ import org.apache.kylin.job.execution.ExecuteResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
+
 /**
  */
 public class UpdateCubeInfoAfterMergeStep extends AbstractExecutable {
@@ -64,16 +68,19 @@ public class UpdateCubeInfoAfterMergeStep extends AbstractExecutable {
         }
         long sourceCount = 0L;
         long sourceSize = 0L;
+        List<Map<String, DimensionRangeInfo>> rangeInfoMaps = Lists.newArrayList();
         for (String id : mergingSegmentIds) {
             CubeSegment segment = cube.getSegmentById(id);
             sourceCount += segment.getInputRecords();
             sourceSize += segment.getInputRecordsSize();
+            rangeInfoMaps.add(segment.getDimensionRangeInfoMap());
         }
 
         // update segment info
         mergedSegment.setSizeKB(cubeSizeBytes / 1024);
         mergedSegment.setInputRecords(sourceCount);
         mergedSegment.setInputRecordsSize(sourceSize);
+        mergedSegment.setDimensionRangeInfoMap(DimensionRangeInfo.mergeRangeMap(cube.getModel(), rangeInfoMaps));
         mergedSegment.setLastBuildJobID(CubingExecutableUtil.getCubingJobId(this.getParams()));
         mergedSegment.setLastBuildTime(System.currentTimeMillis());
 
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.engine.mr.steps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.apache.kylin.measure.hllc.HLLCounter;
+import org.apache.kylin.measure.hllc.RegisterType;
+import org.junit.Test;
+
+public class DistinctRowKeyHashBufferTest {
+
+    private static final int ROW_LENGTH = 4;
+
+    private final Integer[][] cuboidsBitSet = { { 0, 1, 2, 3 }, { 0, 1 }, { 2, 3 }, { 1 }, { 3 } };
+
+    @Test
+    public void testSameAsRowByRow() {
+        Random rand = new Random(1);
+        HLLCounter[] expected = newCounters();
+        HLLCounter[] actual = newCounters();
+        DistinctRowKeyHashBuffer buffer = new DistinctRowKeyHashBuffer(ROW_LENGTH, 100);
+
+        long[] row = new long[ROW_LENGTH];
+        for (int n = 0; n < 10000; n++) {
+            // few distinct values, so that rows repeat
+            for (int i = 0; i < ROW_LENGTH; i++) {
+                row[i] = rand.nextInt(5) * 0x9E3779B97F4A7C15L + i;
+            }
+
+            for (int c = 0; c < cuboidsBitSet.length; c++) {
+                long value = 0;
+                for (int position : cuboidsBitSet[c]) {
+                    value += row[position];
+                }
+                expected[c].addHashDirectly(value);
+            }
+
+            if (buffer.add(row)) {
+                buffer.flush(cuboidsBitSet, actual);
+            }
+        }
+        buffer.flush(cuboidsBitSet, actual);
+
+        for (int c = 0; c < cuboidsBitSet.length; c++) {
+            assertEquals(expected[c], actual[c]);
+        }
+    }
+
+    @Test
+    public void testDistinct() {
+        DistinctRowKeyHashBuffer buffer = new DistinctRowKeyHashBuffer(ROW_LENGTH, 2);
+        assertFalse(buffer.add(new long[] { 1, 2, 3, 4 }));
+        assertFalse(buffer.add(new long[] { 1, 2, 3, 4 }));
+        assertEquals(1, buffer.size());
+        assertTrue(buffer.add(new long[] { 4, 3, 2, 1 }));
+        assertEquals(2, buffer.size());
+
+        buffer.flush(cuboidsBitSet, newCounters());
+        assertEquals(0, buffer.size());
+        assertFalse(buffer.add(new long[] { 1, 2, 3, 4 }));
+    }
+
+    @Test
+    public void testMostlyDistinct() {
+        DistinctRowKeyHashBuffer buffer = new DistinctRowKeyHashBuffer(ROW_LENGTH, 10);
+        assertFalse(buffer.isMostlyDistinct());
+        for (int i = 0; i < 10; i++) {
+            buffer.add(new long[] { i, 0, 0, 0 });
+        }
+        assertTrue(buffer.isMostlyDistinct());
+
+        // half of the rows repeat
+        buffer.flush(cuboidsBitSet, newCounters());
+        for (int i = 0; i < 10; i++) {
+            buffer.add(new long[] { i / 2, 0, 0, 0 });
+        }
+        assertFalse(buffer.isMostlyDistinct());
+    }
+
+    private HLLCounter[] newCounters() {
+        HLLCounter[] counters = new HLLCounter[cuboidsBitSet.length];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new HLLCounter(14, RegisterType.DENSE);
+        }
+        return counters;
+    }
+}
@@ -19,6 +19,8 @@
 
 package org.apache.kylin.engine.mr.steps;
 
+import static org.junit.Assert.assertEquals;
+
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -39,7 +41,6 @@ import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
 
-@Ignore
 public class NewCubeSamplingMethodTest {
 
     private static final int ROW_LENGTH = 10;
@@ -50,6 +51,9 @@ public class NewCubeSamplingMethodTest {
 
     private final int rowCount = 500000;
 
+    // rows of the distinct buffer tests, which run in every build
+    private final int bufferTestRowCount = 20000;
+
     @Before
     public void setup() {
         baseCuboidId = (1L << ROW_LENGTH) - 1;
@@ -75,6 +79,65 @@ public class NewCubeSamplingMethodTest {
     }
 
 
+    @Test
+    public void testDistinctBufferSmallCardData() throws Exception {
+        List<List<String>> dataSet = getSmallCardDataset(bufferTestRowCount);
+        assertEquals(0.0, compareDistinctBuffer(dataSet, false), 0.0);
+    }
+
+    @Test
+    public void testDistinctBufferRandomData() throws Exception {
+        List<List<String>> dataSet = getRandomDataset(bufferTestRowCount);
+        assertEquals(0.0, compareDistinctBuffer(dataSet, true), 0.0);
+    }
+
+    //compare the distinct row buffer with the row by row new method, in time and estimates of every cuboid,
+    //returns the max error rate of the buffered estimates against the row by row ones
+    public double compareDistinctBuffer(final List<List<String>> rows, boolean expectSkipped) throws Exception {
+        HLLCounter[] rowByRow = getNewCuboidCounters(allCuboidsBitSet.length);
+        long[] valueHashLong = new long[ROW_LENGTH];
+        long start = System.currentTimeMillis();
+        for (List<String> row : rows) {
+            putRowKeyToHLLNew(row, valueHashLong, rowByRow, Hashing.murmur3_128());
+        }
+        System.out.println("row by row cost time : " + (System.currentTimeMillis() - start));
+
+        // a small buffer so that the rows fill several windows, as FactDistinctColumnsMapper
+        HLLCounter[] buffered = getNewCuboidCounters(allCuboidsBitSet.length);
+        DistinctRowKeyHashBuffer buffer = new DistinctRowKeyHashBuffer(ROW_LENGTH, DistinctRowKeyHashBuffer.capacityOf(ROW_LENGTH, 64L * 1024));
+        boolean skipped = false;
+        start = System.currentTimeMillis();
+        for (List<String> row : rows) {
+            if (buffer == null) {
+                putRowKeyToHLLNew(row, valueHashLong, buffered, Hashing.murmur3_128());
+                continue;
+            }
+            hashRow(row, valueHashLong, Hashing.murmur3_128());
+            if (buffer.add(valueHashLong)) {
+                boolean mostlyDistinct = buffer.isMostlyDistinct();
+                buffer.flush(allCuboidsBitSet, buffered);
+                if (mostlyDistinct) {
+                    buffer = null;
+                    skipped = true;
+                }
+            }
+        }
+        if (buffer != null) {
+            buffer.flush(allCuboidsBitSet, buffered);
+        }
+        System.out.println("distinct buffer cost time : " + (System.currentTimeMillis() - start) + ", skipped : " + skipped);
+        assertEquals(expectSkipped, skipped);
+
+        double maxDiff = 0;
+        for (int i = 0; i < allCuboidsBitSet.length; i++) {
+            long expected = rowByRow[i].getCountEstimate();
+            long actual = buffered[i].getCountEstimate();
+            maxDiff = Math.max(maxDiff, countErrorRate(actual, expected));
+        }
+        System.out.println("max difference of cuboid estimates : " + maxDiff);
+        return maxDiff;
+    }
+
     public void comparePerformanceBasic(final List<List<String>> rows) throws Exception {
         //old hash method
         byte[][] colHashValues = new byte[ROW_LENGTH][];
@@ -227,12 +290,7 @@ public class NewCubeSamplingMethodTest {
     }
 
     private void putRowKeyToHLLNew(List<String> row, long[] hashValuesLong, HLLCounter[] cuboidCounters, HashFunction hashFunction) {
-        int x = 0;
-        for (String field : row) {
-            Hasher hc = hashFunction.newHasher();
-            byte[] bytes = hc.putString(x + field).hash().asBytes();
-            hashValuesLong[x++] = Bytes.toLong(bytes);
-        }
+        hashRow(row, hashValuesLong, hashFunction);
 
         for (int i = 0, n = allCuboidsBitSet.length; i < n; i++) {
             long value = 0;
@@ -243,6 +301,15 @@ public class NewCubeSamplingMethodTest {
         }
     }
 
+    private void hashRow(List<String> row, long[] hashValuesLong, HashFunction hashFunction) {
+        int x = 0;
+        for (String field : row) {
+            Hasher hc = hashFunction.newHasher();
+            byte[] bytes = hc.putString(x + field).hash().asBytes();
+            hashValuesLong[x++] = Bytes.toLong(bytes);
+        }
+    }
+
     private List<List<String>> getRandomDataset(int size) {
         List<List<String>> rows = new ArrayList<>();
         for (int i = 0; i < size; i++) {
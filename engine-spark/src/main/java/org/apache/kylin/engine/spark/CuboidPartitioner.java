@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.engine.spark;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.cube.kv.RowConstants;
+import org.apache.spark.Partitioner;
+
+/**
+ * Partitions cuboid rows by the estimated size of each cuboid. The cuboids are laid out one after another, every
+ * partition taking about the cut size, so that small cuboids share a partition and a large cuboid spreads over
+ * several. The rows of a cuboid go to its partitions by the hash of row key.
+ */
+public class CuboidPartitioner extends Partitioner {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param cuboidIds the cuboids in the order to lay out
+     * @param cuboidSizeMap estimated size in MB of the cuboids
+     * @param enableSharding whether the row keys start with shard id
+     */
+    public static CuboidPartitioner create(List<Long> cuboidIds, Map<Long, Double> cuboidSizeMap, double cutMB, int minPartition, int maxPartition, boolean enableSharding) {
+        double totalMB = 0;
+        for (Long cuboidId : cuboidIds) {
+            totalMB += sizeOf(cuboidId, cuboidSizeMap);
+        }
+
+        // a cut to keep the partition number in range
+        double cut = Math.max(cutMB, totalMB / Math.max(1, maxPartition));
+        if (minPartition > 0 && totalMB / cut < minPartition) {
+            cut = totalMB / minPartition;
+        }
+
+        Map<Long, int[]> ranges = new HashMap<>();
+        double position = 0;
+        int partitions = 1;
+        for (Long cuboidId : cuboidIds) {
+            double size = sizeOf(cuboidId, cuboidSizeMap);
+            int first = cut > 0 ? (int) (position / cut) : 0;
+            int last = cut > 0 ? (int) Math.ceil((position + size) / cut) - 1 : 0;
+            last = Math.min(Math.max(first, last), Math.max(0, maxPartition - 1));
+            first = Math.min(first, last);
+            ranges.put(cuboidId, new int[] { first, last - first + 1 });
+            partitions = Math.max(partitions, last + 1);
+            position += size;
+        }
+        return new CuboidPartitioner(ranges, partitions, enableSharding ? RowConstants.ROWKEY_SHARDID_LEN : 0);
+    }
+
+    private static double sizeOf(Long cuboidId, Map<Long, Double> cuboidSizeMap) {
+        Double size = cuboidSizeMap.get(cuboidId);
+        return size == null ? 0 : Math.max(0, size);
+    }
+
+    // ============================================================================
+
+    private final Map<Long, int[]> cuboidRanges; // cuboid id => { first partition, partition count }
+    private final int partitions;
+    private final int cuboidIdOffset;
+
+    CuboidPartitioner(Map<Long, int[]> cuboidRanges, int partitions, int cuboidIdOffset) {
+        this.cuboidRanges = cuboidRanges;
+        this.partitions = partitions;
+        this.cuboidIdOffset = cuboidIdOffset;
+    }
+
+    @Override
+    public int numPartitions() {
+        return partitions;
+    }
+
+    @Override
+    public int getPartition(Object key) {
+        ByteArray rowKey = (ByteArray) key;
+        int hash = rowKey.hashCode() & Integer.MAX_VALUE;
+        long cuboidId = BytesUtil.readLong(rowKey.array(), rowKey.offset() + cuboidIdOffset, RowConstants.ROWKEY_CUBOIDID_LEN);
+
+        int[] range = cuboidRanges.get(cuboidId);
+        if (range == null) {
+            return hash % partitions;
+        }
+        return range[0] + hash % range[1];
+    }
+
+    public int[] getPartitionRange(long cuboidId) {
+        return cuboidRanges.get(cuboidId);
+    }
+}
@@ -240,6 +240,7 @@ public class KylinKryoRegistrator implements KryoRegistrator {
         kyroClasses.add(org.apache.kylin.measure.raw.RawAggregator.class);
         kyroClasses.add(org.apache.kylin.measure.raw.RawMeasureType.class);
         kyroClasses.add(org.apache.kylin.measure.raw.RawSerializer.class);
+        kyroClasses.add(org.apache.kylin.measure.topn.ByteArrayTopNCounter.class);
         kyroClasses.add(org.apache.kylin.measure.topn.Counter.class);
         kyroClasses.add(org.apache.kylin.measure.topn.DoubleDeltaSerializer.class);
         kyroClasses.add(org.apache.kylin.measure.topn.TopNAggregator.class);
@@ -22,8 +22,13 @@ import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.OptionBuilder;
@@ -35,6 +40,7 @@ import org.apache.hadoop.mapreduce.Job;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.util.AbstractApplication;
 import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.BytesUtil;
 import org.apache.kylin.common.util.HadoopUtil;
 import org.apache.kylin.common.util.OptionsHelper;
 import org.apache.kylin.common.util.Pair;
@@ -46,6 +52,7 @@ import org.apache.kylin.cube.common.RowKeySplitter;
 import org.apache.kylin.cube.cuboid.Cuboid;
 import org.apache.kylin.cube.cuboid.CuboidScheduler;
 import org.apache.kylin.cube.kv.AbstractRowKeyEncoder;
+import org.apache.kylin.cube.kv.RowConstants;
 import org.apache.kylin.cube.kv.RowKeyEncoderProvider;
 import org.apache.kylin.cube.model.CubeDesc;
 import org.apache.kylin.cube.model.CubeJoinedFlatTableEnrich;
@@ -76,6 +83,9 @@ import org.apache.spark.storage.StorageLevel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
 import scala.Tuple2;
 
 /**
@@ -95,6 +105,9 @@ public class SparkCubingByLayer extends AbstractApplication implements Serializa
             .isRequired(true).withDescription("Cube output path").create(BatchConstants.ARG_OUTPUT);
     public static final Option OPTION_INPUT_TABLE = OptionBuilder.withArgName("hiveTable").hasArg().isRequired(true)
             .withDescription("Hive Intermediate Table").create("hiveTable");
+    public static final Option OPTION_SPARK_MASTER = OptionBuilder.withArgName("sparkMaster").hasArg()
+            .isRequired(false).withDescription("Spark master when not set by spark-submit, e.g. local[*] for testing")
+            .create("sparkMaster");
 
     private Options options;
 
@@ -105,6 +118,7 @@ public class SparkCubingByLayer extends AbstractApplication implements Serializa
         options.addOption(OPTION_SEGMENT_ID);
         options.addOption(OPTION_META_URL);
         options.addOption(OPTION_OUTPUT_PATH);
+        options.addOption(OPTION_SPARK_MASTER);
     }
 
     @Override
@@ -128,6 +142,10 @@ public class SparkCubingByLayer extends AbstractApplication implements Serializa
         conf.set("spark.serializer", "org.apache.spark.serializer.KryoSerializer");
         conf.set("spark.kryo.registrator", "org.apache.kylin.engine.spark.KylinKryoRegistrator");
         conf.set("spark.kryo.registrationRequired", "true").registerKryoClasses(kryoClassArray);
+        // run in Spark local mode only when asked to, e.g. -sparkMaster local[*] for testing
+        if (optionsHelper.hasOption(OPTION_SPARK_MASTER)) {
+            conf.setIfMissing("spark.master", optionsHelper.getOptionValue(OPTION_SPARK_MASTER));
+        }
 
         JavaSparkContext sc = new JavaSparkContext(conf);
         HadoopUtil.deletePath(sc.hadoopConfiguration(), new Path(outputPath));
@@ -192,17 +210,22 @@ public class SparkCubingByLayer extends AbstractApplication implements Serializa
         saveToHDFS(allRDDs[0], metaUrl, cubeName, cubeSegment, outputPath, 0, job, envConfig);
 
         // aggregate to ND cuboids
-        for (level = 1; level <= totalLevels; level++) {
-            partition = estimateRDDPartitionNum(level, cubeStatsReader, envConfig);
-            allRDDs[level] = allRDDs[level - 1].flatMapToPair(new CuboidFlatMap(cubeName, segmentId, metaUrl))
-                    .reduceByKey(reducerFunction2, partition).persist(storageLevel);
-            if (envConfig.isSparkSanityCheckEnabled() == true) {
-                sanityCheck(allRDDs[level], totalCount, level, cubeStatsReader, countMeasureIndex);
+        if (envConfig.isSparkAdaptiveCubingEnabled()) {
+            buildLayersAdaptively(allRDDs[0], reducerFunction2, cubeStatsReader, cubeSegment, metaUrl, outputPath, job,
+                    envConfig, storageLevel, totalCount, countMeasureIndex);
+        } else {
+            for (level = 1; level <= totalLevels; level++) {
+                partition = estimateRDDPartitionNum(level, cubeStatsReader, envConfig);
+                allRDDs[level] = allRDDs[level - 1].flatMapToPair(new CuboidFlatMap(cubeName, segmentId, metaUrl))
+                        .reduceByKey(reducerFunction2, partition).persist(storageLevel);
+                if (envConfig.isSparkSanityCheckEnabled() == true) {
+                    sanityCheck(allRDDs[level], totalCount, level, cubeStatsReader, countMeasureIndex);
+                }
+                saveToHDFS(allRDDs[level], metaUrl, cubeName, cubeSegment, outputPath, level, job, envConfig);
+                allRDDs[level - 1].unpersist();
             }
-            saveToHDFS(allRDDs[level], metaUrl, cubeName, cubeSegment, outputPath, level, job, envConfig);
-            allRDDs[level - 1].unpersist();
+            allRDDs[totalLevels].unpersist();
         }
-        allRDDs[totalLevels].unpersist();
         logger.info("Finished on calculating all level cuboids.");
         deleteHDFSMeta(metaUrl);
     }
@@ -222,6 +245,80 @@ public class SparkCubingByLayer extends AbstractApplication implements Serializa
         return partition;
     }
 
+    /**
+     * Builds the layers above base cuboid in stages, each stage takes one shuffle. The rows of parent layer are
+     * aggregated to their descendants in memory before the shuffle, and the shuffle partitions follow the estimated
+     * size of each cuboid. Consecutive small layers are built in one stage from the same parent layer.
+     */
+    protected void buildLayersAdaptively(JavaPairRDD<ByteArray, Object[]> baseRDD,
+            Function2<Object[], Object[], Object[]> reducerFunction, CubeStatsReader statsReader,
+            CubeSegment cubeSegment, String metaUrl, String outputPath, Job job, KylinConfig envConfig,
+            StorageLevel storageLevel, Long totalCount, int countMeasureIndex) throws Exception {
+        final String cubeName = cubeSegment.getCubeInstance().getName();
+        final String segmentId = cubeSegment.getUuid();
+        final int totalLevels = cubeSegment.getCuboidScheduler().getBuildLevel();
+        final Map<Long, Double> cuboidSizeMap = statsReader.getCuboidSizeMap();
+
+        double[] layerSizes = new double[totalLevels + 1];
+        for (int level = 0; level <= totalLevels; level++) {
+            layerSizes[level] = statsReader.estimateLayerSize(level);
+        }
+
+        JavaPairRDD<ByteArray, Object[]> parentRDD = baseRDD;
+        int parentLevel = 0;
+        while (parentLevel < totalLevels) {
+            int lastLevel = planStageLevels(layerSizes, parentLevel + 1, envConfig.getSparkSkipLevelMaxMB());
+
+            List<Long> stageCuboids = Lists.newArrayList();
+            for (int level = parentLevel + 1; level <= lastLevel; level++) {
+                stageCuboids.addAll(statsReader.getCuboidsByLayer(level));
+            }
+            CuboidPartitioner partitioner = CuboidPartitioner.create(stageCuboids, cuboidSizeMap,
+                    envConfig.getSparkRDDPartitionCutMB(), envConfig.getSparkMinPartition(),
+                    envConfig.getSparkMaxPartition(), cubeSegment.isEnableSharding());
+            logger.info("Building level {} to {} in one stage, partition for spark cubing: {}", parentLevel + 1,
+                    lastLevel, partitioner.numPartitions());
+
+            PartialAggregateFlatMap partialAggregate = new PartialAggregateFlatMap(cubeName, segmentId, metaUrl,
+                    Sets.newHashSet(statsReader.getCuboidsByLayer(parentLevel)), lastLevel - parentLevel,
+                    reducerFunction, envConfig.getSparkPartialAggrMaxEntries());
+            // already aggregated before the shuffle, no need to combine on map side again
+            JavaPairRDD<ByteArray, Object[]> stageRDD = parentRDD.mapPartitionsToPair(partialAggregate)
+                    .combineByKey(new IdentityFunction(), reducerFunction, reducerFunction, partitioner, false, null)
+                    .persist(storageLevel);
+
+            for (int level = parentLevel + 1; level <= lastLevel; level++) {
+                JavaPairRDD<ByteArray, Object[]> levelRDD = stageRDD;
+                if (parentLevel + 1 < lastLevel) {
+                    levelRDD = stageRDD.filter(new CuboidFilter(Sets.newHashSet(statsReader.getCuboidsByLayer(level)),
+                            cubeSegment.isEnableSharding()));
+                }
+                if (envConfig.isSparkSanityCheckEnabled() == true) {
+                    sanityCheck(levelRDD, totalCount, level, statsReader, countMeasureIndex);
+                }
+                saveToHDFS(levelRDD, metaUrl, cubeName, cubeSegment, outputPath, level, job, envConfig);
+            }
+            parentRDD.unpersist();
+            parentRDD = stageRDD;
+            parentLevel = lastLevel;
+        }
+        parentRDD.unpersist();
+    }
+
+    /**
+     * @return the last level to build in the stage starting from firstLevel, which takes the following levels as
+     * long as their total size stays within maxMB
+     */
+    static int planStageLevels(double[] layerSizes, int firstLevel, double maxMB) {
+        int lastLevel = firstLevel;
+        double stageMB = layerSizes[firstLevel];
+        while (lastLevel + 1 < layerSizes.length && stageMB + layerSizes[lastLevel + 1] <= maxMB) {
+            lastLevel++;
+            stageMB += layerSizes[lastLevel];
+        }
+        return lastLevel;
+    }
+
     protected JavaPairRDD<ByteArray, Object[]> prepareOutput(JavaPairRDD<ByteArray, Object[]> rdd, KylinConfig config,
             CubeSegment segment, int level) {
         return rdd;
@@ -403,11 +500,16 @@ public class SparkCubingByLayer extends AbstractApplication implements Serializa
         public void init() {
             KylinConfig kConfig = AbstractHadoopJob.loadKylinConfigFromHdfs(metaUrl);
             CubeInstance cubeInstance = CubeManager.getInstance(kConfig).getCube(cubeName);
-            this.cubeSegment = cubeInstance.getSegmentById(segmentId);
-            this.cubeDesc = cubeInstance.getDescriptor();
+            init(cubeInstance.getSegmentById(segmentId));
+        }
+
+        void init(CubeSegment cubeSegment) {
+            this.cubeSegment = cubeSegment;
+            this.cubeDesc = cubeSegment.getCubeDesc();
             this.cuboidScheduler = cubeSegment.getCuboidScheduler();
             this.ndCuboidBuilder = new NDCuboidBuilder(cubeSegment, new RowKeyEncoderProvider(cubeSegment));
             this.rowKeySplitter = new RowKeySplitter(cubeSegment, 65, 256);
+            this.initialized = true;
         }
 
         @Override
@@ -448,6 +550,161 @@ public class SparkCubingByLayer extends AbstractApplication implements Serializa
         }
     }
 
+    /**
+     * Aggregates the rows of parent layer to their descendants within the given depth, following the spanning tree.
+     * Up to maxEntries keys are held in memory, the aggregated rows are emitted each time the buffer is full.
+     */
+    static public class PartialAggregateFlatMap
+            implements PairFlatMapFunction<Iterator<Tuple2<ByteArray, Object[]>>, ByteArray, Object[]> {
+
+        private String cubeName;
+        private String segmentId;
+        private String metaUrl;
+        private Set<Long> parentCuboids;
+        private int depth;
+        private Function2<Object[], Object[], Object[]> reducerFunction;
+        private int maxEntries;
+        private transient CubeSegment cubeSegment;
+        private transient CuboidScheduler cuboidScheduler;
+        private transient NDCuboidBuilder ndCuboidBuilder;
+        private transient RowKeySplitter rowKeySplitter;
+        private volatile transient boolean initialized = false;
+
+        public PartialAggregateFlatMap(String cubeName, String segmentId, String metaUrl, Set<Long> parentCuboids,
+                int depth, Function2<Object[], Object[], Object[]> reducerFunction, int maxEntries) {
+            this.cubeName = cubeName;
+            this.segmentId = segmentId;
+            this.metaUrl = metaUrl;
+            this.parentCuboids = parentCuboids;
+            this.depth = depth;
+            this.reducerFunction = reducerFunction;
+            this.maxEntries = Math.max(1, maxEntries);
+        }
+
+        public void init() {
+            KylinConfig kConfig = AbstractHadoopJob.loadKylinConfigFromHdfs(metaUrl);
+            CubeInstance cubeInstance = CubeManager.getInstance(kConfig).getCube(cubeName);
+            init(cubeInstance.getSegmentById(segmentId));
+        }
+
+        void init(CubeSegment cubeSegment) {
+            this.cubeSegment = cubeSegment;
+            this.cuboidScheduler = cubeSegment.getCuboidScheduler();
+            this.ndCuboidBuilder = new NDCuboidBuilder(cubeSegment, new RowKeyEncoderProvider(cubeSegment));
+            this.rowKeySplitter = new RowKeySplitter(cubeSegment, 65, 256);
+            this.initialized = true;
+        }
+
+        @Override
+        public Iterator<Tuple2<ByteArray, Object[]>> call(final Iterator<Tuple2<ByteArray, Object[]>> input)
+                throws Exception {
+            if (initialized == false) {
+                synchronized (SparkCubingByLayer.class) {
+                    if (initialized == false) {
+                        init();
+                        initialized = true;
+                    }
+                }
+            }
+
+            return new Iterator<Tuple2<ByteArray, Object[]>>() {
+                Iterator<Map.Entry<ByteArray, Object[]>> output = Collections.emptyIterator();
+
+                @Override
+                public boolean hasNext() {
+                    while (!output.hasNext() && input.hasNext()) {
+                        try {
+                            output = aggregate(input);
+                        } catch (Exception e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                    return output.hasNext();
+                }
+
+                @Override
+                public Tuple2<ByteArray, Object[]> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    Map.Entry<ByteArray, Object[]> entry = output.next();
+                    return new Tuple2<>(entry.getKey(), entry.getValue());
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        private Iterator<Map.Entry<ByteArray, Object[]>> aggregate(Iterator<Tuple2<ByteArray, Object[]>> input)
+                throws Exception {
+            Map<ByteArray, Object[]> buffer = new HashMap<>();
+            while (input.hasNext() && buffer.size() < maxEntries) {
+                Tuple2<ByteArray, Object[]> tuple2 = input.next();
+                long cuboidId = rowKeySplitter.split(tuple2._1().array());
+                // a stage persists all its levels, only the last one is parent of next stage
+                if (!parentCuboids.contains(cuboidId)) {
+                    continue;
+                }
+                aggregateDescendants(buffer, Cuboid.findById(cubeSegment, cuboidId), cuboidId, tuple2._2(), depth);
+            }
+            return buffer.entrySet().iterator();
+        }
+
+        private void aggregateDescendants(Map<ByteArray, Object[]> buffer, Cuboid parentCuboid, long cuboidId,
+                Object[] value, int depth) throws Exception {
+            Collection<Long> myChildren = cuboidScheduler.getSpanningCuboid(cuboidId);
+            if (myChildren == null) {
+                return;
+            }
+
+            for (Long child : myChildren) {
+                // the key of any descendant can be built from the split parent key
+                Cuboid childCuboid = Cuboid.findById(cubeSegment, child);
+                Pair<Integer, ByteArray> result = ndCuboidBuilder.buildKey(parentCuboid, childCuboid,
+                        rowKeySplitter.getSplitBuffers());
+
+                byte[] newKey = new byte[result.getFirst()];
+                System.arraycopy(result.getSecond().array(), 0, newKey, 0, result.getFirst());
+                ByteArray key = new ByteArray(newKey);
+
+                Object[] existing = buffer.get(key);
+                buffer.put(key, existing == null ? value : reducerFunction.call(existing, value));
+
+                if (depth > 1) {
+                    aggregateDescendants(buffer, parentCuboid, child, value, depth - 1);
+                }
+            }
+        }
+    }
+
+    static public class IdentityFunction implements Function<Object[], Object[]> {
+        @Override
+        public Object[] call(Object[] value) throws Exception {
+            return value;
+        }
+    }
+
+    static public class CuboidFilter implements Function<Tuple2<ByteArray, Object[]>, Boolean> {
+        private Set<Long> cuboids;
+        private int cuboidIdOffset;
+
+        public CuboidFilter(Set<Long> cuboids, boolean enableSharding) {
+            this.cuboids = cuboids;
+            this.cuboidIdOffset = enableSharding ? RowConstants.ROWKEY_SHARDID_LEN : 0;
+        }
+
+        @Override
+        public Boolean call(Tuple2<ByteArray, Object[]> tuple2) throws Exception {
+            ByteArray key = tuple2._1();
+            long cuboidId = BytesUtil.readLong(key.array(), key.offset() + cuboidIdOffset,
+                    RowConstants.ROWKEY_CUBOIDID_LEN);
+            return cuboids.contains(cuboidId);
+        }
+    }
+
     protected void sanityCheck(JavaPairRDD<ByteArray, Object[]> rdd, Long totalCount, int thisLevel,
             CubeStatsReader cubeStatsReader, final int countMeasureIndex) {
         int thisCuboidNum = cubeStatsReader.getCuboidsByLayer(thisLevel).size();
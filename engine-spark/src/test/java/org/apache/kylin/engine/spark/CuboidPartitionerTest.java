@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.engine.spark;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.cube.kv.RowConstants;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+public class CuboidPartitionerTest {
+
+    private final List<Long> cuboids = Lists.newArrayList(1L, 2L, 3L);
+    private final Map<Long, Double> sizes = Maps.newHashMap();
+
+    public CuboidPartitionerTest() {
+        sizes.put(1L, 10.0);
+        sizes.put(2L, 10.0);
+        sizes.put(3L, 100.0);
+    }
+
+    @Test
+    public void testLayout() {
+        CuboidPartitioner partitioner = CuboidPartitioner.create(cuboids, sizes, 50, 1, 100, true);
+        assertEquals(3, partitioner.numPartitions());
+        // small cuboids share a partition, a large one spreads over several
+        assertArrayEquals(new int[] { 0, 1 }, partitioner.getPartitionRange(1L));
+        assertArrayEquals(new int[] { 0, 1 }, partitioner.getPartitionRange(2L));
+        assertArrayEquals(new int[] { 0, 3 }, partitioner.getPartitionRange(3L));
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, partitioner.getPartition(rowKey(1L, i, true)));
+            int p = partitioner.getPartition(rowKey(3L, i, true));
+            assertTrue(p >= 0 && p < 3);
+        }
+
+        // unknown cuboid still gets a valid partition
+        int p = partitioner.getPartition(rowKey(99L, 0, true));
+        assertTrue(p >= 0 && p < 3);
+    }
+
+    @Test
+    public void testMaxPartition() {
+        CuboidPartitioner partitioner = CuboidPartitioner.create(cuboids, sizes, 50, 1, 2, true);
+        assertEquals(2, partitioner.numPartitions());
+        assertArrayEquals(new int[] { 0, 2 }, partitioner.getPartitionRange(3L));
+    }
+
+    @Test
+    public void testMinPartition() {
+        CuboidPartitioner partitioner = CuboidPartitioner.create(cuboids, sizes, 50, 10, 100, false);
+        assertEquals(10, partitioner.numPartitions());
+        assertArrayEquals(new int[] { 0, 1 }, partitioner.getPartitionRange(1L));
+        assertArrayEquals(new int[] { 0, 2 }, partitioner.getPartitionRange(2L));
+        assertArrayEquals(new int[] { 1, 9 }, partitioner.getPartitionRange(3L));
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, partitioner.getPartition(rowKey(1L, i, false)));
+            assertTrue(partitioner.getPartition(rowKey(3L, i, false)) >= 1);
+        }
+    }
+
+    @Test
+    public void testPlanStageLevels() {
+        double[] layerSizes = new double[] { 1000, 10, 20, 300, 5 };
+        assertEquals(2, SparkCubingByLayer.planStageLevels(layerSizes, 1, 50));
+        assertEquals(3, SparkCubingByLayer.planStageLevels(layerSizes, 3, 50));
+        assertEquals(4, SparkCubingByLayer.planStageLevels(layerSizes, 4, 50));
+        assertEquals(4, SparkCubingByLayer.planStageLevels(layerSizes, 1, 1000));
+    }
+
+    private ByteArray rowKey(long cuboidId, int body, boolean enableSharding) {
+        int offset = enableSharding ? RowConstants.ROWKEY_SHARDID_LEN : 0;
+        byte[] key = new byte[offset + RowConstants.ROWKEY_CUBOIDID_LEN + 4];
+        BytesUtil.writeLong(cuboidId, key, offset, RowConstants.ROWKEY_CUBOIDID_LEN);
+        BytesUtil.writeLong(body, key, offset + RowConstants.ROWKEY_CUBOIDID_LEN, 4);
+        return new ByteArray(key);
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.engine.spark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.cuboid.CuboidScheduler;
+import org.apache.kylin.cube.kv.RowKeyEncoderProvider;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.spark.api.java.function.Function2;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import scala.Tuple2;
+
+/**
+ * Checks that aggregating several levels in one pass gives the same cuboid rows as building layer by layer.
+ */
+public class SparkCubingByLayerTest extends LocalFileMetadataTestCase {
+
+    private static final String CUBE_NAME = "test_kylin_cube_with_slr_ready";
+
+    private CubeSegment segment;
+    private CuboidScheduler scheduler;
+    private List<Tuple2<ByteArray, Object[]>> baseCuboidRows;
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+        segment = CubeManager.getInstance(getTestConfig()).getCube(CUBE_NAME).getFirstSegment();
+        scheduler = segment.getCuboidScheduler();
+        baseCuboidRows = buildBaseCuboidRows(50);
+    }
+
+    @After
+    public void after() throws Exception {
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testSkipAllLevels() throws Exception {
+        int levels = scheduler.getBuildLevel();
+        assertTrue(levels > 1);
+
+        List<Map<ByteArray, Long>> expected = buildByLayer(levels);
+        Map<ByteArray, Long> actual = buildAdaptively(baseCuboidRows,
+                Sets.newHashSet(scheduler.getBaseCuboidId()), levels, 5);
+
+        Map<ByteArray, Long> allLevels = Maps.newHashMap();
+        for (int level = 1; level <= levels; level++) {
+            allLevels.putAll(expected.get(level));
+        }
+        assertEquals(allLevels, actual);
+    }
+
+    @Test
+    public void testSkipLevelsFromMiddleLayer() throws Exception {
+        int levels = scheduler.getBuildLevel();
+        assertTrue(levels > 2);
+
+        List<Map<ByteArray, Long>> expected = buildByLayer(levels);
+        Set<Long> parents = Sets.newHashSet(scheduler.getCuboidsByLayer().get(1));
+        Map<ByteArray, Long> actual = buildAdaptively(toRows(expected.get(1)), parents, 2, 3);
+
+        Map<ByteArray, Long> levelTwoAndThree = Maps.newHashMap(expected.get(2));
+        levelTwoAndThree.putAll(expected.get(3));
+        assertEquals(levelTwoAndThree, actual);
+    }
+
+    private List<Map<ByteArray, Long>> buildByLayer(int levels) throws Exception {
+        SparkCubingByLayer.CuboidFlatMap flatMap = new SparkCubingByLayer.CuboidFlatMap(CUBE_NAME,
+                segment.getUuid(), null);
+        flatMap.init(segment);
+
+        List<Map<ByteArray, Long>> layers = Lists.newArrayList();
+        layers.add(sum(baseCuboidRows.iterator()));
+        for (int level = 1; level <= levels; level++) {
+            List<Tuple2<ByteArray, Object[]>> children = Lists.newArrayList();
+            for (Tuple2<ByteArray, Object[]> row : toRows(layers.get(level - 1))) {
+                Iterator<Tuple2<ByteArray, Object[]>> it = flatMap.call(row);
+                while (it.hasNext()) {
+                    children.add(it.next());
+                }
+            }
+            layers.add(sum(children.iterator()));
+        }
+        return layers;
+    }
+
+    private Map<ByteArray, Long> buildAdaptively(List<Tuple2<ByteArray, Object[]>> parentRows, Set<Long> parents,
+            int depth, int maxEntries) throws Exception {
+        SparkCubingByLayer.PartialAggregateFlatMap flatMap = new SparkCubingByLayer.PartialAggregateFlatMap(CUBE_NAME,
+                segment.getUuid(), null, parents, depth, new SumFunction(), maxEntries);
+        flatMap.init(segment);
+        return sum(flatMap.call(parentRows.iterator()));
+    }
+
+    private List<Tuple2<ByteArray, Object[]>> buildBaseCuboidRows(int count) {
+        Cuboid baseCuboid = Cuboid.findById(segment, scheduler.getBaseCuboidId());
+        List<TblColRef> columns = baseCuboid.getColumns();
+
+        List<Tuple2<ByteArray, Object[]>> rows = Lists.newArrayList();
+        for (int i = 0; i < count; i++) {
+            String[] values = new String[columns.size()];
+            for (int c = 0; c < columns.size(); c++) {
+                Dictionary<String> dict = segment.getDictionary(columns.get(c));
+                if (dict != null) {
+                    values[c] = dict.getValueFromId(dict.getMinId() + (i + c) % dict.getSize());
+                } else {
+                    values[c] = String.valueOf((i + c) % 7 + 1);
+                }
+            }
+            byte[] key = new RowKeyEncoderProvider(segment).getRowkeyEncoder(baseCuboid).encode(values);
+            rows.add(new Tuple2<>(new ByteArray(key), new Object[] { 1L }));
+        }
+        return rows;
+    }
+
+    private static Map<ByteArray, Long> sum(Iterator<Tuple2<ByteArray, Object[]>> rows) {
+        Map<ByteArray, Long> result = Maps.newHashMap();
+        while (rows.hasNext()) {
+            Tuple2<ByteArray, Object[]> row = rows.next();
+            Long existing = result.get(row._1());
+            long value = (Long) row._2()[0];
+            result.put(row._1(), existing == null ? value : existing + value);
+        }
+        return result;
+    }
+
+    private static List<Tuple2<ByteArray, Object[]>> toRows(Map<ByteArray, Long> aggregated) {
+        List<Tuple2<ByteArray, Object[]>> rows = Lists.newArrayList();
+        for (Map.Entry<ByteArray, Long> entry : aggregated.entrySet()) {
+            rows.add(new Tuple2<>(entry.getKey(), new Object[] { entry.getValue() }));
+        }
+        return rows;
+    }
+
+    private static class SumFunction implements Function2<Object[], Object[], Object[]> {
+        @Override
+        public Object[] call(Object[] v1, Object[] v2) throws Exception {
+            return new Object[] { (Long) v1[0] + (Long) v2[0] };
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.jdbc;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.kylin.jdbc.json.SQLResponseStub.ColumnMetaStub;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Reads the typed binary query response, which holds the rows column by column in blocks. Numbers and booleans
+ * come as binary values and are taken as is, the other values are strings. The layout, all numbers big endian:
+ *
+ * <pre>
+ * header:  int MAGIC, int length + UTF-8 JSON of the column metas, one byte of value encoding per column
+ * block:   int row count (0 ends the blocks), then for each column
+ *          a null bitmap of (row count + 7) / 8 bytes, then the values of non-null cells
+ * trailer: byte 1 if the query failed followed by the exception message, otherwise byte 0
+ * </pre>
+ *
+ * A string is an int length followed by its UTF-8 bytes. The format is written by ColumnarSQLResponseWriter on
+ * server, the constants here must match those there.
+ */
+class ColumnarResultReader extends RemoteResultReader {
+
+    static final String CONTENT_TYPE = "application/x-kylin-columnar";
+
+    static final int MAGIC = 0x4B43524C; // "KCRL"
+
+    static final byte ENC_STRING = 0;
+    static final byte ENC_BYTE = 1;
+    static final byte ENC_SHORT = 2;
+    static final byte ENC_INT = 3;
+    static final byte ENC_LONG = 4;
+    static final byte ENC_FLOAT = 5;
+    static final byte ENC_DOUBLE = 6;
+    static final byte ENC_BOOLEAN = 7;
+
+    private final ObjectMapper jsonMapper;
+    private final DataInputStream in;
+    private byte[] encodings;
+
+    ColumnarResultReader(HttpRequestBase request, ObjectMapper jsonMapper, InputStream in) {
+        super(request);
+        this.jsonMapper = jsonMapper;
+        this.in = new DataInputStream(new BufferedInputStream(in));
+    }
+
+    @Override
+    List<ColumnMetaStub> readColumnMetas() throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a columnar query response");
+        }
+        List<ColumnMetaStub> result = jsonMapper.readValue(readBytes(),
+                new TypeReference<List<ColumnMetaStub>>() {
+                });
+        encodings = new byte[result.size()];
+        in.readFully(encodings);
+        return result;
+    }
+
+    @Override
+    protected boolean readBatch(List<Object> batch) throws IOException {
+        int rowCount = in.readInt();
+        if (rowCount == 0) {
+            readTrailer();
+            return false;
+        }
+
+        Object[][] rows = new Object[rowCount][];
+        for (int r = 0; r < rowCount; r++) {
+            rows[r] = new Object[encodings.length];
+        }
+
+        byte[] nullBits = new byte[(rowCount + 7) / 8];
+        for (int c = 0; c < encodings.length; c++) {
+            in.readFully(nullBits);
+            int sqlType = columnMetas.get(c).type.id;
+            for (int r = 0; r < rowCount; r++) {
+                if ((nullBits[r >> 3] & (1 << (r & 7))) == 0) {
+                    rows[r][c] = readValue(encodings[c], sqlType);
+                }
+            }
+        }
+
+        for (Object[] row : rows) {
+            batch.add(row);
+        }
+        return true;
+    }
+
+    private Object readValue(byte encoding, int sqlType) throws IOException {
+        switch (encoding) {
+        case ENC_BYTE:
+            return in.readByte();
+        case ENC_SHORT:
+            return in.readShort();
+        case ENC_INT:
+            return in.readInt();
+        case ENC_LONG:
+            return in.readLong();
+        case ENC_FLOAT:
+            return in.readFloat();
+        case ENC_DOUBLE:
+            return in.readDouble();
+        case ENC_BOOLEAN:
+            return in.readBoolean();
+        case ENC_STRING:
+            return KylinClient.wrapObject(new String(readBytes(), StandardCharsets.UTF_8), sqlType);
+        default:
+            throw new IOException("Unknown value encoding " + encoding);
+        }
+    }
+
+    private void readTrailer() throws IOException {
+        if (in.readBoolean()) {
+            throw new IOException(new String(readBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private byte[] readBytes() throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    @Override
+    protected void closeInput() throws IOException {
+        in.close();
+    }
+}
@@ -50,6 +50,8 @@ import org.apache.calcite.avatica.UnregisteredDriver;
  * <li>user: username</li>
  * <li>password: password</li>
  * <li>ssl: true/false</li>
+ * <li>streaming: true/false, read result rows while iterating the result set, fetch size rows at a time</li>
+ * <li>binary: true/false, ask for results in typed binary format rather than JSON</li>
  * </ul>
  * </p>
  * 
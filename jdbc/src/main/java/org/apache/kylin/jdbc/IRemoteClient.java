@@ -50,8 +50,9 @@ public interface IRemoteClient extends Closeable {
     public KMetaProject retrieveMetaData(String project) throws IOException;
 
     /**
-     * Execute query remotely and get back result.
+     * Execute query remotely and get back result. If results are streamed, the rows are read from server lazily,
+     * fetchSize rows at a time, or a default number of rows if fetchSize is not positive.
      */
-    public QueryResult executeQuery(String sql, List<AvaticaParameter> params, List<Object> paramValues, Map<String, String> queryToggles) throws IOException;
+    public QueryResult executeQuery(String sql, List<AvaticaParameter> params, List<Object> paramValues, Map<String, String> queryToggles, int fetchSize) throws IOException;
 
 }
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.jdbc;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.kylin.jdbc.json.SQLResponseStub.ColumnMetaStub;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+
+/**
+ * Reads the JSON response of the streaming query API. The response is a SQLResponse whose "columnMetas" come first
+ * and "results" second, so rows are read fetch size at a time, and the exception if any is found in the fields
+ * after the rows.
+ */
+class JsonResultReader extends RemoteResultReader {
+
+    private final JsonParser parser;
+    private final int fetchSize;
+
+    JsonResultReader(HttpRequestBase request, JsonParser parser, int fetchSize) {
+        super(request);
+        this.parser = parser;
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    List<ColumnMetaStub> readColumnMetas() throws IOException {
+        expect(parser.nextToken(), JsonToken.START_OBJECT);
+
+        List<ColumnMetaStub> result = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("columnMetas".equals(field)) {
+                result = parser.readValueAs(new TypeReference<List<ColumnMetaStub>>() {
+                });
+            } else if ("results".equals(field)) {
+                expect(token, JsonToken.START_ARRAY);
+                if (result == null) {
+                    throw new IOException("No column metas before the results in streaming response");
+                }
+                return result;
+            } else {
+                parser.skipChildren();
+            }
+        }
+        throw new IOException("No results in streaming response");
+    }
+
+    @Override
+    protected boolean readBatch(List<Object> batch) throws IOException {
+        while (batch.size() < fetchSize) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.END_ARRAY) {
+                readTrailer();
+                return false;
+            }
+            expect(token, JsonToken.START_ARRAY);
+
+            Object[] row = new Object[columnMetas.size()];
+            int i = 0;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                String value = token == JsonToken.VALUE_NULL ? null : parser.getText();
+                row[i] = KylinClient.wrapObject(value, columnMetas.get(i).type.id);
+                i++;
+            }
+            batch.add(row);
+        }
+        return true;
+    }
+
+    private void readTrailer() throws IOException {
+        boolean isException = false;
+        String exceptionMessage = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("isException".equals(field)) {
+                isException = parser.getBooleanValue();
+            } else if ("exceptionMessage".equals(field)) {
+                exceptionMessage = token == JsonToken.VALUE_NULL ? null : parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        if (isException) {
+            throw new IOException(exceptionMessage);
+        }
+    }
+
+    private void expect(JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException("Unexpected " + actual + " in streaming response, expecting " + expected);
+        }
+    }
+
+    @Override
+    protected void closeInput() throws IOException {
+        parser.close();
+    }
+}
@@ -27,6 +27,7 @@ import java.sql.Time;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -38,6 +39,7 @@ import org.apache.calcite.avatica.AvaticaParameter;
 import org.apache.calcite.avatica.ColumnMetaData;
 import org.apache.calcite.avatica.ColumnMetaData.Rep;
 import org.apache.calcite.avatica.ColumnMetaData.ScalarType;
+import org.apache.http.Header;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
@@ -48,6 +50,7 @@ import org.apache.http.conn.ssl.TrustStrategy;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
 import org.apache.http.util.EntityUtils;
 import org.apache.kylin.jdbc.KylinMeta.KMetaCatalog;
 import org.apache.kylin.jdbc.KylinMeta.KMetaColumn;
@@ -69,6 +72,10 @@ public class KylinClient implements IRemoteClient {
 
     private static final Logger logger = LoggerFactory.getLogger(KylinClient.class);
 
+    private static final int DEFAULT_FETCH_SIZE = 100;
+    // each open streaming result set holds on to a connection until it is read through or closed
+    private static final int MAX_STREAMING_CONNECTIONS = 16;
+
     private final KylinConnection conn;
     private final Properties connProps;
     private DefaultHttpClient httpClient;
@@ -77,7 +84,14 @@ public class KylinClient implements IRemoteClient {
     public KylinClient(KylinConnection conn) {
         this.conn = conn;
         this.connProps = conn.getConnectionProperties();
-        this.httpClient = new DefaultHttpClient();
+        if (isStreaming()) {
+            PoolingClientConnectionManager connManager = new PoolingClientConnectionManager();
+            connManager.setMaxTotal(MAX_STREAMING_CONNECTIONS);
+            connManager.setDefaultMaxPerRoute(MAX_STREAMING_CONNECTIONS);
+            this.httpClient = new DefaultHttpClient(connManager);
+        } else {
+            this.httpClient = new DefaultHttpClient();
+        }
         this.jsonMapper = new ObjectMapper();
 
         // trust all certificates
@@ -206,6 +220,20 @@ public class KylinClient implements IRemoteClient {
         return Boolean.parseBoolean(connProps.getProperty("ssl", "false"));
     }
 
+    /**
+     * Whether query results are read from the server as they come, instead of as a whole.
+     */
+    private boolean isStreaming() {
+        return Boolean.parseBoolean(connProps.getProperty("streaming", "false"));
+    }
+
+    /**
+     * Whether query results are asked for in the typed binary format rather than JSON.
+     */
+    private boolean isBinary() {
+        return Boolean.parseBoolean(connProps.getProperty("binary", "false"));
+    }
+
     private String baseUrl() {
         return (isSSL() ? "https://" : "http://") + conn.getBaseUrl();
     }
@@ -331,13 +359,34 @@ public class KylinClient implements IRemoteClient {
 
     @Override
     public QueryResult executeQuery(String sql, List<AvaticaParameter> params, List<Object> paramValues,
-            Map<String, String> queryToggles) throws IOException {
+            Map<String, String> queryToggles, int fetchSize) throws IOException {
+
+        if (isStreaming()) {
+            return executeStreamingQuery(sql, convertParameters(params, paramValues), queryToggles,
+                    fetchSize > 0 ? fetchSize : DEFAULT_FETCH_SIZE);
+        }
+
+        HttpPost post = newQueryPost(baseUrl() + "/kylin/api/query", sql, convertParameters(params, paramValues),
+                queryToggles, fetchSize);
+        HttpResponse response = executeQueryPost(post);
+
+        if (isColumnar(response)) {
+            RemoteResultReader reader = new ColumnarResultReader(post, jsonMapper, response.getEntity().getContent());
+            try {
+                List<ColumnMetaData> metas = convertColumnMeta(reader.readColumnMetas());
+                reader.setColumnMetas(metas);
+                return new QueryResult(metas, reader.readAll());
+            } finally {
+                reader.close();
+            }
+        }
 
-        SQLResponseStub queryResp = executeKylinQuery(sql, convertParameters(params, paramValues), queryToggles);
+        SQLResponseStub queryResp = jsonMapper.readValue(response.getEntity().getContent(), SQLResponseStub.class);
+        post.releaseConnection();
         if (queryResp.getIsException())
             throw new IOException(queryResp.getExceptionMessage());
 
-        List<ColumnMetaData> metas = convertColumnMeta(queryResp);
+        List<ColumnMetaData> metas = convertColumnMeta(queryResp.getColumnMetas());
         List<Object> data = convertResultData(queryResp, metas);
 
         return new QueryResult(metas, data);
@@ -356,9 +405,56 @@ public class KylinClient implements IRemoteClient {
         return result;
     }
 
-    private SQLResponseStub executeKylinQuery(String sql, List<StatementParameter> params,
-            Map<String, String> queryToggles) throws IOException {
-        String url = baseUrl() + "/kylin/api/query";
+    private QueryResult executeStreamingQuery(String sql, List<StatementParameter> params,
+            Map<String, String> queryToggles, int fetchSize) throws IOException {
+        HttpPost post = newQueryPost(baseUrl() + "/kylin/api/query/stream", sql, params, queryToggles,
+                fetchSize);
+        HttpResponse response = executeQueryPost(post);
+
+        final RemoteResultReader reader;
+        if (isColumnar(response)) {
+            reader = new ColumnarResultReader(post, jsonMapper, response.getEntity().getContent());
+        } else {
+            reader = new JsonResultReader(post,
+                    jsonMapper.getFactory().createParser(response.getEntity().getContent()), fetchSize);
+        }
+        List<ColumnMetaData> metas;
+        try {
+            metas = convertColumnMeta(reader.readColumnMetas());
+            reader.setColumnMetas(metas);
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+
+        // the cursor of the result set closes the reader when the result set is closed
+        return new QueryResult(metas, new Iterable<Object>() {
+            @Override
+            public Iterator<Object> iterator() {
+                return reader;
+            }
+        });
+    }
+
+    private HttpResponse executeQueryPost(HttpPost post) throws IOException {
+        HttpResponse response = httpClient.execute(post);
+
+        if (response.getStatusLine().getStatusCode() != 200 && response.getStatusLine().getStatusCode() != 201) {
+            throw asIOException(post, response);
+        }
+        return response;
+    }
+
+    /**
+     * Servers not knowing the binary format answer in JSON regardless of the Accept header.
+     */
+    private boolean isColumnar(HttpResponse response) {
+        Header contentType = response.getEntity().getContentType();
+        return contentType != null && contentType.getValue().startsWith(ColumnarResultReader.CONTENT_TYPE);
+    }
+
+    private HttpPost newQueryPost(String url, String sql, List<StatementParameter> params,
+            Map<String, String> queryToggles, int fetchSize) throws IOException {
         String project = conn.getProject();
 
         PreparedQueryRequest request = new PreparedQueryRequest();
@@ -368,30 +464,26 @@ public class KylinClient implements IRemoteClient {
         request.setSql(sql);
         request.setProject(project);
         request.setBackdoorToggles(queryToggles);
+        // the server writes binary results in blocks of this many rows
+        request.setFetchSize(fetchSize);
 
         HttpPost post = new HttpPost(url);
         addHttpHeaders(post);
+        if (isBinary()) {
+            post.setHeader("Accept", ColumnarResultReader.CONTENT_TYPE + ", application/json;q=0.5");
+        }
 
         String postBody = jsonMapper.writeValueAsString(request);
         logger.debug("Post body:\n " + postBody);
         StringEntity requestEntity = new StringEntity(postBody, ContentType.create("application/json", "UTF-8"));
         post.setEntity(requestEntity);
-
-        HttpResponse response = httpClient.execute(post);
-
-        if (response.getStatusLine().getStatusCode() != 200 && response.getStatusLine().getStatusCode() != 201) {
-            throw asIOException(post, response);
-        }
-
-        SQLResponseStub stub = jsonMapper.readValue(response.getEntity().getContent(), SQLResponseStub.class);
-        post.releaseConnection();
-        return stub;
+        return post;
     }
 
-    private List<ColumnMetaData> convertColumnMeta(SQLResponseStub queryResp) {
+    static List<ColumnMetaData> convertColumnMeta(List<SQLResponseStub.ColumnMetaStub> columnMetas) {
         List<ColumnMetaData> metas = new ArrayList<ColumnMetaData>();
-        for (int i = 0; i < queryResp.getColumnMetas().size(); i++) {
-            SQLResponseStub.ColumnMetaStub scm = queryResp.getColumnMetas().get(i);
+        for (int i = 0; i < columnMetas.size(); i++) {
+            SQLResponseStub.ColumnMetaStub scm = columnMetas.get(i);
             Class columnClass = convertType(scm.getColumnType());
             ScalarType type = ColumnMetaData.scalar(scm.getColumnType(), scm.getColumnTypeName(), Rep.of(columnClass));
 
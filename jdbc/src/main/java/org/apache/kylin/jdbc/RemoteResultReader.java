@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.jdbc;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.calcite.avatica.ColumnMetaData;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.kylin.jdbc.json.SQLResponseStub.ColumnMetaStub;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads query result rows from a response while the result set is iterated, a batch at a time. The HTTP
+ * connection is held until the last row is read or the reader is closed.
+ */
+abstract class RemoteResultReader implements Iterator<Object>, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RemoteResultReader.class);
+
+    private final HttpRequestBase request;
+    private final List<Object> batch = new ArrayList<Object>();
+    protected List<ColumnMetaData> columnMetas;
+
+    private int batchPos = 0;
+    private boolean endOfResults = false;
+    private boolean closed = false;
+
+    RemoteResultReader(HttpRequestBase request) {
+        this.request = request;
+    }
+
+    /**
+     * Reads up to the start of the rows.
+     */
+    abstract List<ColumnMetaStub> readColumnMetas() throws IOException;
+
+    void setColumnMetas(List<ColumnMetaData> columnMetas) {
+        this.columnMetas = columnMetas;
+    }
+
+    /**
+     * Reads the next rows, each an array of column values.
+     *
+     * @return false if there are no more rows after these
+     * @throws IOException also if the query failed on server after some rows were sent
+     */
+    protected abstract boolean readBatch(List<Object> batch) throws IOException;
+
+    protected abstract void closeInput() throws IOException;
+
+    @Override
+    public boolean hasNext() {
+        if (batchPos < batch.size()) {
+            return true;
+        }
+        if (endOfResults) {
+            return false;
+        }
+
+        batch.clear();
+        batchPos = 0;
+        try {
+            if (!readBatch(batch)) {
+                endOfResults = true;
+                close();
+            }
+        } catch (IOException e) {
+            close();
+            throw new RuntimeException("Failed to read query result", e);
+        }
+        return batchPos < batch.size();
+    }
+
+    @Override
+    public Object next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return batch.get(batchPos++);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Reads all the rows left.
+     */
+    List<Object> readAll() throws IOException {
+        List<Object> rows = new ArrayList<Object>();
+        try {
+            while (hasNext()) {
+                rows.add(next());
+            }
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+        return rows;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        // abort rather than read through the rest of an unfinished response
+        if (!endOfResults) {
+            request.abort();
+        }
+        try {
+            closeInput();
+        } catch (IOException e) {
+            logger.debug("Failed to close query response", e);
+        }
+        request.releaseConnection();
+    }
+}
@@ -24,6 +24,7 @@ public class QueryRequest {
     private String sql;
     private String project;
     private boolean acceptPartial = false;
+    private int fetchSize = 0;
 
     private Map<String, String> backdoorToggles;
 
@@ -51,6 +52,14 @@ public class QueryRequest {
         this.acceptPartial = acceptPartial;
     }
 
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
     public Map<String, String> getBackdoorToggles() {
         return backdoorToggles;
     }
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.jdbc;
+
+import java.io.IOException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.calcite.avatica.ColumnMetaData;
+import org.apache.kylin.jdbc.json.SQLResponseStub;
+import org.apache.kylin.jdbc.json.SQLResponseStub.ColumnMetaStub;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares the size and client decoding time of the JSON and the typed binary query responses, on a wide result
+ * of numbers.
+ */
+@Ignore
+public class ColumnarResultBenchmark {
+
+    private static final int ROWS = 100000;
+    private static final int LONG_COLUMNS = 20;
+    private static final int DOUBLE_COLUMNS = 20;
+    private static final int ROUNDS = 5;
+
+    @Test
+    public void benchmarkWideNumericResult() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        Random rand = new Random(0);
+
+        List<ColumnMetaStub> metas = new ArrayList<>();
+        for (int i = 0; i < LONG_COLUMNS; i++) {
+            metas.add(ColumnarResultReaderTest.column("L" + i, Types.BIGINT, "BIGINT"));
+        }
+        for (int i = 0; i < DOUBLE_COLUMNS; i++) {
+            metas.add(ColumnarResultReaderTest.column("D" + i, Types.DOUBLE, "DOUBLE"));
+        }
+        List<String[]> rows = new ArrayList<>(ROWS);
+        for (int r = 0; r < ROWS; r++) {
+            String[] row = new String[metas.size()];
+            for (int c = 0; c < LONG_COLUMNS; c++) {
+                row[c] = String.valueOf(rand.nextInt(100000000));
+            }
+            for (int c = LONG_COLUMNS; c < row.length; c++) {
+                row[c] = String.valueOf(rand.nextDouble() * 10000);
+            }
+            rows.add(row);
+        }
+
+        SQLResponseStub stub = new SQLResponseStub();
+        stub.setColumnMetas(metas);
+        stub.setResults(rows);
+        byte[] json = mapper.writeValueAsBytes(stub);
+        byte[] binary = ColumnarResultReaderTest.encode(metas, rows, 1024, null);
+        System.out.println("JSON response " + json.length + " bytes, binary response " + binary.length + " bytes");
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            int jsonRows = readJson(mapper, json);
+            long jsonNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int binaryRows = ColumnarResultReaderTest.read(binary).size();
+            long binaryNanos = System.nanoTime() - start;
+
+            System.out.println("round " + round + ": JSON " + jsonRows + " rows in " + jsonNanos / 1000000
+                    + " ms, binary " + binaryRows + " rows in " + binaryNanos / 1000000 + " ms");
+        }
+    }
+
+    // same as the decoding of a buffered JSON response in KylinClient
+    private int readJson(ObjectMapper mapper, byte[] json) throws IOException {
+        SQLResponseStub stub = mapper.readValue(json, SQLResponseStub.class);
+        List<ColumnMetaData> metas = KylinClient.convertColumnMeta(stub.getColumnMetas());
+        List<Object> data = new ArrayList<>(stub.getResults().size());
+        for (String[] result : stub.getResults()) {
+            Object[] row = new Object[result.length];
+            for (int i = 0; i < result.length; i++) {
+                row[i] = KylinClient.wrapObject(result[i], metas.get(i).type.id);
+            }
+            data.add(row);
+        }
+        return data.size();
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.jdbc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.http.client.methods.HttpPost;
+import org.apache.kylin.jdbc.json.SQLResponseStub.ColumnMetaStub;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ColumnarResultReaderTest {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void testReadTypedValues() throws IOException {
+        List<ColumnMetaStub> metas = Arrays.asList(column("NAME", Types.VARCHAR, "VARCHAR"),
+                column("CNT", Types.BIGINT, "BIGINT"), column("ID", Types.INTEGER, "INTEGER"),
+                column("PRICE", Types.DOUBLE, "DOUBLE"), column("FLAG", Types.BOOLEAN, "BOOLEAN"),
+                column("AMOUNT", Types.DECIMAL, "DECIMAL"), column("DT", Types.DATE, "DATE"));
+        List<String[]> rows = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            rows.add(new String[] { "name" + i, String.valueOf(i * 10000000000L), String.valueOf(i),
+                    String.valueOf(i / 4.0), String.valueOf(i % 2 == 0), i + ".25", "2013-08-07" });
+        }
+        rows.add(new String[7]);
+
+        List<Object> result = read(encode(metas, rows, 1000, null));
+        assertEquals(2501, result.size());
+        assertArrayEquals(new Object[] { "name7", 70000000000L, 7, 1.75, false, new BigDecimal("7.25"),
+                Date.valueOf("2013-08-07") }, (Object[]) result.get(7));
+        assertArrayEquals(new Object[7], (Object[]) result.get(2500));
+    }
+
+    @Test
+    public void testExceptionAfterRows() throws IOException {
+        List<ColumnMetaStub> metas = Arrays.asList(column("CNT", Types.BIGINT, "BIGINT"));
+        List<String[]> rows = new ArrayList<>();
+        rows.add(new String[] { "1" });
+        try {
+            read(encode(metas, rows, 1000, "Scan timeout"));
+            fail("exception expected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Scan timeout"));
+        }
+    }
+
+    static ColumnMetaStub column(String name, int sqlType, String typeName) {
+        ColumnMetaStub meta = new ColumnMetaStub();
+        meta.setName(name);
+        meta.setLabel(name);
+        meta.setColumnType(sqlType);
+        meta.setColumnTypeName(typeName);
+        return meta;
+    }
+
+    static List<Object> read(byte[] response) throws IOException {
+        ColumnarResultReader reader = new ColumnarResultReader(new HttpPost("http://localhost/"), mapper,
+                new ByteArrayInputStream(response));
+        try {
+            reader.setColumnMetas(KylinClient.convertColumnMeta(reader.readColumnMetas()));
+            return reader.readAll();
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Encodes rows the way the server does.
+     */
+    static byte[] encode(List<ColumnMetaStub> metas, List<String[]> rows, int blockRows, String exception)
+            throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buf);
+        out.writeInt(ColumnarResultReader.MAGIC);
+        writeBytes(out, mapper.writeValueAsBytes(metas));
+        byte[] encodings = new byte[metas.size()];
+        for (int c = 0; c < encodings.length; c++) {
+            encodings[c] = encoding(metas.get(c).getColumnType());
+        }
+        out.write(encodings);
+
+        for (int start = 0; start < rows.size(); start += blockRows) {
+            List<String[]> block = rows.subList(start, Math.min(rows.size(), start + blockRows));
+            out.writeInt(block.size());
+            for (int c = 0; c < encodings.length; c++) {
+                byte[] nullBits = new byte[(block.size() + 7) / 8];
+                for (int r = 0; r < block.size(); r++) {
+                    if (block.get(r)[c] == null) {
+                        nullBits[r >> 3] |= 1 << (r & 7);
+                    }
+                }
+                out.write(nullBits);
+                for (String[] row : block) {
+                    if (row[c] != null) {
+                        writeValue(out, encodings[c], row[c]);
+                    }
+                }
+            }
+        }
+        out.writeInt(0);
+        out.writeBoolean(exception != null);
+        if (exception != null) {
+            writeBytes(out, exception.getBytes(StandardCharsets.UTF_8));
+        }
+        return buf.toByteArray();
+    }
+
+    private static byte encoding(int sqlType) {
+        switch (sqlType) {
+        case Types.INTEGER:
+            return ColumnarResultReader.ENC_INT;
+        case Types.BIGINT:
+            return ColumnarResultReader.ENC_LONG;
+        case Types.DOUBLE:
+            return ColumnarResultReader.ENC_DOUBLE;
+        case Types.BOOLEAN:
+            return ColumnarResultReader.ENC_BOOLEAN;
+        default:
+            return ColumnarResultReader.ENC_STRING;
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, byte encoding, String value) throws IOException {
+        switch (encoding) {
+        case ColumnarResultReader.ENC_INT:
+            out.writeInt(Integer.parseInt(value));
+            break;
+        case ColumnarResultReader.ENC_LONG:
+            out.writeLong(Long.parseLong(value));
+            break;
+        case ColumnarResultReader.ENC_DOUBLE:
+            out.writeDouble(Double.parseDouble(value));
+            break;
+        case ColumnarResultReader.ENC_BOOLEAN:
+            out.writeBoolean(Boolean.parseBoolean(value));
+            break;
+        default:
+            writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+            break;
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.jdbc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.calcite.avatica.ColumnMetaData;
+import org.apache.http.client.methods.HttpPost;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class JsonResultReaderTest {
+
+    private static final String COLUMN_METAS = "\"columnMetas\":[ { \"isNullable\":1, \"label\":\"NAME\", \"name\":\"NAME\", \"columnType\":12, \"columnTypeName\":\"VARCHAR\" }, "
+            + "{ \"Unrecognized\":0, \"isNullable\":1, \"label\":\"CNT\", \"name\":\"CNT\", \"columnType\":-5, \"columnTypeName\":\"BIGINT\" } ]";
+
+    @Test
+    public void testReadInBatches() throws IOException {
+        StringBuilder payload = new StringBuilder("{ " + COLUMN_METAS + ", \"results\":[ ");
+        for (int i = 0; i < 10; i++) {
+            payload.append(i > 0 ? ", " : "").append("[ \"name").append(i).append("\", \"").append(i).append("\" ]");
+        }
+        payload.append(", [ null, null ] ], \"cube\":\"CUBE[name=test]\", \"isException\":false, \"exceptionMessage\":null, \"duration\":12 }");
+
+        JsonResultReader reader = newReader(payload.toString(), 3);
+        List<Object> rows = new ArrayList<>();
+        while (reader.hasNext()) {
+            rows.add(reader.next());
+        }
+        assertFalse(reader.hasNext());
+        assertEquals(11, rows.size());
+        assertArrayEquals(new Object[] { "name7", 7L }, (Object[]) rows.get(7));
+        assertArrayEquals(new Object[] { null, null }, (Object[]) rows.get(10));
+    }
+
+    @Test
+    public void testExceptionAfterRows() throws IOException {
+        String payload = "{ " + COLUMN_METAS + ", \"results\":[ [ \"a\", \"1\" ] ], \"isException\":true, \"exceptionMessage\":\"Scan timeout\" }";
+
+        JsonResultReader reader = newReader(payload, 10);
+        try {
+            reader.hasNext();
+            fail("exception expected");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause().getMessage().contains("Scan timeout"));
+        }
+    }
+
+    @Test
+    public void testNoResults() throws IOException {
+        String payload = "{ \"isException\":true, \"exceptionMessage\":\"error\" }";
+        JsonResultReader reader = new JsonResultReader(new HttpPost("http://localhost/"),
+                new ObjectMapper().getFactory().createParser(payload), 10);
+        try {
+            reader.readColumnMetas();
+            fail("exception expected");
+        } catch (IOException e) {
+            // expected
+        } finally {
+            reader.close();
+        }
+    }
+
+    private JsonResultReader newReader(String payload, int fetchSize) throws IOException {
+        JsonResultReader reader = new JsonResultReader(new HttpPost("http://localhost/"),
+                new ObjectMapper().getFactory().createParser(payload), fetchSize);
+        List<ColumnMetaData> metas = KylinClient.convertColumnMeta(reader.readColumnMetas());
+        assertEquals(Types.BIGINT, metas.get(1).type.id);
+        reader.setColumnMetas(metas);
+        return reader;
+    }
+}
@@ -69,6 +69,7 @@ public class ITInMemCubeBuilderTest extends LocalFileMetadataTestCase {
 
     private int nInpRows;
     private int nThreads;
+    private Integer nEncodeThreads;
 
     @Before
     public void before() throws IOException {
@@ -92,6 +93,20 @@ public class ITInMemCubeBuilderTest extends LocalFileMetadataTestCase {
                 LOCALMETA_TEST_DATA + "/data/kylin_intermediate_ssb_19920101000000_19920201000000.csv", 1000, 1);
     }
 
+    @Test
+    public void testSSBCubeParallelEncoding() throws Exception {
+        nEncodeThreads = 4;
+        testBuild("ssb", //
+                LOCALMETA_TEST_DATA + "/data/kylin_intermediate_ssb_19920101000000_19920201000000.csv", 7000, 2);
+    }
+
+    @Test
+    public void testSSBCubeInlineEncoding() throws Exception {
+        nEncodeThreads = 0;
+        testBuild("ssb", //
+                LOCALMETA_TEST_DATA + "/data/kylin_intermediate_ssb_19920101000000_19920201000000.csv", 1000, 1);
+    }
+
     public void testBuild(String cubeName, String flatTable, int nInpRows, int nThreads) throws Exception {
         KylinConfig kylinConfig = KylinConfig.getInstanceFromEnv();
         CubeManager cubeManager = CubeManager.getInstance(kylinConfig);
@@ -112,6 +127,9 @@ public class ITInMemCubeBuilderTest extends LocalFileMetadataTestCase {
         InMemCubeBuilder cubeBuilder = new InMemCubeBuilder(cube.getCuboidScheduler(), flatDesc, dictionaryMap);
         //DoggedCubeBuilder cubeBuilder = new DoggedCubeBuilder(cube.getDescriptor(), dictionaryMap);
         cubeBuilder.setConcurrentThreads(nThreads);
+        if (nEncodeThreads != null) {
+            cubeBuilder.setEncodeThreads(nEncodeThreads);
+        }
 
         ArrayBlockingQueue<List<String>> queue = new ArrayBlockingQueue<List<String>>(1000);
         ExecutorService executorService = Executors.newSingleThreadExecutor();
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.jdbc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.http.client.methods.HttpPost;
+import org.apache.kylin.metadata.querymeta.SelectedColumnMeta;
+import org.apache.kylin.rest.response.ColumnarSQLResponseWriter;
+import org.apache.kylin.rest.response.SQLResponse;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes results with the server's ColumnarSQLResponseWriter and reads them back with the driver's
+ * ColumnarResultReader.
+ */
+public class ColumnarResultRoundTripTest {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void testReadTypedValues() throws IOException {
+        List<SelectedColumnMeta> metas = Arrays.asList(column("NAME", Types.VARCHAR, "VARCHAR"),
+                column("CNT", Types.BIGINT, "BIGINT"), column("ID", Types.INTEGER, "INTEGER"),
+                column("PRICE", Types.DOUBLE, "DOUBLE"), column("RATE", Types.FLOAT, "FLOAT"),
+                column("FLAG", Types.BOOLEAN, "BOOLEAN"), column("AMOUNT", Types.DECIMAL, "DECIMAL"),
+                column("DT", Types.DATE, "DATE"));
+
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        ColumnarSQLResponseWriter writer = new ColumnarSQLResponseWriter(buf);
+        writer.writeColumnMetas(metas);
+        // more than two blocks
+        for (int i = 0; i < 2500; i++) {
+            writer.writeRow(Arrays.asList("name" + i, String.valueOf(i * 10000000000L), String.valueOf(i),
+                    String.valueOf(i / 4.0), String.valueOf(i / 8.0), String.valueOf(i % 2 == 0), i + ".25",
+                    "2013-08-07"));
+        }
+        writer.writeRow(Arrays.<String> asList(new String[8]));
+        writer.finish(new SQLResponse(metas, null, 0, false, null));
+
+        List<Object> result = read(buf.toByteArray());
+        assertEquals(2501, result.size());
+        // FLOAT is double precision in JDBC
+        assertArrayEquals(new Object[] { "name7", 70000000000L, 7, 1.75, 0.875, false, new BigDecimal("7.25"),
+                Date.valueOf("2013-08-07") }, (Object[]) result.get(7));
+        assertArrayEquals(new Object[] { "name2047", 20470000000000L, 2047, 511.75, 255.875, false,
+                new BigDecimal("2047.25"), Date.valueOf("2013-08-07") }, (Object[]) result.get(2047));
+        assertArrayEquals(new Object[8], (Object[]) result.get(2500));
+    }
+
+    @Test
+    public void testBlocksOfFetchSize() throws IOException {
+        List<SelectedColumnMeta> metas = Arrays.asList(column("ID", Types.INTEGER, "INTEGER"));
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        ColumnarSQLResponseWriter writer = new ColumnarSQLResponseWriter(buf, 100);
+        writer.writeColumnMetas(metas);
+        for (int i = 0; i < 250; i++) {
+            writer.writeRow(Arrays.asList(String.valueOf(i)));
+        }
+        writer.finish(new SQLResponse(metas, null, 0, false, null));
+
+        ColumnarResultReader reader = new ColumnarResultReader(new HttpPost("http://localhost/"), mapper,
+                new ByteArrayInputStream(buf.toByteArray()));
+        try {
+            reader.setColumnMetas(KylinClient.convertColumnMeta(reader.readColumnMetas()));
+            List<Object> batch = new ArrayList<>();
+            for (int expected : new int[] { 100, 100, 50 }) {
+                batch.clear();
+                assertTrue(reader.readBatch(batch));
+                assertEquals(expected, batch.size());
+            }
+            assertArrayEquals(new Object[] { 249 }, (Object[]) batch.get(49));
+            assertFalse(reader.readBatch(batch));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testExceptionAfterRows() throws IOException {
+        List<SelectedColumnMeta> metas = Arrays.asList(column("CNT", Types.BIGINT, "BIGINT"));
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        ColumnarSQLResponseWriter writer = new ColumnarSQLResponseWriter(buf);
+        writer.writeColumnMetas(metas);
+        writer.writeRow(Arrays.asList("1"));
+        writer.finish(new SQLResponse(null, null, 0, true, "Scan timeout"));
+
+        assertException("Scan timeout", buf.toByteArray());
+    }
+
+    @Test
+    public void testBadValueInBlock() throws IOException {
+        List<SelectedColumnMeta> metas = Arrays.asList(column("ID", Types.INTEGER, "INTEGER"));
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        ColumnarSQLResponseWriter writer = new ColumnarSQLResponseWriter(buf);
+        writer.writeColumnMetas(metas);
+        try {
+            // the block is encoded on its last row
+            for (int i = 0; i < 1024; i++) {
+                writer.writeRow(Arrays.asList(i == 100 ? "not a number" : String.valueOf(i)));
+            }
+            fail("exception expected");
+        } catch (NumberFormatException e) {
+            // expected
+        }
+        // the failed block is not encoded again
+        writer.finish(new SQLResponse(null, null, 0, true, "Bad value"));
+
+        assertException("Bad value", buf.toByteArray());
+    }
+
+    private static void assertException(String message, byte[] response) {
+        try {
+            read(response);
+            fail("exception expected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains(message));
+        }
+    }
+
+    private static SelectedColumnMeta column(String name, int sqlType, String typeName) {
+        return new SelectedColumnMeta(false, false, false, false, 1, true, 10, name, name, null, null, null, 10, 0,
+                sqlType, typeName, true, false, false);
+    }
+
+    private static List<Object> read(byte[] response) throws IOException {
+        ColumnarResultReader reader = new ColumnarResultReader(new HttpPost("http://localhost/"), mapper,
+                new ByteArrayInputStream(response));
+        try {
+            reader.setColumnMetas(KylinClient.convertColumnMeta(reader.readColumnMetas()));
+            return reader.readAll();
+        } finally {
+            reader.close();
+        }
+    }
+}
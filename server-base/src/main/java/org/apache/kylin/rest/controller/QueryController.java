@@ -29,6 +29,7 @@ import java.util.Map;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
 import org.apache.kylin.common.debug.BackdoorToggles;
 import org.apache.kylin.metadata.querymeta.SelectedColumnMeta;
 import org.apache.kylin.metadata.querymeta.TableMeta;
@@ -38,16 +39,21 @@ import org.apache.kylin.rest.request.MetaRequest;
 import org.apache.kylin.rest.request.PrepareSqlRequest;
 import org.apache.kylin.rest.request.SQLRequest;
 import org.apache.kylin.rest.request.SaveSqlRequest;
+import org.apache.kylin.rest.response.ColumnarSQLResponseWriter;
 import org.apache.kylin.rest.response.SQLResponse;
+import org.apache.kylin.rest.response.SQLResultWriter;
+import org.apache.kylin.rest.response.StreamingSQLResponseWriter;
 import org.apache.kylin.rest.service.QueryService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.MediaType;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.ResponseBody;
@@ -68,14 +74,84 @@ public class QueryController extends BasicController {
     @SuppressWarnings("unused")
     private static final Logger logger = LoggerFactory.getLogger(QueryController.class);
 
+    private static final MediaType COLUMNAR_MEDIA_TYPE = MediaType.valueOf(ColumnarSQLResponseWriter.CONTENT_TYPE);
+
     @Autowired
     @Qualifier("queryService")
     private QueryService queryService;
 
-    @RequestMapping(value = "/query", method = RequestMethod.POST, produces = { "application/json" })
+    /**
+     * Answers in the typed binary format of {@link ColumnarSQLResponseWriter} instead of JSON, if the client
+     * prefers that format in its Accept header.
+     */
+    @RequestMapping(value = "/query", method = RequestMethod.POST, produces = { "application/json",
+            ColumnarSQLResponseWriter.CONTENT_TYPE })
     @ResponseBody
-    public SQLResponse query(@RequestBody PrepareSqlRequest sqlRequest) {
-        return queryService.doQueryWithCache(sqlRequest);
+    public SQLResponse query(@RequestBody PrepareSqlRequest sqlRequest,
+            @RequestHeader(value = "Accept", required = false) String accept, HttpServletResponse response) {
+        SQLResponse result = queryService.doQueryWithCache(sqlRequest);
+        if (!prefersColumnar(accept)) {
+            return result;
+        }
+
+        response.setContentType(ColumnarSQLResponseWriter.CONTENT_TYPE);
+        try {
+            new ColumnarSQLResponseWriter(response.getOutputStream(), fetchSize(sqlRequest)).write(result);
+        } catch (IOException e) {
+            throw new InternalErrorException(e);
+        }
+        return null;
+    }
+
+    /**
+     * Same as "/query" but the result rows are written out while being read, see {@link StreamingSQLResponseWriter}
+     * and {@link ColumnarSQLResponseWriter}. A failure after the first row can only be told at the end of the
+     * response.
+     */
+    @RequestMapping(value = "/query/stream", method = RequestMethod.POST, produces = { "application/json",
+            ColumnarSQLResponseWriter.CONTENT_TYPE })
+    @ResponseBody
+    public void queryStreaming(@RequestBody PrepareSqlRequest sqlRequest,
+            @RequestHeader(value = "Accept", required = false) String accept, HttpServletResponse response) {
+        try {
+            SQLResultWriter writer;
+            if (prefersColumnar(accept)) {
+                response.setContentType(ColumnarSQLResponseWriter.CONTENT_TYPE);
+                writer = new ColumnarSQLResponseWriter(response.getOutputStream(), fetchSize(sqlRequest));
+            } else {
+                response.setContentType("application/json;charset=utf-8");
+                writer = new StreamingSQLResponseWriter(response.getOutputStream());
+            }
+
+            SQLResponse result = queryService.doQueryStreaming(sqlRequest, writer);
+            if (result.getIsException() && !writer.isStarted()) {
+                throw new InternalErrorException(result.getExceptionMessage());
+            }
+            writer.finish(result);
+        } catch (IOException e) {
+            throw new InternalErrorException(e);
+        }
+    }
+
+    private int fetchSize(SQLRequest sqlRequest) {
+        return sqlRequest.getFetchSize() == null ? 0 : sqlRequest.getFetchSize();
+    }
+
+    private boolean prefersColumnar(String accept) {
+        if (StringUtils.isEmpty(accept)) {
+            return false;
+        }
+        List<MediaType> mediaTypes = MediaType.parseMediaTypes(accept);
+        MediaType.sortBySpecificityAndQuality(mediaTypes);
+        for (MediaType mediaType : mediaTypes) {
+            if (mediaType.includes(MediaType.APPLICATION_JSON)) {
+                return false;
+            }
+            if (mediaType.includes(COLUMNAR_MEDIA_TYPE)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     // TODO should be just "prepare" a statement, get back expected ResultSetMetaData
@@ -56,6 +56,18 @@ public class QueryMetrics {
     MutableRate scanRowCount;
     MutableQuantiles[] scanRowCountQuantiles;
 
+    @Metric
+    MutableRate hitShardCount;
+    MutableQuantiles[] hitShardCountQuantiles;
+
+    @Metric
+    MutableRate rpcQueueTime;
+    MutableQuantiles[] rpcQueueTimeMillisQuantiles;
+
+    @Metric
+    MutableRate rpcCallTime;
+    MutableQuantiles[] rpcCallTimeMillisQuantiles;
+
     @Metric
     MutableRate resultRowCount;
     MutableQuantiles[] resultRowCountQuantiles;
@@ -63,6 +75,9 @@ public class QueryMetrics {
     public QueryMetrics(int[] intervals) {
         queryLatencyTimeMillisQuantiles = new MutableQuantiles[intervals.length];
         scanRowCountQuantiles = new MutableQuantiles[intervals.length];
+        hitShardCountQuantiles = new MutableQuantiles[intervals.length];
+        rpcQueueTimeMillisQuantiles = new MutableQuantiles[intervals.length];
+        rpcCallTimeMillisQuantiles = new MutableQuantiles[intervals.length];
         resultRowCountQuantiles = new MutableQuantiles[intervals.length];
         cacheHitCountQuantiles = new MutableQuantiles[intervals.length];
 
@@ -71,12 +86,18 @@ public class QueryMetrics {
 
             queryLatencyTimeMillisQuantiles[i] = registry.newQuantiles("QueryLatency" + interval + "s", "Query queue time in milli second", "ops", "", interval);
             scanRowCountQuantiles[i] = registry.newQuantiles("ScanRowCount" + interval + "s", "Scan row count in milli second", "ops", "", interval);
+            hitShardCountQuantiles[i] = registry.newQuantiles("HitShardCount" + interval + "s", "Hit shard count", "ops", "", interval);
+            rpcQueueTimeMillisQuantiles[i] = registry.newQuantiles("RpcQueueTime" + interval + "s", "Coprocessor call queue time in milli second", "ops", "", interval);
+            rpcCallTimeMillisQuantiles[i] = registry.newQuantiles("RpcCallTime" + interval + "s", "Coprocessor call time in milli second", "ops", "", interval);
             resultRowCountQuantiles[i] = registry.newQuantiles("ResultRowCount" + interval + "s", "Result row count in milli second", "ops", "", interval);
             cacheHitCountQuantiles[i] = registry.newQuantiles("CacheHitCount" + interval + "s", "Cache Hit Count in milli second", "ops", "", interval);
         }
 
         queryLatency = registry.newRate("QueryLatency", "", true);
         scanRowCount = registry.newRate("ScanRowCount", "", true);
+        hitShardCount = registry.newRate("HitShardCount", "", true);
+        rpcQueueTime = registry.newRate("RpcQueueTime", "", true);
+        rpcCallTime = registry.newRate("RpcCallTime", "", true);
         resultRowCount = registry.newRate("ResultRowCount", "", true);
     }
 
@@ -110,6 +131,27 @@ public class QueryMetrics {
         }
     }
 
+    public void addHitShardCount(long count) {
+        hitShardCount.add(count);
+        for (MutableQuantiles m : hitShardCountQuantiles) {
+            m.add(count);
+        }
+    }
+
+    public void addRpcQueueTime(long millis) {
+        rpcQueueTime.add(millis);
+        for (MutableQuantiles m : rpcQueueTimeMillisQuantiles) {
+            m.add(millis);
+        }
+    }
+
+    public void addRpcCallTime(long millis) {
+        rpcCallTime.add(millis);
+        for (MutableQuantiles m : rpcCallTimeMillisQuantiles) {
+            m.add(millis);
+        }
+    }
+
     public void addResultRowCount(long count) {
         resultRowCount.add(count);
         for (MutableQuantiles m : resultRowCountQuantiles) {
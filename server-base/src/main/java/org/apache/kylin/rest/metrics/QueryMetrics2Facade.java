@@ -78,9 +78,13 @@ public class QueryMetrics2Facade {
                 metrics.updateTimer(MetricsNameBuilder.buildMetricName(name, MetricsConstant.QUERY_DURATION),
                         sqlResponse.getDuration(), TimeUnit.MILLISECONDS);
                 metrics.updateHistogram(MetricsNameBuilder.buildMetricName(name, MetricsConstant.QUERY_RESULT_ROWCOUNT),
-                        sqlResponse.getResults().size());
+                        sqlResponse.getResults().size() + sqlResponse.getStreamedRowCount());
                 metrics.updateHistogram(MetricsNameBuilder.buildMetricName(name, MetricsConstant.QUERY_SCAN_ROWCOUNT),
                         sqlResponse.getTotalScanCount());
+                metrics.updateTimer(MetricsNameBuilder.buildMetricName(name, MetricsConstant.QUERY_RPC_QUEUE_DURATION),
+                        sqlResponse.getRpcQueueMillis(), TimeUnit.MILLISECONDS);
+                metrics.updateTimer(MetricsNameBuilder.buildMetricName(name, MetricsConstant.QUERY_RPC_CALL_DURATION),
+                        sqlResponse.getRpcCallMillis(), TimeUnit.MILLISECONDS);
             }
         } catch (Exception e) {
             logger.error(e.getMessage());
@@ -71,7 +71,10 @@ public class QueryMetricsFacade {
             if (!sqlResponse.getIsException()) {
                 queryMetrics.addQueryLatency(sqlResponse.getDuration());
                 queryMetrics.addScanRowCount(sqlResponse.getTotalScanCount());
-                queryMetrics.addResultRowCount(sqlResponse.getResults().size());
+                queryMetrics.addHitShardCount(sqlResponse.getHitShardCount());
+                queryMetrics.addRpcQueueTime(sqlResponse.getRpcQueueMillis());
+                queryMetrics.addRpcCallTime(sqlResponse.getRpcCallMillis());
+                queryMetrics.addResultRowCount(sqlResponse.getResults().size() + sqlResponse.getStreamedRowCount());
             }
         } catch (Exception e) {
             logger.error(e.getMessage());
@@ -36,6 +36,8 @@ public class SQLRequest implements Serializable {
     private Integer offset = 0;
     private Integer limit = 0;
     private boolean acceptPartial = false;
+    // rows the client reads at a time, does not change the result so it is not part of the cache key
+    private Integer fetchSize = 0;
 
     private Map<String, String> backdoorToggles;
 
@@ -100,6 +102,14 @@ public class SQLRequest implements Serializable {
         this.acceptPartial = acceptPartial;
     }
 
+    public Integer getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(Integer fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
     public Object getCacheKey() {
         if (cacheKey != null)
             return cacheKey;
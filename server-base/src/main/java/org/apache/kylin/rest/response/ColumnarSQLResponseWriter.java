@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.rest.response;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Types;
+import java.util.List;
+
+import org.apache.kylin.metadata.querymeta.SelectedColumnMeta;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+
+/**
+ * Writes a query result in a typed binary format, column by column in blocks of rows. Numbers and booleans are
+ * written in their binary form so that clients take them as is rather than parse strings, the rest are written
+ * as UTF-8 strings. The layout, all numbers big endian:
+ *
+ * <pre>
+ * header:  int MAGIC, int length + UTF-8 JSON of the column metas, one byte of value encoding per column
+ * block:   int row count (0 ends the blocks), then for each column
+ *          a null bitmap of (row count + 7) / 8 bytes, then the values of non-null cells
+ * trailer: byte 1 if the query failed followed by the exception message, otherwise byte 0
+ * </pre>
+ *
+ * A string is an int length followed by its UTF-8 bytes. A block holds as many rows as the fetch size of the
+ * client, or {@link #BLOCK_ROWS} rows if the client did not tell one.
+ */
+public class ColumnarSQLResponseWriter implements SQLResultWriter {
+
+    public static final String CONTENT_TYPE = "application/x-kylin-columnar";
+
+    public static final int MAGIC = 0x4B43524C; // "KCRL"
+
+    public static final byte ENC_STRING = 0;
+    public static final byte ENC_BYTE = 1;
+    public static final byte ENC_SHORT = 2;
+    public static final byte ENC_INT = 3;
+    public static final byte ENC_LONG = 4;
+    public static final byte ENC_FLOAT = 5;
+    public static final byte ENC_DOUBLE = 6;
+    public static final byte ENC_BOOLEAN = 7;
+
+    static final int BLOCK_ROWS = 1024;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream blockBuf = new ByteArrayOutputStream();
+    private final DataOutputStream block = new DataOutputStream(blockBuf);
+    private final int blockRows;
+    private final List<List<String>> pendingRows;
+    private byte[] encodings;
+
+    public ColumnarSQLResponseWriter(OutputStream out) {
+        this(out, 0);
+    }
+
+    public ColumnarSQLResponseWriter(OutputStream out, int blockRows) {
+        this.out = new DataOutputStream(out);
+        this.blockRows = blockRows > 0 ? blockRows : BLOCK_ROWS;
+        this.pendingRows = Lists.newArrayListWithCapacity(this.blockRows);
+    }
+
+    public static byte getEncoding(int sqlType) {
+        switch (sqlType) {
+        case Types.TINYINT:
+            return ENC_BYTE;
+        case Types.SMALLINT:
+            return ENC_SHORT;
+        case Types.INTEGER:
+            return ENC_INT;
+        case Types.BIGINT:
+            return ENC_LONG;
+        case Types.FLOAT: // double precision in JDBC
+        case Types.REAL:
+        case Types.DOUBLE:
+            return ENC_DOUBLE;
+        case Types.BIT:
+        case Types.BOOLEAN:
+            return ENC_BOOLEAN;
+        default:
+            return ENC_STRING;
+        }
+    }
+
+    @Override
+    public void writeColumnMetas(List<SelectedColumnMeta> columnMetas) throws IOException {
+        encodings = new byte[columnMetas.size()];
+        for (int i = 0; i < encodings.length; i++) {
+            encodings[i] = getEncoding(columnMetas.get(i).getColumnType());
+        }
+
+        out.writeInt(MAGIC);
+        writeBytes(out, mapper.writeValueAsBytes(columnMetas));
+        out.write(encodings);
+        // let the client see the column metas before the first block is ready
+        out.flush();
+    }
+
+    @Override
+    public void writeRow(List<String> row) throws IOException {
+        pendingRows.add(row);
+        if (pendingRows.size() >= blockRows) {
+            writeBlock();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        int rowCount = pendingRows.size();
+        if (rowCount == 0) {
+            return;
+        }
+
+        blockBuf.reset();
+        try {
+            block.writeInt(rowCount);
+            byte[] nullBits = new byte[(rowCount + 7) / 8];
+            for (int c = 0; c < encodings.length; c++) {
+                for (int r = 0; r < nullBits.length; r++) {
+                    nullBits[r] = 0;
+                }
+                for (int r = 0; r < rowCount; r++) {
+                    if (pendingRows.get(r).get(c) == null) {
+                        nullBits[r >> 3] |= 1 << (r & 7);
+                    }
+                }
+                block.write(nullBits);
+
+                for (int r = 0; r < rowCount; r++) {
+                    String value = pendingRows.get(r).get(c);
+                    if (value != null) {
+                        writeValue(encodings[c], value);
+                    }
+                }
+            }
+        } finally {
+            // a block failed to encode is dropped, so that finish() does not encode it again
+            pendingRows.clear();
+        }
+        blockBuf.writeTo(out);
+    }
+
+    private void writeValue(byte encoding, String value) throws IOException {
+        switch (encoding) {
+        case ENC_BYTE:
+            block.writeByte(Byte.parseByte(value));
+            break;
+        case ENC_SHORT:
+            block.writeShort(Short.parseShort(value));
+            break;
+        case ENC_INT:
+            block.writeInt(Integer.parseInt(value));
+            break;
+        case ENC_LONG:
+            block.writeLong(Long.parseLong(value));
+            break;
+        case ENC_FLOAT:
+            block.writeFloat(Float.parseFloat(value));
+            break;
+        case ENC_DOUBLE:
+            block.writeDouble(Double.parseDouble(value));
+            break;
+        case ENC_BOOLEAN:
+            block.writeBoolean(Boolean.parseBoolean(value));
+            break;
+        default:
+            writeBytes(block, value.getBytes(StandardCharsets.UTF_8));
+            break;
+        }
+    }
+
+    private static void writeBytes(DataOutputStream dout, byte[] bytes) throws IOException {
+        dout.writeInt(bytes.length);
+        dout.write(bytes);
+    }
+
+    @Override
+    public boolean isStarted() {
+        return encodings != null;
+    }
+
+    /**
+     * Writes a whole response which has been read already.
+     */
+    public void write(SQLResponse response) throws IOException {
+        writeColumnMetas(response.getColumnMetas());
+        for (List<String> row : response.getResults()) {
+            writeRow(row);
+        }
+        finish(response);
+    }
+
+    @Override
+    public void finish(SQLResponse response) throws IOException {
+        if (!isStarted()) {
+            writeColumnMetas(response.getColumnMetas() == null ? Lists.<SelectedColumnMeta> newArrayList()
+                    : response.getColumnMetas());
+        }
+        writeBlock();
+        out.writeInt(0);
+        out.writeBoolean(response.getIsException());
+        if (response.getIsException()) {
+            String message = response.getExceptionMessage() == null ? "" : response.getExceptionMessage();
+            writeBytes(out, message.getBytes(StandardCharsets.UTF_8));
+        }
+        out.flush();
+    }
+}
@@ -57,12 +57,26 @@ public class SQLResponse implements Serializable {
 
     protected long totalScanBytes;
 
+    // segments skipped because their dimension ranges do not match the filter
+    protected long prunedSegmentCount;
+
+    // storage shards visited by the query, fewer than all when the shard-by column is filtered by equality
+    protected long hitShardCount;
+
+    // summed over the coprocessor calls of the query, which may overlap in time
+    protected long rpcQueueMillis;
+
+    protected long rpcCallMillis;
+
     protected boolean hitExceptionCache = false;
 
     protected boolean storageCacheUsed = false;
 
     protected boolean queryPushDown = false;
 
+    // rows written to the client as they were read, instead of kept in results
+    protected int streamedRowCount;
+
     public SQLResponse() {
     }
 
@@ -170,6 +184,38 @@ public class SQLResponse implements Serializable {
         this.totalScanBytes = totalScanBytes;
     }
 
+    public long getPrunedSegmentCount() {
+        return prunedSegmentCount;
+    }
+
+    public void setPrunedSegmentCount(long prunedSegmentCount) {
+        this.prunedSegmentCount = prunedSegmentCount;
+    }
+
+    public long getHitShardCount() {
+        return hitShardCount;
+    }
+
+    public void setHitShardCount(long hitShardCount) {
+        this.hitShardCount = hitShardCount;
+    }
+
+    public long getRpcQueueMillis() {
+        return rpcQueueMillis;
+    }
+
+    public void setRpcQueueMillis(long rpcQueueMillis) {
+        this.rpcQueueMillis = rpcQueueMillis;
+    }
+
+    public long getRpcCallMillis() {
+        return rpcCallMillis;
+    }
+
+    public void setRpcCallMillis(long rpcCallMillis) {
+        this.rpcCallMillis = rpcCallMillis;
+    }
+
     public boolean isHitExceptionCache() {
         return hitExceptionCache;
     }
@@ -185,4 +231,12 @@ public class SQLResponse implements Serializable {
     public void setStorageCacheUsed(boolean storageCacheUsed) {
         this.storageCacheUsed = storageCacheUsed;
     }
+
+    public int getStreamedRowCount() {
+        return streamedRowCount;
+    }
+
+    public void setStreamedRowCount(int streamedRowCount) {
+        this.streamedRowCount = streamedRowCount;
+    }
 }
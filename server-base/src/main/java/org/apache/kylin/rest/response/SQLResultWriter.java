@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.rest.response;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.kylin.metadata.querymeta.SelectedColumnMeta;
+
+/**
+ * Receives the result of a streaming query as it is read, the column metas first and then the rows one by one.
+ */
+public interface SQLResultWriter {
+
+    public void writeColumnMetas(List<SelectedColumnMeta> columnMetas) throws IOException;
+
+    public void writeRow(List<String> row) throws IOException;
+
+    /**
+     * @return whether anything has been written, after which a failure can only be told by {@link #finish}
+     */
+    public boolean isStarted();
+
+    /**
+     * Ends the rows and writes the rest of the response, including the exception if the query failed.
+     */
+    public void finish(SQLResponse response) throws IOException;
+
+}
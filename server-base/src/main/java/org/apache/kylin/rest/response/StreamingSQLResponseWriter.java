@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.rest.response;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.apache.kylin.metadata.querymeta.SelectedColumnMeta;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes a streaming query result as one JSON object in the same shape as SQLResponse, i.e. "columnMetas", then
+ * "results" as an array of string arrays, then the other fields. Rows go out as soon as they are written, so the
+ * result is never held in memory and clients may start reading before the last row.
+ */
+public class StreamingSQLResponseWriter implements SQLResultWriter {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final JsonGenerator generator;
+    private boolean started = false;
+
+    public StreamingSQLResponseWriter(OutputStream out) throws IOException {
+        this.generator = mapper.getFactory().createGenerator(out);
+        this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    @Override
+    public void writeColumnMetas(List<SelectedColumnMeta> columnMetas) throws IOException {
+        started = true;
+        generator.writeStartObject();
+        generator.writeFieldName("columnMetas");
+        mapper.writeValue(generator, columnMetas);
+        generator.writeArrayFieldStart("results");
+        // let the client see the column metas before the first row is ready
+        generator.flush();
+    }
+
+    @Override
+    public void writeRow(List<String> row) throws IOException {
+        generator.writeStartArray();
+        for (String cell : row) {
+            generator.writeString(cell);
+        }
+        generator.writeEndArray();
+    }
+
+    @Override
+    public boolean isStarted() {
+        return started;
+    }
+
+    @Override
+    public void finish(SQLResponse response) throws IOException {
+        if (!started) {
+            writeColumnMetas(response.getColumnMetas());
+        }
+        generator.writeEndArray();
+        generator.writeStringField("cube", response.getCube());
+        generator.writeNumberField("affectedRowCount", response.getAffectedRowCount());
+        generator.writeBooleanField("isException", response.getIsException());
+        generator.writeStringField("exceptionMessage", response.getExceptionMessage());
+        generator.writeNumberField("duration", response.getDuration());
+        generator.writeBooleanField("partial", response.isPartial());
+        generator.writeNumberField("totalScanCount", response.getTotalScanCount());
+        generator.writeNumberField("totalScanBytes", response.getTotalScanBytes());
+        generator.writeNumberField("prunedSegmentCount", response.getPrunedSegmentCount());
+        generator.writeNumberField("hitShardCount", response.getHitShardCount());
+        generator.writeNumberField("rpcQueueMillis", response.getRpcQueueMillis());
+        generator.writeNumberField("rpcCallMillis", response.getRpcCallMillis());
+        generator.writeBooleanField("pushDown", response.isPushDown());
+        generator.writeNumberField("streamedRowCount", response.getStreamedRowCount());
+        generator.writeEndObject();
+        generator.close();
+    }
+}
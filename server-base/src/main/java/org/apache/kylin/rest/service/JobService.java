@@ -21,6 +21,7 @@ package org.apache.kylin.rest.service;
 import java.io.IOException;
 import java.util.Calendar;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.EnumSet;
 import java.util.List;
@@ -310,9 +311,18 @@ public class JobService extends BasicService implements InitializingBean {
         result.setStatus(JobInfoConverter.parseToJobStatus(job.getStatus()));
         result.setMrWaiting(cubeJob.getMapReduceWaitTime() / 1000);
         result.setDuration(cubeJob.getDuration() / 1000);
+        List<String> taskIds = Lists.newArrayListWithCapacity(cubeJob.getTasks().size());
+        for (AbstractExecutable task : cubeJob.getTasks()) {
+            taskIds.add(task.getId());
+        }
+        Map<String, Output> taskOutputs = getExecutableManager().getOutputs(taskIds);
         for (int i = 0; i < cubeJob.getTasks().size(); ++i) {
             AbstractExecutable task = cubeJob.getTasks().get(i);
-            result.addStep(JobInfoConverter.parseToJobStep(task, i, getExecutableManager().getOutput(task.getId())));
+            Output taskOutput = taskOutputs.get(task.getId());
+            if (taskOutput == null) {
+                taskOutput = getExecutableManager().getOutput(task.getId());
+            }
+            result.addStep(JobInfoConverter.parseToJobStep(task, i, taskOutput));
         }
         return result;
     }
@@ -372,18 +382,7 @@ public class JobService extends BasicService implements InitializingBean {
             final JobTimeFilterEnum timeFilter) {
         Integer limit = (null == limitValue) ? 30 : limitValue;
         Integer offset = (null == offsetValue) ? 0 : offsetValue;
-        List<JobInstance> jobs = searchJobsByCubeName(cubeNameSubstring, projectName, statusList, timeFilter);
-        Collections.sort(jobs);
-
-        if (jobs.size() <= offset) {
-            return Collections.emptyList();
-        }
-
-        if ((jobs.size() - offset) < limit) {
-            return jobs.subList(offset, jobs.size());
-        }
-
-        return jobs.subList(offset, offset + limit);
+        return innerSearchCubingJobs(cubeNameSubstring, null, projectName, statusList, timeFilter, offset, limit);
     }
 
     public List<JobInstance> searchJobsByCubeName(final String cubeNameSubstring, final String projectName,
@@ -398,6 +397,16 @@ public class JobService extends BasicService implements InitializingBean {
 
     public List<JobInstance> innerSearchCubingJobs(final String cubeName, final String jobName,
             final String projectName, final List<JobStatusEnum> statusList, final JobTimeFilterEnum timeFilter) {
+        return innerSearchCubingJobs(cubeName, jobName, projectName, statusList, timeFilter, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * The jobs are sorted latest first and paged before converted to JobInstance, so that the cost of a page is
+     * in proportion to its size rather than the job history.
+     */
+    private List<JobInstance> innerSearchCubingJobs(final String cubeName, final String jobName,
+            final String projectName, final List<JobStatusEnum> statusList, final JobTimeFilterEnum timeFilter,
+            int offset, int limit) {
         if (null == projectName) {
             aclEvaluate.checkIsGlobalAdmin();
         } else {
@@ -411,22 +420,25 @@ public class JobService extends BasicService implements InitializingBean {
         Set<ExecutableState> states = convertStatusEnumToStates(statusList);
         final Map<String, Output> allOutputs = getExecutableManager().getAllOutputs(timeStartInMillis, timeEndInMillis);
 
-        return Lists
-                .newArrayList(
-                        FluentIterable
-                                .from(innerSearchCubingJobs(cubeName, jobName, states, timeStartInMillis,
-                                        timeEndInMillis, allOutputs, false, projectName))
-                                .transform(new Function<CubingJob, JobInstance>() {
-                                    @Override
-                                    public JobInstance apply(CubingJob cubingJob) {
-                                        return JobInfoConverter.parseToJobInstanceQuietly(cubingJob, allOutputs);
-                                    }
-                                }).filter(new Predicate<JobInstance>() {
-                                    @Override
-                                    public boolean apply(@Nullable JobInstance input) {
-                                        return input != null;
-                                    }
-                                }));
+        List<CubingJob> cubingJobs = innerSearchCubingJobs(cubeName, jobName, states, timeStartInMillis,
+                timeEndInMillis, allOutputs, false, projectName);
+        // the same order as JobInstance, whose last modified time is that of the job output
+        Collections.sort(cubingJobs, new Comparator<CubingJob>() {
+            @Override
+            public int compare(CubingJob o1, CubingJob o2) {
+                return Long.compare(allOutputs.get(o2.getId()).getLastModified(),
+                        allOutputs.get(o1.getId()).getLastModified());
+            }
+        });
+
+        List<JobInstance> results = Lists.newArrayList();
+        for (int i = offset; i < cubingJobs.size() && results.size() < limit; i++) {
+            JobInstance jobInstance = JobInfoConverter.parseToJobInstanceQuietly(cubingJobs.get(i), allOutputs);
+            if (jobInstance != null) {
+                results.add(jobInstance);
+            }
+        }
+        return results;
     }
 
     public List<CubingJob> innerSearchCubingJobs(final String cubeName, final String jobName,
@@ -97,6 +97,7 @@ import org.apache.kylin.rest.msg.MsgPicker;
 import org.apache.kylin.rest.request.PrepareSqlRequest;
 import org.apache.kylin.rest.request.SQLRequest;
 import org.apache.kylin.rest.response.SQLResponse;
+import org.apache.kylin.rest.response.SQLResultWriter;
 import org.apache.kylin.rest.util.AclEvaluate;
 import org.apache.kylin.rest.util.TableauInterceptor;
 import org.apache.kylin.storage.hybrid.HybridInstance;
@@ -173,12 +174,16 @@ public class QueryService extends BasicService {
     }
 
     public SQLResponse query(SQLRequest sqlRequest) throws Exception {
+        return query(sqlRequest, null);
+    }
+
+    private SQLResponse query(SQLRequest sqlRequest, SQLResultWriter writer) throws Exception {
         SQLResponse ret = null;
         try {
             final String user = SecurityContextHolder.getContext().getAuthentication().getName();
             badQueryDetector.queryStart(Thread.currentThread(), sqlRequest, user);
 
-            ret = queryWithSqlMassage(sqlRequest);
+            ret = queryWithSqlMassage(sqlRequest, writer);
             return ret;
 
         } finally {
@@ -284,7 +289,7 @@ public class QueryService extends BasicService {
 
         int resultRowCount = 0;
         if (!response.getIsException() && response.getResults() != null) {
-            resultRowCount = response.getResults().size();
+            resultRowCount = response.getResults().size() + response.getStreamedRowCount();
         }
 
         String newLine = System.getProperty("line.separator");
@@ -301,6 +306,10 @@ public class QueryService extends BasicService {
         stringBuilder.append("Cuboid Ids: ").append(cuboidIds).append(newLine);
         stringBuilder.append("Total scan count: ").append(response.getTotalScanCount()).append(newLine);
         stringBuilder.append("Total scan bytes: ").append(response.getTotalScanBytes()).append(newLine);
+        stringBuilder.append("Pruned segments: ").append(response.getPrunedSegmentCount()).append(newLine);
+        stringBuilder.append("Hit shards: ").append(response.getHitShardCount()).append(newLine);
+        stringBuilder.append("RPC queue time: ").append(response.getRpcQueueMillis()).append(newLine);
+        stringBuilder.append("RPC call time: ").append(response.getRpcCallMillis()).append(newLine);
         stringBuilder.append("Result row count: ").append(resultRowCount).append(newLine);
         stringBuilder.append("Accept Partial: ").append(request.isAcceptPartial()).append(newLine);
         stringBuilder.append("Is Partial Result: ").append(response.isPartial()).append(newLine);
@@ -371,11 +380,8 @@ public class QueryService extends BasicService {
         }
     }
 
-    public SQLResponse doQueryWithCache(SQLRequest sqlRequest) {
+    private void checkQueryRequest(KylinConfig kylinConfig, SQLRequest sqlRequest) {
         Message msg = MsgPicker.getMsg();
-        sqlRequest.setUsername(getUserName());
-
-        KylinConfig kylinConfig = KylinConfig.getInstanceFromEnv();
         String serverMode = kylinConfig.getServerMode();
         if (!(Constant.SERVER_MODE_QUERY.equals(serverMode.toLowerCase())
                 || Constant.SERVER_MODE_ALL.equals(serverMode.toLowerCase()))) {
@@ -384,6 +390,14 @@ public class QueryService extends BasicService {
         if (StringUtils.isBlank(sqlRequest.getProject())) {
             throw new BadRequestException(msg.getEMPTY_PROJECT_NAME());
         }
+    }
+
+    public SQLResponse doQueryWithCache(SQLRequest sqlRequest) {
+        Message msg = MsgPicker.getMsg();
+        sqlRequest.setUsername(getUserName());
+
+        KylinConfig kylinConfig = KylinConfig.getInstanceFromEnv();
+        checkQueryRequest(kylinConfig, sqlRequest);
 
         if (sqlRequest.getBackdoorToggles() != null)
             BackdoorToggles.addToggles(sqlRequest.getBackdoorToggles());
@@ -486,6 +500,62 @@ public class QueryService extends BasicService {
         }
     }
 
+    /**
+     * Runs a select query and hands the rows to the writer as they are read from the result set, instead of holding
+     * the whole result in the response. The query cache is bypassed. Failures are returned in the response rather
+     * than thrown, since some rows may have been written already.
+     *
+     * @return the response without the result rows, its streamedRowCount tells how many were written
+     */
+    public SQLResponse doQueryStreaming(SQLRequest sqlRequest, SQLResultWriter writer) {
+        Message msg = MsgPicker.getMsg();
+        sqlRequest.setUsername(getUserName());
+
+        KylinConfig kylinConfig = KylinConfig.getInstanceFromEnv();
+        checkQueryRequest(kylinConfig, sqlRequest);
+        if (!QueryUtil.isSelectStatement(sqlRequest.getSql())) {
+            throw new BadRequestException(msg.getNOT_SUPPORTED_SQL());
+        }
+
+        if (sqlRequest.getBackdoorToggles() != null)
+            BackdoorToggles.addToggles(sqlRequest.getBackdoorToggles());
+
+        final QueryContext queryContext = QueryContext.current();
+
+        try (SetThreadName ignored = new SetThreadName("Query %s", queryContext.getQueryId())) {
+            logger.info("Using project: " + sqlRequest.getProject());
+            logger.info("The original query:  " + sqlRequest.getSql());
+
+            long startTime = System.currentTimeMillis();
+
+            SQLResponse sqlResponse;
+            try {
+                sqlResponse = query(sqlRequest, writer);
+                sqlResponse.setDuration(System.currentTimeMillis() - startTime);
+                logger.info("Stats of streamed SQL response: rows: {}, duration: {}, total scan count {}", //
+                        String.valueOf(sqlResponse.getStreamedRowCount()), String.valueOf(sqlResponse.getDuration()),
+                        String.valueOf(sqlResponse.getTotalScanCount()));
+            } catch (Throwable e) { // calcite may throw AssertError
+                logger.error("Exception while executing query", e);
+                sqlResponse = new SQLResponse(null, null, 0, true, makeErrorMsgUserFriendly(e));
+                sqlResponse.setDuration(System.currentTimeMillis() - startTime);
+                sqlResponse.setTotalScanCount(queryContext.getScannedRows());
+                sqlResponse.setTotalScanBytes(queryContext.getScannedBytes());
+            }
+
+            logQuery(sqlRequest, sqlResponse);
+
+            QueryMetricsFacade.updateMetrics(sqlRequest, sqlResponse);
+            QueryMetrics2Facade.updateMetrics(sqlRequest, sqlResponse);
+
+            return sqlResponse;
+
+        } finally {
+            BackdoorToggles.cleanToggles();
+            QueryContext.reset();
+        }
+    }
+
     private String getUserName() {
         String username = SecurityContextHolder.getContext().getAuthentication().getName();
         if (StringUtils.isEmpty(username)) {
@@ -519,7 +589,7 @@ public class QueryService extends BasicService {
         }
     }
 
-    private SQLResponse queryWithSqlMassage(SQLRequest sqlRequest) throws Exception {
+    private SQLResponse queryWithSqlMassage(SQLRequest sqlRequest, SQLResultWriter writer) throws Exception {
         Connection conn = null;
 
         try {
@@ -538,7 +608,7 @@ public class QueryService extends BasicService {
             SQLResponse fakeResponse = TableauInterceptor.tableauIntercept(sqlRequest.getSql());
             if (null != fakeResponse) {
                 logger.debug("Return fake response, is exception? " + fakeResponse.getIsException());
-                return fakeResponse;
+                return writer == null ? fakeResponse : streamResults(sqlRequest, fakeResponse, writer);
             }
 
             String correctedSql = QueryUtil.massageSql(sqlRequest.getSql(), sqlRequest.getProject(),
@@ -558,7 +628,7 @@ public class QueryService extends BasicService {
             // force clear the query context before a new query
             OLAPContext.clearThreadLocalContexts();
 
-            return execute(correctedSql, sqlRequest, conn);
+            return execute(correctedSql, sqlRequest, conn, writer);
 
         } finally {
             DBUtils.closeQuietly(conn);
@@ -801,13 +871,17 @@ public class QueryService extends BasicService {
     /**
      * @param correctedSql
      * @param sqlRequest
+     * @param writer receives the rows as they are read if not null, otherwise the rows are kept in the response
      * @return
      * @throws Exception
      */
-    private SQLResponse execute(String correctedSql, SQLRequest sqlRequest, Connection conn) throws Exception {
+    private SQLResponse execute(String correctedSql, SQLRequest sqlRequest, Connection conn, SQLResultWriter writer)
+            throws Exception {
         Statement stat = null;
         ResultSet resultSet = null;
         boolean isPushDown = false;
+        boolean streamStarted = false;
+        int streamedRowCount = 0;
 
         List<List<String>> results = Lists.newArrayList();
         List<SelectedColumnMeta> columnMetas = Lists.newArrayList();
@@ -816,7 +890,8 @@ public class QueryService extends BasicService {
 
             // special case for prepare query.
             if (BackdoorToggles.getPrepareOnly()) {
-                return getPrepareOnlySqlResponse(correctedSql, conn, isPushDown, results, columnMetas);
+                SQLResponse response = getPrepareOnlySqlResponse(correctedSql, conn, isPushDown, results, columnMetas);
+                return writer == null ? response : streamResults(sqlRequest, response, writer);
             }
 
             if (isPrepareStatementWithParams(sqlRequest)) {
@@ -848,6 +923,12 @@ public class QueryService extends BasicService {
                         metaData.isDefinitelyWritable(i)));
             }
 
+            if (writer != null) {
+                // realizations are known once the query is planned, check them before any row goes out
+                startStreaming(sqlRequest, columnMetas, getQueriedRealizations(), writer);
+                streamStarted = true;
+            }
+
             // fill in results
             while (resultSet.next()) {
                 List<String> oneRow = Lists.newArrayListWithCapacity(columnCount);
@@ -855,10 +936,19 @@ public class QueryService extends BasicService {
                     oneRow.add((resultSet.getString(i + 1)));
                 }
 
-                results.add(oneRow);
+                if (writer == null) {
+                    results.add(oneRow);
+                } else {
+                    writer.writeRow(oneRow);
+                    streamedRowCount++;
+                }
             }
 
         } catch (SQLException sqlException) {
+            // too late to push down once the column metas are written
+            if (streamStarted)
+                throw sqlException;
+
             Pair<List<List<String>>, List<SelectedColumnMeta>> r = null;
             try {
                 r = PushDownUtil.tryPushDownSelectQuery(sqlRequest.getProject(), correctedSql, conn.getSchema(),
@@ -875,11 +965,62 @@ public class QueryService extends BasicService {
             results = r.getFirst();
             columnMetas = r.getSecond();
 
+            if (writer != null) {
+                startStreaming(sqlRequest, columnMetas, null, writer);
+                for (List<String> row : results) {
+                    writer.writeRow(row);
+                }
+                streamedRowCount = results.size();
+                results = Lists.newArrayList();
+            }
+
         } finally {
             close(resultSet, stat, null); //conn is passed in, not my duty to close
         }
 
-        return buildSqlResponse(isPushDown, results, columnMetas);
+        SQLResponse response = buildSqlResponse(isPushDown, results, columnMetas);
+        response.setStreamedRowCount(streamedRowCount);
+        return response;
+    }
+
+    private void startStreaming(SQLRequest sqlRequest, List<SelectedColumnMeta> columnMetas, String realizations,
+            SQLResultWriter writer) throws IOException {
+        checkQueryAuth(new SQLResponse(columnMetas, null, realizations, 0, false, null), sqlRequest.getProject());
+        writer.writeColumnMetas(columnMetas);
+    }
+
+    /**
+     * Writes out a response whose results are already in memory, e.g. a faked or prepare only one.
+     */
+    private SQLResponse streamResults(SQLRequest sqlRequest, SQLResponse response, SQLResultWriter writer)
+            throws IOException {
+        if (response.getIsException())
+            return response;
+
+        startStreaming(sqlRequest, response.getColumnMetas(), response.getCube(), writer);
+        List<List<String>> results = response.getResults() == null ? Collections.<List<String>> emptyList()
+                : response.getResults();
+        for (List<String> row : results) {
+            writer.writeRow(row);
+        }
+        response.setStreamedRowCount(results.size());
+        response.setResults(Lists.<List<String>> newArrayList());
+        return response;
+    }
+
+    private String getQueriedRealizations() {
+        StringBuilder cubeSb = new StringBuilder();
+        if (OLAPContext.getThreadLocalContexts() != null) { // contexts can be null in case of 'explain plan for'
+            for (OLAPContext ctx : OLAPContext.getThreadLocalContexts()) {
+                if (ctx.realization != null) {
+                    if (cubeSb.length() > 0) {
+                        cubeSb.append(",");
+                    }
+                    cubeSb.append(ctx.realization.getCanonicalName());
+                }
+            }
+        }
+        return cubeSb.toString();
     }
 
     protected String makeErrorMsgUserFriendly(Throwable e) {
@@ -942,26 +1083,30 @@ public class QueryService extends BasicService {
             List<SelectedColumnMeta> columnMetas) {
 
         boolean isPartialResult = false;
-        StringBuilder cubeSb = new StringBuilder();
         StringBuilder logSb = new StringBuilder("Processed rows for each storageContext: ");
         if (OLAPContext.getThreadLocalContexts() != null) { // contexts can be null in case of 'explain plan for'
             for (OLAPContext ctx : OLAPContext.getThreadLocalContexts()) {
                 if (ctx.realization != null) {
                     isPartialResult |= ctx.storageContext.isPartialResultReturned();
-                    if (cubeSb.length() > 0) {
-                        cubeSb.append(",");
+                    logSb.append(ctx.storageContext.getProcessedRowCount());
+                    if (ctx.storageContext.getSegmentScanParallelism() > 1) {
+                        logSb.append(" (segment scan parallelism ")
+                                .append(ctx.storageContext.getSegmentScanParallelism()).append(")");
                     }
-                    cubeSb.append(ctx.realization.getCanonicalName());
-                    logSb.append(ctx.storageContext.getProcessedRowCount()).append(" ");
+                    logSb.append(" ");
                 }
             }
         }
         logger.info(logSb.toString());
 
-        SQLResponse response = new SQLResponse(columnMetas, results, cubeSb.toString(), 0, false, null, isPartialResult,
-                isPushDown);
+        SQLResponse response = new SQLResponse(columnMetas, results, getQueriedRealizations(), 0, false, null,
+                isPartialResult, isPushDown);
         response.setTotalScanCount(QueryContext.current().getScannedRows());
         response.setTotalScanBytes(QueryContext.current().getScannedBytes());
+        response.setPrunedSegmentCount(QueryContext.current().getPrunedSegments());
+        response.setHitShardCount(QueryContext.current().getHitShards());
+        response.setRpcQueueMillis(QueryContext.current().getRpcQueueMillis());
+        response.setRpcCallMillis(QueryContext.current().getRpcCallMillis());
         return response;
     }
 
@@ -60,10 +60,10 @@ public class QueryControllerTest extends ServiceTestBase {
         PrepareSqlRequest sqlRequest = new PrepareSqlRequest();
         sqlRequest.setSql("select * from not_exist_table");
         sqlRequest.setProject("default");
-        SQLResponse response1 = queryController.query(sqlRequest);
+        SQLResponse response1 = queryController.query(sqlRequest, null, null);
         Assert.assertEquals(false, response1.getIsException());
 
-        SQLResponse response2 = queryController.query(sqlRequest);
+        SQLResponse response2 = queryController.query(sqlRequest, null, null);
         Assert.assertEquals(false, response2.getIsException());
     }
 
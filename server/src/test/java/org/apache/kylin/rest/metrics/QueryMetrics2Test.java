@@ -64,6 +64,8 @@ public class QueryMetrics2Test extends ServiceTestBase {
         sqlResponse.setCube("test_cube");
         sqlResponse.setIsException(false);
         sqlResponse.setTotalScanCount(100);
+        sqlResponse.setRpcQueueMillis(3);
+        sqlResponse.setRpcCallMillis(7);
         List<String> list1 = new ArrayList<>();
         list1.add("111");
         list1.add("112");
@@ -111,6 +113,15 @@ public class QueryMetrics2Test extends ServiceTestBase {
         Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(10), queryLatencySnapshot.getMax(), 0);
         Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(10), queryLatencySnapshot.getMin(), 0);
 
+        Snapshot rpcQueueSnapshot = metrics
+                .getTimer(MetricsNameBuilder.buildMetricName(prefix, MetricsConstant.QUERY_RPC_QUEUE_DURATION))
+                .getSnapshot();
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(3), rpcQueueSnapshot.getMean(), 0);
+        Snapshot rpcCallSnapshot = metrics
+                .getTimer(MetricsNameBuilder.buildMetricName(prefix, MetricsConstant.QUERY_RPC_CALL_DURATION))
+                .getSnapshot();
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(7), rpcCallSnapshot.getMean(), 0);
+
         SQLResponse sqlResponse2 = new SQLResponse();
         sqlResponse2.setDuration(10);
         sqlResponse2.setCube("test_cube");
@@ -22,12 +22,14 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import javax.annotation.Nullable;
 
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
@@ -57,6 +59,7 @@ import org.apache.kylin.metadata.model.TableDesc;
 import org.apache.kylin.metadata.model.TblColRef;
 import org.apache.kylin.source.kafka.config.KafkaConfig;
 import org.apache.kylin.source.kafka.hadoop.KafkaFlatTableJob;
+import org.apache.kylin.source.kafka.hadoop.KafkaFlatTableRow;
 import org.apache.kylin.source.kafka.job.MergeOffsetStep;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -124,6 +127,13 @@ public class KafkaMRInput implements IMRInput {
 
         @Override
         public Collection<String[]> parseMapperInput(Object mapperInput) {
+            // rows parsed by the flat table job
+            if (mapperInput instanceof BytesWritable) {
+                BytesWritable row = (BytesWritable) mapperInput;
+                return Collections.singletonList(KafkaFlatTableRow.decode(row.getBytes(), 0, row.getLength()));
+            }
+
+            // raw messages, of the flat tables saved before the job parses the messages
             Text text = (Text) mapperInput;
             ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(), 0, text.getLength());
             List<StreamingMessageRow>  streamingMessageRowList = streamingParser.parse(buffer);
@@ -25,6 +25,7 @@ import java.util.Map;
 import org.apache.commons.cli.Options;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
@@ -62,6 +63,9 @@ public class KafkaFlatTableJob extends AbstractHadoopJob {
     public static final String CONFIG_KAFKA_CONSUMER_GROUP = "kafka.consumer.group";
     public static final String CONFIG_KAFKA_INPUT_FORMAT = "input.format";
     public static final String CONFIG_KAFKA_PARSER_NAME = "kafka.parser.name";
+    public static final String CONFIG_KAFKA_PARSER_PROPERTIES = "kafka.parser.properties";
+    public static final String CONFIG_KAFKA_PARTITIONS_PER_SPLIT = "kafka.partitions.per.split";
+    public static final String CONFIG_KAFKA_FETCH_QUEUE_SIZE = "kafka.fetch.queue.size";
 
     @Override
     public int run(String[] args) throws Exception {
@@ -110,8 +114,13 @@ public class KafkaFlatTableJob extends AbstractHadoopJob {
             job.getConfiguration().set(CONFIG_KAFKA_TIMEOUT, String.valueOf(kafkaConfig.getTimeout()));
             job.getConfiguration().set(CONFIG_KAFKA_INPUT_FORMAT, "json");
             job.getConfiguration().set(CONFIG_KAFKA_PARSER_NAME, kafkaConfig.getParserName());
+            job.getConfiguration().set(CONFIG_KAFKA_PARSER_PROPERTIES, kafkaConfig.getAllParserProperties());
+            job.getConfiguration().setInt(CONFIG_KAFKA_PARTITIONS_PER_SPLIT, cube.getConfig().getKafkaPartitionsPerSplit());
+            job.getConfiguration().setInt(CONFIG_KAFKA_FETCH_QUEUE_SIZE, cube.getConfig().getKafkaFetchQueueSize());
             job.getConfiguration().set(CONFIG_KAFKA_CONSUMER_GROUP, cubeName); // use cubeName as consumer group name
             setupMapper(cube.getSegmentById(segmentId));
+            // the messages are parsed into flat table rows in the mappers
+            attachCubeMetadata(cube, job.getConfiguration());
             job.setNumReduceTasks(0);
             FileOutputFormat.setOutputPath(job, output);
             FileOutputFormat.setCompressOutput(job, true);
@@ -151,7 +160,7 @@ public class KafkaFlatTableJob extends AbstractHadoopJob {
         job.setMapperClass(KafkaFlatTableMapper.class);
         job.setInputFormatClass(KafkaInputFormat.class);
         job.setOutputKeyClass(Text.class);
-        job.setOutputValueClass(Text.class);
+        job.setOutputValueClass(BytesWritable.class);
         job.setOutputFormatClass(SequenceFileOutputFormat.class);
         job.setNumReduceTasks(0);
     }
@@ -27,10 +27,12 @@ import org.apache.hadoop.io.Text;
 import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.engine.mr.KylinMapper;
 
-public class KafkaFlatTableMapper extends KylinMapper<LongWritable, BytesWritable, Text, Text> {
+/**
+ * Writes the rows parsed by {@link KafkaInputRecordReader} to the flat table, keyed by the offsets of the messages.
+ */
+public class KafkaFlatTableMapper extends KylinMapper<LongWritable, BytesWritable, Text, BytesWritable> {
 
     private Text outKey = new Text();
-    private Text outValue = new Text();
 
     @Override
     protected void doSetup(Context context) throws IOException {
@@ -41,7 +43,6 @@ public class KafkaFlatTableMapper extends KylinMapper<LongWritable, BytesWritabl
     @Override
     public void doMap(LongWritable key, BytesWritable value, Context context) throws IOException, InterruptedException {
         outKey.set(Bytes.toBytes(key.get()));
-        outValue.set(value.getBytes(), 0, value.getLength());
-        context.write(outKey, outValue);
+        context.write(outKey, value);
     }
 }
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.source.kafka.hadoop;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * The encoding of a parsed row in the Kafka flat table: the column count, then each column value as a string,
+ * nulls kept.
+ */
+public class KafkaFlatTableRow {
+
+    public static byte[] encode(List<String> row) {
+        DataOutputBuffer out = new DataOutputBuffer();
+        try {
+            WritableUtils.writeVInt(out, row.size());
+            for (String value : row) {
+                WritableUtils.writeString(out, value);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e); // never happen
+        }
+        byte[] result = new byte[out.getLength()];
+        System.arraycopy(out.getData(), 0, result, 0, out.getLength());
+        return result;
+    }
+
+    public static String[] decode(byte[] bytes, int offset, int length) {
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(bytes, offset, length);
+        try {
+            String[] row = new String[WritableUtils.readVInt(in)];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = WritableUtils.readString(in);
+            }
+            return row;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid row of Kafka flat table", e);
+        }
+    }
+}
@@ -20,6 +20,8 @@ package org.apache.kylin.source.kafka.hadoop;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -68,7 +70,7 @@ public class KafkaInputFormat extends InputFormat<LongWritable, BytesWritable> {
         }
 
         Properties kafkaProperties = KafkaConsumerProperties.extractKafkaConfigToProperties(conf);
-        final List<InputSplit> splits = new ArrayList<InputSplit>();
+        final List<KafkaInputSplit> partitionSplits = new ArrayList<KafkaInputSplit>();
         try (KafkaConsumer<String, String> consumer = KafkaClient.getKafkaConsumer(brokers, consumerGroup, kafkaProperties)) {
             final List<PartitionInfo> partitionInfos = consumer.partitionsFor(inputTopic);
             Preconditions.checkArgument(partitionInfos.size() == startOffsetMap.size(), "partition number mismatch with server side");
@@ -80,11 +82,62 @@ public class KafkaInputFormat extends InputFormat<LongWritable, BytesWritable> {
                 }
 
                 if (endOffsetMap.get(partitionId) > startOffsetMap.get(partitionId)) {
-                    InputSplit split = new KafkaInputSplit(brokers, inputTopic, partitionId, startOffsetMap.get(partitionId), endOffsetMap.get(partitionId));
-                    splits.add(split);
+                    partitionSplits.add(new KafkaInputSplit(brokers, inputTopic, partitionId, startOffsetMap.get(partitionId), endOffsetMap.get(partitionId)));
                 }
             }
         }
+
+        int partitionsPerSplit = conf.getInt(KafkaFlatTableJob.CONFIG_KAFKA_PARTITIONS_PER_SPLIT, 1);
+        return new ArrayList<InputSplit>(groupPartitions(partitionSplits, partitionsPerSplit));
+    }
+
+    /**
+     * Groups single partition splits into splits of at most the given number of partitions. The partitions of most
+     * messages are placed first, each to the split of least messages so far, so that the mappers get similar loads.
+     */
+    static List<KafkaInputSplit> groupPartitions(List<KafkaInputSplit> partitionSplits, int partitionsPerSplit) {
+        if (partitionsPerSplit <= 1 || partitionSplits.size() <= 1) {
+            return partitionSplits;
+        }
+
+        List<KafkaInputSplit> sorted = new ArrayList<KafkaInputSplit>(partitionSplits);
+        Collections.sort(sorted, new Comparator<KafkaInputSplit>() {
+            @Override
+            public int compare(KafkaInputSplit a, KafkaInputSplit b) {
+                return Long.compare(b.getMessageCount(), a.getMessageCount());
+            }
+        });
+
+        int splitCount = (sorted.size() + partitionsPerSplit - 1) / partitionsPerSplit;
+        List<List<KafkaInputSplit>> groups = new ArrayList<List<KafkaInputSplit>>(splitCount);
+        long[] groupMessages = new long[splitCount];
+        for (int i = 0; i < splitCount; i++) {
+            groups.add(new ArrayList<KafkaInputSplit>(partitionsPerSplit));
+        }
+        for (KafkaInputSplit partitionSplit : sorted) {
+            int target = -1;
+            for (int i = 0; i < splitCount; i++) {
+                if (groups.get(i).size() < partitionsPerSplit && (target < 0 || groupMessages[i] < groupMessages[target])) {
+                    target = i;
+                }
+            }
+            groups.get(target).add(partitionSplit);
+            groupMessages[target] += partitionSplit.getMessageCount();
+        }
+
+        List<KafkaInputSplit> splits = new ArrayList<KafkaInputSplit>(splitCount);
+        for (List<KafkaInputSplit> group : groups) {
+            int[] partitions = new int[group.size()];
+            long[] offsetStarts = new long[group.size()];
+            long[] offsetEnds = new long[group.size()];
+            for (int i = 0; i < group.size(); i++) {
+                partitions[i] = group.get(i).getPartition(0);
+                offsetStarts[i] = group.get(i).getOffsetStart(0);
+                offsetEnds[i] = group.get(i).getOffsetEnd(0);
+            }
+            KafkaInputSplit first = group.get(0);
+            splits.add(new KafkaInputSplit(first.getBrokers(), first.getTopic(), partitions, offsetStarts, offsetEnds));
+        }
         return splits;
     }
 
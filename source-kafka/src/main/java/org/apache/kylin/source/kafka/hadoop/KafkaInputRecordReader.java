@@ -19,13 +19,23 @@
 package org.apache.kylin.source.kafka.hadoop;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.CounterGroup;
+import org.apache.hadoop.mapreduce.Counters;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
@@ -33,69 +43,147 @@ import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.common.util.DaemonThreadFactory;
+import org.apache.kylin.common.util.StreamingMessageRow;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.model.CubeJoinedFlatTableDesc;
+import org.apache.kylin.engine.mr.common.AbstractHadoopJob;
+import org.apache.kylin.engine.mr.common.BatchConstants;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.source.kafka.StreamingParser;
 import org.apache.kylin.source.kafka.config.KafkaConsumerProperties;
+import org.apache.kylin.source.kafka.util.KafkaClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
+
 /**
  * Convert Kafka topic to Hadoop InputFormat
  * Modified from the kafka-hadoop-loader in https://github.com/amient/kafka-hadoop-loader
+ *
+ * The partitions of a split are fetched in parallel, one thread and one consumer for each. A fetch thread parses the
+ * messages of each poll with the streaming parser of the topic, and hands them over as a batch of flat table rows,
+ * encoded by {@link KafkaFlatTableRow}. The batches wait in a bounded queue, so the fetch threads pause when the
+ * mapper falls behind. The key of a row is the offset of its message.
+ *
+ * The fetch statistics of each partition are reported as job counters when the reader is closed.
  */
 public class KafkaInputRecordReader extends RecordReader<LongWritable, BytesWritable> {
 
     static Logger log = LoggerFactory.getLogger(KafkaInputRecordReader.class);
 
     public static final long DEFAULT_KAFKA_CONSUMER_POLL_TIMEOUT = 60000;
+    public static final int DEFAULT_KAFKA_FETCH_QUEUE_SIZE = 16;
+
+    public static final String COUNTER_GROUP_NAME = "Kafka Input";
+    // partitions above it are counted only in the totals, to stay within the counter limit of a job
+    static final int MAX_PARTITION_COUNTERS = 32;
+
+    /** Creates the consumer of a partition. */
+    interface ConsumerFactory {
+        Consumer<String, String> create(String brokers, String consumerGroup, Properties kafkaProperties);
+    }
+
+    static final ConsumerFactory KAFKA_CONSUMER_FACTORY = new ConsumerFactory() {
+        @SuppressWarnings("unchecked")
+        @Override
+        public Consumer<String, String> create(String brokers, String consumerGroup, Properties kafkaProperties) {
+            return KafkaClient.getKafkaConsumer(brokers, consumerGroup, kafkaProperties);
+        }
+    };
 
-    private Configuration conf;
+    private final ConsumerFactory consumerFactory;
+    private final Counters counters = new Counters();
+    private TaskAttemptContext context;
 
     private KafkaInputSplit split;
-    private Consumer consumer;
-    private String brokers;
     private String topic;
 
-    private int partition;
-    private long earliestOffset;
-    private long watermark;
-    private long latestOffset;
+    // the offset before which all messages have been passed to the mapper, for each partition of the split
+    private AtomicLongArray watermarks;
+    private long totalMessages;
 
-    private ConsumerRecords<String, String> messages;
-    private Iterator<ConsumerRecord<String, String>> iterator;
+    private ExecutorService fetchPool;
+    private BlockingQueue<Batch> batchQueue;
+    private PartitionFetcher[] fetchers;
+    private int runningFetchers;
+
+    private Batch batch;
+    private int batchPos;
     private LongWritable key;
     private BytesWritable value;
 
     private long timeOut = DEFAULT_KAFKA_CONSUMER_POLL_TIMEOUT;
 
-    private long numProcessedMessages = 0L;
+    private long numProcessedRows = 0L;
+
+    public KafkaInputRecordReader() {
+        this(KAFKA_CONSUMER_FACTORY);
+    }
+
+    KafkaInputRecordReader(ConsumerFactory consumerFactory) {
+        this.consumerFactory = consumerFactory;
+    }
 
     @Override
     public void initialize(InputSplit split, TaskAttemptContext context) throws IOException, InterruptedException {
+        this.context = context;
         initialize(split, context.getConfiguration());
     }
 
     public void initialize(InputSplit split, Configuration conf) throws IOException, InterruptedException {
-        this.conf = conf;
-        this.split = (KafkaInputSplit) split;
-        brokers = this.split.getBrokers();
-        topic = this.split.getTopic();
-        partition = this.split.getPartition();
-        watermark = this.split.getOffsetStart();
-
+        KafkaInputSplit kafkaSplit = (KafkaInputSplit) split;
+        long timeOut = DEFAULT_KAFKA_CONSUMER_POLL_TIMEOUT;
         if (conf.get(KafkaFlatTableJob.CONFIG_KAFKA_TIMEOUT) != null) {
             timeOut = Long.parseLong(conf.get(KafkaFlatTableJob.CONFIG_KAFKA_TIMEOUT));
         }
         String consumerGroup = conf.get(KafkaFlatTableJob.CONFIG_KAFKA_CONSUMER_GROUP);
-
         Properties kafkaProperties = KafkaConsumerProperties.extractKafkaConfigToProperties(conf);
 
-        consumer = org.apache.kylin.source.kafka.util.KafkaClient.getKafkaConsumer(brokers, consumerGroup, kafkaProperties);
+        KylinConfig config = AbstractHadoopJob.loadKylinPropsAndMetadata();
+        CubeSegment segment = CubeManager.getInstance(config).getCube(conf.get(BatchConstants.CFG_CUBE_NAME)).getSegmentById(conf.get(BatchConstants.CFG_CUBE_SEGMENT_ID));
+        List<TblColRef> columns = new CubeJoinedFlatTableDesc(segment).getAllColumns();
+        String parserName = conf.get(KafkaFlatTableJob.CONFIG_KAFKA_PARSER_NAME);
+        String parserProperties = conf.get(KafkaFlatTableJob.CONFIG_KAFKA_PARSER_PROPERTIES);
+
+        // a parser for each fetch thread
+        StreamingParser[] parsers = new StreamingParser[kafkaSplit.getPartitionCount()];
+        for (int i = 0; i < parsers.length; i++) {
+            try {
+                parsers[i] = StreamingParser.getStreamingParser(parserName, parserProperties, columns);
+            } catch (ReflectiveOperationException e) {
+                throw new IOException(e);
+            }
+        }
+
+        start(kafkaSplit, consumerGroup, kafkaProperties, parsers, conf.getInt(KafkaFlatTableJob.CONFIG_KAFKA_FETCH_QUEUE_SIZE, DEFAULT_KAFKA_FETCH_QUEUE_SIZE), timeOut);
+    }
 
-        earliestOffset = this.split.getOffsetStart();
-        latestOffset = this.split.getOffsetEnd();
-        TopicPartition topicPartition = new TopicPartition(topic, partition);
-        consumer.assign(Arrays.asList(topicPartition));
-        log.info("Split {} Topic: {} Broker: {} Partition: {} Start: {} End: {}", new Object[] { this.split, topic, this.split.getBrokers(), partition, earliestOffset, latestOffset });
+    void start(KafkaInputSplit split, String consumerGroup, Properties kafkaProperties, StreamingParser[] parsers, int queueSize, long timeOut) {
+        this.split = split;
+        this.topic = split.getTopic();
+        this.timeOut = timeOut;
+
+        int partitionCount = split.getPartitionCount();
+        watermarks = new AtomicLongArray(partitionCount);
+        fetchers = new PartitionFetcher[partitionCount];
+        batchQueue = new ArrayBlockingQueue<>(queueSize);
+        for (int i = 0; i < partitionCount; i++) {
+            watermarks.set(i, split.getOffsetStart(i));
+            totalMessages += split.getOffsetEnd(i) - split.getOffsetStart(i);
+            fetchers[i] = new PartitionFetcher(i, consumerGroup, kafkaProperties, parsers[i]);
+        }
+
+        log.info("Split {} Topic: {} Broker: {} Partitions: {}", new Object[] { split, topic, split.getBrokers(), partitionCount });
+        fetchPool = Executors.newFixedThreadPool(partitionCount, new DaemonThreadFactory());
+        for (PartitionFetcher fetcher : fetchers) {
+            fetchPool.submit(fetcher);
+        }
+        runningFetchers = partitionCount;
     }
 
     @Override
@@ -107,39 +195,35 @@ public class KafkaInputRecordReader extends RecordReader<LongWritable, BytesWrit
             value = new BytesWritable();
         }
 
-        if (watermark >= latestOffset) {
-            log.info("Reach the end offset, stop reading.");
-            return false;
-        }
-
-        if (messages == null) {
-            log.info("{} fetching offset {} ", topic + ":" + split.getBrokers() + ":" + partition, watermark);
-            TopicPartition topicPartition = new TopicPartition(topic, partition);
-            consumer.seek(topicPartition, watermark);
-            messages = consumer.poll(timeOut);
-            iterator = messages.iterator();
-            if (!iterator.hasNext()) {
-                log.info("No more messages, stop");
-                throw new IOException(String.format("Unexpected ending of stream, expected ending offset %d, but end at %d", latestOffset, watermark));
+        while (batch == null || batchPos >= batch.rows.size()) {
+            if (batch != null) {
+                // all rows of the batch are passed to the mapper, commit its offset
+                watermarks.set(batch.index, batch.watermark);
+                batch = null;
+            }
+            if (runningFetchers == 0) {
+                log.info("Reach the end offset of all partitions, stop reading.");
+                return false;
             }
-        }
 
-        if (iterator.hasNext()) {
-            ConsumerRecord<String, String> message = iterator.next();
-            key.set(message.offset());
-            byte[] valuebytes = Bytes.toBytes(message.value());
-            value.set(valuebytes, 0, valuebytes.length);
-            watermark = message.offset() + 1;
-            numProcessedMessages++;
-            if (!iterator.hasNext()) {
-                messages = null;
-                iterator = null;
+            Batch next = batchQueue.take();
+            if (next.error != null) {
+                throw new IOException("Failed to fetch partition " + split.getPartition(next.index) + " of topic " + topic, next.error);
             }
-            return true;
+            if (next.end) {
+                runningFetchers--;
+                continue;
+            }
+            batch = next;
+            batchPos = 0;
         }
 
-        log.error("Unexpected iterator end.");
-        throw new IOException(String.format("Unexpected ending of stream, expected ending offset %d, but end at %d", latestOffset, watermark));
+        key.set(batch.offsets.get(batchPos));
+        byte[] row = batch.rows.get(batchPos);
+        value.set(row, 0, row.length);
+        batchPos++;
+        numProcessedRows++;
+        return true;
     }
 
     @Override
@@ -154,16 +238,189 @@ public class KafkaInputRecordReader extends RecordReader<LongWritable, BytesWrit
 
     @Override
     public float getProgress() throws IOException, InterruptedException {
-        if (watermark >= latestOffset || earliestOffset == latestOffset) {
+        if (totalMessages == 0) {
             return 1.0f;
         }
-        return Math.min(1.0f, (watermark - earliestOffset) / (float) (latestOffset - earliestOffset));
+        long fetched = 0;
+        for (int i = 0; i < watermarks.length(); i++) {
+            fetched += watermarks.get(i) - split.getOffsetStart(i);
+        }
+        return Math.min(1.0f, fetched / (float) totalMessages);
     }
 
     @Override
     public void close() throws IOException {
-        log.info("{} num. processed messages {} ", topic + ":" + split.getBrokers() + ":" + partition, numProcessedMessages);
-        consumer.close();
+        if (fetchPool == null) {
+            return;
+        }
+
+        fetchPool.shutdownNow();
+        try {
+            fetchPool.awaitTermination(timeOut, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        fetchPool = null;
+
+        for (PartitionFetcher fetcher : fetchers) {
+            fetcher.logStats();
+            fetcher.count(counters);
+        }
+        if (context != null) {
+            for (CounterGroup group : counters) {
+                for (Counter counter : group) {
+                    context.getCounter(group.getName(), counter.getName()).increment(counter.getValue());
+                }
+            }
+        }
+        log.info("{} num. processed rows {} ", topic + ":" + split.getBrokers(), numProcessedRows);
+    }
+
+    /** The fetch statistics, filled when the reader is closed. */
+    Counters getCounters() {
+        return counters;
+    }
+
+    /**
+     * The rows parsed from one poll of a partition, or the end or the failure of the partition.
+     */
+    private static class Batch {
+        final int index;
+        final List<Long> offsets;
+        final List<byte[]> rows;
+        final boolean end;
+        final Throwable error;
+        long watermark;
+
+        Batch(int index, int capacity) {
+            this(index, Lists.<Long> newArrayListWithCapacity(capacity), Lists.<byte[]> newArrayListWithCapacity(capacity), false, null);
+        }
+
+        private Batch(int index, List<Long> offsets, List<byte[]> rows, boolean end, Throwable error) {
+            this.index = index;
+            this.offsets = offsets;
+            this.rows = rows;
+            this.end = end;
+            this.error = error;
+        }
+
+        static Batch endOf(int index) {
+            return new Batch(index, null, null, true, null);
+        }
+
+        static Batch failureOf(int index, Throwable error) {
+            return new Batch(index, null, null, true, error);
+        }
     }
 
+    private class PartitionFetcher implements Runnable {
+        final int index;
+        final String consumerGroup;
+        final Properties kafkaProperties;
+        final StreamingParser parser;
+
+        // written by the fetch thread, read after the thread ends
+        volatile long numMessages;
+        volatile long numRows;
+        volatile long numBytes;
+        volatile long pollMillis;
+        volatile long parseMillis;
+        volatile long waitMillis;
+        volatile long startTime;
+        volatile long endTime;
+
+        PartitionFetcher(int index, String consumerGroup, Properties kafkaProperties, StreamingParser parser) {
+            this.index = index;
+            this.consumerGroup = consumerGroup;
+            this.kafkaProperties = kafkaProperties;
+            this.parser = parser;
+        }
+
+        @Override
+        public void run() {
+            startTime = System.currentTimeMillis();
+            int partition = split.getPartition(index);
+            long watermark = split.getOffsetStart(index);
+            long latestOffset = split.getOffsetEnd(index);
+            Consumer<String, String> consumer = null;
+            try {
+                consumer = consumerFactory.create(split.getBrokers(), consumerGroup, kafkaProperties);
+                TopicPartition topicPartition = new TopicPartition(topic, partition);
+                consumer.assign(Arrays.asList(topicPartition));
+                consumer.seek(topicPartition, watermark);
+                log.info("{} fetching offset {} to {}", topic + ":" + split.getBrokers() + ":" + partition, watermark, latestOffset);
+
+                while (watermark < latestOffset) {
+                    long t = System.currentTimeMillis();
+                    ConsumerRecords<String, String> messages = consumer.poll(timeOut);
+                    pollMillis += System.currentTimeMillis() - t;
+                    if (messages.isEmpty()) {
+                        throw new IOException(String.format("Unexpected ending of stream, expected ending offset %d, but end at %d", latestOffset, watermark));
+                    }
+
+                    t = System.currentTimeMillis();
+                    Batch batch = new Batch(index, messages.count());
+                    for (ConsumerRecord<String, String> message : messages) {
+                        if (message.offset() >= latestOffset) {
+                            break;
+                        }
+                        byte[] valueBytes = Bytes.toBytes(message.value());
+                        for (StreamingMessageRow row : parser.parse(ByteBuffer.wrap(valueBytes))) {
+                            batch.offsets.add(message.offset());
+                            batch.rows.add(KafkaFlatTableRow.encode(row.getData()));
+                        }
+                        watermark = message.offset() + 1;
+                        numMessages++;
+                        numBytes += valueBytes.length;
+                    }
+                    batch.watermark = watermark;
+                    numRows += batch.rows.size();
+                    parseMillis += System.currentTimeMillis() - t;
+
+                    t = System.currentTimeMillis();
+                    batchQueue.put(batch);
+                    waitMillis += System.currentTimeMillis() - t;
+                }
+                batchQueue.put(Batch.endOf(index));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt(); // the reader is closed
+            } catch (Throwable e) {
+                log.error("Error when fetching " + topic + ":" + partition, e);
+                try {
+                    batchQueue.put(Batch.failureOf(index, e));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            } finally {
+                endTime = System.currentTimeMillis();
+                if (consumer != null) {
+                    consumer.close();
+                }
+            }
+        }
+
+        void logStats() {
+            long millis = Math.max(1, (endTime > 0 ? endTime : System.currentTimeMillis()) - startTime);
+            log.info("{} fetched {} messages, {} rows, {} bytes in {} ms, {} messages/s, {} KB/s; poll {} ms, parse {} ms, wait for mapper {} ms", //
+                    new Object[] { topic + ":" + split.getPartition(index), numMessages, numRows, numBytes, millis, numMessages * 1000 / millis, numBytes * 1000 / 1024 / millis, pollMillis, parseMillis, waitMillis });
+        }
+
+        void count(Counters counters) {
+            // a fetcher may not have started when the reader is closed early
+            long millis = startTime == 0 ? 0 : (endTime > 0 ? endTime : System.currentTimeMillis()) - startTime;
+            int partition = split.getPartition(index);
+            if (partition < MAX_PARTITION_COUNTERS) {
+                // the throughput of a partition is its messages or bytes divided by its fetch time
+                counters.findCounter(COUNTER_GROUP_NAME, "Partition " + partition + " messages").increment(numMessages);
+                counters.findCounter(COUNTER_GROUP_NAME, "Partition " + partition + " bytes").increment(numBytes);
+                counters.findCounter(COUNTER_GROUP_NAME, "Partition " + partition + " fetch ms").increment(millis);
+            }
+            counters.findCounter(COUNTER_GROUP_NAME, "Messages").increment(numMessages);
+            counters.findCounter(COUNTER_GROUP_NAME, "Rows").increment(numRows);
+            counters.findCounter(COUNTER_GROUP_NAME, "Bytes").increment(numBytes);
+            counters.findCounter(COUNTER_GROUP_NAME, "Poll ms").increment(pollMillis);
+            counters.findCounter(COUNTER_GROUP_NAME, "Parse ms").increment(parseMillis);
+            counters.findCounter(COUNTER_GROUP_NAME, "Wait for mapper ms").increment(waitMillis);
+        }
+    }
 }
@@ -29,40 +29,55 @@ import org.apache.hadoop.mapreduce.InputSplit;
 /**
  * Convert Kafka topic to Hadoop InputFormat
  * Modified from the kafka-hadoop-loader in https://github.com/amient/kafka-hadoop-loader
+ *
+ * A split covers the offset ranges of one or more partitions of the topic.
  */
 public class KafkaInputSplit extends InputSplit implements Writable {
 
     private String brokers;
     private String topic;
-    private int partition;
-    private long offsetStart;
-    private long offsetEnd;
+    private int[] partitions;
+    private long[] offsetStarts;
+    private long[] offsetEnds;
 
     public KafkaInputSplit() {
     }
 
     public KafkaInputSplit(String brokers, String topic, int partition, long offsetStart, long offsetEnd) {
+        this(brokers, topic, new int[] { partition }, new long[] { offsetStart }, new long[] { offsetEnd });
+    }
+
+    public KafkaInputSplit(String brokers, String topic, int[] partitions, long[] offsetStarts, long[] offsetEnds) {
         this.brokers = brokers;
         this.topic = topic;
-        this.partition = partition;
-        this.offsetStart = offsetStart;
-        this.offsetEnd = offsetEnd;
+        this.partitions = partitions;
+        this.offsetStarts = offsetStarts;
+        this.offsetEnds = offsetEnds;
     }
 
     public void readFields(DataInput in) throws IOException {
         brokers = Text.readString(in);
         topic = Text.readString(in);
-        partition = in.readInt();
-        offsetStart = in.readLong();
-        offsetEnd = in.readLong();
+        int count = in.readInt();
+        partitions = new int[count];
+        offsetStarts = new long[count];
+        offsetEnds = new long[count];
+        for (int i = 0; i < count; i++) {
+            partitions[i] = in.readInt();
+            offsetStarts[i] = in.readLong();
+            offsetEnds[i] = in.readLong();
+        }
     }
 
     public void write(DataOutput out) throws IOException {
         Text.writeString(out, brokers);
         Text.writeString(out, topic);
-        out.writeInt(partition);
-        out.writeLong(offsetStart);
-        out.writeLong(offsetEnd);
+        out.writeInt(partitions.length);
+        for (int i = 0; i < partitions.length; i++) {
+            out.writeInt(partitions[i]);
+            out.writeLong(offsetStarts[i]);
+            out.writeLong(offsetEnds[i]);
+        }
     }
 
     @Override
@@ -75,8 +90,20 @@ public class KafkaInputSplit extends InputSplit implements Writable {
         return new String[]{brokers};
     }
 
-    public int getPartition() {
-        return partition;
+    public int getPartitionCount() {
+        return partitions.length;
+    }
+
+    public int getPartition(int i) {
+        return partitions[i];
+    }
+
+    public long getOffsetStart(int i) {
+        return offsetStarts[i];
+    }
+
+    public long getOffsetEnd(int i) {
+        return offsetEnds[i];
     }
 
     public String getTopic() {
@@ -87,16 +114,23 @@ public class KafkaInputSplit extends InputSplit implements Writable {
         return brokers;
     }
 
-    public long getOffsetStart() {
-        return offsetStart;
-    }
-
-    public long getOffsetEnd() {
-        return offsetEnd;
+    /**
+     * @return the number of messages in the split
+     */
+    public long getMessageCount() {
+        long count = 0;
+        for (int i = 0; i < partitions.length; i++) {
+            count += offsetEnds[i] - offsetStarts[i];
+        }
+        return count;
     }
 
     @Override
     public String toString() {
-        return brokers + "-" + topic + "-" + partition + "-" + offsetStart + "-" + offsetEnd;
+        StringBuilder sb = new StringBuilder(brokers).append("-").append(topic);
+        for (int i = 0; i < partitions.length; i++) {
+            sb.append(i == 0 ? "-" : ",").append(partitions[i]).append(":").append(offsetStarts[i]).append("-").append(offsetEnds[i]);
+        }
+        return sb.toString();
     }
 }
\ No newline at end of file
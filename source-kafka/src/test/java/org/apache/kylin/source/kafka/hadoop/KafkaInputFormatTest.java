@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.source.kafka.hadoop;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.Test;
+
+public class KafkaInputFormatTest {
+
+    @Test
+    public void testGroupPartitions() {
+        long[] messages = { 100, 10, 80, 30, 50, 60, 20 };
+        List<KafkaInputSplit> partitionSplits = new ArrayList<>();
+        for (int i = 0; i < messages.length; i++) {
+            partitionSplits.add(new KafkaInputSplit("broker", "topic", i, 1000, 1000 + messages[i]));
+        }
+
+        assertEquals(partitionSplits, KafkaInputFormat.groupPartitions(partitionSplits, 1));
+
+        List<KafkaInputSplit> splits = KafkaInputFormat.groupPartitions(partitionSplits, 3);
+        assertEquals(3, splits.size());
+        boolean[] seen = new boolean[messages.length];
+        long total = 0;
+        for (KafkaInputSplit split : splits) {
+            assertTrue(split.getPartitionCount() <= 3);
+            for (int i = 0; i < split.getPartitionCount(); i++) {
+                int partition = split.getPartition(i);
+                assertFalse(seen[partition]);
+                seen[partition] = true;
+                assertEquals(1000, split.getOffsetStart(i));
+                assertEquals(1000 + messages[partition], split.getOffsetEnd(i));
+            }
+            total += split.getMessageCount();
+        }
+        assertEquals(350, total);
+        // largest first to the least loaded: {100, 20}, {80, 30, 10}, {60, 50}
+        for (KafkaInputSplit split : splits) {
+            assertTrue(split.getMessageCount() >= 110 && split.getMessageCount() <= 120);
+        }
+    }
+
+    @Test
+    public void testSplitSerialization() throws IOException {
+        KafkaInputSplit split = new KafkaInputSplit("broker", "topic", new int[] { 3, 1 }, new long[] { 10, 20 }, new long[] { 15, 40 });
+        DataOutputBuffer out = new DataOutputBuffer();
+        split.write(out);
+
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(out.getData(), out.getLength());
+        KafkaInputSplit read = new KafkaInputSplit();
+        read.readFields(in);
+
+        assertEquals(split.toString(), read.toString());
+        assertEquals(2, read.getPartitionCount());
+        assertEquals(1, read.getPartition(1));
+        assertEquals(20, read.getOffsetStart(1));
+        assertEquals(40, read.getOffsetEnd(1));
+        assertEquals(25, read.getMessageCount());
+    }
+
+    @Test
+    public void testFlatTableRow() {
+        List<String> row = Arrays.asList("2017-01-01", null, "", "\u4e2d\u6587");
+        byte[] bytes = KafkaFlatTableRow.encode(row);
+        byte[] padded = new byte[bytes.length + 2];
+        System.arraycopy(bytes, 0, padded, 1, bytes.length);
+        assertArrayEquals(row.toArray(new String[row.size()]), KafkaFlatTableRow.decode(padded, 1, bytes.length));
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.source.kafka.hadoop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.common.util.StreamingMessageRow;
+import org.apache.kylin.source.kafka.StreamingParser;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+public class KafkaInputRecordReaderTest {
+
+    private static final String TOPIC = "topic";
+    private static final long TIMEOUT = 30000;
+
+    @Test
+    public void testReadPartitionsInParallel() throws Exception {
+        KafkaInputSplit split = new KafkaInputSplit("broker", TOPIC, new int[] { 3, 1 }, new long[] { 10, 20 }, new long[] { 17, 25 });
+        // messages beyond the end offsets are not read
+        MockConsumerFactory factory = new MockConsumerFactory(2, ImmutableMap.of(3, 19L, 1, 27L));
+        KafkaInputRecordReader reader = new KafkaInputRecordReader(factory);
+        // a queue of one batch, the fetchers wait for the mapper
+        reader.start(split, "group", new Properties(), parsers(2), 1, TIMEOUT);
+
+        assertEquals(0f, reader.getProgress(), 0f);
+        Map<Integer, List<Long>> offsets = Maps.newHashMap();
+        float progress = 0f;
+        while (reader.nextKeyValue()) {
+            String[] row = KafkaFlatTableRow.decode(reader.getCurrentValue().getBytes(), 0, reader.getCurrentValue().getLength());
+            int partition = Integer.parseInt(row[0]);
+            long offset = Long.parseLong(row[1]);
+            assertEquals(offset, reader.getCurrentKey().get());
+            if (!offsets.containsKey(partition)) {
+                offsets.put(partition, Lists.<Long> newArrayList());
+            }
+            offsets.get(partition).add(offset);
+
+            assertTrue(reader.getProgress() >= progress);
+            progress = reader.getProgress();
+        }
+        assertFalse(reader.nextKeyValue());
+        assertEquals(1f, reader.getProgress(), 0f);
+        assertEquals(Lists.newArrayList(10L, 11L, 12L, 13L, 14L, 15L, 16L), offsets.get(3));
+        assertEquals(Lists.newArrayList(20L, 21L, 22L, 23L, 24L), offsets.get(1));
+
+        reader.close();
+        assertEquals(2, factory.consumers.size());
+        for (MockConsumer<String, String> consumer : factory.consumers) {
+            assertTrue(consumer.closed());
+        }
+        assertEquals(12, counter(reader, "Messages"));
+        assertEquals(12, counter(reader, "Rows"));
+        assertEquals(7, counter(reader, "Partition 3 messages"));
+        assertEquals(5, counter(reader, "Partition 1 messages"));
+        assertTrue(counter(reader, "Partition 3 bytes") > 0);
+    }
+
+    @Test
+    public void testPartitionFailure() throws Exception {
+        KafkaInputSplit split = new KafkaInputSplit("broker", TOPIC, 0, 0, 10);
+        // the stream ends before the end offset of the split
+        MockConsumerFactory factory = new MockConsumerFactory(3, ImmutableMap.of(0, 6L));
+        KafkaInputRecordReader reader = new KafkaInputRecordReader(factory);
+        reader.start(split, "group", new Properties(), parsers(1), 1, TIMEOUT);
+
+        int rows = 0;
+        try {
+            while (reader.nextKeyValue()) {
+                rows++;
+            }
+            fail("the stream ends before offset 10");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("partition 0"));
+        }
+        assertEquals(6, rows);
+        // only the messages passed to the mapper are counted
+        assertEquals(0.6f, reader.getProgress(), 0.001f);
+
+        reader.close();
+        assertTrue(factory.consumers.get(0).closed());
+    }
+
+    @Test
+    public void testCloseInterruptsBlockedFetchers() throws Exception {
+        KafkaInputSplit split = new KafkaInputSplit("broker", TOPIC, new int[] { 0, 1 }, new long[] { 0, 0 }, new long[] { 1000, 1000 });
+        MockConsumerFactory factory = new MockConsumerFactory(1, ImmutableMap.of(0, 1000L, 1, 1000L));
+        KafkaInputRecordReader reader = new KafkaInputRecordReader(factory);
+        reader.start(split, "group", new Properties(), parsers(2), 1, TIMEOUT);
+
+        assertTrue(reader.nextKeyValue());
+        while (factory.consumers.size() < 2) {
+            Thread.sleep(10);
+        }
+        // let the fetchers fill the queue and block on it
+        Thread.sleep(100);
+
+        long start = System.currentTimeMillis();
+        reader.close();
+        assertTrue(System.currentTimeMillis() - start < TIMEOUT / 2);
+        for (MockConsumer<String, String> consumer : factory.consumers) {
+            assertTrue(consumer.closed());
+        }
+        assertTrue(counter(reader, "Messages") < 2000);
+    }
+
+    private static long counter(KafkaInputRecordReader reader, String name) {
+        return reader.getCounters().findCounter(KafkaInputRecordReader.COUNTER_GROUP_NAME, name).getValue();
+    }
+
+    private static StreamingParser[] parsers(int count) {
+        StreamingParser[] parsers = new StreamingParser[count];
+        for (int i = 0; i < count; i++) {
+            parsers[i] = new CsvParser();
+        }
+        return parsers;
+    }
+
+    /**
+     * Creates mock consumers that return a few messages on each poll, the value of a message is "partition,offset".
+     */
+    private static class MockConsumerFactory implements KafkaInputRecordReader.ConsumerFactory {
+        final int messagesPerPoll;
+        // the offset after the last message of each partition
+        final Map<Integer, Long> endOffsets;
+        final List<MockConsumer<String, String>> consumers = Collections.synchronizedList(Lists.<MockConsumer<String, String>> newArrayList());
+
+        MockConsumerFactory(int messagesPerPoll, Map<Integer, Long> endOffsets) {
+            this.messagesPerPoll = messagesPerPoll;
+            this.endOffsets = endOffsets;
+        }
+
+        @Override
+        public Consumer<String, String> create(String brokers, String consumerGroup, Properties kafkaProperties) {
+            final MockConsumer<String, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+            for (int i = 0; i < 2000; i++) {
+                consumer.schedulePollTask(new Runnable() {
+                    @Override
+                    public void run() {
+                        addMessages(consumer);
+                    }
+                });
+            }
+            consumers.add(consumer);
+            return consumer;
+        }
+
+        private void addMessages(MockConsumer<String, String> consumer) {
+            TopicPartition tp = consumer.assignment().iterator().next();
+            long position = consumer.position(tp);
+            long end = endOffsets.get(tp.partition());
+            for (long offset = position; offset < position + messagesPerPoll && offset < end; offset++) {
+                consumer.addRecord(new ConsumerRecord<>(TOPIC, tp.partition(), offset, (String) null, tp.partition() + "," + offset));
+            }
+        }
+    }
+
+    private static class CsvParser extends StreamingParser {
+        @Override
+        public List<StreamingMessageRow> parse(ByteBuffer message) {
+            byte[] bytes = new byte[message.remaining()];
+            message.get(bytes);
+            List<String> data = Lists.newArrayList(Bytes.toString(bytes).split(","));
+            return Collections.singletonList(new StreamingMessageRow(data, 0, 0, Collections.<String, Object> emptyMap()));
+        }
+
+        @Override
+        public boolean filter(StreamingMessageRow streamingMessageRow) {
+            return true;
+        }
+    }
+}
@@ -277,6 +277,43 @@ public class HBaseResourceStore extends ResourceStore {
             return new RawResource(getInputStream(resPath, r), getTimestamp(r));
     }
 
+    @Override
+    protected List<RawResource> getResourcesImpl(List<String> resPaths) throws IOException {
+        List<Get> gets = Lists.newArrayListWithCapacity(resPaths.size());
+        for (String resPath : resPaths) {
+            Get get = new Get(Bytes.toBytes(resPath));
+            get.addColumn(B_FAMILY, B_COLUMN);
+            get.addColumn(B_FAMILY, B_COLUMN_TS);
+            gets.add(get);
+        }
+
+        Result[] results;
+        Table table = getConnection().getTable(TableName.valueOf(tableName));
+        try {
+            results = table.get(gets);
+        } finally {
+            IOUtils.closeQuietly(table);
+        }
+
+        List<RawResource> result = Lists.newArrayListWithCapacity(resPaths.size());
+        try {
+            for (int i = 0; i < results.length; i++) {
+                Result r = results[i];
+                if (r == null || r.isEmpty())
+                    result.add(null);
+                else
+                    result.add(new RawResource(getInputStream(resPaths.get(i), r), getTimestamp(r)));
+            }
+        } catch (IOException e) {
+            for (RawResource rawResource : result) {
+                if (rawResource != null)
+                    IOUtils.closeQuietly(rawResource.inputStream);
+            }
+            throw e;
+        }
+        return result;
+    }
+
     @Override
     protected long getResourceTimestampImpl(String resPath) throws IOException {
         return getTimestamp(getFromHTable(resPath, false, true));
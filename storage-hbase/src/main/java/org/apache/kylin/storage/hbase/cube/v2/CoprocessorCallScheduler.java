@@ -0,0 +1,372 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.hbase.cube.v2;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.hbase.util.Threads;
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.metrics.common.Metrics;
+import org.apache.kylin.common.metrics.common.MetricsConstant;
+import org.apache.kylin.common.metrics.common.MetricsFactory;
+import org.apache.kylin.common.metrics.common.MetricsNameBuilder;
+import org.apache.kylin.common.metrics.common.MetricsVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Schedules the region calls of coprocessor on a bounded set of threads shared by all queries.
+ *
+ * - The calls of each query wait in their own queue, and queries take turns, so that a query of many regions
+ *   does not hold back the others.
+ * - Small scans go in a priority lane, which is served first but yields to the normal lane every few calls.
+ * - The number of concurrent calls adapts to the latency of region servers. It shrinks when the calls of a
+ *   query get slower than the fastest call of the same query, and grows back when they are not. Each query
+ *   is its own baseline, as the regions of different queries scan very different amounts of data.
+ *
+ * A query hands {@link #newExecutor} to HTable as its pool, so each region call of HTable.coprocessorService()
+ * goes through the scheduler.
+ */
+public class CoprocessorCallScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(CoprocessorCallScheduler.class);
+
+    // calls up to this times slower than the fastest of their query do not shrink the limit
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double SMOOTHING = 0.2;
+    // the small lane yields to the normal lane after this many calls in a row
+    private static final int MAX_SMALL_STREAK = 4;
+
+    private static volatile CoprocessorCallScheduler instance;
+
+    public static CoprocessorCallScheduler getInstance() {
+        if (instance != null) {
+            return instance;
+        }
+
+        synchronized (CoprocessorCallScheduler.class) {
+            if (instance == null) {
+                KylinConfig config = KylinConfig.getInstanceFromEnv();
+                instance = new CoprocessorCallScheduler(config.getQueryCoprocessorMinConcurrency(), config.getQueryCoprocessorMaxConcurrency(), config.getHBaseConnectionThreadPoolAliveSeconds());
+                if (config.getQueryMetrics2Enabled()) {
+                    instance.registerMetrics();
+                }
+            }
+            return instance;
+        }
+    }
+
+    // ============================================================================
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final ThreadPoolExecutor workers;
+
+    // guarded by this
+    private final Lane smallLane = new Lane();
+    private final Lane normalLane = new Lane();
+    private double limit;
+    private int running;
+    private int smallStreak;
+
+    private final AtomicLong totalCalls = new AtomicLong();
+    private final AtomicLong totalQueueNanos = new AtomicLong();
+    private final AtomicLong totalRpcNanos = new AtomicLong();
+
+    CoprocessorCallScheduler(int minLimit, int maxLimit, long keepAliveSeconds) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = this.maxLimit;
+
+        // the scheduler never runs more than maxLimit calls, the queue is only for the threads to hand over
+        this.workers = new ThreadPoolExecutor(this.maxLimit, this.maxLimit, keepAliveSeconds, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), //
+                Threads.newDaemonThreadFactory("kylin-coproc-sched-"));
+        this.workers.allowCoreThreadTimeOut(true);
+
+        logger.info("Creating coprocessor call scheduler with concurrency from {} to {}", this.minLimit, this.maxLimit);
+    }
+
+    /**
+     * @param queryKey the calls of the same key share one queue, null for a queue of its own
+     * @param small whether the calls go in the priority lane
+     * @param timeoutMillis calls still queued after this are cancelled
+     */
+    public QueryExecutor newExecutor(String queryKey, boolean small, long timeoutMillis) {
+        return new QueryExecutor(queryKey, small, timeoutMillis);
+    }
+
+    public synchronized int getConcurrencyLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getRunningCalls() {
+        return running;
+    }
+
+    public synchronized int getQueuedCalls() {
+        return smallLane.size + normalLane.size;
+    }
+
+    public long getTotalCalls() {
+        return totalCalls.get();
+    }
+
+    public long getTotalQueueMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalQueueNanos.get());
+    }
+
+    public long getTotalRpcMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalRpcNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        return "CoprocessorCallScheduler [limit=" + getConcurrencyLimit() + ", running=" + getRunningCalls() + ", queued=" + getQueuedCalls() //
+                + ", calls=" + getTotalCalls() + ", queueMillis=" + getTotalQueueMillis() + ", rpcMillis=" + getTotalRpcMillis() + "]";
+    }
+
+    private void registerMetrics() {
+        Metrics metrics = MetricsFactory.getInstance();
+        metrics.addGauge(MetricsNameBuilder.buildMetricName(MetricsNameBuilder.COPROCESSOR_SCHEDULER, MetricsConstant.COPROCESSOR_CONCURRENCY_LIMIT),
+                new MetricsVariable<Integer>() {
+                    @Override
+                    public Integer getValue() {
+                        return getConcurrencyLimit();
+                    }
+                });
+        metrics.addGauge(MetricsNameBuilder.buildMetricName(MetricsNameBuilder.COPROCESSOR_SCHEDULER, MetricsConstant.COPROCESSOR_RUNNING_CALLS),
+                new MetricsVariable<Integer>() {
+                    @Override
+                    public Integer getValue() {
+                        return getRunningCalls();
+                    }
+                });
+        metrics.addGauge(MetricsNameBuilder.buildMetricName(MetricsNameBuilder.COPROCESSOR_SCHEDULER, MetricsConstant.COPROCESSOR_QUEUED_CALLS),
+                new MetricsVariable<Integer>() {
+                    @Override
+                    public Integer getValue() {
+                        return getQueuedCalls();
+                    }
+                });
+    }
+
+    private synchronized void enqueue(Call call) {
+        (call.executor.small ? smallLane : normalLane).add(call);
+        dispatch();
+    }
+
+    private synchronized void dispatch() {
+        while (running < (int) limit) {
+            Call call = pollNext();
+            if (call == null) {
+                return;
+            }
+            running++;
+            workers.execute(call);
+        }
+    }
+
+    private Call pollNext() {
+        boolean preferSmall = smallStreak < MAX_SMALL_STREAK || normalLane.size == 0;
+        Call call = preferSmall ? smallLane.poll() : null;
+        if (call != null) {
+            smallStreak++;
+            return call;
+        }
+
+        smallStreak = 0;
+        call = normalLane.poll();
+        return call != null ? call : smallLane.poll();
+    }
+
+    private synchronized void onComplete(QueryExecutor executor, long rpcNanos, boolean sampled) {
+        running--;
+        if (sampled) {
+            adjustLimit(executor, rpcNanos);
+        }
+        dispatch();
+    }
+
+    // gradient of latency, a call as fast as the fastest of its query lets the limit grow by its square root
+    synchronized void adjustLimit(QueryExecutor executor, long latencyNanos) {
+        latencyNanos = Math.max(1, latencyNanos);
+        long minLatencyNanos = executor.minLatencyNanos;
+        executor.minLatencyNanos = Math.min(minLatencyNanos, latencyNanos);
+        if (minLatencyNanos == Long.MAX_VALUE) {
+            return; // the first call of a query only sets its baseline
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, LATENCY_TOLERANCE * executor.minLatencyNanos / latencyNanos));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        newLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        limit = limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+    }
+
+    // ============================================================================
+
+    private static class Lane {
+        // queues of queries in the order of their turns
+        final LinkedHashMap<String, ArrayDeque<Call>> queues = new LinkedHashMap<>();
+        int size;
+
+        void add(Call call) {
+            ArrayDeque<Call> queue = queues.get(call.executor.queryKey);
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                queues.put(call.executor.queryKey, queue);
+            }
+            queue.add(call);
+            size++;
+        }
+
+        Call poll() {
+            Iterator<Map.Entry<String, ArrayDeque<Call>>> it = queues.entrySet().iterator();
+            if (!it.hasNext()) {
+                return null;
+            }
+
+            Map.Entry<String, ArrayDeque<Call>> entry = it.next();
+            Call call = entry.getValue().poll();
+            it.remove();
+            // the query goes to the end of line for its next call
+            if (!entry.getValue().isEmpty()) {
+                queues.put(entry.getKey(), entry.getValue());
+            }
+            size--;
+            return call;
+        }
+    }
+
+    private class Call implements Runnable {
+        final QueryExecutor executor;
+        final Runnable command;
+        final long enqueueTime = System.nanoTime();
+
+        Call(QueryExecutor executor, Runnable command) {
+            this.executor = executor;
+            this.command = command;
+        }
+
+        @Override
+        public void run() {
+            long startTime = System.nanoTime();
+            long queueNanos = startTime - enqueueTime;
+            boolean expired = System.currentTimeMillis() > executor.deadline;
+            try {
+                if (expired && command instanceof Future) {
+                    logger.warn("Cancelling coprocessor call of {} after waiting {} ms in queue", executor.queryKey, TimeUnit.NANOSECONDS.toMillis(queueNanos));
+                    ((Future<?>) command).cancel(false);
+                } else {
+                    command.run();
+                }
+            } finally {
+                long rpcNanos = System.nanoTime() - startTime;
+                executor.record(queueNanos, rpcNanos);
+                totalCalls.incrementAndGet();
+                totalQueueNanos.addAndGet(queueNanos);
+                totalRpcNanos.addAndGet(rpcNanos);
+                onComplete(executor, rpcNanos, !expired);
+            }
+        }
+    }
+
+    /**
+     * The pool of one query for HTable. Shutting it down is not supported, as HTable does not own it.
+     */
+    public class QueryExecutor extends AbstractExecutorService {
+        final String queryKey;
+        final boolean small;
+        final long deadline;
+
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicLong queueNanos = new AtomicLong();
+        final AtomicLong rpcNanos = new AtomicLong();
+        // the fastest call of the query, guarded by the scheduler
+        long minLatencyNanos = Long.MAX_VALUE;
+
+        QueryExecutor(String queryKey, boolean small, long timeoutMillis) {
+            this.queryKey = queryKey != null ? queryKey : Integer.toHexString(System.identityHashCode(this));
+            this.small = small;
+            this.deadline = timeoutMillis > 0 ? System.currentTimeMillis() + timeoutMillis : Long.MAX_VALUE;
+        }
+
+        void record(long queue, long rpc) {
+            calls.incrementAndGet();
+            queueNanos.addAndGet(queue);
+            rpcNanos.addAndGet(rpc);
+        }
+
+        public int getCalls() {
+            return calls.get();
+        }
+
+        public long getQueueMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(queueNanos.get());
+        }
+
+        public long getRpcMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(rpcNanos.get());
+        }
+
+        public boolean isSmall() {
+            return small;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            enqueue(new Call(this, command));
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return false;
+        }
+    }
+}
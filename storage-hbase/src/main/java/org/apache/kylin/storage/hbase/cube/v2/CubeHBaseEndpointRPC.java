@@ -22,7 +22,10 @@ import java.io.IOException;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.zip.DataFormatException;
 
@@ -35,6 +38,7 @@ import org.apache.hadoop.hbase.ipc.ServerRpcController;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.exceptions.KylinTimeoutException;
 import org.apache.kylin.common.exceptions.ResourceLimitExceededException;
+import org.apache.kylin.common.util.ByteArray;
 import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.common.util.BytesSerializer;
 import org.apache.kylin.common.util.BytesUtil;
@@ -42,11 +46,16 @@ import org.apache.kylin.common.util.CompressionUtils;
 import org.apache.kylin.common.util.ImmutableBitSet;
 import org.apache.kylin.common.util.LoggableCachedThreadPool;
 import org.apache.kylin.common.util.Pair;
+import org.apache.kylin.common.util.ShardingHash;
 import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.kv.RowKeyColumnIO;
 import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRange;
 import org.apache.kylin.gridtable.GTScanRequest;
 import org.apache.kylin.gridtable.IGTScanner;
 import org.apache.kylin.metadata.model.ISegment;
+import org.apache.kylin.metadata.model.TblColRef;
 import org.apache.kylin.storage.StorageContext;
 import org.apache.kylin.storage.gtrecord.DummyPartitionStreamer;
 import org.apache.kylin.storage.gtrecord.StorageResponseGTScatter;
@@ -61,6 +70,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.HBaseZeroCopyByteString;
 
@@ -74,7 +84,7 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
         super(segment, cuboid, fullGTInfo, context);
     }
 
-    private byte[] getByteArrayForShort(short v) {
+    private static byte[] getByteArrayForShort(short v) {
         byte[] split = new byte[Bytes.SIZEOF_SHORT];
         BytesUtil.writeUnsigned(v, split, 0, Bytes.SIZEOF_SHORT);
         return split;
@@ -99,6 +109,75 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
         }
     }
 
+    /**
+     * Each shard in the list goes to its own key range, consecutive shards are combined.
+     */
+    static List<Pair<byte[], byte[]>> getEPKeyRanges(List<Short> shards) {
+        List<Pair<byte[], byte[]>> result = Lists.newArrayList();
+        int i = 0;
+        while (i < shards.size()) {
+            int j = i + 1;
+            while (j < shards.size() && shards.get(j) == shards.get(j - 1) + 1) {
+                j++;
+            }
+            result.add(Pair.newPair(getByteArrayForShort(shards.get(i)), getByteArrayForShort(shards.get(j - 1))));
+            i = j;
+        }
+        return result;
+    }
+
+    /**
+     * @return the sorted shards to visit, or null if all shards of the cuboid are needed
+     */
+    private List<Short> getTargetShards(List<GTScanRange> ranges, short baseShard, short shardNum, int totalShards) {
+        Set<TblColRef> shardByColumns = cubeSeg.getShardByColumns();
+        if (!cubeSeg.isEnableSharding() || shardByColumns.size() != 1)
+            return null;
+
+        TblColRef shardBy = shardByColumns.iterator().next();
+        int gtCol = cuboid.getCuboidToGridTableMapping().getIndexOf(shardBy);
+        if (gtCol < 0)
+            return null;
+
+        int colLength = new RowKeyColumnIO(cubeSeg.getDimensionEncodingMap()).getColumnLength(shardBy);
+        return getTargetShards(ranges, gtCol, colLength, baseShard, shardNum, totalShards);
+    }
+
+    /**
+     * Rows are sharded by the hash of the shard-by column, so a scan that pins the column to a few values,
+     * by equality or IN filters, only needs the shards of those values.
+     *
+     * The pinned values are taken from the fuzzy keys only. The start and end keys of a range merged from several
+     * ranges may agree on the column while the range holds other values of it; the fuzzy keys of a merged range are
+     * the union of those of its parts, and are dropped if any part has none.
+     *
+     * @return the sorted shards to visit, or null if all shards of the cuboid are needed
+     */
+    static List<Short> getTargetShards(List<GTScanRange> ranges, int gtCol, int colLength, short baseShard, short shardNum, int totalShards) {
+        if (shardNum <= 1 || ranges.isEmpty())
+            return null;
+
+        Set<ByteArray> values = Sets.newHashSet();
+        for (GTScanRange range : ranges) {
+            if (range.fuzzyKeys.isEmpty())
+                return null;
+
+            for (GTRecord fuzzyKey : range.fuzzyKeys) {
+                ByteArray value = fuzzyKey.get(gtCol);
+                if (value.array() == null || value.length() != colLength)
+                    return null;
+                values.add(value);
+            }
+        }
+
+        Set<Short> shards = Sets.newTreeSet();
+        for (ByteArray value : values) {
+            short shardOffset = ShardingHash.getShard(value.array(), value.offset(), value.length(), shardNum);
+            shards.add(ShardingHash.normalize(baseShard, shardOffset, totalShards));
+        }
+        return shards.size() < shardNum ? Lists.newArrayList(shards) : null;
+    }
+
     protected Pair<Short, Short> getShardNumAndBaseShard() {
         return Pair.newPair(cubeSeg.getCuboidShardNum(cuboid.getId()), cubeSeg.getCuboidBaseShard(cuboid.getId()));
     }
@@ -126,6 +205,10 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
             hbaseColumnsToGTIntList.add(IntList.newBuilder().addAllInts(list).build());
         }
 
+        List<Short> targetShards = getTargetShards(scanRequest.getGTScanRanges(), cuboidBaseShard, shardNum, totalShards);
+        int hitShards = targetShards == null ? shardNum : targetShards.size();
+        queryContext.addAndGetHitShards(hitShards);
+
         //TODO: raw scan can be constructed at region side to reduce traffic
         List<RawScan> rawScans = preparedHBaseScans(scanRequest.getGTScanRanges(), selectedColBlocks);
         rawScanByteString = serializeRawScans(rawScans);
@@ -135,7 +218,7 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
         scanRequest.clearScanRanges();//since raw scans are sent to coprocessor, we don't need to duplicate sending it
         scanRequestByteString = serializeGTScanReq(scanRequest);
 
-        final ExpectedSizeIterator epResultItr = new ExpectedSizeIterator(shardNum, coprocessorTimeout);
+        final ExpectedSizeIterator epResultItr = new ExpectedSizeIterator(hitShards, coprocessorTimeout);
 
         logger.info("Serialized scanRequestBytes {} bytes, rawScanBytesString {} bytes", scanRequestByteString.size(), rawScanByteString.size());
 
@@ -144,7 +227,11 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
             logScan(rs, cubeSeg.getStorageLocationIdentifier());
         }
 
-        logger.debug("Submitting rpc to {} shards starting from shard {}, scan range count {}", shardNum, cuboidBaseShard, rawScans.size());
+        if (targetShards == null) {
+            logger.debug("Submitting rpc to {} shards starting from shard {}, scan range count {}", shardNum, cuboidBaseShard, rawScans.size());
+        } else {
+            logger.debug("Submitting rpc to {} out of {} shards by the shard-by column, shards {}, scan range count {}", hitShards, shardNum, targetShards, rawScans.size());
+        }
 
         // KylinConfig: use env instance instead of CubeSegment, because KylinConfig will share among queries
         // for different cubes until redeployment of coprocessor jar.
@@ -165,7 +252,17 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
         builder.setMaxScanBytes(cubeSeg.getConfig().getPartitionMaxScanBytes());
         builder.setIsExactAggregate(storageContext.isExactAggregation());
 
-        for (final Pair<byte[], byte[]> epRange : getEPKeyRanges(cuboidBaseShard, shardNum, totalShards)) {
+        List<Pair<byte[], byte[]>> epRanges = targetShards == null ? getEPKeyRanges(cuboidBaseShard, shardNum, totalShards) : getEPKeyRanges(targetShards);
+        final AtomicLong scannedRows = new AtomicLong();
+        final AtomicInteger pendingEPRanges = new AtomicInteger(epRanges.size());
+
+        // region calls go through the shared scheduler, with the calls of this query in one queue
+        long estimatedRows = scanRequest.getEstimatedScanRowCount();
+        boolean smallScan = estimatedRows >= 0 && estimatedRows <= cubeSeg.getConfig().getQueryCoprocessorSmallScanRows();
+        final CoprocessorCallScheduler scheduler = CoprocessorCallScheduler.getInstance();
+        final CoprocessorCallScheduler.QueryExecutor callExecutor = scheduler.newExecutor(queryId, smallScan, coprocessorTimeout);
+
+        for (final Pair<byte[], byte[]> epRange : epRanges) {
             executorService.submit(new Runnable() {
                 @Override
                 public void run() {
@@ -174,7 +271,7 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
                     final AtomicReference<RuntimeException> regionErrorHolder = new AtomicReference<>();
 
                     try {
-                        Table table = conn.getTable(TableName.valueOf(cubeSeg.getStorageLocationIdentifier()), HBaseConnection.getCoprocessorPool());
+                        Table table = conn.getTable(TableName.valueOf(cubeSeg.getStorageLocationIdentifier()), callExecutor);
 
                         final CubeVisitRequest request = builder.build();
                         final byte[] startKey = epRange.getFirst();
@@ -183,52 +280,39 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
                         table.coprocessorService(CubeVisitService.class, startKey, endKey, //
                                 new Batch.Call<CubeVisitService, CubeVisitResponse>() {
                                     public CubeVisitResponse call(CubeVisitService rowsService) throws IOException {
-                                        ServerRpcController controller = new ServerRpcController();
-                                        BlockingRpcCallback<CubeVisitResponse> rpcCallback = new BlockingRpcCallback<>();
-                                        rowsService.visitCube(controller, request, rpcCallback);
-                                        CubeVisitResponse response = rpcCallback.get();
-                                        if (controller.failedOnException()) {
-                                            throw controller.getFailedOn();
+                                        CubeVisitRequest chunkRequest = request;
+                                        long regionScannedBytes = 0;
+                                        while (true) {
+                                            ServerRpcController controller = new ServerRpcController();
+                                            BlockingRpcCallback<CubeVisitResponse> rpcCallback = new BlockingRpcCallback<>();
+                                            rowsService.visitCube(controller, chunkRequest, rpcCallback);
+                                            CubeVisitResponse response = rpcCallback.get();
+                                            if (controller.failedOnException()) {
+                                                throw controller.getFailedOn();
+                                            }
+                                            // the last chunk of region goes to the batch callback
+                                            if (!response.hasResumePoint()) {
+                                                return response;
+                                            }
+                                            if (!handleResponse(logHeader, null, response, false, regionErrorHolder, epResultItr, compressionResult, scannedRows)) {
+                                                return null; // already handled, and no need to visit the rest of region
+                                            }
+
+                                            regionScannedBytes += response.getStats().getScannedBytes();
+                                            chunkRequest = CubeVisitRequest.newBuilder(request) //
+                                                    .setResumePoint(response.getResumePoint()) //
+                                                    .setMaxScanBytes(Math.max(1, request.getMaxScanBytes() - regionScannedBytes)) //
+                                                    .build();
                                         }
-                                        return response;
                                     }
                                 }, new Batch.Callback<CubeVisitResponse>() {
                                     @Override
                                     public void update(byte[] region, byte[] row, CubeVisitResponse result) {
-                                        if (region == null) {
-                                            return;
-                                        }
-
-                                        logger.info(logHeader + getStatsString(region, result));
-
-                                        Stats stats = result.getStats();
-                                        queryContext.addAndGetScannedRows(stats.getScannedRowCount());
-                                        queryContext.addAndGetScannedBytes(stats.getScannedBytes());
-
-                                        // if any other region has responded with error, skip further processing
-                                        if (regionErrorHolder.get() != null) {
-                                            return;
-                                        }
-
-                                        // record coprocessor error if happened
-                                        if (result.getStats().getNormalComplete() != 1) {
-                                            regionErrorHolder.compareAndSet(null, getCoprocessorException(result));
+                                        if (region == null || result == null) {
                                             return;
                                         }
 
-                                        if (queryContext.getScannedBytes() > cubeSeg.getConfig().getQueryMaxScanBytes()) {
-                                            throw new ResourceLimitExceededException("Query scanned " + queryContext.getScannedBytes() + " bytes exceeds threshold " + cubeSeg.getConfig().getQueryMaxScanBytes());
-                                        }
-
-                                        try {
-                                            if (compressionResult) {
-                                                epResultItr.append(CompressionUtils.decompress(HBaseZeroCopyByteString.zeroCopyGetBytes(result.getCompressedRows())));
-                                            } else {
-                                                epResultItr.append(HBaseZeroCopyByteString.zeroCopyGetBytes(result.getCompressedRows()));
-                                            }
-                                        } catch (IOException | DataFormatException e) {
-                                            throw new RuntimeException(logHeader + "Error when decompressing", e);
-                                        }
+                                        handleResponse(logHeader, region, result, true, regionErrorHolder, epResultItr, compressionResult, scannedRows);
                                     }
                                 });
 
@@ -242,6 +326,12 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
                         RuntimeException exception = regionErrorHolder.get();
                         logger.error(logHeader + "Error when visiting cubes by endpoint", exception); // double log coz the query thread may already timeout
                         epResultItr.notifyCoprocException(exception);
+                    } else if (pendingEPRanges.decrementAndGet() == 0) {
+                        queryContext.addAndGetRpcQueueMillis(callExecutor.getQueueMillis());
+                        queryContext.addAndGetRpcCallMillis(callExecutor.getRpcMillis());
+                        logger.info(logHeader + "Total scanned row: {}, estimated by scan range planner: {}", scannedRows.get(), scanRequest.getEstimatedScanRowCount());
+                        logger.info(logHeader + "{} region calls in {} lane, queue wait {} ms, RPC time {} ms. {}", callExecutor.getCalls(), callExecutor.isSmall() ? "small" : "normal", //
+                                callExecutor.getQueueMillis(), callExecutor.getRpcMillis(), scheduler);
                     }
                 }
             });
@@ -250,6 +340,51 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
         return new StorageResponseGTScatter(scanRequest, new DummyPartitionStreamer(epResultItr), storageContext);
     }
 
+    /**
+     * @return true if the response is accepted and further chunks of the region are welcome
+     */
+    private boolean handleResponse(String logHeader, byte[] region, CubeVisitResponse result, boolean lastChunk, AtomicReference<RuntimeException> regionErrorHolder, ExpectedSizeIterator epResultItr, boolean compressionResult, AtomicLong scannedRows) {
+        logger.info(logHeader + getStatsString(region, result));
+
+        Stats stats = result.getStats();
+        scannedRows.addAndGet(stats.getScannedRowCount());
+        queryContext.addAndGetScannedRows(stats.getScannedRowCount());
+        queryContext.addAndGetScannedBytes(stats.getScannedBytes());
+
+        // if any other region has responded with error, skip further processing
+        if (regionErrorHolder.get() != null) {
+            return false;
+        }
+
+        // record coprocessor error if happened
+        if (result.getStats().getNormalComplete() != 1) {
+            regionErrorHolder.compareAndSet(null, getCoprocessorException(result));
+            return false;
+        }
+
+        if (queryContext.getScannedBytes() > cubeSeg.getConfig().getQueryMaxScanBytes()) {
+            throw new ResourceLimitExceededException("Query scanned " + queryContext.getScannedBytes() + " bytes exceeds threshold " + cubeSeg.getConfig().getQueryMaxScanBytes());
+        }
+
+        byte[] rows;
+        try {
+            if (compressionResult) {
+                rows = CompressionUtils.decompress(HBaseZeroCopyByteString.zeroCopyGetBytes(result.getCompressedRows()));
+            } else {
+                rows = HBaseZeroCopyByteString.zeroCopyGetBytes(result.getCompressedRows());
+            }
+        } catch (IOException | DataFormatException e) {
+            throw new RuntimeException(logHeader + "Error when decompressing", e);
+        }
+
+        if (lastChunk) {
+            epResultItr.append(rows);
+        } else {
+            epResultItr.appendChunk(rows);
+        }
+        return true;
+    }
+
     private ByteString serializeGTScanReq(GTScanRequest scanRequest) {
         ByteString scanRequestByteString;
         int scanRequestBufferSize = BytesSerializer.SERIALIZE_BUFFER_SIZE;
@@ -294,7 +429,7 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
         Stats stats = result.getStats();
         byte[] compressedRows = HBaseZeroCopyByteString.zeroCopyGetBytes(result.getCompressedRows());
 
-        sb.append("Endpoint RPC returned from HTable ").append(cubeSeg.getStorageLocationIdentifier()).append(" Shard ").append(BytesUtil.toHex(region)).append(" on host: ").append(stats.getHostname()).append(".");
+        sb.append("Endpoint RPC returned from HTable ").append(cubeSeg.getStorageLocationIdentifier()).append(" Shard ").append(region == null ? "(chunk)" : BytesUtil.toHex(region)).append(" on host: ").append(stats.getHostname()).append(".");
         sb.append("Total scanned row: ").append(stats.getScannedRowCount()).append(". ");
         sb.append("Total scanned bytes: ").append(stats.getScannedBytes()).append(". ");
         sb.append("Total filtered/aggred row: ").append(stats.getAggregatedRowCount()).append(". ");
@@ -303,6 +438,9 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
         sb.append("Etc message: ").append(stats.getEtcMsg()).append(".");
         sb.append("Normal Complete: ").append(stats.getNormalComplete() == 1).append(".");
         sb.append("Compressed row size: ").append(compressedRows.length);
+        if (result.hasResumePoint()) {
+            sb.append(". More chunks to come");
+        }
         return sb.toString();
 
     }
@@ -24,12 +24,17 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.NotImplementedException;
+import org.apache.kylin.common.util.Pair;
 import org.apache.kylin.gridtable.GTScanRequest;
 
 import com.google.common.base.Throwables;
 
+/**
+ * Iterates the result blobs of the expected number of partitions. A partition may come in several chunks,
+ * only the last chunk of a partition counts towards the expected size.
+ */
 class ExpectedSizeIterator implements Iterator<byte[]> {
-    private BlockingQueue<byte[]> queue;
+    private BlockingQueue<Pair<byte[], Boolean>> queue;
     private int expectedSize;
     private int current = 0;
     private int coprocessorTimeout;
@@ -38,7 +43,7 @@ class ExpectedSizeIterator implements Iterator<byte[]> {
 
     public ExpectedSizeIterator(int expectedSize, int coprocessorTimeout) {
         this.expectedSize = expectedSize;
-        this.queue = new ArrayBlockingQueue<byte[]>(expectedSize);
+        this.queue = new ArrayBlockingQueue<Pair<byte[], Boolean>>(expectedSize);
 
         this.coprocessorTimeout = coprocessorTimeout;
         //longer timeout than coprocessor so that query thread will not timeout faster than coprocessor
@@ -56,8 +61,7 @@ class ExpectedSizeIterator implements Iterator<byte[]> {
             throw new IllegalStateException("Won't have more data");
         }
         try {
-            current++;
-            byte[] ret = null;
+            Pair<byte[], Boolean> ret = null;
 
             while (ret == null && coprocException == null && deadline > System.currentTimeMillis()) {
                 ret = queue.poll(1000, TimeUnit.MILLISECONDS);
@@ -72,7 +76,10 @@ class ExpectedSizeIterator implements Iterator<byte[]> {
                         GTScanRequest.terminateCheckInterval + " scanned rows, the configured timeout(" + coprocessorTimeout + ") cannot support this many scans?");
             }
 
-            return ret;
+            if (ret.getSecond()) {
+                current++;
+            }
+            return ret.getFirst();
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new RuntimeException("Error when waiting queue", e);
@@ -84,9 +91,29 @@ class ExpectedSizeIterator implements Iterator<byte[]> {
         throw new NotImplementedException();
     }
 
+    /**
+     * Appends the result of a whole partition, or the last chunk of it.
+     */
     public void append(byte[] data) {
+        put(data, true);
+    }
+
+    /**
+     * Appends a chunk of a partition that has more chunks to come.
+     */
+    public void appendChunk(byte[] data) {
+        put(data, false);
+    }
+
+    private void put(byte[] data, boolean lastOfPartition) {
+        Pair<byte[], Boolean> entry = Pair.newPair(data, lastOfPartition);
         try {
-            queue.put(data);
+            // block the producer when the query thread falls behind, but not beyond the deadline
+            while (!queue.offer(entry, 1000, TimeUnit.MILLISECONDS)) {
+                if (deadline <= System.currentTimeMillis()) {
+                    throw new RuntimeException("Timeout waiting for the query thread to consume visited results");
+                }
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new RuntimeException("error when waiting queue", e);
@@ -27,6 +27,7 @@ import java.util.List;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.kylin.common.util.BytesUtil;
 import org.apache.kylin.common.util.Pair;
+import org.apache.kylin.cube.kv.ColumnarValueCodec;
 import org.apache.kylin.gridtable.GTInfo;
 import org.apache.kylin.gridtable.GTRecord;
 import org.apache.kylin.gridtable.GTScanRequest;
@@ -46,11 +47,19 @@ public class HBaseReadonlyStore implements IGTStore {
     private int rowkeyPreambleSize;
     private boolean withDelay = false;
     private boolean isExactAggregation;
+    private boolean columnarValue;
 
     /**
      * @param withDelay is for test use
      */
     public HBaseReadonlyStore(CellListIterator cellListIterator, GTScanRequest gtScanRequest, List<Pair<byte[], byte[]>> hbaseColumns, List<List<Integer>> hbaseColumnsToGT, int rowkeyPreambleSize, boolean withDelay, boolean isExactAggregation) {
+        this(cellListIterator, gtScanRequest, hbaseColumns, hbaseColumnsToGT, rowkeyPreambleSize, withDelay, isExactAggregation, false);
+    }
+
+    /**
+     * @param columnarValue whether the cells are in {@link ColumnarValueCodec} layout
+     */
+    public HBaseReadonlyStore(CellListIterator cellListIterator, GTScanRequest gtScanRequest, List<Pair<byte[], byte[]>> hbaseColumns, List<List<Integer>> hbaseColumnsToGT, int rowkeyPreambleSize, boolean withDelay, boolean isExactAggregation, boolean columnarValue) {
         this.cellListIterator = cellListIterator;
         this.info = gtScanRequest.getInfo();
         this.hbaseColumns = hbaseColumns;
@@ -58,6 +67,7 @@ public class HBaseReadonlyStore implements IGTStore {
         this.rowkeyPreambleSize = rowkeyPreambleSize;
         this.withDelay = withDelay;
         this.isExactAggregation = isExactAggregation;
+        this.columnarValue = columnarValue;
     }
 
     @Override
@@ -87,7 +97,7 @@ public class HBaseReadonlyStore implements IGTStore {
     }
 
     @Override
-    public IGTScanner scan(GTScanRequest scanRequest) throws IOException {
+    public IGTScanner scan(final GTScanRequest scanRequest) throws IOException {
         return new IGTScanner() {
             int count;
 
@@ -100,6 +110,7 @@ public class HBaseReadonlyStore implements IGTStore {
             public Iterator<GTRecord> iterator() {
                 return new Iterator<GTRecord>() {
                     GTRecord oneRecord = new GTRecord(info); // avoid object creation
+                    byte[][] scratches = columnarValue ? newScratches() : null;
 
                     @Override
                     public boolean hasNext() {
@@ -132,7 +143,12 @@ public class HBaseReadonlyStore implements IGTStore {
                             Cell cell = findCell(oneRow, hbaseColumn.getFirst(), hbaseColumn.getSecond());
                             Preconditions.checkNotNull(cell);
                             buf = byteBuffer(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
-                            oneRecord.loadColumns(hbaseColumnsToGT.get(i), buf);
+                            if (columnarValue) {
+                                // decode only the columns in need
+                                ColumnarValueCodec.decode(buf, hbaseColumnsToGT.get(i), scanRequest.getColumns(), oneRecord, scratches[i]);
+                            } else {
+                                oneRecord.loadColumns(hbaseColumnsToGT.get(i), buf);
+                            }
                         }
 
 
@@ -149,6 +165,14 @@ public class HBaseReadonlyStore implements IGTStore {
                         throw new UnsupportedOperationException();
                     }
 
+                    private byte[][] newScratches() {
+                        byte[][] result = new byte[hbaseColumns.size()][];
+                        for (int i = 0; i < result.length; i++) {
+                            result[i] = new byte[ColumnarValueCodec.scratchSize(hbaseColumnsToGT.get(i).size())];
+                        }
+                        return result;
+                    }
+
                     private ByteBuffer byteBuffer(byte[] array, int offset, int length) {
                         return ByteBuffer.wrap(array, offset, length);
                     }
@@ -26,6 +26,7 @@ import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.ArrayUtils;
@@ -78,8 +79,6 @@ import com.sun.management.OperatingSystemMXBean;
 public class CubeVisitService extends CubeVisitProtos.CubeVisitService implements Coprocessor, CoprocessorService {
 
     private static final Logger logger = LoggerFactory.getLogger(CubeVisitService.class);
-    //TODO limit memory footprint
-    private static final int MEMORY_LIMIT = 500 * 1024 * 1024;
 
     private RegionCoprocessorEnvironment env;
 
@@ -137,6 +136,67 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
         }
     }
 
+    /**
+     * Visits the raw scans one after another, and stops at a row boundary once the scanned bytes reach
+     * the chunk size. The rest of the region is left to next chunk, starting right after the last row.
+     */
+    static class ChunkedCellListIterator extends BaseCellListIterator {
+        private final List<InnerScannerAsIterator> scanIterators;
+        private final int firstRawScanIndex;
+        private final long chunkBytes;
+
+        private int current = 0;
+        private long scannedBytes = 0;
+        private List<Cell> lastRow;
+        private int lastRowScanIndex;
+
+        ChunkedCellListIterator(List<InnerScannerAsIterator> scanIterators, int firstRawScanIndex, long chunkBytes) {
+            this.scanIterators = scanIterators;
+            this.firstRawScanIndex = firstRawScanIndex;
+            this.chunkBytes = chunkBytes;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return scannedBytes < chunkBytes && hasMoreRows();
+        }
+
+        private boolean hasMoreRows() {
+            while (current < scanIterators.size()) {
+                if (scanIterators.get(current).hasNext()) {
+                    return true;
+                }
+                current++;
+            }
+            return false;
+        }
+
+        @Override
+        public List<Cell> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            // the returned list is reused by InnerScannerAsIterator, but stays untouched until its next call
+            lastRow = scanIterators.get(current).next();
+            lastRowScanIndex = current;
+            for (Cell cell : lastRow) {
+                scannedBytes += CellUtil.estimatedSizeOf(cell);
+            }
+            return lastRow;
+        }
+
+        /**
+         * @return where next chunk should start, or null if the region has been fully visited
+         */
+        public CubeVisitProtos.ResumePoint getResumePoint() {
+            if (lastRow == null || !hasMoreRows()) {
+                return null;
+            }
+            return CubeVisitProtos.ResumePoint.newBuilder().setRawScanIndex(firstRawScanIndex + lastRowScanIndex)
+                    .setRowKey(HBaseZeroCopyByteString.wrap(CellUtil.cloneRow(lastRow.get(0)))).build();
+        }
+    }
+
     // TODO move this logic to HBaseReadonlyStore once it's been refactored
     static class ResourceTrackingCellListIterator extends BaseCellListIterator {
         private final Iterator<List<Cell>> delegate;
@@ -244,6 +304,8 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
             KylinConfig.setKylinConfigThreadLocal(kylinConfig);
 
             debugGitTag = region.getTableDesc().getValue(IRealizationConstants.HTableGitTag);
+            boolean columnarValue = Boolean
+                    .parseBoolean(region.getTableDesc().getValue(IRealizationConstants.HTableColumnarValue));
 
             final GTScanRequest scanReq = GTScanRequest.serializer
                     .deserialize(ByteBuffer.wrap(HBaseZeroCopyByteString.zeroCopyGetBytes(request.getGtScanRequest())));
@@ -259,12 +321,21 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
 
             final List<InnerScannerAsIterator> cellListsForeachRawScan = Lists.newArrayList();
 
-            for (RawScan hbaseRawScan : hbaseRawScans) {
+            // a chunked visit continues from where the previous chunk of this region stopped
+            int firstRawScanIndex = request.hasResumePoint() ? request.getResumePoint().getRawScanIndex() : 0;
+            for (int i = firstRawScanIndex; i < hbaseRawScans.size(); i++) {
+                RawScan hbaseRawScan = hbaseRawScans.get(i);
                 if (request.getRowkeyPreambleSize() - RowConstants.ROWKEY_CUBOIDID_LEN > 0) {
                     //if has shard, fill region shard to raw scan start/end
                     updateRawScanByCurrentRegion(hbaseRawScan, region,
                             request.getRowkeyPreambleSize() - RowConstants.ROWKEY_CUBOIDID_LEN);
                 }
+                if (request.hasResumePoint() && i == firstRawScanIndex) {
+                    // the smallest row key after the last visited one
+                    hbaseRawScan.startKey = Bytes.add(
+                            HBaseZeroCopyByteString.zeroCopyGetBytes(request.getResumePoint().getRowKey()),
+                            new byte[] { 0 });
+                }
 
                 Scan scan = CubeHBaseRPC.buildScan(hbaseRawScan);
                 RegionScanner innerScanner = region.getScanner(scan);
@@ -274,7 +345,12 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
                 cellListsForeachRawScan.add(cellListIterator);
             }
 
-            final Iterator<List<Cell>> allCellLists = Iterators.concat(cellListsForeachRawScan.iterator());
+            final long chunkScanBytes = kylinConfig.getPartitionChunkScanBytes();
+            final ChunkedCellListIterator chunkedCellLists = chunkScanBytes > 0
+                    ? new ChunkedCellListIterator(cellListsForeachRawScan, firstRawScanIndex, chunkScanBytes)
+                    : null;
+            final Iterator<List<Cell>> allCellLists = chunkedCellLists != null ? chunkedCellLists
+                    : Iterators.concat(cellListsForeachRawScan.iterator());
 
             if (behavior.ordinal() < StorageSideBehavior.SCAN.ordinal()) {
                 //this is only for CoprocessorBehavior.RAW_SCAN case to profile hbase scan speed
@@ -301,7 +377,7 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
 
             IGTStore store = new HBaseReadonlyStore(cellListIterator, scanReq, hbaseRawScans.get(0).hbaseColumns,
                     hbaseColumnsToGT, request.getRowkeyPreambleSize(), behavior.delayToggledOn(),
-                    request.getIsExactAggregate());
+                    request.getIsExactAggregate(), columnarValue);
 
             IGTScanner rawScanner = store.scan(scanReq);
             IGTScanner finalScanner = scanReq.decorateScanner(rawScanner, behavior.filterToggledOn(),
@@ -311,6 +387,8 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
 
             ByteArrayOutputStream outputStream = new ByteArrayOutputStream(BufferedMeasureCodec.DEFAULT_BUFFER_SIZE);//ByteArrayOutputStream will auto grow
             int finalRowCount = 0;
+            boolean limitReached = false;
+            final long chunkMaxResponseBytes = kylinConfig.getPartitionChunkMaxResponseBytes();
 
             try {
                 for (GTRecord oneRecord : finalScanner) {
@@ -326,12 +404,18 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
 
                     finalRowCount++;
 
+                    if (chunkedCellLists != null && outputStream.size() > chunkMaxResponseBytes) {
+                        throw new ResourceLimitExceededException("chunk response bytes " + outputStream.size()
+                                + " exceeds threshold " + chunkMaxResponseBytes);
+                    }
+
                     //if it's doing storage aggr, then should rely on GTAggregateScanner's limit check
                     if (!scanReq.isDoingStorageAggregation()
                             && (scanReq.getStorageLimitLevel() != StorageLimitLevel.NO_LIMIT
                                     && finalRowCount >= storagePushDownLimit)) {
                         //read one more record than limit
                         logger.info("The finalScanner aborted because storagePushDownLimit is satisfied");
+                        limitReached = true;
                         break;
                     }
                 }
@@ -353,6 +437,16 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
             logger.info("Total scanned {} rows and {} bytes", cellListIterator.getTotalScannedRowCount(),
                     cellListIterator.getTotalScannedRowBytes());
 
+            CubeVisitProtos.ResumePoint resumePoint = null;
+            if (chunkedCellLists != null && errorInfo == null && !limitReached) {
+                resumePoint = chunkedCellLists.getResumePoint();
+                if (resumePoint != null) {
+                    logger.info("Chunk done, next chunk resumes from raw scan {} after row {}",
+                            resumePoint.getRawScanIndex(),
+                            BytesUtil.toHex(HBaseZeroCopyByteString.zeroCopyGetBytes(resumePoint.getRowKey())));
+                }
+            }
+
             //outputStream.close() is not necessary
             byte[] compressedAllRows;
             if (errorInfo == null) {
@@ -382,6 +476,9 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
             if (errorInfo != null) {
                 responseBuilder.setErrorInfo(errorInfo);
             }
+            if (resumePoint != null) {
+                responseBuilder.setResumePoint(resumePoint);
+            }
             done.run(responseBuilder.//
                     setCompressedRows(HBaseZeroCopyByteString.wrap(compressedAllRows)).//too many array copies 
                     setStats(CubeVisitProtos.CubeVisitResponse.Stats.newBuilder()
@@ -145,6 +145,32 @@ public final class CubeVisitProtos {
      * <code>optional bool isExactAggregate = 9 [default = false];</code>
      */
     boolean getIsExactAggregate();
+
+    // optional .ResumePoint resumePoint = 10;
+    /**
+     * <code>optional .ResumePoint resumePoint = 10;</code>
+     *
+     * <pre>
+     * set when continuing a chunked visit of the same region
+     * </pre>
+     */
+    boolean hasResumePoint();
+    /**
+     * <code>optional .ResumePoint resumePoint = 10;</code>
+     *
+     * <pre>
+     * set when continuing a chunked visit of the same region
+     * </pre>
+     */
+    org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint getResumePoint();
+    /**
+     * <code>optional .ResumePoint resumePoint = 10;</code>
+     *
+     * <pre>
+     * set when continuing a chunked visit of the same region
+     * </pre>
+     */
+    org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePointOrBuilder getResumePointOrBuilder();
   }
   /**
    * Protobuf type {@code CubeVisitRequest}
@@ -245,6 +271,19 @@ public final class CubeVisitProtos {
               isExactAggregate_ = input.readBool();
               break;
             }
+            case 82: {
+              org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.Builder subBuilder = null;
+              if (((bitField0_ & 0x00000100) == 0x00000100)) {
+                subBuilder = resumePoint_.toBuilder();
+              }
+              resumePoint_ = input.readMessage(org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.PARSER, extensionRegistry);
+              if (subBuilder != null) {
+                subBuilder.mergeFrom(resumePoint_);
+                resumePoint_ = subBuilder.buildPartial();
+              }
+              bitField0_ |= 0x00000100;
+              break;
+            }
           }
         }
       } catch (com.google.protobuf.InvalidProtocolBufferException e) {
@@ -1030,6 +1069,40 @@ public final class CubeVisitProtos {
       return isExactAggregate_;
     }
 
+    // optional .ResumePoint resumePoint = 10;
+    public static final int RESUMEPOINT_FIELD_NUMBER = 10;
+    private org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint resumePoint_;
+    /**
+     * <code>optional .ResumePoint resumePoint = 10;</code>
+     *
+     * <pre>
+     * set when continuing a chunked visit of the same region
+     * </pre>
+     */
+    public boolean hasResumePoint() {
+      return ((bitField0_ & 0x00000100) == 0x00000100);
+    }
+    /**
+     * <code>optional .ResumePoint resumePoint = 10;</code>
+     *
+     * <pre>
+     * set when continuing a chunked visit of the same region
+     * </pre>
+     */
+    public org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint getResumePoint() {
+      return resumePoint_;
+    }
+    /**
+     * <code>optional .ResumePoint resumePoint = 10;</code>
+     *
+     * <pre>
+     * set when continuing a chunked visit of the same region
+     * </pre>
+     */
+    public org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePointOrBuilder getResumePointOrBuilder() {
+      return resumePoint_;
+    }
+
     private void initFields() {
       gtScanRequest_ = com.google.protobuf.ByteString.EMPTY;
       hbaseRawScan_ = com.google.protobuf.ByteString.EMPTY;
@@ -1040,6 +1113,7 @@ public final class CubeVisitProtos {
       spillEnabled_ = true;
       maxScanBytes_ = 0L;
       isExactAggregate_ = false;
+      resumePoint_ = org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.getDefaultInstance();
     }
     private byte memoizedIsInitialized = -1;
     public final boolean isInitialized() {
@@ -1062,6 +1136,12 @@ public final class CubeVisitProtos {
         memoizedIsInitialized = 0;
         return false;
       }
+      if (hasResumePoint()) {
+        if (!getResumePoint().isInitialized()) {
+          memoizedIsInitialized = 0;
+          return false;
+        }
+      }
       memoizedIsInitialized = 1;
       return true;
     }
@@ -1096,6 +1176,9 @@ public final class CubeVisitProtos {
       if (((bitField0_ & 0x00000080) == 0x00000080)) {
         output.writeBool(9, isExactAggregate_);
       }
+      if (((bitField0_ & 0x00000100) == 0x00000100)) {
+        output.writeMessage(10, resumePoint_);
+      }
       getUnknownFields().writeTo(output);
     }
 
@@ -1141,6 +1224,10 @@ public final class CubeVisitProtos {
         size += com.google.protobuf.CodedOutputStream
           .computeBoolSize(9, isExactAggregate_);
       }
+      if (((bitField0_ & 0x00000100) == 0x00000100)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(10, resumePoint_);
+      }
       size += getUnknownFields().getSerializedSize();
       memoizedSerializedSize = size;
       return size;
@@ -1206,6 +1293,11 @@ public final class CubeVisitProtos {
         result = result && (getIsExactAggregate()
             == other.getIsExactAggregate());
       }
+      result = result && (hasResumePoint() == other.hasResumePoint());
+      if (hasResumePoint()) {
+        result = result && getResumePoint()
+            .equals(other.getResumePoint());
+      }
       result = result &&
           getUnknownFields().equals(other.getUnknownFields());
       return result;
@@ -1255,6 +1347,10 @@ public final class CubeVisitProtos {
         hash = (37 * hash) + ISEXACTAGGREGATE_FIELD_NUMBER;
         hash = (53 * hash) + hashBoolean(getIsExactAggregate());
       }
+      if (hasResumePoint()) {
+        hash = (37 * hash) + RESUMEPOINT_FIELD_NUMBER;
+        hash = (53 * hash) + getResumePoint().hashCode();
+      }
       hash = (29 * hash) + getUnknownFields().hashCode();
       memoizedHashCode = hash;
       return hash;
@@ -1357,6 +1453,7 @@ public final class CubeVisitProtos {
       private void maybeForceBuilderInitialization() {
         if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
           getHbaseColumnsToGTFieldBuilder();
+          getResumePointFieldBuilder();
         }
       }
       private static Builder create() {
@@ -1387,6 +1484,12 @@ public final class CubeVisitProtos {
         bitField0_ = (bitField0_ & ~0x00000080);
         isExactAggregate_ = false;
         bitField0_ = (bitField0_ & ~0x00000100);
+        if (resumePointBuilder_ == null) {
+          resumePoint_ = org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.getDefaultInstance();
+        } else {
+          resumePointBuilder_.clear();
+        }
+        bitField0_ = (bitField0_ & ~0x00000200);
         return this;
       }
 
@@ -1456,6 +1559,14 @@ public final class CubeVisitProtos {
           to_bitField0_ |= 0x00000080;
         }
         result.isExactAggregate_ = isExactAggregate_;
+        if (((from_bitField0_ & 0x00000200) == 0x00000200)) {
+          to_bitField0_ |= 0x00000100;
+        }
+        if (resumePointBuilder_ == null) {
+          result.resumePoint_ = resumePoint_;
+        } else {
+          result.resumePoint_ = resumePointBuilder_.build();
+        }
         result.bitField0_ = to_bitField0_;
         onBuilt();
         return result;
@@ -1526,6 +1637,9 @@ public final class CubeVisitProtos {
         if (other.hasIsExactAggregate()) {
           setIsExactAggregate(other.getIsExactAggregate());
         }
+        if (other.hasResumePoint()) {
+          mergeResumePoint(other.getResumePoint());
+        }
         this.mergeUnknownFields(other.getUnknownFields());
         return this;
       }
@@ -1547,6 +1661,12 @@ public final class CubeVisitProtos {
           
           return false;
         }
+        if (hasResumePoint()) {
+          if (!getResumePoint().isInitialized()) {
+            
+            return false;
+          }
+        }
         return true;
       }
 
@@ -2086,130 +2206,858 @@ public final class CubeVisitProtos {
         return this;
       }
 
-      // optional bool spillEnabled = 7 [default = true];
-      private boolean spillEnabled_ = true;
+      // optional bool spillEnabled = 7 [default = true];
+      private boolean spillEnabled_ = true;
+      /**
+       * <code>optional bool spillEnabled = 7 [default = true];</code>
+       */
+      public boolean hasSpillEnabled() {
+        return ((bitField0_ & 0x00000040) == 0x00000040);
+      }
+      /**
+       * <code>optional bool spillEnabled = 7 [default = true];</code>
+       */
+      public boolean getSpillEnabled() {
+        return spillEnabled_;
+      }
+      /**
+       * <code>optional bool spillEnabled = 7 [default = true];</code>
+       */
+      public Builder setSpillEnabled(boolean value) {
+        bitField0_ |= 0x00000040;
+        spillEnabled_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional bool spillEnabled = 7 [default = true];</code>
+       */
+      public Builder clearSpillEnabled() {
+        bitField0_ = (bitField0_ & ~0x00000040);
+        spillEnabled_ = true;
+        onChanged();
+        return this;
+      }
+
+      // optional int64 maxScanBytes = 8;
+      private long maxScanBytes_ ;
+      /**
+       * <code>optional int64 maxScanBytes = 8;</code>
+       *
+       * <pre>
+       * must be positive
+       * </pre>
+       */
+      public boolean hasMaxScanBytes() {
+        return ((bitField0_ & 0x00000080) == 0x00000080);
+      }
+      /**
+       * <code>optional int64 maxScanBytes = 8;</code>
+       *
+       * <pre>
+       * must be positive
+       * </pre>
+       */
+      public long getMaxScanBytes() {
+        return maxScanBytes_;
+      }
+      /**
+       * <code>optional int64 maxScanBytes = 8;</code>
+       *
+       * <pre>
+       * must be positive
+       * </pre>
+       */
+      public Builder setMaxScanBytes(long value) {
+        bitField0_ |= 0x00000080;
+        maxScanBytes_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional int64 maxScanBytes = 8;</code>
+       *
+       * <pre>
+       * must be positive
+       * </pre>
+       */
+      public Builder clearMaxScanBytes() {
+        bitField0_ = (bitField0_ & ~0x00000080);
+        maxScanBytes_ = 0L;
+        onChanged();
+        return this;
+      }
+
+      // optional bool isExactAggregate = 9 [default = false];
+      private boolean isExactAggregate_ ;
+      /**
+       * <code>optional bool isExactAggregate = 9 [default = false];</code>
+       */
+      public boolean hasIsExactAggregate() {
+        return ((bitField0_ & 0x00000100) == 0x00000100);
+      }
+      /**
+       * <code>optional bool isExactAggregate = 9 [default = false];</code>
+       */
+      public boolean getIsExactAggregate() {
+        return isExactAggregate_;
+      }
+      /**
+       * <code>optional bool isExactAggregate = 9 [default = false];</code>
+       */
+      public Builder setIsExactAggregate(boolean value) {
+        bitField0_ |= 0x00000100;
+        isExactAggregate_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional bool isExactAggregate = 9 [default = false];</code>
+       */
+      public Builder clearIsExactAggregate() {
+        bitField0_ = (bitField0_ & ~0x00000100);
+        isExactAggregate_ = false;
+        onChanged();
+        return this;
+      }
+
+      // optional .ResumePoint resumePoint = 10;
+      private org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint resumePoint_ = org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.getDefaultInstance();
+      private com.google.protobuf.SingleFieldBuilder<
+          org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint, org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.Builder, org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePointOrBuilder> resumePointBuilder_;
+      /**
+       * <code>optional .ResumePoint resumePoint = 10;</code>
+       *
+       * <pre>
+       * set when continuing a chunked visit of the same region
+       * </pre>
+       */
+      public boolean hasResumePoint() {
+        return ((bitField0_ & 0x00000200) == 0x00000200);
+      }
+      /**
+       * <code>optional .ResumePoint resumePoint = 10;</code>
+       *
+       * <pre>
+       * set when continuing a chunked visit of the same region
+       * </pre>
+       */
+      public org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint getResumePoint() {
+        if (resumePointBuilder_ == null) {
+          return resumePoint_;
+        } else {
+          return resumePointBuilder_.getMessage();
+        }
+      }
+      /**
+       * <code>optional .ResumePoint resumePoint = 10;</code>
+       *
+       * <pre>
+       * set when continuing a chunked visit of the same region
+       * </pre>
+       */
+      public Builder setResumePoint(org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint value) {
+        if (resumePointBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          resumePoint_ = value;
+          onChanged();
+        } else {
+          resumePointBuilder_.setMessage(value);
+        }
+        bitField0_ |= 0x00000200;
+        return this;
+      }
+      /**
+       * <code>optional .ResumePoint resumePoint = 10;</code>
+       *
+       * <pre>
+       * set when continuing a chunked visit of the same region
+       * </pre>
+       */
+      public Builder setResumePoint(
+          org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.Builder builderForValue) {
+        if (resumePointBuilder_ == null) {
+          resumePoint_ = builderForValue.build();
+          onChanged();
+        } else {
+          resumePointBuilder_.setMessage(builderForValue.build());
+        }
+        bitField0_ |= 0x00000200;
+        return this;
+      }
+      /**
+       * <code>optional .ResumePoint resumePoint = 10;</code>
+       *
+       * <pre>
+       * set when continuing a chunked visit of the same region
+       * </pre>
+       */
+      public Builder mergeResumePoint(org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint value) {
+        if (resumePointBuilder_ == null) {
+          if (((bitField0_ & 0x00000200) == 0x00000200) &&
+              resumePoint_ != org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.getDefaultInstance()) {
+            resumePoint_ =
+              org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.newBuilder(resumePoint_).mergeFrom(value).buildPartial();
+          } else {
+            resumePoint_ = value;
+          }
+          onChanged();
+        } else {
+          resumePointBuilder_.mergeFrom(value);
+        }
+        bitField0_ |= 0x00000200;
+        return this;
+      }
+      /**
+       * <code>optional .ResumePoint resumePoint = 10;</code>
+       *
+       * <pre>
+       * set when continuing a chunked visit of the same region
+       * </pre>
+       */
+      public Builder clearResumePoint() {
+        if (resumePointBuilder_ == null) {
+          resumePoint_ = org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.getDefaultInstance();
+          onChanged();
+        } else {
+          resumePointBuilder_.clear();
+        }
+        bitField0_ = (bitField0_ & ~0x00000200);
+        return this;
+      }
+      /**
+       * <code>optional .ResumePoint resumePoint = 10;</code>
+       *
+       * <pre>
+       * set when continuing a chunked visit of the same region
+       * </pre>
+       */
+      public org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.Builder getResumePointBuilder() {
+        bitField0_ |= 0x00000200;
+        onChanged();
+        return getResumePointFieldBuilder().getBuilder();
+      }
+      /**
+       * <code>optional .ResumePoint resumePoint = 10;</code>
+       *
+       * <pre>
+       * set when continuing a chunked visit of the same region
+       * </pre>
+       */
+      public org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePointOrBuilder getResumePointOrBuilder() {
+        if (resumePointBuilder_ != null) {
+          return resumePointBuilder_.getMessageOrBuilder();
+        } else {
+          return resumePoint_;
+        }
+      }
+      /**
+       * <code>optional .ResumePoint resumePoint = 10;</code>
+       *
+       * <pre>
+       * set when continuing a chunked visit of the same region
+       * </pre>
+       */
+      private com.google.protobuf.SingleFieldBuilder<
+          org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint, org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.Builder, org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePointOrBuilder> 
+          getResumePointFieldBuilder() {
+        if (resumePointBuilder_ == null) {
+          resumePointBuilder_ = new com.google.protobuf.SingleFieldBuilder<
+              org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint, org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.Builder, org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePointOrBuilder>(
+                  resumePoint_,
+                  getParentForChildren(),
+                  isClean());
+          resumePoint_ = null;
+        }
+        return resumePointBuilder_;
+      }
+
+      // @@protoc_insertion_point(builder_scope:CubeVisitRequest)
+    }
+
+    static {
+      defaultInstance = new CubeVisitRequest(true);
+      defaultInstance.initFields();
+    }
+
+    // @@protoc_insertion_point(class_scope:CubeVisitRequest)
+  }
+
+  public interface ResumePointOrBuilder
+      extends com.google.protobuf.MessageOrBuilder {
+
+    // required int32 rawScanIndex = 1;
+    /**
+     * <code>required int32 rawScanIndex = 1;</code>
+     */
+    boolean hasRawScanIndex();
+    /**
+     * <code>required int32 rawScanIndex = 1;</code>
+     */
+    int getRawScanIndex();
+
+    // required bytes rowKey = 2;
+    /**
+     * <code>required bytes rowKey = 2;</code>
+     *
+     * <pre>
+     * the last visited row, next chunk starts right after it
+     * </pre>
+     */
+    boolean hasRowKey();
+    /**
+     * <code>required bytes rowKey = 2;</code>
+     *
+     * <pre>
+     * the last visited row, next chunk starts right after it
+     * </pre>
+     */
+    com.google.protobuf.ByteString getRowKey();
+  }
+  /**
+   * Protobuf type {@code ResumePoint}
+   */
+  public static final class ResumePoint extends
+      com.google.protobuf.GeneratedMessage
+      implements ResumePointOrBuilder {
+    // Use ResumePoint.newBuilder() to construct.
+    private ResumePoint(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
+      super(builder);
+      this.unknownFields = builder.getUnknownFields();
+    }
+    private ResumePoint(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
+
+    private static final ResumePoint defaultInstance;
+    public static ResumePoint getDefaultInstance() {
+      return defaultInstance;
+    }
+
+    public ResumePoint getDefaultInstanceForType() {
+      return defaultInstance;
+    }
+
+    private final com.google.protobuf.UnknownFieldSet unknownFields;
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+        getUnknownFields() {
+      return this.unknownFields;
+    }
+    private ResumePoint(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      initFields();
+      int mutable_bitField0_ = 0;
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 8: {
+              bitField0_ |= 0x00000001;
+              rawScanIndex_ = input.readInt32();
+              break;
+            }
+            case 18: {
+              bitField0_ |= 0x00000002;
+              rowKey_ = input.readBytes();
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e.getMessage()).setUnfinishedMessage(this);
+      } finally {
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.internal_static_ResumePoint_descriptor;
+    }
+
+    protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.internal_static_ResumePoint_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.class, org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.Builder.class);
+    }
+
+    public static com.google.protobuf.Parser<ResumePoint> PARSER =
+        new com.google.protobuf.AbstractParser<ResumePoint>() {
+      public ResumePoint parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new ResumePoint(input, extensionRegistry);
+      }
+    };
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<ResumePoint> getParserForType() {
+      return PARSER;
+    }
+
+    private int bitField0_;
+    // required int32 rawScanIndex = 1;
+    public static final int RAWSCANINDEX_FIELD_NUMBER = 1;
+    private int rawScanIndex_;
+    /**
+     * <code>required int32 rawScanIndex = 1;</code>
+     */
+    public boolean hasRawScanIndex() {
+      return ((bitField0_ & 0x00000001) == 0x00000001);
+    }
+    /**
+     * <code>required int32 rawScanIndex = 1;</code>
+     */
+    public int getRawScanIndex() {
+      return rawScanIndex_;
+    }
+
+    // required bytes rowKey = 2;
+    public static final int ROWKEY_FIELD_NUMBER = 2;
+    private com.google.protobuf.ByteString rowKey_;
+    /**
+     * <code>required bytes rowKey = 2;</code>
+     *
+     * <pre>
+     * the last visited row, next chunk starts right after it
+     * </pre>
+     */
+    public boolean hasRowKey() {
+      return ((bitField0_ & 0x00000002) == 0x00000002);
+    }
+    /**
+     * <code>required bytes rowKey = 2;</code>
+     *
+     * <pre>
+     * the last visited row, next chunk starts right after it
+     * </pre>
+     */
+    public com.google.protobuf.ByteString getRowKey() {
+      return rowKey_;
+    }
+
+    private void initFields() {
+      rawScanIndex_ = 0;
+      rowKey_ = com.google.protobuf.ByteString.EMPTY;
+    }
+    private byte memoizedIsInitialized = -1;
+    public final boolean isInitialized() {
+      byte isInitialized = memoizedIsInitialized;
+      if (isInitialized != -1) return isInitialized == 1;
+
+      if (!hasRawScanIndex()) {
+        memoizedIsInitialized = 0;
+        return false;
+      }
+      if (!hasRowKey()) {
+        memoizedIsInitialized = 0;
+        return false;
+      }
+      memoizedIsInitialized = 1;
+      return true;
+    }
+
+    public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      getSerializedSize();
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        output.writeInt32(1, rawScanIndex_);
+      }
+      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+        output.writeBytes(2, rowKey_);
+      }
+      getUnknownFields().writeTo(output);
+    }
+
+    private int memoizedSerializedSize = -1;
+    public int getSerializedSize() {
+      int size = memoizedSerializedSize;
+      if (size != -1) return size;
+
+      size = 0;
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt32Size(1, rawScanIndex_);
+      }
+      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(2, rowKey_);
+      }
+      size += getUnknownFields().getSerializedSize();
+      memoizedSerializedSize = size;
+      return size;
+    }
+
+    private static final long serialVersionUID = 0L;
+    @java.lang.Override
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
+      return super.writeReplace();
+    }
+
+    @java.lang.Override
+    public boolean equals(final java.lang.Object obj) {
+      if (obj == this) {
+       return true;
+      }
+      if (!(obj instanceof org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint)) {
+        return super.equals(obj);
+      }
+      org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint other = (org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint) obj;
+
+      boolean result = true;
+      result = result && (hasRawScanIndex() == other.hasRawScanIndex());
+      if (hasRawScanIndex()) {
+        result = result && (getRawScanIndex()
+            == other.getRawScanIndex());
+      }
+      result = result && (hasRowKey() == other.hasRowKey());
+      if (hasRowKey()) {
+        result = result && getRowKey()
+            .equals(other.getRowKey());
+      }
+      result = result &&
+          getUnknownFields().equals(other.getUnknownFields());
+      return result;
+    }
+
+    private int memoizedHashCode = 0;
+    @java.lang.Override
+    public int hashCode() {
+      if (memoizedHashCode != 0) {
+        return memoizedHashCode;
+      }
+      int hash = 41;
+      hash = (19 * hash) + getDescriptorForType().hashCode();
+      if (hasRawScanIndex()) {
+        hash = (37 * hash) + RAWSCANINDEX_FIELD_NUMBER;
+        hash = (53 * hash) + getRawScanIndex();
+      }
+      if (hasRowKey()) {
+        hash = (37 * hash) + ROWKEY_FIELD_NUMBER;
+        hash = (53 * hash) + getRowKey().hashCode();
+      }
+      hash = (29 * hash) + getUnknownFields().hashCode();
+      memoizedHashCode = hash;
+      return hash;
+    }
+
+    public static org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint parseFrom(
+        com.google.protobuf.ByteString data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint parseFrom(
+        com.google.protobuf.ByteString data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint parseFrom(byte[] data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint parseFrom(
+        byte[] data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint parseFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint parseFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+    public static org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint parseDelimitedFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input);
+    }
+    public static org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint parseDelimitedFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input, extensionRegistry);
+    }
+    public static org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint parseFrom(
+        com.google.protobuf.CodedInputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint parseFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+
+    public static Builder newBuilder() { return Builder.create(); }
+    public Builder newBuilderForType() { return newBuilder(); }
+    public static Builder newBuilder(org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint prototype) {
+      return newBuilder().mergeFrom(prototype);
+    }
+    public Builder toBuilder() { return newBuilder(this); }
+
+    @java.lang.Override
+    protected Builder newBuilderForType(
+        com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+      Builder builder = new Builder(parent);
+      return builder;
+    }
+    /**
+     * Protobuf type {@code ResumePoint}
+     */
+    public static final class Builder extends
+        com.google.protobuf.GeneratedMessage.Builder<Builder>
+       implements org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePointOrBuilder {
+      public static final com.google.protobuf.Descriptors.Descriptor
+          getDescriptor() {
+        return org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.internal_static_ResumePoint_descriptor;
+      }
+
+      protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+          internalGetFieldAccessorTable() {
+        return org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.internal_static_ResumePoint_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.class, org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.Builder.class);
+      }
+
+      // Construct using org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.newBuilder()
+      private Builder() {
+        maybeForceBuilderInitialization();
+      }
+
+      private Builder(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+        super(parent);
+        maybeForceBuilderInitialization();
+      }
+      private void maybeForceBuilderInitialization() {
+        if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
+        }
+      }
+      private static Builder create() {
+        return new Builder();
+      }
+
+      public Builder clear() {
+        super.clear();
+        rawScanIndex_ = 0;
+        bitField0_ = (bitField0_ & ~0x00000001);
+        rowKey_ = com.google.protobuf.ByteString.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000002);
+        return this;
+      }
+
+      public Builder clone() {
+        return create().mergeFrom(buildPartial());
+      }
+
+      public com.google.protobuf.Descriptors.Descriptor
+          getDescriptorForType() {
+        return org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.internal_static_ResumePoint_descriptor;
+      }
+
+      public org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint getDefaultInstanceForType() {
+        return org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.getDefaultInstance();
+      }
+
+      public org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint build() {
+        org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint result = buildPartial();
+        if (!result.isInitialized()) {
+          throw newUninitializedMessageException(result);
+        }
+        return result;
+      }
+
+      public org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint buildPartial() {
+        org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint result = new org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint(this);
+        int from_bitField0_ = bitField0_;
+        int to_bitField0_ = 0;
+        if (((from_bitField0_ & 0x00000001) == 0x00000001)) {
+          to_bitField0_ |= 0x00000001;
+        }
+        result.rawScanIndex_ = rawScanIndex_;
+        if (((from_bitField0_ & 0x00000002) == 0x00000002)) {
+          to_bitField0_ |= 0x00000002;
+        }
+        result.rowKey_ = rowKey_;
+        result.bitField0_ = to_bitField0_;
+        onBuilt();
+        return result;
+      }
+
+      public Builder mergeFrom(com.google.protobuf.Message other) {
+        if (other instanceof org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint) {
+          return mergeFrom((org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint)other);
+        } else {
+          super.mergeFrom(other);
+          return this;
+        }
+      }
+
+      public Builder mergeFrom(org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint other) {
+        if (other == org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.getDefaultInstance()) return this;
+        if (other.hasRawScanIndex()) {
+          setRawScanIndex(other.getRawScanIndex());
+        }
+        if (other.hasRowKey()) {
+          setRowKey(other.getRowKey());
+        }
+        this.mergeUnknownFields(other.getUnknownFields());
+        return this;
+      }
+
+      public final boolean isInitialized() {
+        if (!hasRawScanIndex()) {
+          
+          return false;
+        }
+        if (!hasRowKey()) {
+          
+          return false;
+        }
+        return true;
+      }
+
+      public Builder mergeFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint) e.getUnfinishedMessage();
+          throw e;
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
+          }
+        }
+        return this;
+      }
+      private int bitField0_;
+
+      // required int32 rawScanIndex = 1;
+      private int rawScanIndex_ ;
       /**
-       * <code>optional bool spillEnabled = 7 [default = true];</code>
+       * <code>required int32 rawScanIndex = 1;</code>
        */
-      public boolean hasSpillEnabled() {
-        return ((bitField0_ & 0x00000040) == 0x00000040);
+      public boolean hasRawScanIndex() {
+        return ((bitField0_ & 0x00000001) == 0x00000001);
       }
       /**
-       * <code>optional bool spillEnabled = 7 [default = true];</code>
+       * <code>required int32 rawScanIndex = 1;</code>
        */
-      public boolean getSpillEnabled() {
-        return spillEnabled_;
+      public int getRawScanIndex() {
+        return rawScanIndex_;
       }
       /**
-       * <code>optional bool spillEnabled = 7 [default = true];</code>
+       * <code>required int32 rawScanIndex = 1;</code>
        */
-      public Builder setSpillEnabled(boolean value) {
-        bitField0_ |= 0x00000040;
-        spillEnabled_ = value;
+      public Builder setRawScanIndex(int value) {
+        bitField0_ |= 0x00000001;
+        rawScanIndex_ = value;
         onChanged();
         return this;
       }
       /**
-       * <code>optional bool spillEnabled = 7 [default = true];</code>
+       * <code>required int32 rawScanIndex = 1;</code>
        */
-      public Builder clearSpillEnabled() {
-        bitField0_ = (bitField0_ & ~0x00000040);
-        spillEnabled_ = true;
+      public Builder clearRawScanIndex() {
+        bitField0_ = (bitField0_ & ~0x00000001);
+        rawScanIndex_ = 0;
         onChanged();
         return this;
       }
 
-      // optional int64 maxScanBytes = 8;
-      private long maxScanBytes_ ;
+      // required bytes rowKey = 2;
+      private com.google.protobuf.ByteString rowKey_ = com.google.protobuf.ByteString.EMPTY;
       /**
-       * <code>optional int64 maxScanBytes = 8;</code>
+       * <code>required bytes rowKey = 2;</code>
        *
        * <pre>
-       * must be positive
+       * the last visited row, next chunk starts right after it
        * </pre>
        */
-      public boolean hasMaxScanBytes() {
-        return ((bitField0_ & 0x00000080) == 0x00000080);
+      public boolean hasRowKey() {
+        return ((bitField0_ & 0x00000002) == 0x00000002);
       }
       /**
-       * <code>optional int64 maxScanBytes = 8;</code>
+       * <code>required bytes rowKey = 2;</code>
        *
        * <pre>
-       * must be positive
+       * the last visited row, next chunk starts right after it
        * </pre>
        */
-      public long getMaxScanBytes() {
-        return maxScanBytes_;
+      public com.google.protobuf.ByteString getRowKey() {
+        return rowKey_;
       }
       /**
-       * <code>optional int64 maxScanBytes = 8;</code>
+       * <code>required bytes rowKey = 2;</code>
        *
        * <pre>
-       * must be positive
+       * the last visited row, next chunk starts right after it
        * </pre>
        */
-      public Builder setMaxScanBytes(long value) {
-        bitField0_ |= 0x00000080;
-        maxScanBytes_ = value;
+      public Builder setRowKey(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000002;
+        rowKey_ = value;
         onChanged();
         return this;
       }
       /**
-       * <code>optional int64 maxScanBytes = 8;</code>
+       * <code>required bytes rowKey = 2;</code>
        *
        * <pre>
-       * must be positive
+       * the last visited row, next chunk starts right after it
        * </pre>
        */
-      public Builder clearMaxScanBytes() {
-        bitField0_ = (bitField0_ & ~0x00000080);
-        maxScanBytes_ = 0L;
-        onChanged();
-        return this;
-      }
-
-      // optional bool isExactAggregate = 9 [default = false];
-      private boolean isExactAggregate_ ;
-      /**
-       * <code>optional bool isExactAggregate = 9 [default = false];</code>
-       */
-      public boolean hasIsExactAggregate() {
-        return ((bitField0_ & 0x00000100) == 0x00000100);
-      }
-      /**
-       * <code>optional bool isExactAggregate = 9 [default = false];</code>
-       */
-      public boolean getIsExactAggregate() {
-        return isExactAggregate_;
-      }
-      /**
-       * <code>optional bool isExactAggregate = 9 [default = false];</code>
-       */
-      public Builder setIsExactAggregate(boolean value) {
-        bitField0_ |= 0x00000100;
-        isExactAggregate_ = value;
-        onChanged();
-        return this;
-      }
-      /**
-       * <code>optional bool isExactAggregate = 9 [default = false];</code>
-       */
-      public Builder clearIsExactAggregate() {
-        bitField0_ = (bitField0_ & ~0x00000100);
-        isExactAggregate_ = false;
+      public Builder clearRowKey() {
+        bitField0_ = (bitField0_ & ~0x00000002);
+        rowKey_ = getDefaultInstance().getRowKey();
         onChanged();
         return this;
       }
 
-      // @@protoc_insertion_point(builder_scope:CubeVisitRequest)
+      // @@protoc_insertion_point(builder_scope:ResumePoint)
     }
 
     static {
-      defaultInstance = new CubeVisitRequest(true);
+      defaultInstance = new ResumePoint(true);
       defaultInstance.initFields();
     }
 
-    // @@protoc_insertion_point(class_scope:CubeVisitRequest)
+    // @@protoc_insertion_point(class_scope:ResumePoint)
   }
 
   public interface CubeVisitResponseOrBuilder
@@ -2264,6 +3112,32 @@ public final class CubeVisitProtos {
      * </pre>
      */
     org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitResponse.ErrorInfoOrBuilder getErrorInfoOrBuilder();
+
+    // optional .ResumePoint resumePoint = 4;
+    /**
+     * <code>optional .ResumePoint resumePoint = 4;</code>
+     *
+     * <pre>
+     * set when the region has more rows to visit in next chunk
+     * </pre>
+     */
+    boolean hasResumePoint();
+    /**
+     * <code>optional .ResumePoint resumePoint = 4;</code>
+     *
+     * <pre>
+     * set when the region has more rows to visit in next chunk
+     * </pre>
+     */
+    org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint getResumePoint();
+    /**
+     * <code>optional .ResumePoint resumePoint = 4;</code>
+     *
+     * <pre>
+     * set when the region has more rows to visit in next chunk
+     * </pre>
+     */
+    org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePointOrBuilder getResumePointOrBuilder();
   }
   /**
    * Protobuf type {@code CubeVisitResponse}
@@ -2347,6 +3221,19 @@ public final class CubeVisitProtos {
               bitField0_ |= 0x00000004;
               break;
             }
+            case 34: {
+              org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.Builder subBuilder = null;
+              if (((bitField0_ & 0x00000008) == 0x00000008)) {
+                subBuilder = resumePoint_.toBuilder();
+              }
+              resumePoint_ = input.readMessage(org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.PARSER, extensionRegistry);
+              if (subBuilder != null) {
+                subBuilder.mergeFrom(resumePoint_);
+                resumePoint_ = subBuilder.buildPartial();
+              }
+              bitField0_ |= 0x00000008;
+              break;
+            }
           }
         }
       } catch (com.google.protobuf.InvalidProtocolBufferException e) {
@@ -4658,10 +5545,45 @@ public final class CubeVisitProtos {
       return errorInfo_;
     }
 
+    // optional .ResumePoint resumePoint = 4;
+    public static final int RESUMEPOINT_FIELD_NUMBER = 4;
+    private org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint resumePoint_;
+    /**
+     * <code>optional .ResumePoint resumePoint = 4;</code>
+     *
+     * <pre>
+     * set when the region has more rows to visit in next chunk
+     * </pre>
+     */
+    public boolean hasResumePoint() {
+      return ((bitField0_ & 0x00000008) == 0x00000008);
+    }
+    /**
+     * <code>optional .ResumePoint resumePoint = 4;</code>
+     *
+     * <pre>
+     * set when the region has more rows to visit in next chunk
+     * </pre>
+     */
+    public org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint getResumePoint() {
+      return resumePoint_;
+    }
+    /**
+     * <code>optional .ResumePoint resumePoint = 4;</code>
+     *
+     * <pre>
+     * set when the region has more rows to visit in next chunk
+     * </pre>
+     */
+    public org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePointOrBuilder getResumePointOrBuilder() {
+      return resumePoint_;
+    }
+
     private void initFields() {
       compressedRows_ = com.google.protobuf.ByteString.EMPTY;
       stats_ = org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitResponse.Stats.getDefaultInstance();
       errorInfo_ = org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.CubeVisitResponse.ErrorInfo.getDefaultInstance();
+      resumePoint_ = org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.getDefaultInstance();
     }
     private byte memoizedIsInitialized = -1;
     public final boolean isInitialized() {
@@ -4682,6 +5604,12 @@ public final class CubeVisitProtos {
           return false;
         }
       }
+      if (hasResumePoint()) {
+        if (!getResumePoint().isInitialized()) {
+          memoizedIsInitialized = 0;
+          return false;
+        }
+      }
       memoizedIsInitialized = 1;
       return true;
     }
@@ -4698,6 +5626,9 @@ public final class CubeVisitProtos {
       if (((bitField0_ & 0x00000004) == 0x00000004)) {
         output.writeMessage(3, errorInfo_);
       }
+      if (((bitField0_ & 0x00000008) == 0x00000008)) {
+        output.writeMessage(4, resumePoint_);
+      }
       getUnknownFields().writeTo(output);
     }
 
@@ -4719,6 +5650,10 @@ public final class CubeVisitProtos {
         size += com.google.protobuf.CodedOutputStream
           .computeMessageSize(3, errorInfo_);
       }
+      if (((bitField0_ & 0x00000008) == 0x00000008)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(4, resumePoint_);
+      }
       size += getUnknownFields().getSerializedSize();
       memoizedSerializedSize = size;
       return size;
@@ -4757,6 +5692,11 @@ public final class CubeVisitProtos {
         result = result && getErrorInfo()
             .equals(other.getErrorInfo());
       }
+      result = result && (hasResumePoint() == other.hasResumePoint());
+      if (hasResumePoint()) {
+        result = result && getResumePoint()
+            .equals(other.getResumePoint());
+      }
       result = result &&
           getUnknownFields().equals(other.getUnknownFields());
       return result;
@@ -4782,6 +5722,10 @@ public final class CubeVisitProtos {
         hash = (37 * hash) + ERRORINFO_FIELD_NUMBER;
         hash = (53 * hash) + getErrorInfo().hashCode();
       }
+      if (hasResumePoint()) {
+        hash = (37 * hash) + RESUMEPOINT_FIELD_NUMBER;
+        hash = (53 * hash) + getResumePoint().hashCode();
+      }
       hash = (29 * hash) + getUnknownFields().hashCode();
       memoizedHashCode = hash;
       return hash;
@@ -4885,6 +5829,7 @@ public final class CubeVisitProtos {
         if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
           getStatsFieldBuilder();
           getErrorInfoFieldBuilder();
+          getResumePointFieldBuilder();
         }
       }
       private static Builder create() {
@@ -4907,6 +5852,12 @@ public final class CubeVisitProtos {
           errorInfoBuilder_.clear();
         }
         bitField0_ = (bitField0_ & ~0x00000004);
+        if (resumePointBuilder_ == null) {
+          resumePoint_ = org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.getDefaultInstance();
+        } else {
+          resumePointBuilder_.clear();
+        }
+        bitField0_ = (bitField0_ & ~0x00000008);
         return this;
       }
 
@@ -4955,6 +5906,14 @@ public final class CubeVisitProtos {
         } else {
           result.errorInfo_ = errorInfoBuilder_.build();
         }
+        if (((from_bitField0_ & 0x00000008) == 0x00000008)) {
+          to_bitField0_ |= 0x00000008;
+        }
+        if (resumePointBuilder_ == null) {
+          result.resumePoint_ = resumePoint_;
+        } else {
+          result.resumePoint_ = resumePointBuilder_.build();
+        }
         result.bitField0_ = to_bitField0_;
         onBuilt();
         return result;
@@ -4980,6 +5939,9 @@ public final class CubeVisitProtos {
         if (other.hasErrorInfo()) {
           mergeErrorInfo(other.getErrorInfo());
         }
+        if (other.hasResumePoint()) {
+          mergeResumePoint(other.getResumePoint());
+        }
         this.mergeUnknownFields(other.getUnknownFields());
         return this;
       }
@@ -4999,6 +5961,12 @@ public final class CubeVisitProtos {
             return false;
           }
         }
+        if (hasResumePoint()) {
+          if (!getResumePoint().isInitialized()) {
+            
+            return false;
+          }
+        }
         return true;
       }
 
@@ -5327,6 +6295,159 @@ public final class CubeVisitProtos {
         return errorInfoBuilder_;
       }
 
+      // optional .ResumePoint resumePoint = 4;
+      private org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint resumePoint_ = org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.getDefaultInstance();
+      private com.google.protobuf.SingleFieldBuilder<
+          org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint, org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.Builder, org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePointOrBuilder> resumePointBuilder_;
+      /**
+       * <code>optional .ResumePoint resumePoint = 4;</code>
+       *
+       * <pre>
+       * set when the region has more rows to visit in next chunk
+       * </pre>
+       */
+      public boolean hasResumePoint() {
+        return ((bitField0_ & 0x00000008) == 0x00000008);
+      }
+      /**
+       * <code>optional .ResumePoint resumePoint = 4;</code>
+       *
+       * <pre>
+       * set when the region has more rows to visit in next chunk
+       * </pre>
+       */
+      public org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint getResumePoint() {
+        if (resumePointBuilder_ == null) {
+          return resumePoint_;
+        } else {
+          return resumePointBuilder_.getMessage();
+        }
+      }
+      /**
+       * <code>optional .ResumePoint resumePoint = 4;</code>
+       *
+       * <pre>
+       * set when the region has more rows to visit in next chunk
+       * </pre>
+       */
+      public Builder setResumePoint(org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint value) {
+        if (resumePointBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          resumePoint_ = value;
+          onChanged();
+        } else {
+          resumePointBuilder_.setMessage(value);
+        }
+        bitField0_ |= 0x00000008;
+        return this;
+      }
+      /**
+       * <code>optional .ResumePoint resumePoint = 4;</code>
+       *
+       * <pre>
+       * set when the region has more rows to visit in next chunk
+       * </pre>
+       */
+      public Builder setResumePoint(
+          org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.Builder builderForValue) {
+        if (resumePointBuilder_ == null) {
+          resumePoint_ = builderForValue.build();
+          onChanged();
+        } else {
+          resumePointBuilder_.setMessage(builderForValue.build());
+        }
+        bitField0_ |= 0x00000008;
+        return this;
+      }
+      /**
+       * <code>optional .ResumePoint resumePoint = 4;</code>
+       *
+       * <pre>
+       * set when the region has more rows to visit in next chunk
+       * </pre>
+       */
+      public Builder mergeResumePoint(org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint value) {
+        if (resumePointBuilder_ == null) {
+          if (((bitField0_ & 0x00000008) == 0x00000008) &&
+              resumePoint_ != org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.getDefaultInstance()) {
+            resumePoint_ =
+              org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.newBuilder(resumePoint_).mergeFrom(value).buildPartial();
+          } else {
+            resumePoint_ = value;
+          }
+          onChanged();
+        } else {
+          resumePointBuilder_.mergeFrom(value);
+        }
+        bitField0_ |= 0x00000008;
+        return this;
+      }
+      /**
+       * <code>optional .ResumePoint resumePoint = 4;</code>
+       *
+       * <pre>
+       * set when the region has more rows to visit in next chunk
+       * </pre>
+       */
+      public Builder clearResumePoint() {
+        if (resumePointBuilder_ == null) {
+          resumePoint_ = org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.getDefaultInstance();
+          onChanged();
+        } else {
+          resumePointBuilder_.clear();
+        }
+        bitField0_ = (bitField0_ & ~0x00000008);
+        return this;
+      }
+      /**
+       * <code>optional .ResumePoint resumePoint = 4;</code>
+       *
+       * <pre>
+       * set when the region has more rows to visit in next chunk
+       * </pre>
+       */
+      public org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.Builder getResumePointBuilder() {
+        bitField0_ |= 0x00000008;
+        onChanged();
+        return getResumePointFieldBuilder().getBuilder();
+      }
+      /**
+       * <code>optional .ResumePoint resumePoint = 4;</code>
+       *
+       * <pre>
+       * set when the region has more rows to visit in next chunk
+       * </pre>
+       */
+      public org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePointOrBuilder getResumePointOrBuilder() {
+        if (resumePointBuilder_ != null) {
+          return resumePointBuilder_.getMessageOrBuilder();
+        } else {
+          return resumePoint_;
+        }
+      }
+      /**
+       * <code>optional .ResumePoint resumePoint = 4;</code>
+       *
+       * <pre>
+       * set when the region has more rows to visit in next chunk
+       * </pre>
+       */
+      private com.google.protobuf.SingleFieldBuilder<
+          org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint, org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.Builder, org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePointOrBuilder> 
+          getResumePointFieldBuilder() {
+        if (resumePointBuilder_ == null) {
+          resumePointBuilder_ = new com.google.protobuf.SingleFieldBuilder<
+              org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint, org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePoint.Builder, org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.generated.CubeVisitProtos.ResumePointOrBuilder>(
+                  resumePoint_,
+                  getParentForChildren(),
+                  isClean());
+          resumePoint_ = null;
+        }
+        return resumePointBuilder_;
+      }
+
       // @@protoc_insertion_point(builder_scope:CubeVisitResponse)
     }
 
@@ -5580,6 +6701,11 @@ public final class CubeVisitProtos {
   private static
     com.google.protobuf.GeneratedMessage.FieldAccessorTable
       internal_static_CubeVisitRequest_IntList_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_ResumePoint_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_ResumePoint_fieldAccessorTable;
   private static com.google.protobuf.Descriptors.Descriptor
     internal_static_CubeVisitResponse_descriptor;
   private static
@@ -5606,33 +6732,36 @@ public final class CubeVisitProtos {
     java.lang.String[] descriptorData = {
       "\npstorage-hbase/src/main/java/org/apache" +
       "/kylin/storage/hbase/cube/v2/coprocessor" +
-      "/endpoint/protobuf/CubeVisit.proto\"\246\002\n\020C" +
+      "/endpoint/protobuf/CubeVisit.proto\"\311\002\n\020C" +
       "ubeVisitRequest\022\025\n\rgtScanRequest\030\001 \002(\014\022\024" +
       "\n\014hbaseRawScan\030\002 \002(\014\022\032\n\022rowkeyPreambleSi" +
       "ze\030\003 \002(\005\0223\n\020hbaseColumnsToGT\030\004 \003(\0132\031.Cub" +
       "eVisitRequest.IntList\022\027\n\017kylinProperties" +
       "\030\005 \002(\t\022\017\n\007queryId\030\006 \001(\t\022\032\n\014spillEnabled\030" +
       "\007 \001(\010:\004true\022\024\n\014maxScanBytes\030\010 \001(\003\022\037\n\020isE" +
-      "xactAggregate\030\t \001(\010:\005false\032\027\n\007IntList\022\014\n",
-      "\004ints\030\001 \003(\005\"\253\004\n\021CubeVisitResponse\022\026\n\016com" +
-      "pressedRows\030\001 \002(\014\022\'\n\005stats\030\002 \002(\0132\030.CubeV" +
-      "isitResponse.Stats\022/\n\terrorInfo\030\003 \001(\0132\034." +
-      "CubeVisitResponse.ErrorInfo\032\220\002\n\005Stats\022\030\n" +
-      "\020serviceStartTime\030\001 \001(\003\022\026\n\016serviceEndTim" +
-      "e\030\002 \001(\003\022\027\n\017scannedRowCount\030\003 \001(\003\022\032\n\022aggr" +
-      "egatedRowCount\030\004 \001(\003\022\025\n\rsystemCpuLoad\030\005 " +
-      "\001(\001\022\036\n\026freePhysicalMemorySize\030\006 \001(\001\022\031\n\021f" +
-      "reeSwapSpaceSize\030\007 \001(\001\022\020\n\010hostname\030\010 \001(\t" +
-      "\022\016\n\006etcMsg\030\t \001(\t\022\026\n\016normalComplete\030\n \001(\005",
-      "\022\024\n\014scannedBytes\030\013 \001(\003\032H\n\tErrorInfo\022*\n\004t" +
-      "ype\030\001 \002(\0162\034.CubeVisitResponse.ErrorType\022" +
-      "\017\n\007message\030\002 \002(\t\"G\n\tErrorType\022\020\n\014UNKNOWN" +
-      "_TYPE\020\000\022\013\n\007TIMEOUT\020\001\022\033\n\027RESOURCE_LIMIT_E" +
-      "XCEEDED\020\0022F\n\020CubeVisitService\0222\n\tvisitCu" +
-      "be\022\021.CubeVisitRequest\032\022.CubeVisitRespons" +
-      "eB`\nEorg.apache.kylin.storage.hbase.cube" +
-      ".v2.coprocessor.endpoint.generatedB\017Cube" +
-      "VisitProtosH\001\210\001\001\240\001\001"
+      "xactAggregate\030\t \001(\010:\005false\022!\n\013resumePoin",
+      "t\030\n \001(\0132\014.ResumePoint\032\027\n\007IntList\022\014\n\004ints" +
+      "\030\001 \003(\005\"3\n\013ResumePoint\022\024\n\014rawScanIndex\030\001 " +
+      "\002(\005\022\016\n\006rowKey\030\002 \002(\014\"\316\004\n\021CubeVisitRespons" +
+      "e\022\026\n\016compressedRows\030\001 \002(\014\022\'\n\005stats\030\002 \002(\013" +
+      "2\030.CubeVisitResponse.Stats\022/\n\terrorInfo\030" +
+      "\003 \001(\0132\034.CubeVisitResponse.ErrorInfo\022!\n\013r" +
+      "esumePoint\030\004 \001(\0132\014.ResumePoint\032\220\002\n\005Stats" +
+      "\022\030\n\020serviceStartTime\030\001 \001(\003\022\026\n\016serviceEnd" +
+      "Time\030\002 \001(\003\022\027\n\017scannedRowCount\030\003 \001(\003\022\032\n\022a" +
+      "ggregatedRowCount\030\004 \001(\003\022\025\n\rsystemCpuLoad",
+      "\030\005 \001(\001\022\036\n\026freePhysicalMemorySize\030\006 \001(\001\022\031" +
+      "\n\021freeSwapSpaceSize\030\007 \001(\001\022\020\n\010hostname\030\010 " +
+      "\001(\t\022\016\n\006etcMsg\030\t \001(\t\022\026\n\016normalComplete\030\n " +
+      "\001(\005\022\024\n\014scannedBytes\030\013 \001(\003\032H\n\tErrorInfo\022*" +
+      "\n\004type\030\001 \002(\0162\034.CubeVisitResponse.ErrorTy" +
+      "pe\022\017\n\007message\030\002 \002(\t\"G\n\tErrorType\022\020\n\014UNKN" +
+      "OWN_TYPE\020\000\022\013\n\007TIMEOUT\020\001\022\033\n\027RESOURCE_LIMI" +
+      "T_EXCEEDED\020\0022F\n\020CubeVisitService\0222\n\tvisi" +
+      "tCube\022\021.CubeVisitRequest\032\022.CubeVisitResp" +
+      "onseB`\nEorg.apache.kylin.storage.hbase.c",
+      "ube.v2.coprocessor.endpoint.generatedB\017C" +
+      "ubeVisitProtosH\001\210\001\001\240\001\001"
     };
     com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner assigner =
       new com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner() {
@@ -5644,19 +6773,25 @@ public final class CubeVisitProtos {
           internal_static_CubeVisitRequest_fieldAccessorTable = new
             com.google.protobuf.GeneratedMessage.FieldAccessorTable(
               internal_static_CubeVisitRequest_descriptor,
-              new java.lang.String[] { "GtScanRequest", "HbaseRawScan", "RowkeyPreambleSize", "HbaseColumnsToGT", "KylinProperties", "QueryId", "SpillEnabled", "MaxScanBytes", "IsExactAggregate", });
+              new java.lang.String[] { "GtScanRequest", "HbaseRawScan", "RowkeyPreambleSize", "HbaseColumnsToGT", "KylinProperties", "QueryId", "SpillEnabled", "MaxScanBytes", "IsExactAggregate", "ResumePoint", });
           internal_static_CubeVisitRequest_IntList_descriptor =
             internal_static_CubeVisitRequest_descriptor.getNestedTypes().get(0);
           internal_static_CubeVisitRequest_IntList_fieldAccessorTable = new
             com.google.protobuf.GeneratedMessage.FieldAccessorTable(
               internal_static_CubeVisitRequest_IntList_descriptor,
               new java.lang.String[] { "Ints", });
-          internal_static_CubeVisitResponse_descriptor =
+          internal_static_ResumePoint_descriptor =
             getDescriptor().getMessageTypes().get(1);
+          internal_static_ResumePoint_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_ResumePoint_descriptor,
+              new java.lang.String[] { "RawScanIndex", "RowKey", });
+          internal_static_CubeVisitResponse_descriptor =
+            getDescriptor().getMessageTypes().get(2);
           internal_static_CubeVisitResponse_fieldAccessorTable = new
             com.google.protobuf.GeneratedMessage.FieldAccessorTable(
               internal_static_CubeVisitResponse_descriptor,
-              new java.lang.String[] { "CompressedRows", "Stats", "ErrorInfo", });
+              new java.lang.String[] { "CompressedRows", "Stats", "ErrorInfo", "ResumePoint", });
           internal_static_CubeVisitResponse_Stats_descriptor =
             internal_static_CubeVisitResponse_descriptor.getNestedTypes().get(0);
           internal_static_CubeVisitResponse_Stats_fieldAccessorTable = new
@@ -39,6 +39,7 @@ import org.apache.hadoop.util.ToolRunner;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.cube.CubeInstance;
 import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.engine.mr.common.AbstractHadoopJob;
 import org.apache.kylin.engine.mr.common.BatchConstants;
 import org.apache.kylin.storage.hbase.HBaseConnection;
@@ -87,6 +88,12 @@ public class CubeHFileJob extends AbstractHadoopJob {
 
             // set job configuration
             job.getConfiguration().set(BatchConstants.CFG_CUBE_NAME, cubeName);
+            // the cell layout of the segment must agree with the one its HTable is created for
+            CubeSegment segment = findSegmentByHTable(cube, getOptionValue(OPTION_HTABLE_NAME));
+            if (segment == null) {
+                throw new IllegalStateException("No segment of cube " + cubeName + " is stored in HTable " + getOptionValue(OPTION_HTABLE_NAME));
+            }
+            job.getConfiguration().set(BatchConstants.CFG_CUBE_SEGMENT_ID, segment.getUuid());
             // add metadata to distributed cache
             attachCubeMetadata(cube, job.getConfiguration());
 
@@ -109,6 +116,15 @@ public class CubeHFileJob extends AbstractHadoopJob {
         }
     }
 
+    private CubeSegment findSegmentByHTable(CubeInstance cube, String htableName) {
+        for (CubeSegment segment : cube.getSegments()) {
+            if (htableName.equalsIgnoreCase(segment.getStorageLocationIdentifier())) {
+                return segment;
+            }
+        }
+        return null;
+    }
+
     /**
      * Check if there's partition files for hfile, if yes replace the table splits, to make the job more reducers
      * @param conf the job configuration
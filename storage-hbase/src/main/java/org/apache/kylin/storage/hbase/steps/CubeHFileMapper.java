@@ -26,7 +26,9 @@ import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.cube.CubeInstance;
 import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.cube.model.CubeDesc;
 import org.apache.kylin.cube.model.HBaseColumnDesc;
 import org.apache.kylin.cube.model.HBaseColumnFamilyDesc;
@@ -60,7 +62,16 @@ public class CubeHFileMapper extends KylinMapper<Text, Text, ImmutableBytesWrita
         KylinConfig config = AbstractHadoopJob.loadKylinPropsAndMetadata();
 
         CubeManager cubeMgr = CubeManager.getInstance(config);
-        cubeDesc = cubeMgr.getCube(cubeName).getDescriptor();
+        CubeInstance cube = cubeMgr.getCube(cubeName);
+        cubeDesc = cube.getDescriptor();
+
+        String segmentId = context.getConfiguration().get(BatchConstants.CFG_CUBE_SEGMENT_ID);
+        CubeSegment segment = segmentId == null ? null : cube.getSegmentById(segmentId);
+        if (segment == null) {
+            // the cell layout must agree with the one the HTable is created for
+            throw new IllegalStateException("Segment " + segmentId + " of cube " + cubeName + " not found");
+        }
+        boolean columnarValue = segment.isColumnarValue();
 
         inputCodec = new MeasureCodec(cubeDesc.getMeasures());
         inputMeasures = new Object[cubeDesc.getMeasures().size()];
@@ -68,7 +79,7 @@ public class CubeHFileMapper extends KylinMapper<Text, Text, ImmutableBytesWrita
 
         for (HBaseColumnFamilyDesc cfDesc : cubeDesc.getHbaseMapping().getColumnFamily()) {
             for (HBaseColumnDesc colDesc : cfDesc.getColumns()) {
-                keyValueCreators.add(new KeyValueCreator(cubeDesc, colDesc));
+                keyValueCreators.add(new KeyValueCreator(cubeDesc, colDesc, columnarValue));
             }
         }
     }
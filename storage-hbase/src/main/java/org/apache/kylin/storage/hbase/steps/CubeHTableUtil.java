@@ -79,6 +79,11 @@ public class CubeHTableUtil {
 
         tableDesc.setValue(IRealizationConstants.HTableSegmentTag, cubeSegment.toString());
 
+        if (cubeSegment.isColumnarValue()) {
+            // for coprocessor to know the value layout
+            tableDesc.setValue(IRealizationConstants.HTableColumnarValue, "true");
+        }
+
         Configuration conf = HBaseConnection.getCurrentHBaseConfiguration();
         Connection conn = HBaseConnection.get(kylinConfig.getStorageUrl());
         Admin admin = conn.getAdmin();
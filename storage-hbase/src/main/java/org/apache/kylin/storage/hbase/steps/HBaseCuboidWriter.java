@@ -64,7 +64,7 @@ public class HBaseCuboidWriter implements ICuboidWriter {
         this.cubeDesc = cubeSegment.getCubeDesc();
         for (HBaseColumnFamilyDesc cfDesc : cubeDesc.getHbaseMapping().getColumnFamily()) {
             for (HBaseColumnDesc colDesc : cfDesc.getColumns()) {
-                keyValueCreators.add(new KeyValueCreator(cubeDesc, colDesc));
+                keyValueCreators.add(new KeyValueCreator(cubeDesc, colDesc, segment.isColumnarValue()));
             }
         }
         this.nColumns = keyValueCreators.size();
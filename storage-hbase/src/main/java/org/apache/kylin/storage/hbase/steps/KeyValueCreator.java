@@ -24,6 +24,7 @@ import java.util.List;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.io.Text;
 import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.cube.kv.ColumnarValueCodec;
 import org.apache.kylin.cube.model.CubeDesc;
 import org.apache.kylin.cube.model.HBaseColumnDesc;
 import org.apache.kylin.measure.BufferedMeasureCodec;
@@ -41,11 +42,19 @@ public class KeyValueCreator {
     MeasureDesc[] refMeasures;
 
     BufferedMeasureCodec codec;
+    ColumnarValueCodec columnarCodec;
     Object[] colValues;
 
     public boolean isFullCopy;
 
     public KeyValueCreator(CubeDesc cubeDesc, HBaseColumnDesc colDesc) {
+        this(cubeDesc, colDesc, false);
+    }
+
+    /**
+     * @param columnarValue whether to store the measures in {@link ColumnarValueCodec} layout
+     */
+    public KeyValueCreator(CubeDesc cubeDesc, HBaseColumnDesc colDesc, boolean columnarValue) {
 
         cfBytes = Bytes.toBytes(colDesc.getColumnFamilyName());
         qBytes = Bytes.toBytes(colDesc.getQualifier());
@@ -55,9 +64,13 @@ public class KeyValueCreator {
         refMeasures = colDesc.getMeasures();
 
         codec = new BufferedMeasureCodec(refMeasures);
+        if (columnarValue) {
+            columnarCodec = new ColumnarValueCodec(refMeasures);
+        }
         colValues = new Object[refMeasures.length];
 
-        isFullCopy = true;
+        // the input value is in BufferedMeasureCodec layout, so columnar cells can't copy it
+        isFullCopy = !columnarValue;
         List<MeasureDesc> measures = cubeDesc.getMeasures();
         for (int i = 0; i < measures.size(); i++) {
             if (refIndex.length <= i || refIndex[i] != i)
@@ -74,7 +87,7 @@ public class KeyValueCreator {
             colValues[i] = measureValues[refIndex[i]];
         }
 
-        ByteBuffer valueBuf = codec.encode(colValues);
+        ByteBuffer valueBuf = columnarCodec != null ? columnarCodec.encode(colValues) : codec.encode(colValues);
 
         return create(keyBytes, keyOffset, keyLength, valueBuf.array(), 0, valueBuf.position());
     }
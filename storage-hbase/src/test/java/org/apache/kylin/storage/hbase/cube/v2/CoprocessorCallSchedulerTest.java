@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.hbase.cube.v2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class CoprocessorCallSchedulerTest {
+
+    @Test
+    public void testTurnsAndLanes() throws Exception {
+        CoprocessorCallScheduler scheduler = new CoprocessorCallScheduler(1, 1, 60);
+        CoprocessorCallScheduler.QueryExecutor a = scheduler.newExecutor("a", false, 0);
+        CoprocessorCallScheduler.QueryExecutor b = scheduler.newExecutor("b", false, 0);
+        CoprocessorCallScheduler.QueryExecutor s = scheduler.newExecutor("s", true, 0);
+
+        // hold the only slot while the others queue up
+        final CountDownLatch release = new CountDownLatch(1);
+        Future<?> blocker = a.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        List<String> order = Lists.newArrayList();
+        List<Future<?>> futures = Lists.newArrayList();
+        futures.add(a.submit(record(order, "a1")));
+        futures.add(a.submit(record(order, "a2")));
+        futures.add(a.submit(record(order, "a3")));
+        futures.add(b.submit(record(order, "b1")));
+        futures.add(s.submit(record(order, "s1")));
+        assertEquals(5, scheduler.getQueuedCalls());
+
+        release.countDown();
+        blocker.get(10, TimeUnit.SECONDS);
+        for (Future<?> f : futures) {
+            f.get(10, TimeUnit.SECONDS);
+        }
+
+        // the small lane first, then queries take turns
+        assertEquals(Lists.newArrayList("s1", "a1", "b1", "a2", "a3"), order);
+        assertEquals(1, scheduler.getConcurrencyLimit());
+    }
+
+    @Test
+    public void testExpiredCallCancelled() throws Exception {
+        CoprocessorCallScheduler scheduler = new CoprocessorCallScheduler(1, 1, 60);
+        CoprocessorCallScheduler.QueryExecutor a = scheduler.newExecutor("a", false, 1);
+
+        Thread.sleep(10);
+        List<String> order = Lists.newArrayList();
+        Future<?> f = a.submit(record(order, "a1"));
+        try {
+            f.get(10, TimeUnit.SECONDS);
+        } catch (CancellationException e) {
+            // expected
+        }
+        assertTrue(f.isCancelled());
+        assertTrue(order.isEmpty());
+    }
+
+    @Test
+    public void testLimitShrinksAndGrows() {
+        CoprocessorCallScheduler scheduler = new CoprocessorCallScheduler(1, 64, 60);
+        CoprocessorCallScheduler.QueryExecutor a = scheduler.newExecutor("a", false, 0);
+
+        // steady latency keeps the limit
+        for (int i = 0; i < 100; i++) {
+            scheduler.adjustLimit(a, ms(10));
+        }
+        assertEquals(64, scheduler.getConcurrencyLimit());
+
+        // up to twice the baseline is tolerated
+        for (int i = 0; i < 100; i++) {
+            scheduler.adjustLimit(a, ms(20));
+        }
+        assertEquals(64, scheduler.getConcurrencyLimit());
+
+        // calls getting much slower shrink the limit, step by step
+        scheduler.adjustLimit(a, ms(100));
+        int limit = scheduler.getConcurrencyLimit();
+        assertTrue(limit < 64 && limit > 32);
+        for (int i = 0; i < 100; i++) {
+            scheduler.adjustLimit(a, ms(100));
+        }
+        limit = scheduler.getConcurrencyLimit();
+        assertTrue(limit >= 1 && limit < 8);
+
+        // and fast calls let it grow back
+        for (int i = 0; i < 100; i++) {
+            scheduler.adjustLimit(a, ms(10));
+        }
+        assertTrue(scheduler.getConcurrencyLimit() >= 60);
+    }
+
+    @Test
+    public void testLimitUnderMixedQueries() {
+        CoprocessorCallScheduler scheduler = new CoprocessorCallScheduler(1, 64, 60);
+        CoprocessorCallScheduler.QueryExecutor fast = scheduler.newExecutor("fast", true, 0);
+        CoprocessorCallScheduler.QueryExecutor slow = scheduler.newExecutor("slow", false, 0);
+
+        // each query is steady, a slow query is not taken as an overload
+        for (int i = 0; i < 100; i++) {
+            scheduler.adjustLimit(fast, ms(1));
+            scheduler.adjustLimit(slow, ms(500));
+        }
+        assertEquals(64, scheduler.getConcurrencyLimit());
+
+        // the first call of a query only sets its baseline
+        CoprocessorCallScheduler.QueryExecutor other = scheduler.newExecutor("other", false, 0);
+        scheduler.adjustLimit(other, ms(5000));
+        assertEquals(64, scheduler.getConcurrencyLimit());
+    }
+
+    private static long ms(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    private Runnable record(final List<String> order, final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                synchronized (order) {
+                    order.add(name);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.hbase.cube.v2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.Bytes;
+import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.common.util.Pair;
+import org.apache.kylin.common.util.ShardingHash;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTSampleCodeSystem;
+import org.apache.kylin.gridtable.GTScanRange;
+import org.apache.kylin.metadata.datatype.DataType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class CubeHBaseEndpointRPCTest extends LocalFileMetadataTestCase {
+
+    private static final int C1 = 0;
+    private static final int UID = 1; // the shard-by column
+    private static final int UID_LENGTH = 4;
+    private static final short BASE_SHARD = 5;
+    private static final short SHARD_NUM = 8;
+    private static final int TOTAL_SHARDS = 10;
+
+    private GTInfo info;
+
+    @Before
+    public void setUp() throws Exception {
+        createTestMetadata();
+        GTInfo.Builder builder = GTInfo.builder();
+        builder.setCodeSystem(new GTSampleCodeSystem());
+        DataType tint = DataType.getType("int4");
+        builder.setColumns(tint, tint);
+        builder.setPrimaryKey(ImmutableBitSet.valueOf(C1, UID));
+        info = builder.build();
+    }
+
+    @After
+    public void after() throws Exception {
+        cleanupTestMetadata();
+    }
+
+    @Test
+    public void testEqualsAndIn() {
+        // uid = 'X'
+        GTScanRange eq = new GTScanRange(record(null, "X"), record(null, "X"), Lists.newArrayList(record(null, "X")));
+        assertEquals(shardsOf("X"), targetShards(eq));
+
+        // uid in ('X', 'Y', 'Z')
+        GTScanRange in = new GTScanRange(record(null, "X"), record(null, "Z"), Lists.newArrayList(record(null, "X"), record(null, "Y"), record(null, "Z")));
+        assertEquals(shardsOf("X", "Y", "Z"), targetShards(in));
+
+        // uid = 'X' or uid = 'Y' in separate ranges
+        GTScanRange eqY = new GTScanRange(record(null, "Y"), record(null, "Y"), Lists.newArrayList(record(null, "Y")));
+        assertEquals(shardsOf("X", "Y"), targetShards(eq, eqY));
+    }
+
+    @Test
+    public void testMergedRanges() {
+        // (c1 between 'a' and 'c' and uid = 'X') or (c1 = 'b' and uid = 'Y'), merged by the planner into one range
+        // from (a, X) to (c, X), whose start and end agree on uid but which holds uid 'Y' as well
+        GTScanRange merged = new GTScanRange(record("a", "X"), record("c", "X"), //
+                Lists.newArrayList(record(null, "X"), record("b", "Y")));
+        assertEquals(shardsOf("X", "Y"), targetShards(merged));
+
+        // a merged range with a part of no fuzzy keys has no fuzzy keys either
+        GTScanRange mergedNonFuzzy = new GTScanRange(record("a", "X"), record("c", "X"), Collections.<GTRecord> emptyList());
+        assertNull(targetShards(mergedNonFuzzy));
+    }
+
+    @Test
+    public void testColumnNotPinned() {
+        // uid open
+        GTScanRange open = new GTScanRange(record("a", null), record("c", null), Lists.newArrayList(record("a", null), record("c", null)));
+        assertNull(targetShards(open));
+
+        // uid between 'X' and 'Z'
+        GTScanRange between = new GTScanRange(record(null, "X"), record(null, "Z"));
+        assertNull(targetShards(between));
+
+        // one of the ranges leaves uid open
+        GTScanRange eq = new GTScanRange(record(null, "X"), record(null, "X"), Lists.newArrayList(record(null, "X")));
+        assertNull(targetShards(eq, open));
+
+        // a single shard has nothing to prune
+        assertNull(CubeHBaseEndpointRPC.getTargetShards(Arrays.asList(eq), UID, UID_LENGTH, (short) 0, (short) 1, 1));
+    }
+
+    @Test
+    public void testEPKeyRanges() {
+        List<Pair<byte[], byte[]>> ranges = CubeHBaseEndpointRPC.getEPKeyRanges(Lists.newArrayList((short) 1, (short) 2, (short) 3, (short) 5, (short) 7, (short) 8));
+        assertEquals(3, ranges.size());
+        assertRange(1, 3, ranges.get(0));
+        assertRange(5, 5, ranges.get(1));
+        assertRange(7, 8, ranges.get(2));
+
+        assertEquals(0, CubeHBaseEndpointRPC.getEPKeyRanges(Lists.<Short> newArrayList()).size());
+    }
+
+    private List<Short> targetShards(GTScanRange... ranges) {
+        return CubeHBaseEndpointRPC.getTargetShards(Arrays.asList(ranges), UID, UID_LENGTH, BASE_SHARD, SHARD_NUM, TOTAL_SHARDS);
+    }
+
+    private List<Short> shardsOf(String... uids) {
+        TreeSet<Short> shards = new TreeSet<>();
+        for (String uid : uids) {
+            ByteArray value = value(uid);
+            short offset = ShardingHash.getShard(value.array(), value.offset(), value.length(), SHARD_NUM);
+            shards.add(ShardingHash.normalize(BASE_SHARD, offset, TOTAL_SHARDS));
+        }
+        return Lists.newArrayList(shards);
+    }
+
+    private GTRecord record(String c1, String uid) {
+        GTRecord record = new GTRecord(info);
+        if (c1 != null) {
+            record.set(C1, value(c1));
+        }
+        if (uid != null) {
+            record.set(UID, value(uid));
+        }
+        return record;
+    }
+
+    private ByteArray value(String v) {
+        byte[] bytes = new byte[UID_LENGTH];
+        byte[] s = Bytes.toBytes(v);
+        System.arraycopy(s, 0, bytes, 0, s.length);
+        return new ByteArray(bytes);
+    }
+
+    private void assertRange(int start, int end, Pair<byte[], byte[]> range) {
+        assertEquals(start, BytesUtil.readUnsigned(range.getFirst(), 0, Bytes.SIZEOF_SHORT));
+        assertEquals(end, BytesUtil.readUnsigned(range.getSecond(), 0, Bytes.SIZEOF_SHORT));
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.hbase.cube.v2;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ExpectedSizeIteratorTest {
+
+    @Test
+    public void testWholePartitions() {
+        ExpectedSizeIterator itr = new ExpectedSizeIterator(2, 1000);
+        itr.append(new byte[] { 1 });
+        itr.append(new byte[] { 2 });
+
+        assertTrue(itr.hasNext());
+        assertArrayEquals(new byte[] { 1 }, itr.next());
+        assertTrue(itr.hasNext());
+        assertArrayEquals(new byte[] { 2 }, itr.next());
+        assertFalse(itr.hasNext());
+    }
+
+    @Test
+    public void testChunkedPartitions() throws InterruptedException {
+        final ExpectedSizeIterator itr = new ExpectedSizeIterator(2, 1000);
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                // more chunks than the queue can hold at once
+                itr.appendChunk(new byte[] { 1 });
+                itr.appendChunk(new byte[] { 2 });
+                itr.appendChunk(new byte[] { 3 });
+                itr.append(new byte[] { 4 });
+                itr.append(new byte[] { 5 });
+            }
+        };
+        producer.start();
+
+        for (byte i = 1; i <= 5; i++) {
+            assertTrue(itr.hasNext());
+            assertArrayEquals(new byte[] { i }, itr.next());
+        }
+        assertFalse(itr.hasNext());
+        producer.join();
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testCoprocessorException() {
+        ExpectedSizeIterator itr = new ExpectedSizeIterator(1, 1000);
+        itr.appendChunk(new byte[] { 1 });
+        itr.next();
+        itr.notifyCoprocException(new RuntimeException("region failed"));
+        itr.next();
+    }
+}
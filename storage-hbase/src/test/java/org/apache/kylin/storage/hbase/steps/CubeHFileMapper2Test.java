@@ -32,7 +32,9 @@ import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.common.util.HadoopUtil;
 import org.apache.kylin.common.util.LocalFileMetadataTestCase;
 import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.cube.model.CubeDesc;
+import org.apache.kylin.engine.mr.common.BatchConstants;
 import org.apache.kylin.measure.MeasureCodec;
 import org.junit.After;
 import org.junit.Before;
@@ -70,6 +72,8 @@ public class CubeHFileMapper2Test extends LocalFileMetadataTestCase {
     public void testBasic() throws Exception {
 
         Configuration hconf = HadoopUtil.getCurrentConfiguration();
+        CubeSegment segment = CubeManager.getInstance(getTestConfig()).getCube(cubeName).getFirstSegment();
+        hconf.set(BatchConstants.CFG_CUBE_SEGMENT_ID, segment.getUuid());
         Context context = MockupMapContext.create(hconf, cubeName, outKV);
 
         CubeHFileMapper mapper = new CubeHFileMapper();